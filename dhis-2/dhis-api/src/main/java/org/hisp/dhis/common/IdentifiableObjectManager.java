@@ -184,6 +184,8 @@ public interface IdentifiableObjectManager
 
     <T extends IdentifiableObject> T getNoAcl( Class<T> clazz, String uid );
 
+    <T extends IdentifiableObject> T getNoAcl( Class<T> clazz, long id );
+
     <T extends IdentifiableObject> void updateNoAcl( T object );
 
     <T extends IdentifiableObject> List<T> getAllNoAcl( Class<T> clazz );
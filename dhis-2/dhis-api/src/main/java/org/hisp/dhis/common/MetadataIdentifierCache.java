@@ -0,0 +1,57 @@
+package org.hisp.dhis.common;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Process wide cache which resolves metadata identifiers, such as UIDs, codes
+ * and names, to the internal identifiers of the objects they refer to. The
+ * objects themselves are not cached, but loaded by internal identifier in the
+ * current session.
+ */
+public interface MetadataIdentifierCache
+{
+    /**
+     * Returns the object of the given type with the given identifier, or null
+     * if no such object exists. Cached identifiers are validated against the
+     * loaded object, so that a stale entry falls back to a regular lookup.
+     *
+     * @param clazz the object type.
+     * @param idScheme the identifier scheme of the given identifier.
+     * @param identifier the identifier.
+     * @return the object, or null.
+     */
+    <T extends IdentifiableObject> T getObject( Class<T> clazz, IdScheme idScheme, String identifier );
+
+    /**
+     * Invalidates the cached identifiers of the given type.
+     *
+     * @param clazz the object type.
+     */
+    void invalidate( Class<?> clazz );
+}
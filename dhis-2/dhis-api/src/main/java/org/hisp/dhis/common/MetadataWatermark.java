@@ -0,0 +1,62 @@
+package org.hisp.dhis.common;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Tracks changes to metadata, so that clients can detect whether metadata
+ * responses may have changed without loading the metadata.
+ */
+public interface MetadataWatermark
+{
+    /**
+     * Indicates whether watermarks are available. Watermarks are not available
+     * when metadata changes made on other instances can not be detected.
+     *
+     * @return true if watermarks are available.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns a watermark for the given type which changes whenever metadata
+     * changes on any instance, or whenever the most recent last updated time
+     * or the number of objects of the given type readable by the current user
+     * changes in the database.
+     *
+     * @param clazz the object type.
+     * @return the watermark.
+     */
+    String getWatermark( Class<? extends IdentifiableObject> clazz );
+
+    /**
+     * Signals that metadata has changed. Must be invoked by writes which do
+     * not go through the Hibernate session, such as SQL and bulk HQL updates.
+     * Within a transaction the signal is deferred until after commit.
+     */
+    void metadataChanged();
+}
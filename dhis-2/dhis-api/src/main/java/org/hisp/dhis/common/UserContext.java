@@ -115,6 +115,16 @@ public final class UserContext
         return getUserSetting( key ) != null;
     }
 
+    public static Map<String, Serializable> getUserSettings()
+    {
+        return threadUserSettings.get() != null ? new HashMap<>( threadUserSettings.get() ) : new HashMap<>();
+    }
+
+    public static void setUserSettings( Map<String, Serializable> userSettings )
+    {
+        threadUserSettings.set( new HashMap<>( userSettings ) );
+    }
+
     public static void setUserSettings( List<UserSetting> userSettings )
     {
         userSettings.stream()
@@ -136,6 +136,18 @@ public interface DataValueStore
     List<DataValue> getDataValues( OrganisationUnit source, Period period, Collection<DataElement> dataElements,
         CategoryOptionCombo attributeOptionCombo );
 
+    /**
+     * Returns the stored data values, including soft deleted ones, which have
+     * the same data element, period, organisation unit, category option combo
+     * and attribute option combo as any of the given data values. Only the
+     * value and the deleted flag are read from the stored data values, the
+     * other properties are taken from the given data values.
+     *
+     * @param dataValues the data values to look up.
+     * @return a list of stored data values.
+     */
+    List<DataValue> getDataValues( Collection<DataValue> dataValues );
+
     /**
      * Returns deflated data values for the given data export parameters.
      *
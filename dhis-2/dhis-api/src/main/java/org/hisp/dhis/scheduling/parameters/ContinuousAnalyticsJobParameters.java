@@ -69,6 +69,12 @@ public class ContinuousAnalyticsJobParameters
      */
     private Set<AnalyticsTableType> skipTableTypes = new HashSet<>();
 
+    /**
+     * Indicates whether to rebuild the year partitions with changed data
+     * between full updates, instead of updating the "latest" partition.
+     */
+    private boolean changedPartitionUpdate;
+
     public ContinuousAnalyticsJobParameters()
     {
     }
@@ -118,6 +124,18 @@ public class ContinuousAnalyticsJobParameters
         this.skipTableTypes = skipTableTypes;
     }
 
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public boolean isChangedPartitionUpdate()
+    {
+        return changedPartitionUpdate;
+    }
+
+    public void setChangedPartitionUpdate( boolean changedPartitionUpdate )
+    {
+        this.changedPartitionUpdate = changedPartitionUpdate;
+    }
+
     @Override
     public Optional<ErrorReport> validate()
     {
@@ -60,11 +60,15 @@ public class DefaultAclService implements AclService
 {
     private final SchemaService schemaService;
 
-    public DefaultAclService( SchemaService schemaService )
+    private final UserGroupMembershipCache userGroupMembershipCache;
+
+    public DefaultAclService( SchemaService schemaService, UserGroupMembershipCache userGroupMembershipCache )
     {
         checkNotNull( schemaService );
+        checkNotNull( userGroupMembershipCache );
 
         this.schemaService = schemaService;
+        this.userGroupMembershipCache = userGroupMembershipCache;
     }
 
     @Override
@@ -654,7 +658,7 @@ public class DefaultAclService implements AclService
             // Check if user is allowed to read this object through group access
 
             if ( AccessStringHelper.isEnabled( userGroupAccess.getAccess(), permission )
-                    && userGroupAccess.userGroupContainsUser( user ) )
+                    && userGroupMembershipCache.isMember( user, userGroupAccess.getUserGroup() ) )
             {
                 return true;
             }
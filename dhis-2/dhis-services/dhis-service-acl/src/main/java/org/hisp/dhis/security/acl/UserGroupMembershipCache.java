@@ -0,0 +1,144 @@
+package org.hisp.dhis.security.acl;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.cache.Cache;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.user.User;
+import org.hisp.dhis.user.UserGroup;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Cache of the identifiers of the user groups each user is a member of. Lets
+ * sharing checks test group membership by identifier instead of loading the
+ * members of every user group the object is shared with. Membership changes
+ * are seen once they are flushed, see {@link UserGroupMembershipCacheListener}.
+ *
+ * The cache is shared between nodes through Redis when enabled. A clustered
+ * instance without Redis can not see membership changes made on other nodes,
+ * so it checks the members of the user group directly instead.
+ */
+@Component( "org.hisp.dhis.security.acl.UserGroupMembershipCache" )
+public class UserGroupMembershipCache
+{
+    private static final String USER_GROUP_IDS_HQL =
+        "select distinct g.id from UserGroup g join g.members m where m.id = :userId";
+
+    private static final long[] NO_GROUPS = new long[0];
+
+    private final SessionFactory sessionFactory;
+
+    private final CacheProvider cacheProvider;
+
+    private final DhisConfigurationProvider config;
+
+    private Cache<long[]> userGroupIdCache;
+
+    private boolean enabled;
+
+    public UserGroupMembershipCache( SessionFactory sessionFactory, CacheProvider cacheProvider,
+        DhisConfigurationProvider config )
+    {
+        checkNotNull( sessionFactory );
+        checkNotNull( cacheProvider );
+        checkNotNull( config );
+
+        this.sessionFactory = sessionFactory;
+        this.cacheProvider = cacheProvider;
+        this.config = config;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        enabled = !config.isClusterEnabled() ||
+            "true".equalsIgnoreCase( config.getProperty( ConfigurationKey.REDIS_ENABLED ) );
+
+        userGroupIdCache = cacheProvider.newCacheBuilder( long[].class )
+            .forRegion( "userGroupMembershipCache" )
+            .withInitialCapacity( 200 )
+            .withMaximumSize( enabled ? 20000 : 0 )
+            .build();
+    }
+
+    /**
+     * Checks whether the given user is a member of the given user group.
+     *
+     * @param user the user.
+     * @param userGroup the user group.
+     * @return true if the user is a member of the user group.
+     */
+    @Transactional( readOnly = true )
+    public boolean isMember( User user, UserGroup userGroup )
+    {
+        if ( user == null || userGroup == null )
+        {
+            return false;
+        }
+
+        if ( !enabled )
+        {
+            return userGroup.getMembers().stream().anyMatch( u -> u.getId() == user.getId() );
+        }
+
+        long[] userGroupIds = userGroupIdCache.get( String.valueOf( user.getId() ),
+            key -> getUserGroupIds( user.getId() ) ).orElse( NO_GROUPS );
+
+        return Arrays.binarySearch( userGroupIds, userGroup.getId() ) >= 0;
+    }
+
+    /**
+     * Invalidates the cached memberships of all users.
+     */
+    public void invalidateAll()
+    {
+        userGroupIdCache.invalidateAll();
+    }
+
+    private long[] getUserGroupIds( long userId )
+    {
+        List<Long> ids = sessionFactory.getCurrentSession()
+            .createQuery( USER_GROUP_IDS_HQL, Long.class )
+            .setParameter( "userId", userId )
+            .list();
+
+        return ids.stream().mapToLong( Long::longValue ).sorted().toArray();
+    }
+}
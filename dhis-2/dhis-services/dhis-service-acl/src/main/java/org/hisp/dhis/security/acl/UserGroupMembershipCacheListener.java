@@ -0,0 +1,66 @@
+package org.hisp.dhis.security.acl;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Collection;
+
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hisp.dhis.cache.AbstractCollectionInvalidationListener;
+import org.hisp.dhis.user.UserGroup;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates the {@link UserGroupMembershipCache} when the members of a user
+ * group change.
+ */
+@Component
+public class UserGroupMembershipCacheListener
+    extends AbstractCollectionInvalidationListener
+{
+    private static final String MEMBERS_ROLE = UserGroup.class.getName() + ".members";
+
+    private final UserGroupMembershipCache userGroupMembershipCache;
+
+    public UserGroupMembershipCacheListener( UserGroupMembershipCache userGroupMembershipCache )
+    {
+        this.userGroupMembershipCache = userGroupMembershipCache;
+    }
+
+    @Override
+    protected boolean isInvalidating( AbstractCollectionEvent event )
+    {
+        return event.getCollection() != null && MEMBERS_ROLE.equals( event.getCollection().getRole() );
+    }
+
+    @Override
+    protected void invalidate( Collection<Object> owners )
+    {
+        userGroupMembershipCache.invalidateAll();
+    }
+}
@@ -116,6 +116,18 @@ public interface AnalyticsTableManager
      */
     void swapTable( AnalyticsTableUpdateParams params, AnalyticsTable table );
 
+    /**
+     * Returns the data years contained in the given table partition. For yearly
+     * partitions this is the year of the partition. For the "latest" partition
+     * this is the years of the data which was updated since the last full
+     * update. Returns an empty set if the years cannot be determined, e.g. for
+     * tables which are not partitioned by year.
+     *
+     * @param partition the {@link AnalyticsTablePartition}.
+     * @return a set of years.
+     */
+    Set<Integer> getDataYears( AnalyticsTablePartition partition );
+
     /**
      * Copies and denormalizes rows from data value table into analytics table.
      * The data range is based on the start date of the data value row.
@@ -34,6 +34,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 import org.hisp.dhis.calendar.Calendar;
 import org.hisp.dhis.calendar.DateTimeUnit;
@@ -56,6 +57,12 @@ public class AnalyticsTableUpdateParams
      */
     private Integer lastYears;
 
+    /**
+     * Indicates whether to only update partitions for years with data which
+     * changed since the last successful full or changed partition update.
+     */
+    private boolean changedPartitionUpdate;
+
     /**
      * Indicates whether to skip update of resource tables.
      */
@@ -81,6 +88,12 @@ public class AnalyticsTableUpdateParams
      */
     private Date lastSuccessfulUpdate;
 
+    /**
+     * Permits for the database processes which are shared by the table types
+     * updated concurrently, or null if table types are updated one at a time.
+     */
+    private Semaphore processPermits;
+
     /**
      * Current date, only used for testing
      */
@@ -101,6 +114,11 @@ public class AnalyticsTableUpdateParams
         return lastYears;
     }
 
+    public boolean isChangedPartitionUpdate()
+    {
+        return changedPartitionUpdate;
+    }
+
     public boolean isSkipResourceTables()
     {
         return skipResourceTables;
@@ -126,6 +144,11 @@ public class AnalyticsTableUpdateParams
         return lastSuccessfulUpdate;
     }
 
+    public Semaphore getProcessPermits()
+    {
+        return processPermits;
+    }
+
     /**
      * Indicates whether this is a partial update of analytics tables, i.e.
      * if only certain partitions are to be updated and not all partitions
@@ -133,7 +156,7 @@ public class AnalyticsTableUpdateParams
      */
     public boolean isPartialUpdate()
     {
-        return lastYears != null || isLatestUpdate();
+        return lastYears != null || isLatestUpdate() || changedPartitionUpdate;
     }
 
     /**
@@ -153,6 +176,7 @@ public class AnalyticsTableUpdateParams
     {
         return MoreObjects.toStringHelper( this )
             .add( "last years", lastYears )
+            .add( "changed partition update", changedPartitionUpdate )
             .add( "skip resource tables", skipResourceTables )
             .add( "skip table types", skipTableTypes )
             .add( "start time", DateUtils.getLongDateString( startTime ) )
@@ -195,11 +219,13 @@ public class AnalyticsTableUpdateParams
         AnalyticsTableUpdateParams params = new AnalyticsTableUpdateParams();
 
         params.lastYears = this.lastYears;
+        params.changedPartitionUpdate = this.changedPartitionUpdate;
         params.skipResourceTables = this.skipResourceTables;
         params.skipTableTypes = new HashSet<>( this.skipTableTypes );
         params.jobId = this.jobId;
         params.startTime = this.startTime;
         params.lastSuccessfulUpdate = this.lastSuccessfulUpdate;
+        params.processPermits = this.processPermits;
 
         return this;
     }
@@ -243,6 +269,12 @@ public class AnalyticsTableUpdateParams
             return this;
         }
 
+        public Builder withChangedPartitions()
+        {
+            this.params.changedPartitionUpdate = true;
+            return this;
+        }
+
         public Builder withSkipResourceTables( boolean skipResourceTables )
         {
             this.params.skipResourceTables = skipResourceTables;
@@ -267,6 +299,12 @@ public class AnalyticsTableUpdateParams
             return this;
         }
 
+        public Builder withProcessPermits( Semaphore processPermits )
+        {
+            this.params.processPermits = processPermits;
+            return this;
+        }
+
         public Builder withStartTime( Date startTime )
         {
             this.params.startTime = startTime;
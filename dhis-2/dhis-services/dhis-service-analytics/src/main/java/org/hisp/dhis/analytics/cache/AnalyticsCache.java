@@ -34,15 +34,30 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.logging.LogFactory.getLog;
 import static org.hisp.dhis.commons.util.SystemUtils.isTestRun;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 import javax.annotation.PostConstruct;
 
 import org.apache.commons.logging.Log;
+import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.Partitions;
+import org.hisp.dhis.analytics.event.EventQueryParams;
+import org.hisp.dhis.analytics.table.PartitionUtils;
 import org.hisp.dhis.cache.Cache;
 import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.cache.CacheType;
+import org.hisp.dhis.common.CodeGenerator;
 import org.hisp.dhis.common.Grid;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
@@ -51,13 +66,46 @@ import org.springframework.stereotype.Component;
  * This is just a wrapper class responsible for keeping and isolating all
  * caching definition related to the analytics caching, decoupling it from the
  * service layer.
+ *
+ * The cache has two tiers. The shared tier is backed by Redis when enabled,
+ * otherwise by a local cache. When the shared tier is Redis, a smaller local
+ * near-cache is put in front of it to avoid a network round trip and
+ * deserialization of the grid for hot entries.
+ *
+ * Entries are tagged with the analytics table partitions (table type and
+ * year) they were computed from. Invalidating a partition replaces the version
+ * of its tag with a new random value, which makes all entries computed from
+ * that partition stale, while entries computed from other partitions stay
+ * warm. When the shared tier is Redis, versions are also kept locally for a
+ * few seconds, so that near-cache hits do not require a network round trip
+ * per partition. Invalidations made on other instances are hence seen with a
+ * delay of a few seconds.
  */
 @Component
 public class AnalyticsCache
 {
     private static final Log log = getLog( AnalyticsCache.class );
 
-    private Cache<Grid> queryCache;
+    private Cache<AnalyticsCacheEntry> nearCache;
+
+    private Cache<AnalyticsCacheEntry> queryCache;
+
+    private Cache<String> partitionVersionCache;
+
+    private Cache<String> nearPartitionVersionCache;
+
+    /**
+     * Futures of fetches in progress, mapped by cache key.
+     */
+    private final Map<String, CompletableFuture<Grid>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final LongAdder coalescedWaitTimeNanos = new LongAdder();
 
     private final CacheProvider cacheProvider;
 
@@ -67,8 +115,24 @@ public class AnalyticsCache
 
     private static final int MAX_CACHE_ENTRIES = 20000;
 
+    private static final int MAX_NEAR_CACHE_ENTRIES = 2000;
+
+    private static final int MAX_PARTITION_VERSION_ENTRIES = 10000;
+
     private static final String CACHE_REGION = "analyticsResponse";
 
+    private static final String NEAR_CACHE_REGION = "analyticsResponseNear";
+
+    private static final String PARTITION_VERSION_CACHE_REGION = "analyticsPartitionVersion";
+
+    private static final String NEAR_PARTITION_VERSION_CACHE_REGION = "analyticsPartitionVersionNear";
+
+    private static final long NEAR_VERSION_TTL_SECONDS = 5;
+
+    private static final String ANY_PARTITION = "any";
+
+    private static final String INITIAL_VERSION = "0";
+
     public AnalyticsCache( final CacheProvider cacheProvider, final Environment environment,
         final AnalyticsCacheSettings analyticsCacheSettings )
     {
@@ -82,7 +146,23 @@ public class AnalyticsCache
 
     public Optional<Grid> get( final String key )
     {
-        return queryCache.get( key );
+        Optional<AnalyticsCacheEntry> entry = nearCache.get( key );
+
+        if ( !entry.isPresent() )
+        {
+            entry = queryCache.get( key );
+
+            entry.ifPresent( e -> putNear( key, e ) );
+        }
+
+        if ( entry.isPresent() && !isCurrent( entry.get() ) )
+        {
+            invalidate( key );
+
+            return Optional.empty();
+        }
+
+        return entry.map( AnalyticsCacheEntry::getGrid );
     }
 
     /**
@@ -90,6 +170,10 @@ public class AnalyticsCache
      * DataQueryParams. If the Grid is not found in the cache, the Grid will be
      * fetched by the function provided. In this case, the fetched Grid will be
      * cached, so the next consumers can hit the cache only.
+     *
+     * Concurrent calls for the same key are coalesced, meaning that only the
+     * first caller invokes the function while the other callers wait for and
+     * share its result.
      * 
      * The TTL of the cached object will be set accordingly to the cache settings
      * available at {@link org.hisp.dhis.analytics.cache.AnalyticsCacheSettings}.
@@ -100,20 +184,48 @@ public class AnalyticsCache
      */
     public Grid getOrFetch( final DataQueryParams params, final Function<DataQueryParams, Grid> function )
     {
-        final Optional<Grid> cachedGrid = get( params.getKey() );
+        final String key = params.getKey();
+
+        final Optional<Grid> cachedGrid = get( key );
 
         if ( cachedGrid.isPresent() )
         {
+            hitCount.increment();
+
             return cachedGrid.get();
         }
-        else
+
+        final CompletableFuture<Grid> future = new CompletableFuture<>();
+
+        final CompletableFuture<Grid> inFlightFuture = inFlight.putIfAbsent( key, future );
+
+        if ( inFlightFuture != null )
+        {
+            coalescedCount.increment();
+
+            return waitFor( inFlightFuture );
+        }
+
+        try
         {
-            final Grid grid = function.apply( params );
+            // Check again as a fetch might have completed after the first check
 
-            put( params, grid );
+            final Grid grid = get( key ).orElseGet( () -> fetch( params, function ) );
+
+            future.complete( grid );
 
             return grid;
         }
+        catch ( RuntimeException ex )
+        {
+            future.completeExceptionally( ex );
+
+            throw ex;
+        }
+        finally
+        {
+            inFlight.remove( key, future );
+        }
     }
 
     /**
@@ -128,21 +240,13 @@ public class AnalyticsCache
      */
     public void put( final DataQueryParams params, final Grid grid )
     {
-        if ( analyticsCacheSettings.isProgressiveCachingEnabled() )
-        {
-            // Uses the progressive TTL
-            put( params.getKey(), grid, analyticsCacheSettings.progressiveExpirationTimeOrDefault( params.getLatestEndDate() ) );
-        }
-        else
-        {
-            // Respects the fixed (predefined) caching TTL
-            put( params.getKey(), grid, analyticsCacheSettings.fixedExpirationTimeOrDefault() );
-        }
+        put( params, grid, getPartitionVersions( params ) );
     }
 
     /**
      * Will cache the given key/Grid pair respecting the TTL provided through the
-     * parameter "ttlInSeconds".
+     * parameter "ttlInSeconds". The entry is not tagged with any partition and
+     * is only removed by expiration or by {@link #invalidateAll()}.
      * 
      * @param key the cache key associate with the Grid.
      * @param grid the Grid object to be cached.
@@ -150,7 +254,38 @@ public class AnalyticsCache
      */
     public void put( final String key, final Grid grid, final long ttlInSeconds )
     {
-        queryCache.put( key, grid, ttlInSeconds );
+        put( key, grid, new HashMap<>(), ttlInSeconds );
+    }
+
+    /**
+     * Invalidates all cached entries which were computed from the given yearly
+     * partitions of the given analytics table type, including entries for which
+     * the partitions could not be determined. Entries computed from other
+     * partitions are left in place.
+     *
+     * @param tableType the {@link AnalyticsTableType}.
+     * @param years the partition years.
+     */
+    public void invalidatePartitions( final AnalyticsTableType tableType, final Collection<Integer> years )
+    {
+        years.forEach( year -> bumpVersion( getPartitionTag( tableType, String.valueOf( year ) ) ) );
+
+        bumpVersion( getPartitionTag( tableType, ANY_PARTITION ) );
+
+        log.info( format( "Analytics cache invalidated for table type: %s, partitions: %s", tableType, years ) );
+    }
+
+    /**
+     * Invalidates all cached entries which were computed from any partition of
+     * the given analytics table type.
+     *
+     * @param tableType the {@link AnalyticsTableType}.
+     */
+    public void invalidateTable( final AnalyticsTableType tableType )
+    {
+        bumpVersion( getTableTag( tableType ) );
+
+        log.info( format( "Analytics cache invalidated for table type: %s", tableType ) );
     }
 
     /**
@@ -158,6 +293,7 @@ public class AnalyticsCache
      */
     public void invalidateAll()
     {
+        nearCache.invalidateAll();
         queryCache.invalidateAll();
         log.info( "Analytics cache cleared" );
     }
@@ -167,6 +303,48 @@ public class AnalyticsCache
         return analyticsCacheSettings.isCachingEnabled();
     }
 
+    /**
+     * Returns the number of requests served from the cache.
+     */
+    public long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of requests which required a fetch.
+     */
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of requests which waited for an identical in-flight
+     * request instead of performing a fetch.
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent waiting for in-flight
+     * requests.
+     */
+    public long getCoalescedWaitTimeNanos()
+    {
+        return coalescedWaitTimeNanos.sum();
+    }
+
+    /**
+     * Returns the number of requests currently being fetched.
+     */
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+
     @PostConstruct
     public void init()
     {
@@ -176,11 +354,256 @@ public class AnalyticsCache
 
         final boolean nonTestEnv = !isTestRun( this.environment.getActiveProfiles() );
 
-        queryCache = cacheProvider.newCacheBuilder( Grid.class ).forRegion( CACHE_REGION )
+        queryCache = cacheProvider.newCacheBuilder( AnalyticsCacheEntry.class ).forRegion( CACHE_REGION )
             .expireAfterWrite( initialExpirationTime, SECONDS ).withMaximumSize( nonTestEnv ? MAX_CACHE_ENTRIES : 0 )
             .build();
 
-        log.info( format( "Analytics server-side cache is enabled with expiration time (in seconds): %d",
-            initialExpirationTime ) );
+        // The near-cache is only useful in front of a shared (Redis) cache
+
+        final boolean sharedCache = CacheType.REDIS == queryCache.getCacheType();
+
+        nearCache = cacheProvider.newCacheBuilder( AnalyticsCacheEntry.class ).forRegion( NEAR_CACHE_REGION )
+            .expireAfterWrite( initialExpirationTime, SECONDS ).forceInMemory()
+            .withMaximumSize( nonTestEnv && sharedCache ? MAX_NEAR_CACHE_ENTRIES : 0 )
+            .build();
+
+        partitionVersionCache = cacheProvider.newCacheBuilder( String.class ).forRegion( PARTITION_VERSION_CACHE_REGION )
+            .withMaximumSize( nonTestEnv ? MAX_PARTITION_VERSION_ENTRIES : 0 )
+            .build();
+
+        nearPartitionVersionCache = cacheProvider.newCacheBuilder( String.class )
+            .forRegion( NEAR_PARTITION_VERSION_CACHE_REGION )
+            .expireAfterWrite( NEAR_VERSION_TTL_SECONDS, SECONDS ).forceInMemory()
+            .withMaximumSize( nonTestEnv && sharedCache ? MAX_PARTITION_VERSION_ENTRIES : 0 )
+            .build();
+
+        log.info( format( "Analytics server-side cache is enabled with expiration time (in seconds): %d, near-cache: %b",
+            initialExpirationTime, sharedCache ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private Grid fetch( final DataQueryParams params, final Function<DataQueryParams, Grid> function )
+    {
+        missCount.increment();
+
+        // Partition versions are read before fetching, so that a grid
+        // computed while a partition is being swapped is already stale
+
+        final Map<String, String> partitionVersions = getPartitionVersions( params );
+
+        final Grid grid = function.apply( params );
+
+        put( params, grid, partitionVersions );
+
+        return grid;
+    }
+
+    private Grid waitFor( final CompletableFuture<Grid> future )
+    {
+        final long start = System.nanoTime();
+
+        try
+        {
+            return future.join();
+        }
+        catch ( CompletionException ex )
+        {
+            if ( ex.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw ex;
+        }
+        finally
+        {
+            coalescedWaitTimeNanos.add( System.nanoTime() - start );
+        }
+    }
+
+    private void put( final DataQueryParams params, final Grid grid, final Map<String, String> partitionVersions )
+    {
+        if ( analyticsCacheSettings.isProgressiveCachingEnabled() )
+        {
+            // Uses the progressive TTL
+            put( params.getKey(), grid, partitionVersions, analyticsCacheSettings.progressiveExpirationTimeOrDefault( params.getLatestEndDate() ) );
+        }
+        else
+        {
+            // Respects the fixed (predefined) caching TTL
+            put( params.getKey(), grid, partitionVersions, analyticsCacheSettings.fixedExpirationTimeOrDefault() );
+        }
+    }
+
+    private void put( final String key, final Grid grid, final Map<String, String> partitionVersions,
+        final long ttlInSeconds )
+    {
+        final AnalyticsCacheEntry entry = new AnalyticsCacheEntry( grid, partitionVersions,
+            System.currentTimeMillis() + SECONDS.toMillis( ttlInSeconds ) );
+
+        queryCache.put( key, entry, ttlInSeconds );
+        nearCache.put( key, entry, ttlInSeconds );
+    }
+
+    /**
+     * Copies the given entry of the shared cache to the near-cache, with the
+     * time to live left of the entry, so that the copy does not outlive it.
+     */
+    private void putNear( final String key, final AnalyticsCacheEntry entry )
+    {
+        final long ttlInSeconds = entry.getRemainingTimeToLive();
+
+        if ( ttlInSeconds > 0 )
+        {
+            nearCache.put( key, entry, ttlInSeconds );
+        }
+    }
+
+    private void invalidate( final String key )
+    {
+        nearCache.invalidate( key );
+        queryCache.invalidate( key );
+    }
+
+    /**
+     * Indicates whether none of the partitions of the given entry has been
+     * invalidated since the entry was computed.
+     *
+     * @param entry the {@link AnalyticsCacheEntry}.
+     * @return true if the entry is current.
+     */
+    private boolean isCurrent( final AnalyticsCacheEntry entry )
+    {
+        return entry.getPartitionVersions().entrySet().stream()
+            .allMatch( e -> e.getValue().equals( getNearVersion( e.getKey() ) ) );
+    }
+
+    /**
+     * Returns the version of the given tag, read from the local versions if
+     * present, otherwise from the shared versions.
+     */
+    private String getNearVersion( final String tag )
+    {
+        return nearPartitionVersionCache.get( tag, this::getVersion ).orElse( INITIAL_VERSION );
+    }
+
+    /**
+     * Returns the version of the given tag, read from the shared versions.
+     */
+    private String getVersion( final String tag )
+    {
+        return partitionVersionCache.getIfPresent( tag ).orElse( INITIAL_VERSION );
+    }
+
+    private void bumpVersion( final String tag )
+    {
+        // A new random version needs no read of the current version, so
+        // concurrent invalidations on instances sharing the version cache
+        // can not produce a version which was seen before
+
+        final String version = CodeGenerator.generateUid();
+
+        partitionVersionCache.put( tag, version );
+        nearPartitionVersionCache.put( tag, version );
+    }
+
+    /**
+     * Returns a mapping between the tags of the partitions the given query
+     * reads from and the current version of each partition.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @return a mapping of partition tags and versions.
+     */
+    private Map<String, String> getPartitionVersions( final DataQueryParams params )
+    {
+        final Map<String, String> versions = new HashMap<>();
+
+        final Set<Integer> years = getYears( params );
+
+        for ( AnalyticsTableType tableType : getTableTypes( params ) )
+        {
+            versions.put( getTableTag( tableType ), getVersion( getTableTag( tableType ) ) );
+
+            if ( years.isEmpty() )
+            {
+                String tag = getPartitionTag( tableType, ANY_PARTITION );
+                versions.put( tag, getVersion( tag ) );
+            }
+            else
+            {
+                years.forEach( year -> {
+                    String tag = getPartitionTag( tableType, String.valueOf( year ) );
+                    versions.put( tag, getVersion( tag ) );
+                } );
+            }
+        }
+
+        return versions;
+    }
+
+    /**
+     * Returns the analytics table types the given query may read from. Queries
+     * for indicators may read from any table type through the indicator
+     * expressions.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @return a set of {@link AnalyticsTableType}.
+     */
+    private Set<AnalyticsTableType> getTableTypes( final DataQueryParams params )
+    {
+        if ( params instanceof EventQueryParams )
+        {
+            return EnumSet.of( AnalyticsTableType.EVENT, AnalyticsTableType.ENROLLMENT );
+        }
+
+        if ( !params.getAllIndicators().isEmpty() )
+        {
+            return EnumSet.allOf( AnalyticsTableType.class );
+        }
+
+        final Set<AnalyticsTableType> tableTypes = EnumSet.of( AnalyticsTableType.DATA_VALUE );
+
+        if ( !params.getAllReportingRates().isEmpty() )
+        {
+            tableTypes.add( AnalyticsTableType.COMPLETENESS );
+            tableTypes.add( AnalyticsTableType.COMPLETENESS_TARGET );
+        }
+
+        if ( !params.getAllProgramDataElementsAndAttributes().isEmpty() || !params.getProgramIndicators().isEmpty() )
+        {
+            tableTypes.add( AnalyticsTableType.EVENT );
+            tableTypes.add( AnalyticsTableType.ENROLLMENT );
+        }
+
+        return tableTypes;
+    }
+
+    /**
+     * Returns the data years of the given query, or an empty set if the query
+     * has no period or start and end date.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @return a set of years.
+     */
+    private Set<Integer> getYears( final DataQueryParams params )
+    {
+        final Partitions partitions = params.hasStartEndDate() ?
+            PartitionUtils.getPartitions( params.getStartDate(), params.getEndDate() ) :
+            PartitionUtils.getPartitions( params.getAllPeriods() );
+
+        return partitions.getPartitions();
+    }
+
+    private String getTableTag( final AnalyticsTableType tableType )
+    {
+        return tableType.getTableName();
+    }
+
+    private String getPartitionTag( final AnalyticsTableType tableType, final String partition )
+    {
+        return tableType.getTableName() + PartitionUtils.SEP + partition;
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.analytics.cache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import org.hisp.dhis.common.Grid;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A cached analytics response. Holds the {@link Grid} along with the versions
+ * of the analytics table partitions the grid was computed from, at the time of
+ * computation. An entry is valid as long as none of those partitions have been
+ * invalidated since. The entry also holds its expiration time, so that a copy
+ * of the entry expires at the same time as the entry.
+ */
+public class AnalyticsCacheEntry
+    implements Serializable
+{
+    private final Grid grid;
+
+    /**
+     * Mapping between partition tag and partition version.
+     */
+    private final Map<String, String> partitionVersions;
+
+    /**
+     * Expiration time in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    public AnalyticsCacheEntry( final Grid grid, final Map<String, String> partitionVersions, final long expiresAt )
+    {
+        this.grid = grid;
+        this.partitionVersions = ImmutableMap.copyOf( partitionVersions );
+        this.expiresAt = expiresAt;
+    }
+
+    public Grid getGrid()
+    {
+        return grid;
+    }
+
+    public Map<String, String> getPartitionVersions()
+    {
+        return partitionVersions;
+    }
+
+    public long getExpiresAt()
+    {
+        return expiresAt;
+    }
+
+    /**
+     * Returns the time to live left until the expiration time, in seconds,
+     * rounded down and 0 if expired.
+     */
+    public long getRemainingTimeToLive()
+    {
+        return Math.max( 0, MILLISECONDS.toSeconds( expiresAt - System.currentTimeMillis() ) );
+    }
+}
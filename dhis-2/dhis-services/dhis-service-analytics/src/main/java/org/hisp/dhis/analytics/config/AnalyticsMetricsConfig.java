@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.analytics.config;
+
+import static org.hisp.dhis.external.conf.ConfigurationKey.MONITORING_ANALYTICS_ENABLED;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.analytics.cache.AnalyticsCache;
+import org.hisp.dhis.analytics.data.AnalyticsQueryExecutor;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.monitoring.metrics.MetricsEnabler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Exposes metrics of the {@link AnalyticsCache} and the
+ * {@link AnalyticsQueryExecutor} through the monitoring registry.
+ */
+@Configuration
+@Conditional( AnalyticsMetricsConfig.AnalyticsMetricsEnabledCondition.class )
+public class AnalyticsMetricsConfig
+{
+    private static final String METRIC_PREFIX = "analytics.cache";
+
+    private static final String QUERY_METRIC_PREFIX = "analytics.query";
+
+    @Autowired
+    public void bindCacheToRegistry( MeterRegistry registry, AnalyticsCache analyticsCache )
+    {
+        FunctionCounter.builder( METRIC_PREFIX + ".requests", analyticsCache, AnalyticsCache::getHitCount )
+            .tag( "result", "hit" )
+            .description( "Analytics requests served from the cache" )
+            .register( registry );
+
+        FunctionCounter.builder( METRIC_PREFIX + ".requests", analyticsCache, AnalyticsCache::getMissCount )
+            .tag( "result", "miss" )
+            .description( "Analytics requests fetched from the database" )
+            .register( registry );
+
+        FunctionCounter.builder( METRIC_PREFIX + ".requests", analyticsCache, AnalyticsCache::getCoalescedCount )
+            .tag( "result", "coalesced" )
+            .description( "Analytics requests which waited for an identical in-flight request" )
+            .register( registry );
+
+        FunctionTimer.builder( METRIC_PREFIX + ".coalesced.wait", analyticsCache,
+            AnalyticsCache::getCoalescedCount, AnalyticsCache::getCoalescedWaitTimeNanos, TimeUnit.NANOSECONDS )
+            .description( "Time spent waiting for identical in-flight analytics requests" )
+            .register( registry );
+
+        Gauge.builder( METRIC_PREFIX + ".inflight", analyticsCache, AnalyticsCache::getInFlightCount )
+            .description( "Analytics requests currently being fetched" )
+            .register( registry );
+    }
+
+    @Autowired
+    public void bindQueryExecutorToRegistry( MeterRegistry registry, AnalyticsQueryExecutor queryExecutor )
+    {
+        Gauge.builder( QUERY_METRIC_PREFIX + ".queue.size", queryExecutor, AnalyticsQueryExecutor::getQueueSize )
+            .description( "Analytics queries waiting for execution" )
+            .register( registry );
+
+        Gauge.builder( QUERY_METRIC_PREFIX + ".active", queryExecutor, AnalyticsQueryExecutor::getActiveCount )
+            .description( "Analytics queries currently executing" )
+            .register( registry );
+
+        FunctionTimer.builder( QUERY_METRIC_PREFIX + ".queue.wait", queryExecutor,
+            AnalyticsQueryExecutor::getStartedCount, AnalyticsQueryExecutor::getWaitTimeNanos, TimeUnit.NANOSECONDS )
+            .description( "Time analytics queries spent waiting for execution" )
+            .register( registry );
+    }
+
+    static class AnalyticsMetricsEnabledCondition
+        extends
+        MetricsEnabler
+    {
+        @Override
+        protected ConfigurationKey getConfigKey()
+        {
+            return MONITORING_ANALYTICS_ENABLED;
+        }
+    }
+}
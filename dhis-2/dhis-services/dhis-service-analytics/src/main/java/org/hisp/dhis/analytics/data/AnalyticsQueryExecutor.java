@@ -0,0 +1,242 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.hisp.dhis.external.conf.ConfigurationKey.ANALYTICS_QUERY_CONCURRENCY;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hisp.dhis.commons.util.SystemUtils;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.user.CurrentUserService;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded executor for analytics sub-queries, separate from the shared
+ * asynchronous task executor used for analytics table generation. The number
+ * of concurrent queries is set through {@code analytics.query.concurrency} in
+ * {@code dhis.conf} and defaults to the number of CPU cores.
+ *
+ * Queued queries are ordered by {@link AnalyticsQueryPriority} first. Within
+ * a priority, queries are ordered by the number of queries the submitting user
+ * already had pending, so that a user submitting many queries does not block
+ * other users.
+ */
+@Slf4j
+@Component
+public class AnalyticsQueryExecutor
+{
+    private static final String THREAD_NAME_PREFIX = "analytics-query-";
+
+    private static final String SYSTEM_USER = "system";
+
+    private final CurrentUserService currentUserService;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Number of queued or running queries per user.
+     */
+    private final Map<String, Integer> pendingQueries = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder waitCount = new LongAdder();
+
+    private final LongAdder waitTimeNanos = new LongAdder();
+
+    public AnalyticsQueryExecutor( DhisConfigurationProvider config, CurrentUserService currentUserService )
+    {
+        checkNotNull( config );
+        checkNotNull( currentUserService );
+
+        this.currentUserService = currentUserService;
+
+        int concurrency = NumberUtils.toInt( config.getProperty( ANALYTICS_QUERY_CONCURRENCY ), 0 );
+        int threads = concurrency > 0 ? concurrency : SystemUtils.getCpuCores();
+
+        this.executor = new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(), new QueryThreadFactory() );
+        this.executor.allowCoreThreadTimeOut( true );
+
+        log.info( String.format( "Analytics query executor created with %d threads", threads ) );
+    }
+
+    /**
+     * Submits the given query for execution.
+     *
+     * @param query the query.
+     * @param priority the {@link AnalyticsQueryPriority}.
+     * @return a future representing the pending result of the query.
+     */
+    public <T> Future<T> submit( Callable<T> query, AnalyticsQueryPriority priority )
+    {
+        String username = currentUserService.getCurrentUsername();
+        String user = username != null ? username : SYSTEM_USER;
+
+        int round = pendingQueries.merge( user, 1, Integer::sum ) - 1;
+
+        QueryTask<T> task = new QueryTask<>( query, priority, round, sequence.getAndIncrement(), user );
+
+        executor.execute( task );
+
+        return task;
+    }
+
+    /**
+     * Returns the number of queries waiting for execution.
+     */
+    public int getQueueSize()
+    {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of queries currently executing.
+     */
+    public int getActiveCount()
+    {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of queries which have started executing.
+     */
+    public long getStartedCount()
+    {
+        return waitCount.sum();
+    }
+
+    /**
+     * Returns the total time in nanoseconds queries spent in the queue.
+     */
+    public long getWaitTimeNanos()
+    {
+        return waitTimeNanos.sum();
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive classes
+    // -------------------------------------------------------------------------
+
+    private class QueryTask<T>
+        extends FutureTask<T>
+        implements Comparable<QueryTask<?>>
+    {
+        private final AnalyticsQueryPriority priority;
+
+        private final int round;
+
+        private final long sequence;
+
+        private final String user;
+
+        private final long submitted = System.nanoTime();
+
+        QueryTask( Callable<T> query, AnalyticsQueryPriority priority, int round, long sequence, String user )
+        {
+            super( query );
+            this.priority = priority;
+            this.round = round;
+            this.sequence = sequence;
+            this.user = user;
+        }
+
+        @Override
+        public void run()
+        {
+            waitCount.increment();
+            waitTimeNanos.add( System.nanoTime() - submitted );
+
+            try
+            {
+                super.run();
+            }
+            finally
+            {
+                pendingQueries.computeIfPresent( user, ( k, v ) -> v > 1 ? v - 1 : null );
+            }
+        }
+
+        @Override
+        public int compareTo( QueryTask<?> other )
+        {
+            int result = priority.compareTo( other.priority );
+
+            if ( result == 0 )
+            {
+                result = Integer.compare( round, other.round );
+            }
+
+            if ( result == 0 )
+            {
+                result = Long.compare( sequence, other.sequence );
+            }
+
+            return result;
+        }
+    }
+
+    private static class QueryThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger threadNo = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + threadNo.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
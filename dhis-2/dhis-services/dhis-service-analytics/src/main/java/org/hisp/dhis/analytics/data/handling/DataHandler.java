@@ -55,6 +55,7 @@ import static org.hisp.dhis.analytics.DimensionItem.getItemIdentifiers;
 import static org.hisp.dhis.analytics.DimensionItem.getOrganisationUnitItem;
 import static org.hisp.dhis.analytics.DimensionItem.getPeriodItem;
 import static org.hisp.dhis.analytics.OutputFormat.ANALYTICS;
+import static org.hisp.dhis.analytics.OutputFormat.DATA_VALUE_SET;
 import static org.hisp.dhis.analytics.event.EventQueryParams.fromDataQueryParams;
 import static org.hisp.dhis.analytics.util.AnalyticsUtils.convertDxToOperand;
 import static org.hisp.dhis.analytics.util.AnalyticsUtils.findDimensionalItems;
@@ -129,6 +130,8 @@ import org.hisp.dhis.analytics.QueryPlanner;
 import org.hisp.dhis.analytics.QueryPlannerParams;
 import org.hisp.dhis.analytics.QueryValidator;
 import org.hisp.dhis.analytics.RawAnalyticsManager;
+import org.hisp.dhis.analytics.data.AnalyticsQueryExecutor;
+import org.hisp.dhis.analytics.data.AnalyticsQueryPriority;
 import org.hisp.dhis.analytics.event.EventAnalyticsService;
 import org.hisp.dhis.analytics.event.EventQueryParams;
 import org.hisp.dhis.analytics.resolver.ExpressionResolver;
@@ -189,12 +192,15 @@ public class DataHandler
 
     private final OrganisationUnitService organisationUnitService;
 
+    private final AnalyticsQueryExecutor queryExecutor;
+
     private DataAggregator dataAggregator;
 
     public DataHandler( EventAnalyticsService eventAnalyticsService, RawAnalyticsManager rawAnalyticsManager,
         ConstantService constantService, ExpressionResolver resolver, ExpressionService expressionService,
         QueryPlanner queryPlanner, QueryValidator queryValidator, SystemSettingManager systemSettingManager,
-        AnalyticsManager analyticsManager, OrganisationUnitService organisationUnitService )
+        AnalyticsManager analyticsManager, OrganisationUnitService organisationUnitService,
+        AnalyticsQueryExecutor queryExecutor )
     {
         checkNotNull( eventAnalyticsService );
         checkNotNull( rawAnalyticsManager );
@@ -206,6 +212,7 @@ public class DataHandler
         checkNotNull( systemSettingManager );
         checkNotNull( analyticsManager );
         checkNotNull( organisationUnitService );
+        checkNotNull( queryExecutor );
 
         this.eventAnalyticsService = eventAnalyticsService;
         this.rawAnalyticsManager = rawAnalyticsManager;
@@ -217,6 +224,7 @@ public class DataHandler
         this.systemSettingManager = systemSettingManager;
         this.analyticsManager = analyticsManager;
         this.organisationUnitService = organisationUnitService;
+        this.queryExecutor = queryExecutor;
     }
 
     /**
@@ -1098,9 +1106,11 @@ public class DataHandler
 
         Map<String, Object> map = new HashMap<>();
 
+        AnalyticsQueryPriority priority = getQueryPriority( params );
+
         for ( List<DataQueryParams> queries : queryGroups.getSequentialQueries() )
         {
-            executeQueries( tableType, maxLimit, map, queries );
+            executeQueries( tableType, maxLimit, priority, map, queries );
         }
 
         timer.getTime( "Got analytics values" );
@@ -1108,14 +1118,15 @@ public class DataHandler
         return map;
     }
 
-    private void executeQueries( AnalyticsTableType tableType, int maxLimit, Map<String, Object> map,
-        List<DataQueryParams> queries )
+    private void executeQueries( AnalyticsTableType tableType, int maxLimit, AnalyticsQueryPriority priority,
+        Map<String, Object> map, List<DataQueryParams> queries )
     {
         List<Future<Map<String, Object>>> futures = new ArrayList<>();
 
         for ( DataQueryParams query : queries )
         {
-            futures.add( analyticsManager.getAggregatedDataValues( query, tableType, maxLimit ) );
+            futures.add( queryExecutor.submit(
+                () -> analyticsManager.getAggregatedDataValues( query, tableType, maxLimit ).get(), priority ) );
         }
 
         for ( Future<Map<String, Object>> future : futures )
@@ -1147,6 +1158,20 @@ public class DataHandler
         }
     }
 
+    /**
+     * Returns the execution priority for the sub-queries of the given query.
+     * Data value set exports and queries ignoring the max limit are considered
+     * bulk queries.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @return the {@link AnalyticsQueryPriority}.
+     */
+    private AnalyticsQueryPriority getQueryPriority( DataQueryParams params )
+    {
+        return params.isIgnoreLimit() || DATA_VALUE_SET == params.getOutputFormat() ?
+            AnalyticsQueryPriority.BULK : AnalyticsQueryPriority.INTERACTIVE;
+    }
+
     /**
      * Gets the number of available cores. Uses explicit number from system setting
      * if available. Detects number of cores from current server runtime if not.
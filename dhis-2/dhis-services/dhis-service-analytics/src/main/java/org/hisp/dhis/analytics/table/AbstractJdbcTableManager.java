@@ -31,10 +31,13 @@ package org.hisp.dhis.analytics.table;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -237,6 +240,34 @@ public abstract class AbstractJdbcTableManager
         }
     }
 
+    @Override
+    public Set<Integer> getDataYears( AnalyticsTablePartition partition )
+    {
+        if ( partition.getYear() == null )
+        {
+            return new HashSet<>();
+        }
+
+        if ( !partition.isLatestPartition() )
+        {
+            return Sets.newHashSet( partition.getYear() );
+        }
+
+        final String yearColumn = getYearColumn();
+
+        if ( yearColumn == null )
+        {
+            return new HashSet<>();
+        }
+
+        final String sql = "select distinct " + quote( yearColumn ) + " from " + quote( partition.getTableName() );
+
+        return jdbcTemplate.queryForList( sql, String.class ).stream()
+            .filter( Objects::nonNull )
+            .map( Integer::valueOf )
+            .collect( Collectors.toSet() );
+    }
+
     @Override
     public void dropTempTable( AnalyticsTable table )
     {
@@ -325,6 +356,15 @@ public abstract class AbstractJdbcTableManager
     // Protected supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Returns the name of the column holding the data year, or null if the
+     * table has no such column. Override for tables with a "latest" partition.
+     */
+    protected String getYearColumn()
+    {
+        return null;
+    }
+
     /**
      * Returns the analytics table name.
      */
@@ -498,6 +538,92 @@ public abstract class AbstractJdbcTableManager
         return table;
     }
 
+    /**
+     * Returns the start of the time span in which changed data is looked for
+     * by a changed partition update, which is the time of the last successful
+     * full or changed partition update.
+     */
+    protected Date getChangedDataStartDate()
+    {
+        Date lastFullTableUpdate = (Date) systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE );
+        Date lastChangedPartitionUpdate = (Date) systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_CHANGED_ANALYTICS_PARTITIONS_UPDATE );
+
+        Assert.notNull( lastFullTableUpdate, "A full analytics table update process must be run prior to a changed partition update process" );
+
+        return DateUtils.getLatest( lastChangedPartitionUpdate, lastFullTableUpdate );
+    }
+
+    /**
+     * Indicates whether objects of any of the given classes were deleted within
+     * the given time span according to the deletedobject table. Deletion of such
+     * objects removes the data referring to them, which leaves no trace of the
+     * years of the removed data.
+     *
+     * @param startDate the start of the time span, inclusive.
+     * @param endDate the end of the time span, exclusive.
+     * @param klasses the classes of deleted objects to look for.
+     */
+    protected boolean hasDeletedObjects( Date startDate, Date endDate, Collection<Class<?>> klasses )
+    {
+        List<String> names = klasses.stream()
+            .map( Class::getSimpleName )
+            .collect( Collectors.toList() );
+
+        String sql =
+            "select exists (" +
+                "select 1 from deletedobject " +
+                "where klass in (" + TextUtils.getQuotedCommaDelimitedString( names ) + ") " +
+                "and deleted_at >= '" + getLongDateString( startDate ) + "' " +
+                "and deleted_at < '" + getLongDateString( endDate ) + "')";
+
+        return Boolean.TRUE.equals( jdbcTemplate.queryForObject( sql, Boolean.class ) );
+    }
+
+    /**
+     * Returns the years of the existing year partitions of the given table. The
+     * "latest" partition is not included.
+     *
+     * @param table the {@link AnalyticsTable}.
+     */
+    protected Set<Integer> getExistingPartitionYears( AnalyticsTable table )
+    {
+        Pattern pattern = Pattern.compile( Pattern.quote( table.getTableName() + PartitionUtils.SEP ) + "(\\d{4})" );
+
+        return getExistingDatabaseTables().stream()
+            .map( pattern::matcher )
+            .filter( Matcher::matches )
+            .map( matcher -> Integer.valueOf( matcher.group( 1 ) ) )
+            .collect( Collectors.toSet() );
+    }
+
+    /**
+     * Removes the data for the years of the partitions of the given table from
+     * the "latest" partition of the table, if it exists. Used when year partitions
+     * are rebuilt, as the rebuilt partitions contain the data of the "latest"
+     * partition for those years.
+     *
+     * @param table the {@link AnalyticsTable}.
+     */
+    protected void removeLatestPartitionData( AnalyticsTable table )
+    {
+        String latestTableName = new AnalyticsTablePartition( table, AnalyticsTablePartition.LATEST_PARTITION, null, null, false ).getTableName();
+
+        if ( !table.hasPartitionTables() || !partitionManager.tableExists( latestTableName ) )
+        {
+            return;
+        }
+
+        List<String> years = table.getTablePartitions().stream()
+            .map( partition -> String.valueOf( partition.getYear() ) )
+            .collect( Collectors.toList() );
+
+        String sql =
+            "delete from " + quote( latestTableName ) + " " +
+            "where " + quote( getYearColumn() ) + " in (" + TextUtils.getQuotedCommaDelimitedString( years ) + ")";
+
+        invokeTimeAndLog( sql, String.format( "Remove rebuilt years from latest partition: '%s'", latestTableName ) );
+    }
+
     /**
      * Checks whether the given list of columns are valid.
      *
@@ -29,6 +29,7 @@ package org.hisp.dhis.analytics.table;
  */
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.hisp.dhis.external.conf.ConfigurationKey.ANALYTICS_TABLE_CONCURRENCY;
 import static org.hisp.dhis.system.notification.NotificationLevel.ERROR;
 import static org.hisp.dhis.system.notification.NotificationLevel.INFO;
 import static org.hisp.dhis.util.DateUtils.getLongDateString;
@@ -36,14 +37,21 @@ import static org.hisp.dhis.util.DateUtils.getLongDateString;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.math.NumberUtils;
 import org.hisp.dhis.analytics.AnalyticsTableGenerator;
 import org.hisp.dhis.analytics.AnalyticsTableService;
 import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
 import org.hisp.dhis.commons.collection.CollectionUtils;
+import org.hisp.dhis.commons.util.ConcurrentUtils;
 import org.hisp.dhis.commons.util.DebugUtils;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.message.MessageService;
 import org.hisp.dhis.resourcetable.ResourceTableService;
 import org.hisp.dhis.scheduling.JobConfiguration;
@@ -54,6 +62,8 @@ import org.hisp.dhis.system.util.Clock;
 import org.hisp.dhis.util.DateUtils;
 import org.springframework.stereotype.Service;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -74,21 +84,25 @@ public class DefaultAnalyticsTableGenerator
 
     private Notifier notifier;
 
+    private DhisConfigurationProvider config;
+
     public DefaultAnalyticsTableGenerator( List<AnalyticsTableService> analyticsTableServices,
         ResourceTableService resourceTableService, MessageService messageService,
-        SystemSettingManager systemSettingManager, Notifier notifier )
+        SystemSettingManager systemSettingManager, Notifier notifier, DhisConfigurationProvider config )
     {
         checkNotNull( analyticsTableServices );
         checkNotNull( resourceTableService );
         checkNotNull( messageService );
         checkNotNull( systemSettingManager );
         checkNotNull( notifier );
+        checkNotNull( config );
 
         this.analyticsTableServices = analyticsTableServices;
         this.resourceTableService = resourceTableService;
         this.messageService = messageService;
         this.systemSettingManager = systemSettingManager;
         this.notifier = notifier;
+        this.config = config;
     }
 
     // -------------------------------------------------------------------------
@@ -107,9 +121,14 @@ public class DefaultAnalyticsTableGenerator
         final Set<AnalyticsTableType> availableTypes = analyticsTableServices.stream()
             .map( AnalyticsTableService::getAnalyticsTableType )
             .collect( Collectors.toSet() );
+        final List<AnalyticsTableService> services = analyticsTableServices.stream()
+            .filter( service -> !skipTypes.contains( service.getAnalyticsTableType() ) )
+            .collect( Collectors.toList() );
+        final int concurrency = getTableTypeConcurrency( services.size() );
 
         params = AnalyticsTableUpdateParams.newBuilder( params )
             .withLastSuccessfulUpdate( lastSuccessfulUpdate )
+            .withProcessPermits( concurrency > 1 ? new Semaphore( DefaultAnalyticsTableService.getProcessNo( systemSettingManager ) ) : null )
             .build();
 
         log.info( String.format( "Found %d analytics table types: %s", availableTypes.size(), availableTypes ) );
@@ -126,17 +145,7 @@ public class DefaultAnalyticsTableGenerator
                 generateResourceTables();
             }
 
-            for ( AnalyticsTableService service : analyticsTableServices )
-            {
-                AnalyticsTableType tableType = service.getAnalyticsTableType();
-
-                if ( !skipTypes.contains( tableType ) )
-                {
-                    notifier.notify( jobId, "Updating tables: " + tableType );
-
-                    service.update( params );
-                }
-            }
+            updateTables( params, services, concurrency );
 
             clock.logTime( "Analytics tables updated" );
 
@@ -158,6 +167,10 @@ public class DefaultAnalyticsTableGenerator
             systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_LATEST_ANALYTICS_PARTITION_UPDATE, params.getStartTime() );
             systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_LATEST_ANALYTICS_PARTITION_RUNTIME, DateUtils.getPrettyInterval( clock.getSplitTime() ) );
         }
+        else if ( params.isChangedPartitionUpdate() )
+        {
+            systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_CHANGED_ANALYTICS_PARTITIONS_UPDATE, params.getStartTime() );
+        }
         else
         {
             systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE, params.getStartTime() );
@@ -201,6 +214,71 @@ public class DefaultAnalyticsTableGenerator
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Updates the tables of the given services. Table types are independent
+     * of each other once resource tables are generated, so up to the given
+     * number of table types are updated concurrently.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param services the services of the table types to update.
+     * @param concurrency the number of table types to update concurrently.
+     */
+    private void updateTables( AnalyticsTableUpdateParams params, List<AnalyticsTableService> services,
+        int concurrency )
+    {
+        if ( concurrency <= 1 )
+        {
+            services.forEach( service -> updateTable( params, service ) );
+            return;
+        }
+
+        log.info( String.format( "Updating %d analytics table types with concurrency: %d", services.size(), concurrency ) );
+
+        ExecutorService executor = Executors.newFixedThreadPool( concurrency, new ThreadFactoryBuilder()
+            .setNameFormat( "analytics-table-%d" ).setDaemon( true ).build() );
+
+        try
+        {
+            List<Future<?>> futures = services.stream()
+                .map( service -> executor.submit( () -> updateTable( params, service ) ) )
+                .collect( Collectors.toList() );
+
+            ConcurrentUtils.waitForCompletion( futures );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void updateTable( AnalyticsTableUpdateParams params, AnalyticsTableService service )
+    {
+        final JobConfiguration jobId = params.getJobId();
+        final AnalyticsTableType tableType = service.getAnalyticsTableType();
+        final Clock clock = new Clock().startClock();
+
+        notifier.notify( jobId, "Updating tables: " + tableType );
+
+        service.update( params );
+
+        notifier.notify( jobId, String.format( "Tables updated: %s, %s", tableType, clock.time() ) );
+    }
+
+    /**
+     * Gets the number of table types to update concurrently, where zero in
+     * configuration means all table types.
+     *
+     * @param tableTypes the number of table types to update.
+     */
+    private int getTableTypeConcurrency( int tableTypes )
+    {
+        int concurrency = NumberUtils.toInt( config.getProperty( ANALYTICS_TABLE_CONCURRENCY ), 1 );
+
+        concurrency = concurrency > 0 ? concurrency : tableTypes;
+
+        return Math.max( 1, Math.min( concurrency, tableTypes ) );
+    }
+
     private void generateResourceTables()
     {
         final Date startTime = new Date();
@@ -37,6 +37,7 @@ import org.hisp.dhis.analytics.AnalyticsTablePartition;
 import org.hisp.dhis.analytics.AnalyticsTableService;
 import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.cache.AnalyticsCache;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
 import org.hisp.dhis.commons.util.ConcurrentUtils;
 import org.hisp.dhis.commons.util.SystemUtils;
@@ -53,10 +54,13 @@ import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 import static org.hisp.dhis.util.DateUtils.getLongDateString;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -68,6 +72,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class DefaultAnalyticsTableService
     implements AnalyticsTableService
 {
+    /**
+     * Serializes the swap of analytics tables across table types updated
+     * concurrently, as all SQL views are dropped and recreated around a swap.
+     */
+    private static final Object SWAP_LOCK = new Object();
+
     private AnalyticsTableManager tableManager;
 
     private OrganisationUnitService organisationUnitService;
@@ -80,9 +90,12 @@ public class DefaultAnalyticsTableService
 
     private SystemSettingManager systemSettingManager;
 
+    private AnalyticsCache analyticsCache;
+
     public DefaultAnalyticsTableService( AnalyticsTableManager tableManager,
         OrganisationUnitService organisationUnitService, DataElementService dataElementService,
-        ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager )
+        ResourceTableService resourceTableService, Notifier notifier, SystemSettingManager systemSettingManager,
+        AnalyticsCache analyticsCache )
     {
         checkNotNull( tableManager );
         checkNotNull( organisationUnitService );
@@ -90,6 +103,7 @@ public class DefaultAnalyticsTableService
         checkNotNull( resourceTableService );
         checkNotNull( notifier );
         checkNotNull( systemSettingManager );
+        checkNotNull( analyticsCache );
 
         this.tableManager = tableManager;
         this.organisationUnitService = organisationUnitService;
@@ -97,6 +111,7 @@ public class DefaultAnalyticsTableService
         this.resourceTableService = resourceTableService;
         this.notifier = notifier;
         this.systemSettingManager = systemSettingManager;
+        this.analyticsCache = analyticsCache;
     }
 
     // -------------------------------------------------------------------------
@@ -114,7 +129,7 @@ public class DefaultAnalyticsTableService
     {
         JobConfiguration jobId = params.getJobId();
 
-        final int processNo = getProcessNo();
+        final int processNo = getProcessNo( systemSettingManager );
 
         int tableUpdates = 0;
 
@@ -163,7 +178,7 @@ public class DefaultAnalyticsTableService
         clock.logTime( "Created analytics tables" );
         notifier.notify( jobId, "Populating analytics tables" );
 
-        populateTables( params, tables );
+        populateTables( params, tables, processNo );
 
         clock.logTime( "Populated analytics tables" );
         notifier.notify( jobId, "Invoking analytics table hooks" );
@@ -173,20 +188,20 @@ public class DefaultAnalyticsTableService
         clock.logTime( "Invoked analytics table hooks" );
         notifier.notify( jobId, "Applying aggregation levels" );
 
-        tableUpdates += applyAggregationLevels( tables );
+        tableUpdates += applyAggregationLevels( params, tables, processNo );
 
         clock.logTime( "Applied aggregation levels" );
 
         if ( tableUpdates > 0 )
         {
             notifier.notify( jobId, "Vacuuming tables" );
-            vacuumTables( tables );
+            vacuumTables( params, tables, processNo );
             clock.logTime( "Tables vacuumed" );
         }
 
         notifier.notify( jobId, "Creating indexes" );
 
-        createIndexes( tables );
+        createIndexes( params, tables, processNo );
 
         clock.logTime( "Created indexes" );
         notifier.notify( jobId, "Analyzing analytics tables" );
@@ -203,6 +218,11 @@ public class DefaultAnalyticsTableService
 
         swapTables( params, tables );
 
+        clock.logTime( "Swapped analytics tables" );
+        notifier.notify( jobId, "Invalidating analytics cache" );
+
+        invalidateCache( params, tables );
+
         clock.logTime( "Table update done: " + tableType.getTableName() );
         notifier.notify( jobId, "Table update done" );
     }
@@ -254,35 +274,32 @@ public class DefaultAnalyticsTableService
     /**
      * Populates the given analytics tables.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param tables the list of {@link AnalyticsTable}.
+     * @param processNo the number of processes to use.
      */
-    private void populateTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
+    private void populateTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables, int processNo )
     {
         List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
 
-        int taskNo = Math.min( getProcessNo(), partitions.size() );
+        int taskNo = Math.min( processNo, partitions.size() );
 
         log.info( "Populate table task number: " + taskNo );
 
         ConcurrentLinkedQueue<AnalyticsTablePartition> partitionQ = new ConcurrentLinkedQueue<>( partitions );
 
-        List<Future<?>> futures = new ArrayList<>();
-
-        for ( int i = 0; i < taskNo; i++ )
-        {
-            futures.add( tableManager.populateTablesAsync( params, partitionQ ) );
-        }
-
-        ConcurrentUtils.waitForCompletion( futures );
+        runTasks( params, taskNo, () -> tableManager.populateTablesAsync( params, partitionQ ) );
     }
 
     /**
      * Applies aggregation levels to the given analytics tables.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param tables the list of {@link AnalyticsTable}.
+     * @param processNo the number of processes to use.
      * @return the number of aggregation levels applied for data elements.
      */
-    private int applyAggregationLevels( List<AnalyticsTable> tables )
+    private int applyAggregationLevels( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables, int processNo )
     {
         List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
 
@@ -304,16 +321,9 @@ public class DefaultAnalyticsTableService
 
             ConcurrentLinkedQueue<AnalyticsTablePartition> partitionQ = new ConcurrentLinkedQueue<>( partitions );
 
-            List<Future<?>> futures = new ArrayList<>();
-
-            for ( int j = 0; j < getProcessNo(); j++ )
-            {
-                futures.add( tableManager.applyAggregationLevels( partitionQ, dataElements, level ) );
-            }
+            runTasks( params, processNo, () -> tableManager.applyAggregationLevels( partitionQ, dataElements, level ) );
 
             aggLevels += dataElements.size();
-
-            ConcurrentUtils.waitForCompletion( futures );
         }
 
         return aggLevels;
@@ -322,30 +332,27 @@ public class DefaultAnalyticsTableService
     /**
      * Vacuums the given analytics tables.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param tables the list of {@link AnalyticsTable}.
+     * @param processNo the number of processes to use.
      */
-    private void vacuumTables( List<AnalyticsTable> tables )
+    private void vacuumTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables, int processNo )
     {
         List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
 
         ConcurrentLinkedQueue<AnalyticsTablePartition> partitionQ = new ConcurrentLinkedQueue<>( partitions );
 
-        List<Future<?>> futures = new ArrayList<>();
-
-        for ( int i = 0; i < getProcessNo(); i++ )
-        {
-            tableManager.vacuumTablesAsync( partitionQ );
-        }
-
-        ConcurrentUtils.waitForCompletion( futures );
+        runTasks( params, processNo, () -> tableManager.vacuumTablesAsync( partitionQ ) );
     }
 
     /**
      * Creates indexes on the given analytics tables.
      *
+     * @param params the {@link AnalyticsTableUpdateParams}.
      * @param tables the list of {@link AnalyticsTable}.
+     * @param processNo the number of processes to use.
      */
-    private void createIndexes( List<AnalyticsTable> tables )
+    private void createIndexes( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables, int processNo )
     {
         List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
 
@@ -368,14 +375,74 @@ public class DefaultAnalyticsTableService
 
         log.info( "No of analytics table indexes: " + indexes.size() );
 
-        List<Future<?>> futures = new ArrayList<>();
+        runTasks( params, processNo, () -> tableManager.createIndexesAsync( indexes ) );
+    }
+
+    /**
+     * Runs the given number of asynchronous tasks and waits for them to
+     * complete. When table types are updated concurrently, each task holds a
+     * permit of the process budget shared by the table types, so that the
+     * total number of database processes stays within the budget. At least
+     * one task is run, and more as far as permits are available.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param taskNo the number of tasks to run.
+     * @param task the supplier which starts a task.
+     */
+    private void runTasks( AnalyticsTableUpdateParams params, int taskNo, Supplier<Future<?>> task )
+    {
+        final Semaphore permits = taskNo > 0 ? params.getProcessPermits() : null;
+        final int runNo = permits != null ? acquirePermits( permits, taskNo ) : taskNo;
+
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for ( int i = 0; i < runNo; i++ )
+            {
+                futures.add( task.get() );
+            }
+
+            ConcurrentUtils.waitForCompletion( futures );
+        }
+        finally
+        {
+            if ( permits != null )
+            {
+                permits.release( runNo );
+            }
+        }
+    }
+
+    /**
+     * Acquires between one and the given number of permits, waiting only for
+     * the first one.
+     *
+     * @param permits the shared permits.
+     * @param taskNo the maximum number of permits to acquire.
+     * @return the number of permits acquired.
+     */
+    private int acquirePermits( Semaphore permits, int taskNo )
+    {
+        try
+        {
+            permits.acquire();
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException( "Interrupted while waiting for database processes", ex );
+        }
+
+        int acquired = 1;
 
-        for ( int i = 0; i < getProcessNo(); i++ )
+        while ( acquired < taskNo && permits.tryAcquire() )
         {
-            futures.add( tableManager.createIndexesAsync( indexes ) );
+            acquired++;
         }
 
-        ConcurrentUtils.waitForCompletion( futures );
+        return acquired;
     }
 
     /**
@@ -391,18 +458,60 @@ public class DefaultAnalyticsTableService
     }
 
     /**
-     * Swaps the given analytics tables.
+     * Swaps the given analytics tables. Swaps of table types updated
+     * concurrently are serialized, so that no table type swaps while another
+     * has dropped or is recreating the SQL views.
      *
      * @param params the {@link AnalyticsTableUpdateParams}.
      * @param tables the list of {@link AnalyticsTable}.
      */
     private void swapTables( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
     {
-        resourceTableService.dropAllSqlViews();
+        synchronized ( SWAP_LOCK )
+        {
+            resourceTableService.dropAllSqlViews();
+
+            tables.forEach( table -> tableManager.swapTable( params, table ) );
+
+            resourceTableService.createAllSqlViews();
+        }
+    }
+
+    /**
+     * Invalidates the analytics cache entries computed from the given analytics
+     * tables. For partial updates, only entries for the years of the updated
+     * partitions are invalidated, where the years of the "latest" partition are
+     * the years of the data it contains.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param tables the list of {@link AnalyticsTable}.
+     */
+    private void invalidateCache( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
+    {
+        AnalyticsTableType tableType = getAnalyticsTableType();
+
+        if ( !params.isPartialUpdate() )
+        {
+            analyticsCache.invalidateTable( tableType );
+            return;
+        }
+
+        Set<Integer> years = new HashSet<>();
+
+        for ( AnalyticsTablePartition partition : PartitionUtils.getTablePartitions( tables ) )
+        {
+            Set<Integer> partitionYears = tableManager.getDataYears( partition );
 
-        tables.forEach( table -> tableManager.swapTable( params, table ) );
+            if ( partitionYears.isEmpty() && !partition.isLatestPartition() )
+            {
+                analyticsCache.invalidateTable( tableType );
+                return;
+            }
 
-        resourceTableService.createAllSqlViews();
+            years.addAll( partitionYears );
+        }
+
+        analyticsCache.invalidatePartitions( tableType, years );
     }
 
     /**
@@ -410,8 +519,10 @@ public class DefaultAnalyticsTableService
      * setting if available. Detects number of cores from current server runtime
      * if not. Subtracts one to the number of cores if greater than two to allow
      * one core for general system operations.
+     *
+     * @param systemSettingManager the {@link SystemSettingManager}.
      */
-    private int getProcessNo()
+    static int getProcessNo( SystemSettingManager systemSettingManager )
     {
         Integer cores = (Integer) systemSettingManager.getSystemSetting( SettingKey.DATABASE_SERVER_CPUS );
 
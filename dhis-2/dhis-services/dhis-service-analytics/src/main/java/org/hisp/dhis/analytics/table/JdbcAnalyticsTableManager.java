@@ -39,6 +39,7 @@ import static org.hisp.dhis.util.DateUtils.getLongDateString;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -58,6 +59,7 @@ import org.hisp.dhis.analytics.DataQueryParams;
 import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.analytics.util.AnalyticsUtils;
 import org.hisp.dhis.category.Category;
+import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryOptionGroupSet;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.common.IdentifiableObjectManager;
@@ -66,8 +68,10 @@ import org.hisp.dhis.commons.collection.ListUtils;
 import org.hisp.dhis.commons.util.ConcurrentUtils;
 import org.hisp.dhis.commons.util.TextUtils;
 import org.hisp.dhis.dataapproval.DataApprovalLevelService;
+import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementGroupSet;
 import org.hisp.dhis.jdbc.StatementBuilder;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitGroupSet;
 import org.hisp.dhis.organisationunit.OrganisationUnitLevel;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
@@ -83,6 +87,7 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -107,6 +112,13 @@ import com.google.common.collect.Sets;
 public class JdbcAnalyticsTableManager
     extends AbstractJdbcTableManager
 {
+    /**
+     * Metadata classes which remove the data values referring to them when
+     * deleted.
+     */
+    private static final Set<Class<?>> DATA_VALUE_METADATA_CLASSES = ImmutableSet.of(
+        DataElement.class, OrganisationUnit.class, CategoryOptionCombo.class );
+
     public JdbcAnalyticsTableManager( IdentifiableObjectManager idObjectManager,
         OrganisationUnitService organisationUnitService, CategoryService categoryService,
         SystemSettingManager systemSettingManager, DataApprovalLevelService dataApprovalLevelService,
@@ -148,7 +160,8 @@ public class JdbcAnalyticsTableManager
     {
         AnalyticsTable table = params.isLatestUpdate() ?
             getLatestAnalyticsTable( params, getDimensionColumns(), getValueColumns() ) :
-            getRegularAnalyticsTable( params, getDataYears( params ), getDimensionColumns(), getValueColumns() );
+            getRegularAnalyticsTable( params, params.isChangedPartitionUpdate() ? getChangedDataYears( params ) : getDataYears( params ),
+                getDimensionColumns(), getValueColumns() );
 
         return table.hasPartitionTables() ? newArrayList( table ) : newArrayList();
     }
@@ -199,6 +212,12 @@ public class JdbcAnalyticsTableManager
     @Override
     public void removeUpdatedData( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
     {
+        if ( params.isChangedPartitionUpdate() )
+        {
+            tables.forEach( this::removeLatestPartitionData );
+            return;
+        }
+
         if ( !params.isLatestUpdate() )
         {
             return;
@@ -232,6 +251,12 @@ public class JdbcAnalyticsTableManager
                 "pestartdate < '" + DateUtils.getMediumDateString( partition.getEndDate() ) + "'" );
     }
 
+    @Override
+    protected String getYearColumn()
+    {
+        return "year";
+    }
+
     @Override
     protected void populateTable( AnalyticsTableUpdateParams params, AnalyticsTablePartition partition )
     {
@@ -471,6 +496,41 @@ public class JdbcAnalyticsTableManager
         return jdbcTemplate.queryForList( sql, Integer.class );
     }
 
+    /**
+     * Returns the years of data values which were updated or deleted since the
+     * last successful full or changed partition update. Deleted data values are
+     * included as deletion is a soft delete which updates the last updated time.
+     * Data values which are removed along with deleted metadata leave no trace
+     * of their years, so if such metadata was deleted, all years with data and
+     * all years with an existing partition are returned.
+     */
+    private List<Integer> getChangedDataYears( AnalyticsTableUpdateParams params )
+    {
+        Date startDate = getChangedDataStartDate();
+
+        String sql =
+            "select distinct(extract(year from pe.startdate)) " +
+            "from datavalue dv " +
+            "inner join period pe on dv.periodid=pe.periodid " +
+            "where pe.startdate is not null " +
+            "and dv.lastupdated >= '" + getLongDateString( startDate ) + "' " +
+            "and dv.lastupdated < '" + getLongDateString( params.getStartTime() ) + "' ";
+
+        Set<Integer> years = new HashSet<>( jdbcTemplate.queryForList( sql, Integer.class ) );
+
+        if ( hasDeletedObjects( startDate, params.getStartTime(), DATA_VALUE_METADATA_CLASSES ) )
+        {
+            log.info( String.format( "Found deleted data value metadata since: '%s', updating all years", getLongDateString( startDate ) ) );
+
+            years.addAll( getDataYears( params ) );
+            years.addAll( getExistingPartitionYears( new AnalyticsTable( getAnalyticsTableType(), newArrayList(), newArrayList() ) ) );
+        }
+
+        log.info( String.format( "Found changed data years: %s since: '%s'", years, getLongDateString( startDate ) ) );
+
+        return new ArrayList<>( years );
+    }
+
     @Override
     @Async
     public Future<?> applyAggregationLevels( ConcurrentLinkedQueue<AnalyticsTablePartition> partitions, Collection<String> dataElements, int aggregationLevel )
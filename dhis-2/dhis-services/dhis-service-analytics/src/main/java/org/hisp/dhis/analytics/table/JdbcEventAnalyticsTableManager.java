@@ -57,15 +57,18 @@ import org.hisp.dhis.analytics.ColumnDataType;
 import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.calendar.Calendar;
 import org.hisp.dhis.category.Category;
+import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.ValueType;
 import org.hisp.dhis.dataapproval.DataApprovalLevelService;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.jdbc.StatementBuilder;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.program.Program;
+import org.hisp.dhis.program.ProgramStage;
 import org.hisp.dhis.resourcetable.ResourceTableService;
 import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
@@ -89,6 +92,13 @@ public class JdbcEventAnalyticsTableManager
 {
     private static final ImmutableSet<ValueType> NO_INDEX_VAL_TYPES = ImmutableSet.of( ValueType.TEXT, ValueType.LONG_TEXT );
 
+    /**
+     * Metadata classes which remove the events or event data referring to them
+     * when deleted.
+     */
+    private static final Set<Class<?>> EVENT_METADATA_CLASSES = ImmutableSet.of(
+        ProgramStage.class, DataElement.class, TrackedEntityAttribute.class, OrganisationUnit.class, CategoryOptionCombo.class );
+
     public static final String OU_NAME_COL_SUFFIX = "_name";
     public static final String OU_GEOMETRY_COL_SUFFIX = "_geom";
 
@@ -144,7 +154,8 @@ public class JdbcEventAnalyticsTableManager
 
     /**
      * Creates a list of {@link AnalyticsTable} for each program. The tables contain a partition
-     * for each year for which events exist.
+     * for each year for which events exist, or for a changed partition update, for each year
+     * for which events changed.
      *
      * @param params the {@link AnalyticsTableUpdateParams}.
      * @return a list of {@link AnalyticsTableUpdateParams}.
@@ -159,7 +170,8 @@ public class JdbcEventAnalyticsTableManager
 
         for ( Program program : programs )
         {
-            List<Integer> dataYears = getDataYears( params, program );
+            List<Integer> dataYears = params.isChangedPartitionUpdate() ?
+                getChangedDataYears( params, program ) : getDataYears( params, program );
 
             Collections.sort( dataYears );
 
@@ -251,6 +263,12 @@ public class JdbcEventAnalyticsTableManager
     @Override
     public void removeUpdatedData( AnalyticsTableUpdateParams params, List<AnalyticsTable> tables )
     {
+        if ( params.isChangedPartitionUpdate() )
+        {
+            tables.forEach( this::removeLatestPartitionData );
+            return;
+        }
+
         if ( !params.isLatestUpdate() )
         {
             return;
@@ -291,6 +309,12 @@ public class JdbcEventAnalyticsTableManager
                 "executiondate < '" + DateUtils.getMediumDateString( partition.getEndDate() ) + "'" );
     }
 
+    @Override
+    protected String getYearColumn()
+    {
+        return "yearly";
+    }
+
     @Override
     protected void populateTable( AnalyticsTableUpdateParams params, AnalyticsTablePartition partition )
     {
@@ -530,6 +554,67 @@ public class JdbcEventAnalyticsTableManager
         return jdbcTemplate.queryForList( sql, Integer.class );
     }
 
+    /**
+     * Returns the years of events for the given program which were updated or deleted
+     * since the last successful full or changed partition update. Deleted events are
+     * included as deletion is a soft delete which updates the last updated time. The
+     * years in which the changed events are currently stored in the analytics table
+     * are included as well, as the event date of an event may have moved to another
+     * year. Events which are removed along with deleted metadata leave no trace of
+     * their years, so if such metadata was deleted, all years with events and all
+     * years with an existing partition are returned.
+     *
+     * @param params the {@link AnalyticsTableUpdateParams}.
+     * @param program the program.
+     * @return the list of years.
+     */
+    private List<Integer> getChangedDataYears( AnalyticsTableUpdateParams params, Program program )
+    {
+        Date startDate = getChangedDataStartDate();
+
+        String changedEventsClause =
+            "from programstageinstance psi " +
+            "inner join programinstance pi on psi.programinstanceid = pi.programinstanceid " +
+            "where pi.programid = " + program.getId() + " " +
+            "and psi.lastupdated >= '" + getLongDateString( startDate ) + "' " +
+            "and psi.lastupdated < '" + getLongDateString( params.getStartTime() ) + "' ";
+
+        String sql =
+            "select distinct(extract(year from psi.executiondate)) " +
+            changedEventsClause +
+            "and psi.executiondate is not null " +
+            "and psi.executiondate > '1000-01-01' ";
+
+        Set<Integer> years = new HashSet<>( jdbcTemplate.queryForList( sql, Integer.class ) );
+
+        AnalyticsTable table = new AnalyticsTable( getAnalyticsTableType(), Lists.newArrayList(), Lists.newArrayList(), program );
+
+        String tableName = table.getTableName();
+
+        if ( hasDeletedObjects( startDate, params.getStartTime(), EVENT_METADATA_CLASSES ) )
+        {
+            log.info( String.format( "Found deleted event metadata since: '%s', updating all years for program: '%s'",
+                getLongDateString( startDate ), program.getUid() ) );
+
+            years.addAll( getDataYears( params, program ) );
+            years.addAll( getExistingPartitionYears( table ) );
+        }
+        else if ( partitionManager.tableExists( tableName ) )
+        {
+            String storedYearsSql =
+                "select distinct(cast(ax.yearly as integer)) " +
+                "from " + quote( tableName ) + " ax " +
+                "where ax.psi in (select psi.uid " + changedEventsClause + ")";
+
+            years.addAll( jdbcTemplate.queryForList( storedYearsSql, Integer.class ) );
+        }
+
+        log.info( String.format( "Found changed event data years: %s for program: '%s' since: '%s'",
+            years, program.getUid(), getLongDateString( startDate ) ) );
+
+        return new ArrayList<>( years );
+    }
+
     private AnalyticsTableColumn toCharColumn( String name, String prefix, Date created )
     {
         return new AnalyticsTableColumn( name, CHARACTER_11, prefix + "." + name ).withCreated( created );
@@ -31,10 +31,13 @@ package org.hisp.dhis.analytics.table.scheduling;
 import static org.hisp.dhis.util.DateUtils.getMediumDateString;
 
 import java.util.Date;
+import java.util.Set;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.hisp.dhis.analytics.AnalyticsTableGenerator;
+import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.commons.collection.CollectionUtils;
 import org.hisp.dhis.scheduling.AbstractJob;
 import org.hisp.dhis.scheduling.JobConfiguration;
 import org.hisp.dhis.scheduling.JobType;
@@ -44,6 +47,9 @@ import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.util.DateUtils;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -55,7 +61,10 @@ import lombok.extern.slf4j.Slf4j;
  * which specifies the hour of day to run the full update. The next scheduled full analytics table
  * update time is persisted using a system setting. A full analytics table update is performed
  * when the current time is after the next scheduled full update time. Otherwise, a partial
- * update of the latest analytics partition table is performed.
+ * update of the latest analytics partition table is performed, or if
+ * {@link ContinuousAnalyticsJobParameters#isChangedPartitionUpdate()} is set, a rebuild of the
+ * year partitions of the aggregate and event analytics tables with data changed since the last
+ * update.
  *
  * @author Lars Helge Overland
  */
@@ -66,6 +75,12 @@ public class ContinuousAnalyticsTableJob
 {
     private static final Integer DEFAULT_HOUR_OF_DAY = 0;
 
+    /**
+     * Table types which support rebuilding of changed year partitions.
+     */
+    private static final Set<AnalyticsTableType> CHANGED_PARTITION_TABLE_TYPES = ImmutableSet.of(
+        AnalyticsTableType.DATA_VALUE, AnalyticsTableType.EVENT );
+
     private final AnalyticsTableGenerator analyticsTableGenerator;
 
     private final SystemSettingManager systemSettingManager;
@@ -118,6 +133,24 @@ public class ContinuousAnalyticsTableJob
                 log.info( String.format( "Next analytics table update: %s", getMediumDateString( update ) ) );
             }
         }
+        else if ( parameters.isChangedPartitionUpdate() )
+        {
+            log.info( "Performing changed analytics table partitions update" );
+
+            Set<AnalyticsTableType> skipTableTypes = Sets.newHashSet( AnalyticsTableType.values() );
+            skipTableTypes.removeAll( CHANGED_PARTITION_TABLE_TYPES );
+            skipTableTypes.addAll( CollectionUtils.emptyIfNull( parameters.getSkipTableTypes() ) );
+
+            AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+                .withChangedPartitions()
+                .withSkipResourceTables( true )
+                .withSkipTableTypes( skipTableTypes )
+                .withJobId( jobConfiguration )
+                .withStartTime( now )
+                .build();
+
+            analyticsTableGenerator.generateTables( params );
+        }
         else
         {
             log.info( "Performing latest analytics table partition update" );
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.analytics.cache;
+
+import static org.hisp.dhis.DhisConvenienceTest.createDataElement;
+import static org.hisp.dhis.DhisConvenienceTest.createPeriod;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.mockito.junit.MockitoJUnit.rule;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.cache.SimpleCacheBuilder;
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.system.grid.ListGrid;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
+import org.springframework.core.env.Environment;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class AnalyticsCacheTest
+{
+    @Mock
+    private CacheProvider cacheProvider;
+
+    @Mock
+    private Environment environment;
+
+    @Mock
+    private AnalyticsCacheSettings analyticsCacheSettings;
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+
+    private AnalyticsCache analyticsCache;
+
+    private DataQueryParams params;
+
+    @Before
+    @SuppressWarnings( "unchecked" )
+    public void setUp()
+    {
+        when( cacheProvider.newCacheBuilder( any( Class.class ) ) ).thenAnswer( i -> new SimpleCacheBuilder<>() );
+        when( environment.getActiveProfiles() ).thenReturn( new String[0] );
+        when( analyticsCacheSettings.fixedExpirationTimeOrDefault() ).thenReturn( 600L );
+
+        analyticsCache = new AnalyticsCache( cacheProvider, environment, analyticsCacheSettings );
+        analyticsCache.init();
+
+        params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( createDataElement( 'A' ) ) )
+            .withPeriods( Lists.newArrayList( createPeriod( "201903" ), createPeriod( "202001" ) ) )
+            .build();
+
+        analyticsCache.put( params, new ListGrid() );
+    }
+
+    @Test
+    public void testInvalidateOtherPartitionKeepsEntry()
+    {
+        analyticsCache.invalidatePartitions( AnalyticsTableType.DATA_VALUE, Sets.newHashSet( 2017, 2018 ) );
+        analyticsCache.invalidatePartitions( AnalyticsTableType.EVENT, Sets.newHashSet( 2019 ) );
+
+        assertTrue( analyticsCache.get( params.getKey() ).isPresent() );
+    }
+
+    @Test
+    public void testInvalidatePartitionEvictsEntry()
+    {
+        analyticsCache.invalidatePartitions( AnalyticsTableType.DATA_VALUE, Sets.newHashSet( 2020 ) );
+
+        assertFalse( analyticsCache.get( params.getKey() ).isPresent() );
+    }
+
+    @Test
+    public void testRepeatedInvalidationEvictsEntry()
+    {
+        analyticsCache.invalidatePartitions( AnalyticsTableType.DATA_VALUE, Sets.newHashSet( 2020 ) );
+        analyticsCache.put( params, new ListGrid() );
+
+        assertTrue( analyticsCache.get( params.getKey() ).isPresent() );
+
+        analyticsCache.invalidatePartitions( AnalyticsTableType.DATA_VALUE, Sets.newHashSet( 2020 ) );
+
+        assertFalse( analyticsCache.get( params.getKey() ).isPresent() );
+    }
+
+    @Test
+    public void testInvalidateTableEvictsEntry()
+    {
+        analyticsCache.invalidateTable( AnalyticsTableType.DATA_VALUE );
+
+        assertFalse( analyticsCache.get( params.getKey() ).isPresent() );
+    }
+
+    @Test
+    public void testInvalidateOtherTableKeepsEntry()
+    {
+        analyticsCache.invalidateTable( AnalyticsTableType.ENROLLMENT );
+
+        assertTrue( analyticsCache.get( params.getKey() ).isPresent() );
+    }
+
+    @Test
+    public void testEntryRemainingTimeToLive()
+    {
+        final long now = System.currentTimeMillis();
+
+        final long remaining = new AnalyticsCacheEntry( new ListGrid(), Collections.emptyMap(), now + 60000 )
+            .getRemainingTimeToLive();
+
+        assertTrue( remaining > 0 && remaining <= 60 );
+        assertEquals( 0, new AnalyticsCacheEntry( new ListGrid(), Collections.emptyMap(), now - 1000 )
+            .getRemainingTimeToLive() );
+    }
+
+    @Test
+    public void testConcurrentFetchesAreCoalesced()
+        throws Exception
+    {
+        final DataQueryParams query = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( createDataElement( 'B' ) ) )
+            .withPeriods( Lists.newArrayList( createPeriod( "201904" ) ) )
+            .build();
+
+        final Grid grid = new ListGrid();
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger fetches = new AtomicInteger();
+
+        final Function<DataQueryParams, Grid> function = p -> {
+            fetches.incrementAndGet();
+            awaitQuietly( release );
+            return grid;
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+
+        try
+        {
+            final Future<Grid> first = executor.submit( () -> analyticsCache.getOrFetch( query, function ) );
+
+            waitUntil( () -> analyticsCache.getInFlightCount() == 1 );
+
+            final Future<Grid> second = executor.submit( () -> analyticsCache.getOrFetch( query, function ) );
+
+            waitUntil( () -> analyticsCache.getCoalescedCount() == 1 );
+
+            release.countDown();
+
+            assertSame( grid, first.get( 10, TimeUnit.SECONDS ) );
+            assertSame( grid, second.get( 10, TimeUnit.SECONDS ) );
+            assertEquals( 1, fetches.get() );
+            assertEquals( 0, analyticsCache.getInFlightCount() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly( CountDownLatch latch )
+    {
+        try
+        {
+            latch.await( 10, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil( BooleanSupplier condition )
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+
+        while ( !condition.getAsBoolean() && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+
+        assertTrue( condition.getAsBoolean() );
+    }
+}
@@ -0,0 +1,130 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.external.conf.ConfigurationKey.ANALYTICS_QUERY_CONCURRENCY;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+import static org.mockito.junit.MockitoJUnit.rule;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.user.CurrentUserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.Lists;
+
+public class AnalyticsQueryExecutorTest
+{
+    @Mock
+    private DhisConfigurationProvider config;
+
+    @Mock
+    private CurrentUserService currentUserService;
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+
+    private AnalyticsQueryExecutor executor;
+
+    private final CountDownLatch release = new CountDownLatch( 1 );
+
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        when( config.getProperty( ANALYTICS_QUERY_CONCURRENCY ) ).thenReturn( "1" );
+        when( currentUserService.getCurrentUsername() ).thenReturn( "admin" );
+
+        executor = new AnalyticsQueryExecutor( config, currentUserService );
+
+        // Occupy the single thread so that subsequent queries are queued
+
+        executor.submit( () -> release.await( 10, TimeUnit.SECONDS ), AnalyticsQueryPriority.INTERACTIVE );
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testInteractiveQueriesRunBeforeBulkQueries()
+        throws Exception
+    {
+        Future<?> bulk = submit( "bulk", AnalyticsQueryPriority.BULK );
+        Future<?> interactive = submit( "interactive", AnalyticsQueryPriority.INTERACTIVE );
+
+        release.countDown();
+
+        bulk.get( 10, TimeUnit.SECONDS );
+        interactive.get( 10, TimeUnit.SECONDS );
+
+        assertEquals( Lists.newArrayList( "interactive", "bulk" ), executed );
+    }
+
+    @Test
+    public void testQueriesAreInterleavedAcrossUsers()
+        throws Exception
+    {
+        when( currentUserService.getCurrentUsername() ).thenReturn( "userA" );
+
+        submit( "A1", AnalyticsQueryPriority.INTERACTIVE );
+        submit( "A2", AnalyticsQueryPriority.INTERACTIVE );
+        submit( "A3", AnalyticsQueryPriority.INTERACTIVE );
+
+        when( currentUserService.getCurrentUsername() ).thenReturn( "userB" );
+
+        Future<?> last = submit( "B1", AnalyticsQueryPriority.INTERACTIVE );
+
+        release.countDown();
+
+        last.get( 10, TimeUnit.SECONDS );
+
+        assertEquals( Lists.newArrayList( "A1", "B1" ), executed.subList( 0, 2 ) );
+    }
+
+    private Future<?> submit( String name, AnalyticsQueryPriority priority )
+    {
+        return executor.submit( () -> executed.add( name ), priority );
+    }
+}
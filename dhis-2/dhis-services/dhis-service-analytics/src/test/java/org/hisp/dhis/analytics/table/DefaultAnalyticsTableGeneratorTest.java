@@ -0,0 +1,213 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.external.conf.ConfigurationKey.ANALYTICS_TABLE_CONCURRENCY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.analytics.AnalyticsTableService;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.message.MessageService;
+import org.hisp.dhis.resourcetable.ResourceTableService;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.notification.Notifier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class DefaultAnalyticsTableGeneratorTest
+{
+    @Mock
+    private ResourceTableService resourceTableService;
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private SystemSettingManager systemSettingManager;
+
+    @Mock
+    private Notifier notifier;
+
+    @Mock
+    private DhisConfigurationProvider config;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private AnalyticsTableService dataTableService;
+
+    private AnalyticsTableService eventTableService;
+
+    private AnalyticsTableService enrollmentTableService;
+
+    private List<String> updates;
+
+    @Before
+    public void setUp()
+    {
+        updates = Collections.synchronizedList( new ArrayList<>() );
+
+        dataTableService = mockTableService( AnalyticsTableType.DATA_VALUE );
+        eventTableService = mockTableService( AnalyticsTableType.EVENT );
+        enrollmentTableService = mockTableService( AnalyticsTableType.ENROLLMENT );
+
+        when( notifier.clear( any() ) ).thenReturn( notifier );
+        when( systemSettingManager.getSystemSetting( SettingKey.DATABASE_SERVER_CPUS ) ).thenReturn( 5 );
+
+        doAnswer( invocation -> updates.add( "resourceTables" ) ).when( resourceTableService ).createAllSqlViews();
+    }
+
+    @Test
+    public void testUpdateTablesSequentially()
+    {
+        when( config.getProperty( ANALYTICS_TABLE_CONCURRENCY ) ).thenReturn( "1" );
+
+        getSubject().generateTables( getParams() );
+
+        InOrder inOrder = inOrder( resourceTableService, dataTableService, eventTableService, enrollmentTableService );
+        inOrder.verify( resourceTableService ).createAllSqlViews();
+        inOrder.verify( dataTableService ).update( any() );
+        inOrder.verify( eventTableService ).update( any() );
+        inOrder.verify( enrollmentTableService ).update( any() );
+
+        ArgumentCaptor<AnalyticsTableUpdateParams> params = ArgumentCaptor.forClass( AnalyticsTableUpdateParams.class );
+        verify( dataTableService ).update( params.capture() );
+        assertNull( params.getValue().getProcessPermits() );
+    }
+
+    @Test
+    public void testUpdateTablesConcurrently()
+        throws Exception
+    {
+        when( config.getProperty( ANALYTICS_TABLE_CONCURRENCY ) ).thenReturn( "0" );
+
+        // Each update waits until all table types are updated at the same time
+
+        CountDownLatch running = new CountDownLatch( 3 );
+
+        for ( AnalyticsTableService service : Lists.newArrayList( dataTableService, eventTableService, enrollmentTableService ) )
+        {
+            doAnswer( invocation -> {
+                updates.add( service.getAnalyticsTableType().name() );
+                running.countDown();
+                assertTrue( running.await( 10, TimeUnit.SECONDS ) );
+                return null;
+            } ).when( service ).update( any() );
+        }
+
+        getSubject().generateTables( getParams() );
+
+        assertEquals( 0, running.getCount() );
+        assertEquals( 4, updates.size() );
+        assertEquals( "resourceTables", updates.get( 0 ) );
+
+        ArgumentCaptor<AnalyticsTableUpdateParams> params = ArgumentCaptor.forClass( AnalyticsTableUpdateParams.class );
+        verify( eventTableService ).update( params.capture() );
+        assertNotNull( params.getValue().getProcessPermits() );
+        assertEquals( 4, params.getValue().getProcessPermits().availablePermits() );
+    }
+
+    @Test
+    public void testSkipTableTypes()
+    {
+        when( config.getProperty( ANALYTICS_TABLE_CONCURRENCY ) ).thenReturn( "0" );
+
+        getSubject().generateTables( AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new Date() )
+            .withSkipTableTypes( Sets.newHashSet( AnalyticsTableType.EVENT ) )
+            .build() );
+
+        verify( dataTableService ).update( any() );
+        verify( eventTableService, never() ).update( any() );
+        verify( enrollmentTableService ).update( any() );
+    }
+
+    @Test( expected = RuntimeException.class )
+    public void testTableUpdateFailureIsPropagated()
+    {
+        when( config.getProperty( ANALYTICS_TABLE_CONCURRENCY ) ).thenReturn( "0" );
+
+        doAnswer( invocation -> {
+            throw new IllegalStateException( "Update failed" );
+        } ).when( eventTableService ).update( any() );
+
+        getSubject().generateTables( getParams() );
+    }
+
+    private DefaultAnalyticsTableGenerator getSubject()
+    {
+        return new DefaultAnalyticsTableGenerator(
+            Lists.newArrayList( dataTableService, eventTableService, enrollmentTableService ),
+            resourceTableService, messageService, systemSettingManager, notifier, config );
+    }
+
+    private AnalyticsTableUpdateParams getParams()
+    {
+        return AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new Date() )
+            .build();
+    }
+
+    private AnalyticsTableService mockTableService( AnalyticsTableType tableType )
+    {
+        AnalyticsTableService service = mock( AnalyticsTableService.class );
+        when( service.getAnalyticsTableType() ).thenReturn( tableType );
+        doAnswer( invocation -> updates.add( tableType.name() ) ).when( service ).update( any() );
+        return service;
+    }
+}
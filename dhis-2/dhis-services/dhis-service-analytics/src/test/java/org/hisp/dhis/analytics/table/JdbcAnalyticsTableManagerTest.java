@@ -40,15 +40,18 @@ import org.springframework.jdbc.core.JdbcTemplate;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.hisp.dhis.analytics.AnalyticsTable;
 import org.hisp.dhis.analytics.AnalyticsTableHookService;
 import org.hisp.dhis.analytics.AnalyticsTableManager;
 import org.hisp.dhis.analytics.AnalyticsTablePartition;
+import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
 import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.category.CategoryService;
@@ -62,7 +65,10 @@ import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.system.database.DatabaseInfo;
 import org.joda.time.DateTime;
 
+import static org.hisp.dhis.util.DateUtils.getLongDateString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.junit.Assert.assertNotNull;
@@ -77,6 +83,9 @@ public class JdbcAnalyticsTableManagerTest
     @Mock
     private SystemSettingManager systemSettingManager;
 
+    @Mock
+    private PartitionManager partitionManager;
+
     @Mock
     private JdbcTemplate jdbcTemplate;
 
@@ -91,7 +100,7 @@ public class JdbcAnalyticsTableManagerTest
         subject = new JdbcAnalyticsTableManager( mock( IdentifiableObjectManager.class ), mock( OrganisationUnitService.class ),
             mock( CategoryService.class ), systemSettingManager, mock( DataApprovalLevelService.class ),
             mock( ResourceTableService.class ), mock( AnalyticsTableHookService.class ), mock( StatementBuilder.class ),
-            mock( PartitionManager.class ), mock( DatabaseInfo.class ), jdbcTemplate );
+            partitionManager, mock( DatabaseInfo.class ), jdbcTemplate );
     }
 
     @Test
@@ -167,6 +176,121 @@ public class JdbcAnalyticsTableManagerTest
         assertEquals( startTime, partition.getEndDate() );
     }
 
+    @Test
+    public void testGetChangedPartitionsAnalyticsTable()
+    {
+        Date lastFullTableUpdate = new DateTime( 2019, 3, 1, 2, 0 ).toDate();
+        Date lastChangedPartitionUpdate = new DateTime( 2019, 3, 1, 9, 0 ).toDate();
+        Date startTime = new DateTime( 2019, 3, 1, 10, 0 ).toDate();
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( startTime )
+            .withChangedPartitions()
+            .build();
+
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE ) ).thenReturn( lastFullTableUpdate );
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_CHANGED_ANALYTICS_PARTITIONS_UPDATE ) ).thenReturn( lastChangedPartitionUpdate );
+        when( jdbcTemplate.queryForList( ArgumentMatchers.contains( "dv.lastupdated >= '" + getLongDateString( lastChangedPartitionUpdate ) + "'" ),
+            ArgumentMatchers.<Class<Integer>>any() ) ).thenReturn( Lists.newArrayList( 2017 ) );
+
+        List<AnalyticsTable> tables = subject.getAnalyticsTables( params );
+
+        assertEquals( 1, tables.size() );
+
+        AnalyticsTable table = tables.get( 0 );
+
+        assertEquals( 1, table.getTablePartitions().size() );
+        assertEquals( 2017, table.getTablePartitions().get( 0 ).getYear().intValue() );
+        assertTrue( params.isPartialUpdate() );
+    }
+
+    @Test
+    public void testGetChangedPartitionsAnalyticsTableWithDeletedMetadata()
+    {
+        Date lastFullTableUpdate = new DateTime( 2019, 3, 1, 2, 0 ).toDate();
+        Date startTime = new DateTime( 2019, 3, 1, 10, 0 ).toDate();
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( startTime )
+            .withChangedPartitions()
+            .build();
+
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE ) ).thenReturn( lastFullTableUpdate );
+        when( jdbcTemplate.queryForList( Mockito.anyString(), ArgumentMatchers.<Class<Integer>>any() ) ).thenReturn( Lists.newArrayList( 2018, 2019 ) );
+        when( jdbcTemplate.queryForList( ArgumentMatchers.contains( "dv.lastupdated >= '" ), ArgumentMatchers.<Class<Integer>>any() ) ).thenReturn( Lists.newArrayList() );
+        when( jdbcTemplate.queryForObject( ArgumentMatchers.contains( "from deletedobject" ), ArgumentMatchers.eq( Boolean.class ) ) ).thenReturn( true );
+        when( partitionManager.getAnalyticsPartitions( AnalyticsTableType.DATA_VALUE ) ).thenReturn(
+            Sets.newHashSet( "analytics", "analytics_2016", "analytics_2018", "analytics_0", "analytics_event_progrmuida_2015" ) );
+
+        List<AnalyticsTable> tables = subject.getAnalyticsTables( params );
+
+        assertEquals( 1, tables.size() );
+
+        List<Integer> years = tables.get( 0 ).getTablePartitions().stream()
+            .map( AnalyticsTablePartition::getYear )
+            .collect( Collectors.toList() );
+
+        assertEquals( Lists.newArrayList( 2016, 2018, 2019 ), years );
+    }
+
+    @Test
+    public void testGetChangedPartitionsAnalyticsTableNoChanges()
+    {
+        Date lastFullTableUpdate = new DateTime( 2019, 3, 1, 2, 0 ).toDate();
+        Date startTime = new DateTime( 2019, 3, 1, 10, 0 ).toDate();
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( startTime )
+            .withChangedPartitions()
+            .build();
+
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE ) ).thenReturn( lastFullTableUpdate );
+        when( jdbcTemplate.queryForList( Mockito.anyString(), ArgumentMatchers.<Class<Integer>>any() ) ).thenReturn( Lists.newArrayList() );
+        when( jdbcTemplate.queryForObject( ArgumentMatchers.contains( "from deletedobject" ), ArgumentMatchers.eq( Boolean.class ) ) ).thenReturn( false );
+
+        List<AnalyticsTable> tables = subject.getAnalyticsTables( params );
+
+        assertTrue( tables.isEmpty() );
+        verify( partitionManager, never() ).getAnalyticsPartitions( AnalyticsTableType.DATA_VALUE );
+    }
+
+    @Test
+    public void testRemoveLatestPartitionDataForChangedPartitions()
+    {
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new DateTime( 2019, 3, 1, 10, 0 ).toDate() )
+            .withChangedPartitions()
+            .build();
+
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(), Lists.newArrayList() );
+        table.addPartitionTable( 2017, new DateTime( 2017, 1, 1, 0, 0 ).toDate(), new DateTime( 2017, 12, 31, 0, 0 ).toDate() );
+        table.addPartitionTable( 2018, new DateTime( 2018, 1, 1, 0, 0 ).toDate(), new DateTime( 2018, 12, 31, 0, 0 ).toDate() );
+
+        when( partitionManager.tableExists( "analytics_0" ) ).thenReturn( true );
+
+        subject.removeUpdatedData( params, Lists.newArrayList( table ) );
+
+        verify( jdbcTemplate ).execute( "delete from \"analytics_0\" where \"year\" in ('2017', '2018')" );
+    }
+
+    @Test
+    public void testRemoveLatestPartitionDataNoLatestPartition()
+    {
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder()
+            .withStartTime( new DateTime( 2019, 3, 1, 10, 0 ).toDate() )
+            .withChangedPartitions()
+            .build();
+
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.DATA_VALUE, Lists.newArrayList(), Lists.newArrayList() );
+        table.addPartitionTable( 2017, new DateTime( 2017, 1, 1, 0, 0 ).toDate(), new DateTime( 2017, 12, 31, 0, 0 ).toDate() );
+
+        when( partitionManager.tableExists( "analytics_0" ) ).thenReturn( false );
+
+        subject.removeUpdatedData( params, Lists.newArrayList( table ) );
+
+        verify( jdbcTemplate, never() ).execute( Mockito.anyString() );
+    }
+
     @Test(expected=IllegalArgumentException.class)
     public void testGetLatestAnalyticsTableNoFullTableUpdate()
     {
@@ -106,6 +106,9 @@ public class JdbcEventAnalyticsTableManagerTest
     @Mock
     private DatabaseInfo databaseInfo;
 
+    @Mock
+    private PartitionManager partitionManager;
+
     @Mock
     private JdbcTemplate jdbcTemplate;
 
@@ -138,7 +141,7 @@ public class JdbcEventAnalyticsTableManagerTest
 
         subject = new JdbcEventAnalyticsTableManager( idObjectManager, organisationUnitService, categoryService,
             systemSettingManager, mock( DataApprovalLevelService.class ), mock( ResourceTableService.class ),
-            mock( AnalyticsTableHookService.class ), statementBuilder, mock( PartitionManager.class ), databaseInfo,
+            mock( AnalyticsTableHookService.class ), statementBuilder, partitionManager, databaseInfo,
             jdbcTemplate );
     }
 
@@ -196,6 +199,92 @@ public class JdbcEventAnalyticsTableManagerTest
         assertThat( partitionB.getEndDate(), equalTo( startTime ) );
     }
 
+    @Test
+    public void verifyGetChangedPartitionAnalyticsTablesIncludesStoredYears()
+    {
+        Program program = createProgram( 'A' );
+        String tableName = TABLE_PREFIX + program.getUid().toLowerCase();
+
+        Date lastFullTableUpdate = new DateTime( 2019, 3, 1, 2, 0 ).toDate();
+        Date lastChangedPartitionUpdate = new DateTime( 2019, 3, 1, 9, 0 ).toDate();
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder().withStartTime( START_TIME )
+            .withChangedPartitions().build();
+
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE ) )
+            .thenReturn( lastFullTableUpdate );
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_CHANGED_ANALYTICS_PARTITIONS_UPDATE ) )
+            .thenReturn( lastChangedPartitionUpdate );
+        when( idObjectManager.getAllNoAcl( Program.class ) ).thenReturn( Lists.newArrayList( program ) );
+        when( partitionManager.tableExists( tableName ) ).thenReturn( true );
+        when( jdbcTemplate.queryForList( Mockito.contains( "psi.lastupdated >= '2019-03-01T09:00:00'" ), eq( Integer.class ) ) )
+            .thenReturn( Lists.newArrayList( 2019 ) );
+        when( jdbcTemplate.queryForList( Mockito.contains( "from \"" + tableName + "\" ax where ax.psi in" ), eq( Integer.class ) ) )
+            .thenReturn( Lists.newArrayList( 2017, 2019 ) );
+
+        List<AnalyticsTable> tables = subject.getAnalyticsTables( params );
+
+        assertThat( tables, hasSize( 1 ) );
+        assertThat( getPartitionYears( tables.get( 0 ) ), contains( 2017, 2019 ) );
+        verify( partitionManager, never() ).getAnalyticsPartitions( AnalyticsTableType.EVENT );
+    }
+
+    @Test
+    public void verifyGetChangedPartitionAnalyticsTablesWithDeletedMetadata()
+    {
+        Program program = createProgram( 'A' );
+        String tableName = TABLE_PREFIX + program.getUid().toLowerCase();
+
+        Date lastFullTableUpdate = new DateTime( 2019, 3, 1, 2, 0 ).toDate();
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder().withStartTime( START_TIME )
+            .withChangedPartitions().build();
+
+        when( systemSettingManager.getSystemSetting( SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE ) )
+            .thenReturn( lastFullTableUpdate );
+        when( idObjectManager.getAllNoAcl( Program.class ) ).thenReturn( Lists.newArrayList( program ) );
+        when( jdbcTemplate.queryForObject( Mockito.contains( "from deletedobject" ), eq( Boolean.class ) ) ).thenReturn( true );
+        when( jdbcTemplate.queryForList( Mockito.contains( "psi.lastupdated >= '2019-03-01T02:00:00'" ), eq( Integer.class ) ) )
+            .thenReturn( Lists.newArrayList() );
+        when( jdbcTemplate.queryForList( Mockito.contains( "psi.deleted is false" ), eq( Integer.class ) ) )
+            .thenReturn( Lists.newArrayList( 2018, 2019 ) );
+        when( partitionManager.getAnalyticsPartitions( AnalyticsTableType.EVENT ) ).thenReturn( Sets.newHashSet(
+            tableName, tableName + "_2016", tableName + "_2018", tableName + "_0", TABLE_PREFIX + "otherprogram_2015" ) );
+
+        List<AnalyticsTable> tables = subject.getAnalyticsTables( params );
+
+        assertThat( tables, hasSize( 1 ) );
+        assertThat( getPartitionYears( tables.get( 0 ) ), contains( 2016, 2018, 2019 ) );
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass( String.class );
+        verify( jdbcTemplate ).queryForObject( sql.capture(), eq( Boolean.class ) );
+
+        assertThat( sql.getValue(), containsString( "deleted_at >= '2019-03-01T02:00:00'" ) );
+        assertThat( sql.getValue(), containsString( "deleted_at < '2019-08-01T00:00:00'" ) );
+        assertThat( sql.getValue(), containsString( "'ProgramStage'" ) );
+        assertThat( sql.getValue(), containsString( "'TrackedEntityAttribute'" ) );
+    }
+
+    @Test
+    public void verifyRemoveLatestPartitionDataForChangedPartitions()
+    {
+        Program program = createProgram( 'A' );
+        String latestTableName = TABLE_PREFIX + program.getUid().toLowerCase() + "_0";
+
+        AnalyticsTableUpdateParams params = AnalyticsTableUpdateParams.newBuilder().withStartTime( START_TIME )
+            .withChangedPartitions().build();
+
+        AnalyticsTable table = new AnalyticsTable( AnalyticsTableType.EVENT, Lists.newArrayList(), Lists.newArrayList(), program );
+        table.addPartitionTable( 2017, getDate( 2017, 1, 1 ), getDate( 2017, 12, 31 ) );
+        table.addPartitionTable( 2019, getDate( 2019, 1, 1 ), getDate( 2019, 12, 31 ) );
+
+        when( partitionManager.tableExists( latestTableName ) ).thenReturn( true );
+
+        subject.removeUpdatedData( params, Lists.newArrayList( table ) );
+
+        verify( jdbcTemplate ).execute( "delete from \"" + latestTableName + "\" where \"yearly\" in ('2017', '2019')" );
+    }
+
     @Test
     public void verifyGetTableWithCategoryCombo()
     {
@@ -578,6 +667,13 @@ public class JdbcEventAnalyticsTableManagerTest
         assertThat( sql.getValue(), containsString( String.format( ouQuery, "name") ) );
     }
 
+    private List<Integer> getPartitionYears( AnalyticsTable table )
+    {
+        return table.getTablePartitions().stream()
+            .map( AnalyticsTablePartition::getYear )
+            .collect( Collectors.toList() );
+    }
+
     private String toAlias( String template, String uid )
     {
         return String.format( template, uid, uid, uid );
@@ -28,57 +28,388 @@ package org.hisp.dhis.audit;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Queues;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.JMSException;
 import javax.jms.TextMessage;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
+ * Base class for audit consumers. Messages received by the JMS listener are
+ * put on a bounded queue and written in micro-batches by a writer thread. A
+ * batch is written when it reaches the configured size or when the flush
+ * interval has passed, whichever comes first. When the queue is full the
+ * listener blocks, which leaves further messages on the broker.
+ * <p>
+ * Messages are acknowledged by the writer thread once their batch has been
+ * handled, so the listener container must not acknowledge them. Messages
+ * which are queued but not yet written when the application stops are
+ * written before the writer thread stops.
+ *
  * @author Morten Olav Hansen <mortenoh@gmail.com>
  */
 @Slf4j
 public abstract class AbstractAuditConsumer
     implements AuditConsumer
 {
+    private static final long STOP_LOG_INTERVAL = TimeUnit.SECONDS.toMillis( 30 );
+
     protected AuditService auditService;
     protected ObjectMapper objectMapper;
 
     protected boolean isAuditLogEnabled;
     protected boolean isAuditDatabaseEnabled;
 
+    private int batchSize;
+    private long flushInterval;
+    private BlockingQueue<TextMessage> queue;
+
+    private volatile Thread writer;
+    private volatile boolean running;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong blockedCount = new AtomicLong();
+    private final AtomicLong blockedTimeNanos = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchTimeNanos = new AtomicLong();
+
+    protected void configureBatching( DhisConfigurationProvider dhisConfig )
+    {
+        this.batchSize = Math.max( 1, NumberUtils.toInt(
+            dhisConfig.getProperty( ConfigurationKey.AUDIT_CONSUMER_BATCH_SIZE ), 500 ) );
+        this.flushInterval = Math.max( 1, NumberUtils.toLong(
+            dhisConfig.getProperty( ConfigurationKey.AUDIT_CONSUMER_FLUSH_INTERVAL ), 500 ) );
+
+        int capacity = NumberUtils.toInt( dhisConfig.getProperty( ConfigurationKey.AUDIT_CONSUMER_QUEUE_CAPACITY ), 10000 );
+
+        this.queue = new ArrayBlockingQueue<>( Math.max( batchSize, capacity ) );
+    }
+
+    @PostConstruct
+    public void startWriter()
+    {
+        running = true;
+
+        startWriterThread();
+    }
+
+    /**
+     * Stops the writer thread once all queued messages are written. The
+     * listener container is stopped before this is invoked, so no further
+     * messages are queued.
+     */
+    @PreDestroy
+    public void stopWriter()
+    {
+        running = false;
+
+        try
+        {
+            writer.join( STOP_LOG_INTERVAL );
+
+            while ( writer.isAlive() )
+            {
+                log.info( String.format( "Waiting for %d Audit messages to be written", queue.size() ) );
+
+                writer.join( STOP_LOG_INTERVAL );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            log.warn( String.format( "Interrupted while waiting for the Audit writer, %d Audit messages are not written", queue.size() ) );
+
+            Thread.currentThread().interrupt();
+
+            return;
+        }
+
+        if ( !queue.isEmpty() )
+        {
+            writeBatches();
+        }
+    }
+
     protected void _consume( TextMessage message )
     {
+        receivedCount.incrementAndGet();
+
+        ensureWriter();
+
         try
         {
-            org.hisp.dhis.artemis.audit.Audit auditMessage = objectMapper.readValue( message.getText(), org.hisp.dhis.artemis.audit.Audit.class );
+            if ( !queue.offer( message ) )
+            {
+                long startTime = System.nanoTime();
 
-            if ( auditMessage.getData() != null && !(auditMessage.getData() instanceof String) )
+                while ( !queue.offer( message, flushInterval, TimeUnit.MILLISECONDS ) )
+                {
+                    ensureWriter();
+                }
+
+                blockedCount.incrementAndGet();
+                blockedTimeNanos.addAndGet( System.nanoTime() - startTime );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            failedCount.incrementAndGet();
+
+            log.warn( "Interrupted while waiting for space in the audit queue, the Audit message is not acknowledged" );
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startWriterThread()
+    {
+        Thread thread = new Thread( this::writeBatches, getClass().getSimpleName() + "-writer" );
+        thread.setDaemon( true );
+        thread.setUncaughtExceptionHandler( ( t, e ) -> log.error( "The Audit writer thread stopped unexpectedly", e ) );
+
+        writer = thread;
+        writer.start();
+    }
+
+    /**
+     * Restarts the writer thread if it stopped unexpectedly, so that the
+     * listener does not wait for space in the queue forever.
+     */
+    private void ensureWriter()
+    {
+        if ( running && !writer.isAlive() )
+        {
+            synchronized ( this )
             {
-                auditMessage.setData( objectMapper.writeValueAsString( auditMessage.getData() ) );
+                if ( running && !writer.isAlive() )
+                {
+                    log.warn( String.format( "Restarting the Audit writer thread with %d Audit messages queued", queue.size() ) );
+
+                    startWriterThread();
+                }
+            }
+        }
+    }
+
+    boolean isWriterAlive()
+    {
+        return writer.isAlive();
+    }
+
+    private void writeBatches()
+    {
+        List<TextMessage> batch = new ArrayList<>( batchSize );
+
+        while ( running || !queue.isEmpty() )
+        {
+            try
+            {
+                Queues.drain( queue, batch, batchSize, flushInterval, TimeUnit.MILLISECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                running = false;
+
+                Thread.currentThread().interrupt();
             }
 
-            org.hisp.dhis.audit.Audit audit = auditMessage.toAudit();
+            if ( !batch.isEmpty() )
+            {
+                try
+                {
+                    writeBatch( batch );
+                }
+                catch ( RuntimeException e )
+                {
+                    failedCount.addAndGet( batch.size() );
+
+                    log.error( "An error occurred writing a batch of " + batch.size() + " Audit messages, the messages are not acknowledged", e );
+                }
+                finally
+                {
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * De-serializes a batch of messages in parallel and writes the audits
+     * in one transaction. If the batch can not be written, the audits are
+     * written one by one so that a single bad audit does not lose the rest.
+     * The messages are acknowledged once handled.
+     */
+    private void writeBatch( List<TextMessage> messages )
+    {
+        long startTime = System.nanoTime();
+
+        List<Audit> audits = messages.parallelStream()
+            .map( this::toAudit )
+            .filter( Objects::nonNull )
+            .collect( Collectors.toList() );
+
+        if ( isAuditLogEnabled )
+        {
+            audits.forEach( this::logAudit );
+        }
+
+        if ( isAuditDatabaseEnabled && !audits.isEmpty() )
+        {
+            try
+            {
+                auditService.addAudits( audits );
 
-            if ( isAuditLogEnabled )
+                writtenCount.addAndGet( audits.size() );
+            }
+            catch ( Exception e )
             {
-                log.info( objectMapper.writeValueAsString( audit ) );
+                log.warn( "An error occurred persisting a batch of " + audits.size() + " Audit messages, persisting them one by one", e );
+
+                audits.forEach( this::addAudit );
             }
+        }
+
+        messages.forEach( this::acknowledge );
+
+        batchCount.incrementAndGet();
+        batchTimeNanos.addAndGet( System.nanoTime() - startTime );
+    }
+
+    private Audit toAudit( TextMessage message )
+    {
+        try
+        {
+            org.hisp.dhis.artemis.audit.Audit auditMessage = objectMapper.readValue( message.getText(), org.hisp.dhis.artemis.audit.Audit.class );
 
-            if ( isAuditDatabaseEnabled )
+            if ( auditMessage.getData() != null && !(auditMessage.getData() instanceof String) )
             {
-                auditService.addAudit( audit );
+                auditMessage.setData( objectMapper.writeValueAsString( auditMessage.getData() ) );
             }
+
+            return auditMessage.toAudit();
+        }
+        catch ( JMSException e )
+        {
+            failedCount.incrementAndGet();
+
+            log.error( "An error occurred reading the payload of an Audit message", e );
         }
         catch ( IOException e )
         {
+            failedCount.incrementAndGet();
+
             log.error(
                 "An error occurred de-serializing the message payload. The message can not be de-serialized to an Audit object.",
                 e );
         }
         catch ( Exception e )
         {
-            log.error( "An error occurred persisting an Audit message of type 'TRACKER'", e );
+            failedCount.incrementAndGet();
+
+            log.error( "An error occurred converting an Audit message", e );
         }
+
+        return null;
+    }
+
+    private void logAudit( Audit audit )
+    {
+        try
+        {
+            log.info( objectMapper.writeValueAsString( audit ) );
+        }
+        catch ( JsonProcessingException e )
+        {
+            log.error( "An error occurred serializing an Audit object for logging", e );
+        }
+    }
+
+    private void addAudit( Audit audit )
+    {
+        try
+        {
+            auditService.addAudit( audit );
+
+            writtenCount.incrementAndGet();
+        }
+        catch ( Exception e )
+        {
+            failedCount.incrementAndGet();
+
+            log.error( "An error occurred persisting an Audit message", e );
+        }
+    }
+
+    private void acknowledge( TextMessage message )
+    {
+        try
+        {
+            message.acknowledge();
+        }
+        catch ( JMSException e )
+        {
+            log.warn( "An error occurred acknowledging an Audit message", e );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Metrics
+    // -------------------------------------------------------------------------
+
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    public long getReceivedCount()
+    {
+        return receivedCount.get();
+    }
+
+    public long getWrittenCount()
+    {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+
+    public long getBlockedCount()
+    {
+        return blockedCount.get();
+    }
+
+    public long getBlockedTimeNanos()
+    {
+        return blockedTimeNanos.get();
+    }
+
+    public long getBatchCount()
+    {
+        return batchCount.get();
+    }
+
+    public long getBatchTimeNanos()
+    {
+        return batchTimeNanos.get();
     }
 }
@@ -0,0 +1,108 @@
+package org.hisp.dhis.audit.config;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.external.conf.ConfigurationKey.MONITORING_AUDIT_ENABLED;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.audit.AbstractAuditConsumer;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.monitoring.metrics.MetricsEnabler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+@Conditional( AuditMetricsConfig.AuditMetricsEnabledCondition.class )
+public class AuditMetricsConfig
+{
+    private static final String METRIC_PREFIX = "audit.consumer";
+
+    @Autowired
+    public void bindConsumersToRegistry( MeterRegistry registry, List<AbstractAuditConsumer> consumers )
+    {
+        for ( AbstractAuditConsumer consumer : consumers )
+        {
+            String name = consumer.getClass().getSimpleName();
+
+            Gauge.builder( METRIC_PREFIX + ".queue.size", consumer, AbstractAuditConsumer::getQueueSize )
+                .tag( "consumer", name )
+                .description( "Audit messages waiting to be written" )
+                .register( registry );
+
+            FunctionCounter.builder( METRIC_PREFIX + ".messages", consumer, AbstractAuditConsumer::getReceivedCount )
+                .tag( "consumer", name )
+                .tag( "result", "received" )
+                .description( "Audit messages received from the broker" )
+                .register( registry );
+
+            FunctionCounter.builder( METRIC_PREFIX + ".messages", consumer, AbstractAuditConsumer::getWrittenCount )
+                .tag( "consumer", name )
+                .tag( "result", "written" )
+                .description( "Audit messages written to the database" )
+                .register( registry );
+
+            FunctionCounter.builder( METRIC_PREFIX + ".messages", consumer, AbstractAuditConsumer::getFailedCount )
+                .tag( "consumer", name )
+                .tag( "result", "failed" )
+                .description( "Audit messages which could not be read or written" )
+                .register( registry );
+
+            FunctionTimer.builder( METRIC_PREFIX + ".blocked", consumer,
+                AbstractAuditConsumer::getBlockedCount, AbstractAuditConsumer::getBlockedTimeNanos, TimeUnit.NANOSECONDS )
+                .tag( "consumer", name )
+                .description( "Time the listener waited because the audit queue was full" )
+                .register( registry );
+
+            FunctionTimer.builder( METRIC_PREFIX + ".batch", consumer,
+                AbstractAuditConsumer::getBatchCount, AbstractAuditConsumer::getBatchTimeNanos, TimeUnit.NANOSECONDS )
+                .tag( "consumer", name )
+                .description( "Time spent de-serializing and writing audit batches" )
+                .register( registry );
+        }
+    }
+
+    static class AuditMetricsEnabledCondition
+        extends
+        MetricsEnabler
+    {
+        @Override
+        protected ConfigurationKey getConfigKey()
+        {
+            return MONITORING_AUDIT_ENABLED;
+        }
+    }
+}
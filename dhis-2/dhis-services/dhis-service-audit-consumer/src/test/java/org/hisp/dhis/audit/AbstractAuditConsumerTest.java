@@ -0,0 +1,266 @@
+package org.hisp.dhis.audit;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.TextMessage;
+
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AbstractAuditConsumerTest
+{
+    private static final long TIMEOUT = 5000;
+
+    @Mock
+    private AuditService auditService;
+
+    @Mock
+    private DhisConfigurationProvider dhisConfig;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private TestAuditConsumer consumer;
+
+    @After
+    public void tearDown()
+    {
+        if ( consumer != null )
+        {
+            consumer.stopWriter();
+        }
+    }
+
+    @Test
+    public void testWriteBatchWhenBatchSizeReached()
+        throws JMSException
+    {
+        consumer = createConsumer( 3, 60000, 10 );
+
+        TextMessage messageA = createMessage( "a" );
+        TextMessage messageB = createMessage( "b" );
+        TextMessage messageC = createMessage( "c" );
+
+        consumer._consume( messageA );
+        consumer._consume( messageB );
+        consumer._consume( messageC );
+
+        ArgumentCaptor<List<Audit>> audits = ArgumentCaptor.forClass( List.class );
+
+        verify( auditService, timeout( TIMEOUT ) ).addAudits( audits.capture() );
+        verify( messageC, timeout( TIMEOUT ) ).acknowledge();
+        verify( messageA ).acknowledge();
+        verify( messageB ).acknowledge();
+
+        assertThat( audits.getValue(), hasSize( 3 ) );
+        assertEquals( 3, consumer.getWrittenCount() );
+    }
+
+    @Test
+    public void testWriteBatchWhenFlushIntervalPassed()
+        throws JMSException
+    {
+        consumer = createConsumer( 100, 50, 1000 );
+
+        TextMessage messageA = createMessage( "a" );
+        TextMessage messageB = createMessage( "b" );
+
+        consumer._consume( messageA );
+        consumer._consume( messageB );
+
+        ArgumentCaptor<List<Audit>> audits = ArgumentCaptor.forClass( List.class );
+
+        verify( auditService, timeout( TIMEOUT ) ).addAudits( audits.capture() );
+        verify( messageB, timeout( TIMEOUT ) ).acknowledge();
+        verify( messageA ).acknowledge();
+
+        assertThat( audits.getValue(), hasSize( 2 ) );
+    }
+
+    @Test
+    public void testWriteAuditsOneByOneWhenBatchFails()
+        throws JMSException
+    {
+        doThrow( new RuntimeException( "Batch failed" ) ).when( auditService ).addAudits( anyList() );
+        doThrow( new RuntimeException( "Audit failed" ) ).doNothing().when( auditService ).addAudit( any( Audit.class ) );
+
+        consumer = createConsumer( 2, 60000, 10 );
+
+        TextMessage messageA = createMessage( "a" );
+        TextMessage messageB = createMessage( "b" );
+
+        consumer._consume( messageA );
+        consumer._consume( messageB );
+
+        verify( messageA, timeout( TIMEOUT ) ).acknowledge();
+        verify( messageB, timeout( TIMEOUT ) ).acknowledge();
+        verify( auditService ).addAudits( anyList() );
+        verify( auditService, times( 2 ) ).addAudit( any( Audit.class ) );
+
+        assertEquals( 1, consumer.getWrittenCount() );
+        assertEquals( 1, consumer.getFailedCount() );
+    }
+
+    @Test
+    public void testBlockListenerWhenQueueFull()
+        throws Exception
+    {
+        CountDownLatch writing = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+
+        doAnswer( invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        } ).when( auditService ).addAudits( anyList() );
+
+        consumer = createConsumer( 1, 60000, 1 );
+
+        consumer._consume( createMessage( "a" ) );
+
+        assertTrue( writing.await( TIMEOUT, TimeUnit.MILLISECONDS ) );
+
+        consumer._consume( createMessage( "b" ) );
+
+        TextMessage messageC = createMessage( "c" );
+
+        Thread listener = new Thread( () -> consumer._consume( messageC ) );
+        listener.start();
+        listener.join( 200 );
+
+        assertTrue( listener.isAlive() );
+        assertEquals( 1, consumer.getQueueSize() );
+        assertEquals( 0, consumer.getBlockedCount() );
+
+        release.countDown();
+        listener.join( TIMEOUT );
+
+        assertFalse( listener.isAlive() );
+        assertEquals( 1, consumer.getBlockedCount() );
+
+        verify( messageC, timeout( TIMEOUT ) ).acknowledge();
+        verify( auditService, times( 3 ) ).addAudits( anyList() );
+    }
+
+    @Test
+    public void testRestartWriterWhenStopped()
+        throws Exception
+    {
+        doThrow( new AssertionError( "Writer failed" ) ).doNothing().when( auditService ).addAudits( anyList() );
+
+        consumer = createConsumer( 1, 60000, 10 );
+
+        TextMessage messageA = createMessage( "a" );
+        TextMessage messageB = createMessage( "b" );
+
+        consumer._consume( messageA );
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while ( consumer.isWriterAlive() && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+
+        assertFalse( consumer.isWriterAlive() );
+
+        consumer._consume( messageB );
+
+        verify( messageB, timeout( TIMEOUT ) ).acknowledge();
+        verify( messageA, never() ).acknowledge();
+        assertThat( consumer.isWriterAlive(), is( true ) );
+    }
+
+    private TestAuditConsumer createConsumer( int batchSize, long flushInterval, int capacity )
+    {
+        when( dhisConfig.getProperty( ConfigurationKey.AUDIT_CONSUMER_BATCH_SIZE ) ).thenReturn( String.valueOf( batchSize ) );
+        when( dhisConfig.getProperty( ConfigurationKey.AUDIT_CONSUMER_FLUSH_INTERVAL ) ).thenReturn( String.valueOf( flushInterval ) );
+        when( dhisConfig.getProperty( ConfigurationKey.AUDIT_CONSUMER_QUEUE_CAPACITY ) ).thenReturn( String.valueOf( capacity ) );
+
+        TestAuditConsumer consumer = new TestAuditConsumer( auditService, dhisConfig );
+        consumer.startWriter();
+
+        return consumer;
+    }
+
+    private TextMessage createMessage( String uid )
+        throws JMSException
+    {
+        TextMessage message = mock( TextMessage.class );
+
+        when( message.getText() ).thenReturn(
+            "{\"auditType\":\"CREATE\",\"auditScope\":\"TRACKER\",\"klass\":\"Event\",\"uid\":\"" + uid + "\",\"data\":\"{}\"}" );
+
+        return message;
+    }
+
+    private static class TestAuditConsumer
+        extends AbstractAuditConsumer
+    {
+        TestAuditConsumer( AuditService auditService, DhisConfigurationProvider dhisConfig )
+        {
+            this.auditService = auditService;
+            this.objectMapper = new ObjectMapper();
+            this.isAuditDatabaseEnabled = true;
+
+            configureBatching( dhisConfig );
+        }
+    }
+}
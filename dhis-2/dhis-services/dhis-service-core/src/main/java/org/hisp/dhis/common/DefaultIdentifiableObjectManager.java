@@ -1010,6 +1010,13 @@ public class DefaultIdentifiableObjectManager
         return (T) store.getByUidNoAcl( uid );
     }
 
+    @Override
+    @Transactional( readOnly = true )
+    public <T extends IdentifiableObject> T getNoAcl( Class<T> clazz, long id )
+    {
+        return sessionFactory.getCurrentSession().get( clazz, id );
+    }
+
     @Override
     @Transactional
     public <T extends IdentifiableObject> void updateNoAcl( T object )
@@ -0,0 +1,188 @@
+package org.hisp.dhis.common;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hisp.dhis.cache.Cache;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.commons.util.SystemUtils;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.security.acl.AclService;
+import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.User;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Caches internal identifiers of data elements, organisation units and
+ * category option combinations by identifier scheme and identifier. Other
+ * types, and the {@code ID} scheme, are looked up directly. Periods are not
+ * covered as the period store caches period identifiers itself. The cache is
+ * shared between users, so objects resolved from a cached identifier are
+ * checked for read access of the current user, like the lookup on a miss.
+ */
+@Component( "org.hisp.dhis.common.MetadataIdentifierCache" )
+public class DefaultMetadataIdentifierCache
+    implements MetadataIdentifierCache
+{
+    private static final ImmutableList<Class<? extends IdentifiableObject>> CACHED_TYPES = ImmutableList.of(
+        DataElement.class, OrganisationUnit.class, CategoryOptionCombo.class );
+
+    private final Map<Class<?>, Cache<Long>> caches = new HashMap<>();
+
+    private final IdentifiableObjectManager idObjectManager;
+
+    private final CacheProvider cacheProvider;
+
+    private final AclService aclService;
+
+    private final CurrentUserService currentUserService;
+
+    private final Environment env;
+
+    public DefaultMetadataIdentifierCache( IdentifiableObjectManager idObjectManager, CacheProvider cacheProvider,
+        AclService aclService, CurrentUserService currentUserService, Environment env )
+    {
+        checkNotNull( idObjectManager );
+        checkNotNull( cacheProvider );
+        checkNotNull( aclService );
+        checkNotNull( currentUserService );
+        checkNotNull( env );
+
+        this.idObjectManager = idObjectManager;
+        this.cacheProvider = cacheProvider;
+        this.aclService = aclService;
+        this.currentUserService = currentUserService;
+        this.env = env;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        for ( Class<? extends IdentifiableObject> type : CACHED_TYPES )
+        {
+            caches.put( type, cacheProvider.newCacheBuilder( Long.class )
+                .forRegion( "metadataIdentifier" + type.getSimpleName() )
+                .expireAfterAccess( 6, TimeUnit.HOURS )
+                .withInitialCapacity( 1000 )
+                .forceInMemory()
+                .withMaximumSize( SystemUtils.isTestRun( env.getActiveProfiles() ) ? 0 : 100000 )
+                .build() );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // MetadataIdentifierCache implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public <T extends IdentifiableObject> T getObject( Class<T> clazz, IdScheme idScheme, String identifier )
+    {
+        Cache<Long> cache = caches.get( clazz );
+
+        IdScheme scheme = idScheme.isNull() ? IdScheme.UID : idScheme;
+
+        if ( cache == null || StringUtils.isEmpty( identifier ) || !isCacheable( scheme ) )
+        {
+            return idObjectManager.getObject( clazz, scheme, identifier );
+        }
+
+        String key = scheme.name() + ":" + identifier;
+
+        Long id = cache.getIfPresent( key ).orElse( null );
+
+        if ( id != null )
+        {
+            T object = idObjectManager.getNoAcl( clazz, id );
+
+            if ( object != null && identifier.equals( object.getPropertyValue( scheme ) ) )
+            {
+                return isReadAllowed( clazz, object ) ? object : null;
+            }
+
+            cache.invalidate( key );
+        }
+
+        T object = idObjectManager.getObject( clazz, scheme, identifier );
+
+        if ( object != null )
+        {
+            cache.put( key, object.getId() );
+        }
+
+        return object;
+    }
+
+    @Override
+    public void invalidate( Class<?> clazz )
+    {
+        caches.entrySet().stream()
+            .filter( entry -> entry.getKey().isAssignableFrom( clazz ) )
+            .forEach( entry -> entry.getValue().invalidateAll() );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Checks read access of the current user the way the sharing filter of
+     * the identifiable object store does, which only applies to shareable
+     * types and users which are not super users.
+     */
+    private boolean isReadAllowed( Class<?> clazz, IdentifiableObject object )
+    {
+        User user = currentUserService.getCurrentUser();
+
+        if ( user == null || user.isSuper() || !aclService.isShareable( clazz ) )
+        {
+            return true;
+        }
+
+        return aclService.canRead( user, object );
+    }
+
+    private boolean isCacheable( IdScheme idScheme )
+    {
+        return idScheme.is( IdentifiableProperty.UID ) || idScheme.is( IdentifiableProperty.CODE ) ||
+            idScheme.is( IdentifiableProperty.NAME ) || idScheme.isAttribute();
+    }
+}
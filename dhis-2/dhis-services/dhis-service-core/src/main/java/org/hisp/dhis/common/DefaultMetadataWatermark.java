@@ -0,0 +1,164 @@
+package org.hisp.dhis.common;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+
+import javax.annotation.PostConstruct;
+
+import org.hisp.dhis.cache.Cache;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Metadata watermark combining a version, which is replaced by a new random
+ * value whenever metadata changes, with the last updated time and count of
+ * the requested type in the database. The version covers changes to related
+ * types, the last updated time and count cover changes made directly in the
+ * database.
+ *
+ * The version is shared between nodes through Redis when enabled. A clustered
+ * instance without Redis can not see changes made on other nodes, so
+ * watermarks are disabled.
+ */
+@Component( "org.hisp.dhis.common.MetadataWatermark" )
+public class DefaultMetadataWatermark
+    implements MetadataWatermark
+{
+    private static final String VERSION_KEY = "version";
+
+    private final IdentifiableObjectManager idObjectManager;
+
+    private final CacheProvider cacheProvider;
+
+    private final DhisConfigurationProvider config;
+
+    private Cache<String> versionCache;
+
+    private boolean enabled;
+
+    public DefaultMetadataWatermark( IdentifiableObjectManager idObjectManager, CacheProvider cacheProvider,
+        DhisConfigurationProvider config )
+    {
+        checkNotNull( idObjectManager );
+        checkNotNull( cacheProvider );
+        checkNotNull( config );
+
+        this.idObjectManager = idObjectManager;
+        this.cacheProvider = cacheProvider;
+        this.config = config;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        enabled = !config.isClusterEnabled() ||
+            "true".equalsIgnoreCase( config.getProperty( ConfigurationKey.REDIS_ENABLED ) );
+
+        versionCache = cacheProvider.newCacheBuilder( String.class )
+            .forRegion( "metadataWatermark" )
+            .withMaximumSize( enabled ? 1 : 0 )
+            .build();
+    }
+
+    // -------------------------------------------------------------------------
+    // MetadataWatermark implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Override
+    @Transactional( readOnly = true )
+    public String getWatermark( Class<? extends IdentifiableObject> clazz )
+    {
+        // Read the version first so that a concurrent change can only make
+        // the watermark more recent than the data it describes
+
+        String version = versionCache.get( VERSION_KEY, key -> CodeGenerator.generateUid() ).orElse( "" );
+
+        Date lastUpdated = idObjectManager.getLastUpdated( clazz );
+        int count = idObjectManager.getCount( clazz );
+
+        return version + "-" + ( lastUpdated != null ? lastUpdated.getTime() : 0 ) + "-" + count;
+    }
+
+    @Override
+    public void metadataChanged()
+    {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            // Register a single synchronization per transaction, as imports
+            // can signal a change for every object
+
+            if ( !TransactionSynchronizationManager.hasResource( this ) )
+            {
+                TransactionSynchronizationManager.bindResource( this, Boolean.TRUE );
+                TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+                {
+                    @Override
+                    public void afterCommit()
+                    {
+                        newVersion();
+                    }
+
+                    @Override
+                    public void afterCompletion( int status )
+                    {
+                        TransactionSynchronizationManager.unbindResourceIfPossible( DefaultMetadataWatermark.this );
+                    }
+                } );
+            }
+        }
+        else
+        {
+            newVersion();
+        }
+    }
+
+    /**
+     * Replaces the version with a new random value. A random value needs no
+     * read of the current version, so concurrent changes on different nodes
+     * can not end up with a version which was seen before.
+     */
+    private void newVersion()
+    {
+        versionCache.put( VERSION_KEY, CodeGenerator.generateUid() );
+    }
+}
@@ -51,8 +51,10 @@ import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.category.CategoryStore;
 import org.hisp.dhis.common.DataDimensionType;
 import org.hisp.dhis.common.DeleteNotAllowedException;
+import org.hisp.dhis.common.IdScheme;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.IdentifiableProperty;
+import org.hisp.dhis.common.MetadataIdentifierCache;
 import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.dataset.DataSetElement;
 import org.hisp.dhis.security.acl.AccessStringHelper;
@@ -98,10 +100,13 @@ public class DefaultCategoryService
 
     private final AclService aclService;
 
+    private final MetadataIdentifierCache metadataIdentifierCache;
+
     public DefaultCategoryService( CategoryStore categoryStore, CategoryOptionStore categoryOptionStore,
         CategoryComboStore categoryComboStore, CategoryOptionComboStore categoryOptionComboStore,
         CategoryOptionGroupStore categoryOptionGroupStore, CategoryOptionGroupSetStore categoryOptionGroupSetStore,
-        IdentifiableObjectManager idObjectManager, CurrentUserService currentUserService, AclService aclService )
+        IdentifiableObjectManager idObjectManager, CurrentUserService currentUserService, AclService aclService,
+        MetadataIdentifierCache metadataIdentifierCache )
     {
 
         checkNotNull( categoryStore );
@@ -113,6 +118,7 @@ public class DefaultCategoryService
         checkNotNull( idObjectManager );
         checkNotNull( currentUserService );
         checkNotNull( aclService );
+        checkNotNull( metadataIdentifierCache );
 
         this.categoryStore = categoryStore;
         this.categoryOptionStore = categoryOptionStore;
@@ -123,6 +129,7 @@ public class DefaultCategoryService
         this.idObjectManager = idObjectManager;
         this.currentUserService = currentUserService;
         this.aclService = aclService;
+        this.metadataIdentifierCache = metadataIdentifierCache;
     }
 
     // -------------------------------------------------------------------------
@@ -651,7 +658,7 @@ public class DefaultCategoryService
     @Transactional(readOnly = true)
     public CategoryOptionCombo getCategoryOptionComboAcl( IdentifiableProperty property, String id )
     {
-        CategoryOptionCombo coc = idObjectManager.getObject( CategoryOptionCombo.class, property, id );
+        CategoryOptionCombo coc = metadataIdentifierCache.getObject( CategoryOptionCombo.class, IdScheme.from( property ), id );
 
         if ( coc != null )
         {
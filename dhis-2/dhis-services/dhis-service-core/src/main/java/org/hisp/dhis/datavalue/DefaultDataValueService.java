@@ -334,6 +334,13 @@ public class DefaultDataValueService
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<DataValue> getDataValues( Collection<DataValue> dataValues )
+    {
+        return dataValueStore.getDataValues( dataValues );
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<DataValue> getAllDataValues()
@@ -43,6 +43,7 @@ import javax.persistence.criteria.Root;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.Query;
 import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.commons.util.SqlHelper;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementOperand;
@@ -327,6 +328,54 @@ public class HibernateDataValueStore extends HibernateGenericStore<DataValue>
         return getList( query );
     }
 
+    @Override
+    public List<DataValue> getDataValues( Collection<DataValue> dataValues )
+    {
+        if ( dataValues == null || dataValues.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+
+        Map<String, DataValue> keyMap = new HashMap<>();
+
+        dataValues.forEach( dv -> keyMap.put( getKey( dv.getDataElement().getId(), dv.getPeriod().getId(),
+            dv.getSource().getId(), dv.getCategoryOptionCombo().getId(), dv.getAttributeOptionCombo().getId() ), dv ) );
+
+        // Selects a superset of the given keys, the exact keys are matched below
+
+        String sql =
+            "select dataelementid, periodid, sourceid, categoryoptioncomboid, attributeoptioncomboid, value, deleted " +
+            "from datavalue " +
+            "where dataelementid in (" + getIdString( dataValues, DataValue::getDataElement ) + ") " +
+            "and periodid in (" + getIdString( dataValues, DataValue::getPeriod ) + ") " +
+            "and sourceid in (" + getIdString( dataValues, DataValue::getSource ) + ") " +
+            "and categoryoptioncomboid in (" + getIdString( dataValues, DataValue::getCategoryOptionCombo ) + ") " +
+            "and attributeoptioncomboid in (" + getIdString( dataValues, DataValue::getAttributeOptionCombo ) + ")";
+
+        List<DataValue> storedValues = new ArrayList<>();
+
+        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+
+        while ( rowSet.next() )
+        {
+            DataValue dv = keyMap.get( getKey( rowSet.getLong( "dataelementid" ), rowSet.getLong( "periodid" ),
+                rowSet.getLong( "sourceid" ), rowSet.getLong( "categoryoptioncomboid" ),
+                rowSet.getLong( "attributeoptioncomboid" ) ) );
+
+            if ( dv != null )
+            {
+                DataValue storedValue = new DataValue( dv.getDataElement(), dv.getPeriod(), dv.getSource(),
+                    dv.getCategoryOptionCombo(), dv.getAttributeOptionCombo(), rowSet.getString( "value" ) );
+
+                storedValue.setDeleted( rowSet.getBoolean( "deleted" ) );
+
+                storedValues.add( storedValue );
+            }
+        }
+
+        return storedValues;
+    }
+
     @Override
     public List<DeflatedDataValue> getDeflatedDataValues( DataExportParams params )
     {
@@ -547,4 +596,19 @@ public class HibernateDataValueStore extends HibernateGenericStore<DataValue>
             .filter( deo -> deo.getCategoryOptionCombo() == null || !wildDataElementIds.contains( deo.getDataElement().getId() ) )
             .collect( Collectors.toList() );
     }
+
+    private String getIdString( Collection<DataValue> dataValues,
+        Function<DataValue, ? extends IdentifiableObject> property )
+    {
+        return getCommaDelimitedString( dataValues.stream()
+            .map( dv -> property.apply( dv ).getId() )
+            .collect( Collectors.toSet() ) );
+    }
+
+    private String getKey( long dataElementId, long periodId, long sourceId, long categoryOptionComboId,
+        long attributeOptionComboId )
+    {
+        return dataElementId + "-" + periodId + "-" + sourceId + "-" + categoryOptionComboId + "-" +
+            attributeOptionComboId;
+    }
 }
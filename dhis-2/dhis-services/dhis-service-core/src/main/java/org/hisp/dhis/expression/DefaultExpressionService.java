@@ -30,9 +30,14 @@ package org.hisp.dhis.expression;
 
 import com.google.common.collect.ImmutableMap;
 import lombok.extern.slf4j.Slf4j;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.hisp.dhis.analytics.DataType;
-import org.hisp.dhis.antlr.Parser;
+import org.hisp.dhis.antlr.AntlrErrorListener;
 import org.hisp.dhis.antlr.ParserException;
+import org.hisp.dhis.cache.Cache;
+import org.hisp.dhis.cache.CacheProvider;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.common.DimensionService;
 import org.hisp.dhis.common.DimensionalItemId;
@@ -59,6 +64,8 @@ import org.hisp.dhis.organisationunit.OrganisationUnitGroupService;
 import org.hisp.dhis.parser.expression.CommonExpressionVisitor;
 import org.hisp.dhis.parser.expression.ExpressionItem;
 import org.hisp.dhis.parser.expression.ExpressionItemMethod;
+import org.hisp.dhis.parser.expression.antlr.ExpressionLexer;
+import org.hisp.dhis.parser.expression.antlr.ExpressionParser;
 import org.hisp.dhis.parser.expression.function.VectorAvg;
 import org.hisp.dhis.parser.expression.function.VectorCount;
 import org.hisp.dhis.parser.expression.function.VectorMax;
@@ -82,6 +89,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -139,6 +147,13 @@ public class DefaultExpressionService
 
     private final DimensionService dimensionService;
 
+    /**
+     * Parse trees by expression text. The grammar is the same for all parse
+     * types, so the tree does not depend on the parse type, and trees are
+     * never modified when visited, so they can be shared between threads.
+     */
+    private final Cache<ParseTree> parseTreeCache;
+
     // -------------------------------------------------------------------------
     // Static data
     // -------------------------------------------------------------------------
@@ -189,7 +204,8 @@ public class DefaultExpressionService
     public DefaultExpressionService(
         @Qualifier( "org.hisp.dhis.expression.ExpressionStore" ) HibernateGenericStore<Expression> expressionStore,
         DataElementService dataElementService, ConstantService constantService, CategoryService categoryService,
-        OrganisationUnitGroupService organisationUnitGroupService, DimensionService dimensionService )
+        OrganisationUnitGroupService organisationUnitGroupService, DimensionService dimensionService,
+        CacheProvider cacheProvider )
     {
         checkNotNull( expressionStore );
         checkNotNull( dataElementService );
@@ -197,6 +213,7 @@ public class DefaultExpressionService
         checkNotNull( categoryService );
         checkNotNull( organisationUnitGroupService );
         checkNotNull( dimensionService );
+        checkNotNull( cacheProvider );
 
         this.expressionStore = expressionStore;
         this.dataElementService = dataElementService;
@@ -204,6 +221,14 @@ public class DefaultExpressionService
         this.categoryService = categoryService;
         this.organisationUnitGroupService = organisationUnitGroupService;
         this.dimensionService = dimensionService;
+
+        this.parseTreeCache = cacheProvider.newCacheBuilder( ParseTree.class )
+            .forRegion( "expressionParseTree" )
+            .expireAfterAccess( 6, TimeUnit.HOURS )
+            .withInitialCapacity( 1000 )
+            .forceInMemory()
+            .withMaximumSize( 50000 )
+            .build();
     }
 
     // -------------------------------------------------------------------------
@@ -638,7 +663,7 @@ public class DefaultExpressionService
     {
         try
         {
-            Object result = Parser.visit( expression, visitor );
+            Object result = visitor.visit( getParseTree( expression ) );
 
             switch( dataType )
             {
@@ -669,6 +694,40 @@ public class DefaultExpressionService
         return DOUBLE_VALUE_IF_NULL;
     }
 
+    /**
+     * Gets the parse tree of an expression, parsing the expression only if
+     * it is not already cached. Expressions which fail to parse are not
+     * cached, and the ParserException is thrown to the caller.
+     *
+     * @param expression the expression to parse.
+     * @return the parse tree.
+     */
+    private ParseTree getParseTree( String expression )
+    {
+        return parseTreeCache.get( expression, this::parse ).get();
+    }
+
+    /**
+     * Parses an expression into an ANTLR parse tree.
+     *
+     * @param expression the expression to parse.
+     * @return the parse tree.
+     */
+    private ParseTree parse( String expression )
+    {
+        AntlrErrorListener errorListener = new AntlrErrorListener();
+
+        ExpressionLexer lexer = new ExpressionLexer( CharStreams.fromString( expression ) );
+        lexer.removeErrorListeners();
+        lexer.addErrorListener( errorListener );
+
+        ExpressionParser parser = new ExpressionParser( new CommonTokenStream( lexer ) );
+        parser.removeErrorListeners();
+        parser.addErrorListener( errorListener );
+
+        return parser.expression();
+    }
+
     /**
      * Regenerates an expression from the parse tree, with values
      * substituted for constants and orgUnitCounts.
@@ -41,6 +41,7 @@ import javax.annotation.PostConstruct;
 import org.apache.commons.lang3.ObjectUtils;
 import org.hisp.dhis.cache.Cache;
 import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.common.MetadataWatermark;
 import org.hisp.dhis.common.SortProperty;
 import org.hisp.dhis.commons.collection.ListUtils;
 import org.hisp.dhis.commons.filter.FilterUtils;
@@ -58,6 +59,7 @@ import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.user.UserSettingKey;
 import org.hisp.dhis.user.UserSettingService;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -98,10 +100,13 @@ public class DefaultOrganisationUnitService
 
     private final CacheProvider cacheProvider;
 
+    private final MetadataWatermark metadataWatermark;
+
     public DefaultOrganisationUnitService( Environment env, OrganisationUnitStore organisationUnitStore,
         DataSetService dataSetService, OrganisationUnitLevelStore organisationUnitLevelStore,
         CurrentUserService currentUserService, ConfigurationService configurationService,
-        UserSettingService userSettingService, CacheProvider cacheProvider )
+        UserSettingService userSettingService, CacheProvider cacheProvider,
+        @Lazy MetadataWatermark metadataWatermark )
     {
         checkNotNull( env );
         checkNotNull( organisationUnitStore );
@@ -110,6 +115,7 @@ public class DefaultOrganisationUnitService
         checkNotNull( currentUserService );
         checkNotNull( configurationService );
         checkNotNull( userSettingService );
+        checkNotNull( metadataWatermark );
 
         this.env = env;
         this.organisationUnitStore = organisationUnitStore;
@@ -119,6 +125,7 @@ public class DefaultOrganisationUnitService
         this.configurationService = configurationService;
         this.userSettingService = userSettingService;
         this.cacheProvider = cacheProvider;
+        this.metadataWatermark = metadataWatermark;
     }
 
     /**
@@ -546,6 +553,10 @@ public class DefaultOrganisationUnitService
     public void updateOrganisationUnitParent( long organisationUnitId, long parentId )
     {
         organisationUnitStore.updateOrganisationUnitParent( organisationUnitId, parentId );
+
+        // Bypasses Hibernate, so the watermark listener does not see it
+
+        metadataWatermark.metadataChanged();
     }
 
     // -------------------------------------------------------------------------
@@ -625,6 +636,10 @@ public class DefaultOrganisationUnitService
     public void deleteOrganisationUnitLevels()
     {
         organisationUnitLevelStore.deleteAll();
+
+        // Bulk HQL delete, so the watermark listener does not see it
+
+        metadataWatermark.metadataChanged();
     }
 
     @Override
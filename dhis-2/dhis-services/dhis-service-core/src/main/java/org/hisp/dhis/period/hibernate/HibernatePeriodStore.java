@@ -112,6 +112,8 @@ public class HibernatePeriodStore
         period.setPeriodType( reloadPeriodType( period.getPeriodType() ) );
 
         save( period );
+
+        PERIOD_ID_CACHE.put( period.getCacheKey(), period.getId() );
     }
 
     @Override
@@ -216,6 +218,11 @@ public class HibernatePeriodStore
 
         Period storedPeriod = id != null ? getSession().get( Period.class, id ) : null;
 
+        if ( id != null && storedPeriod == null )
+        {
+            PERIOD_ID_CACHE.invalidate( period.getCacheKey() );
+        }
+
         return storedPeriod != null ? storedPeriod.copyTransientProperties( period ) : null;
     }
 
@@ -28,9 +28,17 @@ package org.hisp.dhis.preheat;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hibernate.LockOptions;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hisp.dhis.attribute.Attribute;
 import org.hisp.dhis.attribute.AttributeService;
 import org.hisp.dhis.category.CategoryDimension;
@@ -42,11 +50,15 @@ import org.hisp.dhis.common.DataDimensionItem;
 import org.hisp.dhis.common.EmbeddedObject;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.UserContext;
 import org.hisp.dhis.commons.collection.CollectionUtils;
 import org.hisp.dhis.commons.timer.SystemTimer;
 import org.hisp.dhis.commons.timer.Timer;
+import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.dataelement.DataElementOperand;
 import org.hisp.dhis.dataset.DataSetElement;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.period.Period;
 import org.hisp.dhis.period.PeriodService;
 import org.hisp.dhis.period.PeriodStore;
@@ -65,13 +77,19 @@ import org.hisp.dhis.trackedentity.TrackedEntityDataElementDimension;
 import org.hisp.dhis.trackedentity.TrackedEntityProgramIndicatorDimension;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
+import org.hisp.dhis.user.UserAuthorityGroup;
 import org.hisp.dhis.user.UserCredentials;
 import org.hisp.dhis.user.UserGroup;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -79,6 +97,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -110,10 +132,17 @@ public class DefaultPreheatService implements PreheatService
 
     private final SchemaToDataFetcher schemaToDataFetcher;
 
+    private final SessionFactory sessionFactory;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final int concurrency;
+
     public DefaultPreheatService( SchemaService schemaService, QueryService queryService,
         IdentifiableObjectManager manager, CurrentUserService currentUserService, PeriodStore periodStore,
         PeriodService periodService, AttributeService attributeService, MergeService mergeService,
-        SchemaToDataFetcher schemaToDataFetcher )
+        SchemaToDataFetcher schemaToDataFetcher, SessionFactory sessionFactory,
+        TransactionTemplate transactionTemplate, DhisConfigurationProvider config )
     {
         checkNotNull( schemaService );
         checkNotNull( queryService );
@@ -123,6 +152,9 @@ public class DefaultPreheatService implements PreheatService
         checkNotNull( periodService );
         checkNotNull( attributeService );
         checkNotNull( mergeService );
+        checkNotNull( sessionFactory );
+        checkNotNull( transactionTemplate );
+        checkNotNull( config );
 
         this.schemaService = schemaService;
         this.queryService = queryService;
@@ -133,6 +165,14 @@ public class DefaultPreheatService implements PreheatService
         this.attributeService = attributeService;
         this.mergeService = mergeService;
         this.schemaToDataFetcher = schemaToDataFetcher;
+        this.sessionFactory = sessionFactory;
+
+        this.readOnlyTransactionTemplate = new TransactionTemplate( transactionTemplate.getTransactionManager() );
+        this.readOnlyTransactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
+        this.readOnlyTransactionTemplate.setReadOnly( true );
+
+        int configured = NumberUtils.toInt( config.getProperty( ConfigurationKey.METADATA_PREHEAT_CONCURRENCY ), 1 );
+        this.concurrency = configured > 0 ? configured : SystemUtils.getCpuCores();
     }
 
     @Override
@@ -193,46 +233,32 @@ public class DefaultPreheatService implements PreheatService
             Map<Class<? extends IdentifiableObject>, Set<String>> uidMap = references.get( PreheatIdentifier.UID );
             Map<Class<? extends IdentifiableObject>, Set<String>> codeMap = references.get( PreheatIdentifier.CODE );
 
+            List<ReferenceFetch> fetches = new ArrayList<>();
+
             if ( uidMap != null && (PreheatIdentifier.UID == params.getPreheatIdentifier() || PreheatIdentifier.AUTO == params.getPreheatIdentifier()) )
             {
-                for ( Class<? extends IdentifiableObject> klass : uidMap.keySet() )
-                {
-                    List<List<String>> identifiers = Lists.partition( Lists.newArrayList( uidMap.get( klass ) ), 20000 );
-
-                    if ( !identifiers.isEmpty() )
-                    {
-                        for ( List<String> ids : identifiers )
-                        {
-                            Query query = Query.from( schemaService.getDynamicSchema( klass ) );
-                            query.setUser( preheat.getUser() );
-                            query.add( Restrictions.in( "id", ids ) );
-                            List<? extends IdentifiableObject> objects = queryService.query( query );
-                            preheat.put( PreheatIdentifier.UID, objects );
-                        }
-                    }
-                }
+                uidMap.forEach( ( klass, ids ) -> fetches.add( new ReferenceFetch( PreheatIdentifier.UID, "id", klass, ids ) ) );
             }
 
             if ( codeMap != null && (PreheatIdentifier.CODE == params.getPreheatIdentifier() || PreheatIdentifier.AUTO == params.getPreheatIdentifier()) )
             {
-                for ( Class<? extends IdentifiableObject> klass : codeMap.keySet() )
-                {
-                    List<List<String>> identifiers = Lists.partition( Lists.newArrayList( codeMap.get( klass ) ), 20000 );
+                codeMap.forEach( ( klass, ids ) -> fetches.add( new ReferenceFetch( PreheatIdentifier.CODE, "code", klass, ids ) ) );
+            }
 
-                    if ( !identifiers.isEmpty() )
-                    {
-                        for ( List<String> ids : identifiers )
-                        {
-                            Query query = Query.from( schemaService.getDynamicSchema( klass ) );
-                            query.setUser( preheat.getUser() );
-                            query.add( Restrictions.in( "code", ids ) );
-                            List<? extends IdentifiableObject> objects = queryService.query( query );
-                            preheat.put( PreheatIdentifier.CODE, objects );
-                        }
-                    }
-                }
+            Timer fetchTimer = new SystemTimer().start();
+
+            if ( concurrency > 1 && fetches.size() > 1 )
+            {
+                fetchReferencesInParallel( preheat, fetches );
+            }
+            else
+            {
+                fetches.forEach( fetch -> preheat.put( fetch.identifier, fetchReferences( preheat.getUser(), fetch ) ) );
             }
 
+            log.info( "(" + preheat.getUsername() + ") Import:Preheat fetched references of " + fetches.size() +
+                " types in " + fetchTimer.toString() );
+
             for ( Class<? extends IdentifiableObject> klass : klasses )
             {
                 List<? extends IdentifiableObject> objects = schemaToDataFetcher
@@ -291,7 +317,8 @@ public class DefaultPreheatService implements PreheatService
         handleAttributes( params.getObjects(), preheat );
         handleSecurity( params.getObjects(), params.getPreheatIdentifier(), preheat );
 
-        periodStore.getAll().forEach( period -> preheat.getPeriodMap().put( period.getName(), period ) );
+        // Periods are resolved on demand when references are connected, see getPersistedObject
+
         periodStore.getAllPeriodTypes().forEach( periodType -> preheat.getPeriodTypeMap().put( periodType.getName(), periodType ) );
 
         log.info( "(" + preheat.getUsername() + ") Import:Preheat[" + params.getPreheatMode() + "] took " + timer.toString() );
@@ -299,6 +326,167 @@ public class DefaultPreheatService implements PreheatService
         return preheat;
     }
 
+    /**
+     * Fetches the persisted objects referenced by the given fetch, in chunks
+     * of 20000 identifiers, using the current session.
+     */
+    private List<IdentifiableObject> fetchReferences( User user, ReferenceFetch fetch )
+    {
+        List<IdentifiableObject> result = new ArrayList<>();
+
+        for ( List<String> ids : Lists.partition( Lists.newArrayList( fetch.identifiers ), 20000 ) )
+        {
+            Query query = Query.from( schemaService.getDynamicSchema( fetch.klass ) );
+            query.setUser( user );
+            query.add( Restrictions.in( fetch.property, ids ) );
+            result.addAll( queryService.query( query ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs the reference fetches concurrently, each type in its own read-only
+     * transaction. The workers query with an immutable snapshot of the preheat
+     * user, as the user and its lazy collections are attached to the import
+     * session, and run with the security and user context of the calling
+     * thread. The fetched objects are then attached to the import session
+     * without being loaded again, where an object already in the session, for
+     * instance fetched both by UID and by code, is taken from the session.
+     */
+    private void fetchReferencesInParallel( Preheat preheat, List<ReferenceFetch> fetches )
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( concurrency, fetches.size() ),
+            new ThreadFactoryBuilder().setNameFormat( "preheat-%d" ).setDaemon( true ).build() );
+
+        User user = getUserSnapshot( preheat.getUser() );
+        Map<String, Serializable> userSettings = UserContext.getUserSettings();
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        try
+        {
+            List<Future<List<IdentifiableObject>>> futures = new ArrayList<>();
+
+            for ( ReferenceFetch fetch : fetches )
+            {
+                futures.add( executor.submit( () -> {
+                    SecurityContextHolder.setContext( securityContext );
+                    UserContext.setUser( user );
+                    UserContext.setUserSettings( userSettings );
+
+                    try
+                    {
+                        return readOnlyTransactionTemplate.execute( status -> fetchReferences( user, fetch ) );
+                    }
+                    finally
+                    {
+                        UserContext.reset();
+                        SecurityContextHolder.clearContext();
+                    }
+                } ) );
+            }
+
+            SessionImplementor session = sessionFactory.getCurrentSession().unwrap( SessionImplementor.class );
+
+            for ( int i = 0; i < fetches.size(); i++ )
+            {
+                List<IdentifiableObject> objects = futures.get( i ).get().stream()
+                    .map( object -> attach( session, object ) )
+                    .collect( Collectors.toList() );
+
+                preheat.put( fetches.get( i ).identifier, objects );
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while preheating references", ex );
+        }
+        catch ( ExecutionException ex )
+        {
+            Throwables.throwIfUnchecked( ex.getCause() );
+            throw new IllegalStateException( ex.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Attaches an object fetched in another session to the given session,
+     * without loading it. Returns the instance already in the session if the
+     * session contains the object.
+     */
+    private IdentifiableObject attach( SessionImplementor session, IdentifiableObject object )
+    {
+        EntityPersister persister = session.getEntityPersister( null, object );
+        Object attached = session.getPersistenceContext()
+            .getEntity( session.generateEntityKey( object.getId(), persister ) );
+
+        if ( attached != null )
+        {
+            return (IdentifiableObject) attached;
+        }
+
+        session.buildLockRequest( LockOptions.NONE ).lock( object );
+
+        return object;
+    }
+
+    /**
+     * Returns an immutable snapshot of the given user holding what the sharing
+     * restrictions of a query use, which is the user and credentials identity
+     * and the authorities.
+     */
+    private static User getUserSnapshot( User user )
+    {
+        if ( user == null || user.getUserCredentials() == null )
+        {
+            return user;
+        }
+
+        UserAuthorityGroup authorities = new UserAuthorityGroup();
+        authorities.setAuthorities( ImmutableSet.copyOf( user.getUserCredentials().getAllAuthorities() ) );
+
+        UserCredentials credentials = new UserCredentials();
+        credentials.setId( user.getUserCredentials().getId() );
+        credentials.setUid( user.getUserCredentials().getUid() );
+        credentials.setUsername( user.getUserCredentials().getUsername() );
+        credentials.setUserAuthorityGroups( ImmutableSet.of( authorities ) );
+
+        User snapshot = new User();
+        snapshot.setId( user.getId() );
+        snapshot.setUid( user.getUid() );
+        snapshot.setCode( user.getCode() );
+        snapshot.setUserCredentials( credentials );
+
+        return snapshot;
+    }
+
+    /**
+     * Set of identifiers of a single type to fetch by the given identifier property.
+     */
+    private static final class ReferenceFetch
+    {
+        private final PreheatIdentifier identifier;
+
+        private final String property;
+
+        private final Class<? extends IdentifiableObject> klass;
+
+        private final Set<String> identifiers;
+
+        ReferenceFetch( PreheatIdentifier identifier, String property, Class<? extends IdentifiableObject> klass,
+            Set<String> identifiers )
+        {
+            this.identifier = identifier;
+            this.property = property;
+            this.klass = klass;
+            this.identifiers = identifiers;
+        }
+    }
+
     private void handleSecurity( Map<Class<? extends IdentifiableObject>, List<IdentifiableObject>> objects, PreheatIdentifier identifier, Preheat preheat )
     {
         objects.forEach( ( klass, list ) -> list.forEach( object ->
@@ -35,17 +35,21 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
 import org.hisp.dhis.common.IdentifiableObject;
+import org.hisp.dhis.common.UserContext;
 import org.hisp.dhis.hibernate.InternalHibernateGenericStore;
 import org.hisp.dhis.query.planner.QueryPlan;
 import org.hisp.dhis.query.planner.QueryPlanner;
+import org.hisp.dhis.query.planner.TranslatedQueryPath;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.UserSettingKey;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -117,7 +121,7 @@ public class CriteriaQueryEngine<T extends IdentifiableObject>
 
         for ( Order order : query.getOrders() )
         {
-            criteria.addOrder( getHibernateOrder( order ) );
+            criteria.addOrder( getHibernateOrder( schema, order ) );
         }
 
         return criteria.add( Subqueries.propertyIn( "id", detachedCriteria ) ).list();
@@ -271,9 +275,29 @@ public class CriteriaQueryEngine<T extends IdentifiableObject>
             return null;
         }
 
+        if ( restriction.getQueryPath() instanceof TranslatedQueryPath &&
+            ((TranslatedQueryPath) restriction.getQueryPath()).isTranslated() )
+        {
+            return TranslatedCriterion.from( (TranslatedQueryPath) restriction.getQueryPath(), restriction.getOperator() );
+        }
+
         return restriction.getOperator().getHibernateCriterion( restriction.getQueryPath() );
     }
 
+    private org.hibernate.criterion.Order getHibernateOrder( Schema schema, Order order )
+    {
+        if ( order != null && order.getProperty() != null && !order.getProperty().isPersisted() &&
+            TranslatedQueryPath.isTranslatable( schema, order.getProperty().getName() ) )
+        {
+            Locale locale = UserContext.getUserSetting( UserSettingKey.DB_LOCALE, Locale.class );
+            TranslatedQueryPath queryPath = TranslatedQueryPath.from( schema, order.getProperty().getName(), locale );
+
+            return new TranslatedOrder( queryPath, order.isAscending(), order.isIgnoreCase() );
+        }
+
+        return getHibernateOrder( order );
+    }
+
     public org.hibernate.criterion.Order getHibernateOrder( Order order )
     {
         if ( order == null || order.getProperty() == null || !order.getProperty().isPersisted() || !order.getProperty().isSimple() )
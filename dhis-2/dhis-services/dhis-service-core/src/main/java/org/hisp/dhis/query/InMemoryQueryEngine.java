@@ -29,9 +29,12 @@ package org.hisp.dhis.query;
  */
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.hisp.dhis.common.BaseIdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.PagerUtils;
+import org.hisp.dhis.common.UserContext;
+import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.hibernate.HibernateUtils;
 import org.hisp.dhis.schema.Property;
 import org.hisp.dhis.schema.Schema;
@@ -39,12 +42,30 @@ import org.hisp.dhis.schema.SchemaService;
 import org.hisp.dhis.security.acl.AclService;
 import org.hisp.dhis.system.util.ReflectionUtils;
 import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.io.Serializable;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -56,9 +77,21 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class InMemoryQueryEngine<T extends IdentifiableObject>
     implements QueryEngine<T>
 {
+    /**
+     * Minimum number of candidate objects before filtering is split across
+     * threads.
+     */
+    private static final int PARALLEL_THRESHOLD = 10000;
+
+    /**
+     * Compiled getters, shared across queries.
+     */
+    private static final Map<Method, Function<Object, Object>> GETTERS = new ConcurrentHashMap<>();
+
     private final SchemaService schemaService;
     private final AclService aclService;
     private final CurrentUserService currentUserService;
+    private final ExecutorService executor;
 
     @Autowired
     public InMemoryQueryEngine( SchemaService schemaService, AclService aclService, CurrentUserService currentUserService )
@@ -70,6 +103,20 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
         this.schemaService = schemaService;
         this.aclService = aclService;
         this.currentUserService = currentUserService;
+
+        int threads = SystemUtils.getCpuCores();
+
+        this.executor = threads > 1 ? Executors.newFixedThreadPool( threads, new ThreadFactoryBuilder()
+            .setNameFormat( "in-memory-query-%d" ).setDaemon( true ).build() ) : null;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( executor != null )
+        {
+            executor.shutdownNow();
+        }
     }
 
     @Override
@@ -112,12 +159,85 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
     @SuppressWarnings( "unchecked" )
     private List<T> runQuery( Query query )
     {
-        return query.getObjects().stream()
-            .filter( object -> test( query, (T) object ) )
-            .map( object -> (T) object )
+        List<T> objects = (List<T>) query.getObjects();
+
+        if ( objects.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+
+        QueryPlan plan = compile( query );
+
+        if ( executor != null && plan.parallel && objects.size() >= PARALLEL_THRESHOLD )
+        {
+            return runQueryInParallel( plan, objects );
+        }
+
+        return objects.stream()
+            .filter( object -> test( plan, object ) )
             .collect( Collectors.toList() );
     }
 
+    /**
+     * Filters the objects in chunks on the executor, keeping the original order.
+     * The user context of the calling thread is carried over to the workers as
+     * properties like displayName depend on it.
+     */
+    private List<T> runQueryInParallel( QueryPlan plan, List<T> objects )
+    {
+        User user = UserContext.getUser();
+        Map<String, Serializable> userSettings = UserContext.getUserSettings();
+
+        int chunkSize = (objects.size() + SystemUtils.getCpuCores() - 1) / SystemUtils.getCpuCores();
+        List<Future<List<T>>> futures = new ArrayList<>();
+
+        for ( List<T> chunk : Lists.partition( objects, chunkSize ) )
+        {
+            futures.add( executor.submit( () ->
+            {
+                UserContext.setUser( user );
+                UserContext.setUserSettings( userSettings );
+
+                try
+                {
+                    return chunk.stream()
+                        .filter( object -> test( plan, object ) )
+                        .collect( Collectors.toList() );
+                }
+                finally
+                {
+                    UserContext.reset();
+                }
+            } ) );
+        }
+
+        List<T> result = new ArrayList<>();
+
+        try
+        {
+            for ( Future<List<T>> future : futures )
+            {
+                result.addAll( future.get() );
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            throw new QueryException( "Interrupted while running in-memory query" );
+        }
+        catch ( ExecutionException ex )
+        {
+            if ( ex.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new QueryException( ex.getCause().getMessage() );
+        }
+
+        return result;
+    }
+
     private List<T> runSorter( Query query, List<T> objects )
     {
         List<T> sorted = new ArrayList<>( objects );
@@ -136,8 +256,15 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
         return sorted;
     }
 
-    private boolean test( Query query, T object )
+    private boolean test( QueryPlan plan, T object )
     {
+        Query query = plan.query;
+
+        if ( plan.rootAccess )
+        {
+            ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( object, query.getUser() ) );
+        }
+
         List<Boolean> testResults = new ArrayList<>();
 
         for ( Criterion criterion : query.getCriterions() )
@@ -148,17 +275,17 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
             if ( Restriction.class.isInstance( criterion ) )
             {
                 Restriction restriction = (Restriction) criterion;
-                testResult = testAnd( query, object, Lists.newArrayList( restriction ) );
+                testResult = testAnd( plan, object, Lists.newArrayList( restriction ) );
             }
             else if ( Conjunction.class.isInstance( criterion ) )
             {
                 Conjunction conjunction = (Conjunction) criterion;
-                testResult = testAnd( query, object, conjunction.getCriterions() );
+                testResult = testAnd( plan, object, conjunction.getCriterions() );
             }
             else if ( Disjunction.class.isInstance( criterion ) )
             {
                 Disjunction disjunction = (Disjunction) criterion;
-                testResult = testOr( query, object, disjunction.getCriterions() );
+                testResult = testOr( plan, object, disjunction.getCriterions() );
             }
 
             testResults.add( testResult );
@@ -172,14 +299,14 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
         return !testResults.contains( Boolean.FALSE );
     }
 
-    private boolean testAnd( Query query, T object, List<Criterion> criterions )
+    private boolean testAnd( QueryPlan plan, T object, List<Criterion> criterions )
     {
         for ( Criterion criterion : criterions )
         {
             if ( Restriction.class.isInstance( criterion ) )
             {
                 Restriction restriction = (Restriction) criterion;
-                Object value = getValue( query, object, restriction.getPath() );
+                Object value = getValue( plan, object, restriction.getPath() );
 
                 if ( !Collection.class.isInstance( value ) )
                 {
@@ -208,14 +335,14 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
         return true;
     }
 
-    private boolean testOr( Query query, T object, List<Criterion> criterions )
+    private boolean testOr( QueryPlan plan, T object, List<Criterion> criterions )
     {
         for ( Criterion criterion : criterions )
         {
             if ( Restriction.class.isInstance( criterion ) )
             {
                 Restriction restriction = (Restriction) criterion;
-                Object value = getValue( query, object, restriction.getPath() );
+                Object value = getValue( plan, object, restriction.getPath() );
 
                 if ( !Collection.class.isInstance( value ) )
                 {
@@ -243,52 +370,32 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
     }
 
     @SuppressWarnings( "unchecked" )
-    private Object getValue( Query query, Object object, String path )
+    private Object getValue( QueryPlan plan, Object object, String path )
     {
-        String[] paths = path.split( "\\." );
-        Schema currentSchema = query.getSchema();
+        PropertyPath propertyPath = plan.paths.get( path );
 
-        if ( path.contains( "access" ) && query.getSchema().isIdentifiableObject() )
+        for ( int i = 0; i < propertyPath.properties.size(); i++ )
         {
-            ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( (T) object, query.getUser() ) );
-        }
-
-        for ( int i = 0; i < paths.length; i++ )
-        {
-            Property property = currentSchema.getProperty( paths[i] );
-
-            if ( property == null )
-            {
-                throw new QueryException( "No property found for path " + path );
-            }
-
-            if ( property.isCollection() )
-            {
-                currentSchema = schemaService.getDynamicSchema( property.getItemKlass() );
-            }
-            else
-            {
-                currentSchema = schemaService.getDynamicSchema( property.getKlass() );
-            }
+            Property property = propertyPath.properties.get( i );
 
             object = collect( object, property );
 
-            if ( path.contains( "access" ) && property.isIdentifiableObject() )
+            if ( propertyPath.access && property.isIdentifiableObject() )
             {
                 if ( property.isCollection() )
                 {
                     for ( Object item : ((Collection<?>) object) )
                     {
-                        ((BaseIdentifiableObject) item).setAccess( aclService.getAccess( (T) item, query.getUser() ) );
+                        ((BaseIdentifiableObject) item).setAccess( aclService.getAccess( (T) item, plan.query.getUser() ) );
                     }
                 }
                 else
                 {
-                    ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( (T) object, query.getUser() ) );
+                    ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( (T) object, plan.query.getUser() ) );
                 }
             }
 
-            if ( i == (paths.length - 1) )
+            if ( i == (propertyPath.properties.size() - 1) )
             {
                 if ( property.isCollection() )
                 {
@@ -297,7 +404,6 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
 
                 return object;
             }
-
         }
 
         throw new QueryException( "No values found for path " + path );
@@ -330,6 +436,144 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
             return items;
         }
 
-        return ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+        if ( object == null )
+        {
+            return null;
+        }
+
+        return GETTERS.computeIfAbsent( property.getGetterMethod(), InMemoryQueryEngine::compileGetter ).apply( object );
+    }
+
+    // ---------------------------------------------------------------------
+    // Query plan
+    // ---------------------------------------------------------------------
+
+    /**
+     * Resolves the property paths of all restrictions of the query up front,
+     * so that evaluating an object does not need to split paths or look up
+     * schemas.
+     */
+    private QueryPlan compile( Query query )
+    {
+        Map<String, PropertyPath> paths = new HashMap<>();
+        collectPaths( query, query.getCriterions(), paths );
+
+        query.getCriterions().stream()
+            .filter( Junction.class::isInstance )
+            .forEach( junction -> collectPaths( query, ((Junction) junction).getCriterions(), paths ) );
+
+        boolean rootAccess = query.getSchema().isIdentifiableObject() &&
+            paths.values().stream().anyMatch( path -> path.access );
+
+        // only plain properties of the candidate objects are safe to read from
+        // several threads, anything else may initialize lazy associations
+        boolean parallel = paths.values().stream().noneMatch( path -> path.access ) &&
+            paths.values().stream().allMatch( path -> path.properties.size() == 1 &&
+                !path.properties.get( 0 ).isCollection() && !path.properties.get( 0 ).isIdentifiableObject() );
+
+        return new QueryPlan( query, paths, rootAccess, parallel );
+    }
+
+    private void collectPaths( Query query, List<Criterion> criterions, Map<String, PropertyPath> paths )
+    {
+        for ( Criterion criterion : criterions )
+        {
+            if ( Restriction.class.isInstance( criterion ) )
+            {
+                String path = ((Restriction) criterion).getPath();
+                paths.computeIfAbsent( path, p -> resolvePath( query.getSchema(), p ) );
+            }
+        }
+    }
+
+    private PropertyPath resolvePath( Schema schema, String path )
+    {
+        String[] paths = path.split( "\\." );
+        Schema currentSchema = schema;
+        List<Property> properties = new ArrayList<>();
+
+        for ( String name : paths )
+        {
+            Property property = currentSchema.getProperty( name );
+
+            if ( property == null )
+            {
+                throw new QueryException( "No property found for path " + path );
+            }
+
+            if ( property.isCollection() )
+            {
+                currentSchema = schemaService.getDynamicSchema( property.getItemKlass() );
+            }
+            else
+            {
+                currentSchema = schemaService.getDynamicSchema( property.getKlass() );
+            }
+
+            properties.add( property );
+        }
+
+        return new PropertyPath( properties, path.contains( "access" ) );
+    }
+
+    /**
+     * Creates a getter function for the given method through
+     * {@link LambdaMetafactory}, falling back to reflection if the method can
+     * not be bound.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static Function<Object, Object> compileGetter( Method method )
+    {
+        if ( Modifier.isProtected( method.getModifiers() ) || Modifier.isPrivate( method.getModifiers() ) )
+        {
+            return object -> null;
+        }
+
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect( method );
+
+            CallSite site = LambdaMetafactory.metafactory( lookup, "apply", MethodType.methodType( Function.class ),
+                MethodType.methodType( Object.class, Object.class ), handle, handle.type().wrap() );
+
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        }
+        catch ( Throwable ex )
+        {
+            return object -> ReflectionUtils.invokeMethod( object, method );
+        }
+    }
+
+    private static final class QueryPlan
+    {
+        private final Query query;
+
+        private final Map<String, PropertyPath> paths;
+
+        private final boolean rootAccess;
+
+        private final boolean parallel;
+
+        QueryPlan( Query query, Map<String, PropertyPath> paths, boolean rootAccess, boolean parallel )
+        {
+            this.query = query;
+            this.paths = paths;
+            this.rootAccess = rootAccess;
+            this.parallel = parallel;
+        }
+    }
+
+    private static final class PropertyPath
+    {
+        private final List<Property> properties;
+
+        private final boolean access;
+
+        PropertyPath( List<Property> properties, boolean access )
+        {
+            this.properties = properties;
+            this.access = access;
+        }
     }
 }
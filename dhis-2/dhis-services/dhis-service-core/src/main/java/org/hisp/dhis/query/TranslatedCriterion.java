@@ -0,0 +1,146 @@
+package org.hisp.dhis.query;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.StringType;
+import org.hisp.dhis.query.operators.EqualOperator;
+import org.hisp.dhis.query.operators.LikeOperator;
+import org.hisp.dhis.query.operators.NotLikeOperator;
+import org.hisp.dhis.query.operators.Operator;
+import org.hisp.dhis.query.planner.TranslatedQueryPath;
+
+/**
+ * Criterion comparing the translated value of a {@link TranslatedQueryPath}
+ * with the argument of an equal or like operator.
+ */
+public class TranslatedCriterion implements Criterion
+{
+    private final TranslatedQueryPath queryPath;
+
+    private final String sqlOperator;
+
+    private final String value;
+
+    private final boolean ignoreCase;
+
+    private TranslatedCriterion( TranslatedQueryPath queryPath, String sqlOperator, String value, boolean ignoreCase )
+    {
+        this.queryPath = queryPath;
+        this.sqlOperator = sqlOperator;
+        this.value = value;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Checks whether the given operator can be applied to a translated value.
+     *
+     * @param operator the operator.
+     * @return true if a criterion can be created for the operator.
+     */
+    public static boolean isSupported( Operator operator )
+    {
+        if ( operator == null || operator.getArgs().size() != 1 || operator.getArgs().get( 0 ) == null )
+        {
+            return false;
+        }
+
+        return EqualOperator.class == operator.getClass() ||
+            (LikeOperator.class.isInstance( operator ) && !NotLikeOperator.class.isInstance( operator ));
+    }
+
+    /**
+     * Creates a criterion for the given query path and operator, which must be
+     * supported as checked by {@link #isSupported(Operator)}.
+     *
+     * @param queryPath the translated query path.
+     * @param operator the operator.
+     * @return a criterion.
+     */
+    public static TranslatedCriterion from( TranslatedQueryPath queryPath, Operator operator )
+    {
+        String arg = String.valueOf( operator.getArgs().get( 0 ) );
+
+        if ( LikeOperator.class.isInstance( operator ) )
+        {
+            LikeOperator likeOperator = (LikeOperator) operator;
+
+            return new TranslatedCriterion( queryPath, "like",
+                likeOperator.getMatchMode().toMatchString( escapeLike( arg ) ), !likeOperator.isCaseSensitive() );
+        }
+
+        return new TranslatedCriterion( queryPath, "=", arg, false );
+    }
+
+    /**
+     * Escapes the wildcard and escape characters of a like pattern, so that
+     * the argument is matched literally.
+     */
+    private static String escapeLike( String arg )
+    {
+        return arg.replace( "\\", "\\\\" ).replace( "%", "\\%" ).replace( "_", "\\_" );
+    }
+
+    @Override
+    public String toSqlString( Criteria criteria, CriteriaQuery criteriaQuery )
+        throws HibernateException
+    {
+        String expression = queryPath.getSqlExpression(
+            criteriaQuery.getColumnsUsingProjection( criteria, queryPath.getTranslationsPath() )[0],
+            criteriaQuery.getColumnsUsingProjection( criteria, queryPath.getPath() )[0] );
+
+        String sql = (ignoreCase ? "lower(" + expression + ")" : expression) + " " + sqlOperator + " ?";
+
+        return "like".equals( sqlOperator ) ? sql + " escape '\\'" : sql;
+    }
+
+    @Override
+    public TypedValue[] getTypedValues( Criteria criteria, CriteriaQuery criteriaQuery )
+        throws HibernateException
+    {
+        TypedValue typedValue = new TypedValue( StringType.INSTANCE, ignoreCase ? value.toLowerCase() : value );
+
+        if ( !queryPath.isTranslated() )
+        {
+            return new TypedValue[]{ typedValue };
+        }
+
+        return new TypedValue[]{ new TypedValue( StringType.INSTANCE, queryPath.getLocale() ), typedValue };
+    }
+
+    @Override
+    public String toString()
+    {
+        return queryPath.getTranslationProperty() + " " + sqlOperator + " " + value;
+    }
+}
@@ -0,0 +1,65 @@
+package org.hisp.dhis.query;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hisp.dhis.query.planner.TranslatedQueryPath;
+
+/**
+ * Order on the translated value of a {@link TranslatedQueryPath}.
+ */
+public class TranslatedOrder extends org.hibernate.criterion.Order
+{
+    private final TranslatedQueryPath queryPath;
+
+    private final boolean ascending;
+
+    private final boolean ignoreCase;
+
+    public TranslatedOrder( TranslatedQueryPath queryPath, boolean ascending, boolean ignoreCase )
+    {
+        super( queryPath.getPath(), ascending );
+        this.queryPath = queryPath;
+        this.ascending = ascending;
+        this.ignoreCase = ignoreCase;
+    }
+
+    @Override
+    public String toSqlString( Criteria criteria, CriteriaQuery criteriaQuery )
+        throws HibernateException
+    {
+        String expression = queryPath.getOrderSqlExpression(
+            criteriaQuery.getColumnsUsingProjection( criteria, queryPath.getTranslationsPath() )[0],
+            criteriaQuery.getColumnsUsingProjection( criteria, queryPath.getPath() )[0] );
+
+        return (ignoreCase ? "lower(" + expression + ")" : expression) + (ascending ? " asc" : " desc");
+    }
+}
@@ -34,11 +34,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hisp.dhis.common.UserContext;
 import org.hisp.dhis.query.Conjunction;
 import org.hisp.dhis.query.Criterion;
 import org.hisp.dhis.query.Disjunction;
@@ -46,9 +51,11 @@ import org.hisp.dhis.query.Junction;
 import org.hisp.dhis.query.Order;
 import org.hisp.dhis.query.Query;
 import org.hisp.dhis.query.Restriction;
+import org.hisp.dhis.query.TranslatedCriterion;
 import org.hisp.dhis.schema.Property;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
+import org.hisp.dhis.user.UserSettingKey;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -61,12 +68,29 @@ public class DefaultQueryPlanner implements QueryPlanner
 {
     private final SchemaService schemaService;
 
-    @Autowired
+    /**
+     * Whether display properties can be resolved from translations in the
+     * database, which requires PostgreSQL JSONB support.
+     */
+    private final boolean translationPushDown;
+
     public DefaultQueryPlanner( SchemaService schemaService )
     {
         checkNotNull( schemaService );
 
         this.schemaService = schemaService;
+        this.translationPushDown = false;
+    }
+
+    @Autowired
+    public DefaultQueryPlanner( SchemaService schemaService, SessionFactory sessionFactory )
+    {
+        checkNotNull( schemaService );
+        checkNotNull( sessionFactory );
+
+        this.schemaService = schemaService;
+        this.translationPushDown = sessionFactory.unwrap( SessionFactoryImplementor.class )
+            .getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
     }
 
     @Override
@@ -251,10 +275,16 @@ public class DefaultQueryPlanner implements QueryPlanner
                     pQuery.getCriterions().add( criterion );
                     iterator.remove();
                 }
+                else if ( isTranslatable( query.getSchema(), restriction ) )
+                {
+                    restriction.setQueryPath( TranslatedQueryPath.from( query.getSchema(), restriction.getPath(), getLocale() ) );
+                    pQuery.getCriterions().add( criterion );
+                    iterator.remove();
+                }
             }
         }
 
-        if ( query.ordersPersisted() )
+        if ( ordersPersisted( query ) )
         {
             pQuery.addOrders( query.getOrders() );
             query.clearOrders();
@@ -299,6 +329,12 @@ public class DefaultQueryPlanner implements QueryPlanner
                     criteriaJunction.getCriterions().add( criterion );
                     iterator.remove();
                 }
+                else if ( isTranslatable( query.getSchema(), restriction ) )
+                {
+                    restriction.setQueryPath( TranslatedQueryPath.from( query.getSchema(), restriction.getPath(), getLocale() ) );
+                    criteriaJunction.getCriterions().add( criterion );
+                    iterator.remove();
+                }
                 else if ( persistedOnly )
                 {
                     throw new RuntimeException( "Path " + restriction.getQueryPath().getPath() +
@@ -319,7 +355,7 @@ public class DefaultQueryPlanner implements QueryPlanner
     private boolean isFilterOnPersistedFieldOnly( Query query )
     {
         Set<String> persistedFields = query.getSchema().getPersistedProperties().keySet();
-        if ( nonPersistedFieldExistsInCriterions( persistedFields, query.getCriterions() ) )
+        if ( nonPersistedFieldExistsInCriterions( query.getSchema(), persistedFields, query.getCriterions() ) )
         {
             return false;
         }
@@ -327,36 +363,63 @@ public class DefaultQueryPlanner implements QueryPlanner
         for ( Order order : query.getOrders() )
         {
 
-            if ( !persistedFields.contains( order.getProperty().getName() ) )
+            if ( !persistedFields.contains( order.getProperty().getName() ) && !isTranslatable( query.getSchema(), order ) )
             {
                 return false;
             }
         }
         return true;
     }
+
+    /**
+     * Check if all the orders of the given query can be applied by the database,
+     * either on persisted properties or on translated display properties.
+     */
+    private boolean ordersPersisted( Query query )
+    {
+        return query.getOrders().stream()
+            .allMatch( order -> order.isPersisted() || isTranslatable( query.getSchema(), order ) );
+    }
+
+    private boolean isTranslatable( Schema schema, Restriction restriction )
+    {
+        return translationPushDown && TranslatedQueryPath.isTranslatable( schema, restriction.getPath() ) &&
+            TranslatedCriterion.isSupported( restriction.getOperator() );
+    }
+
+    private boolean isTranslatable( Schema schema, Order order )
+    {
+        return translationPushDown && TranslatedQueryPath.isTranslatable( schema, order.getProperty().getName() );
+    }
+
+    private Locale getLocale()
+    {
+        return UserContext.getUserSetting( UserSettingKey.DB_LOCALE, Locale.class );
+    }
     
     /**
      * Recursive function that checks if any of the criterions or subcriterions are associated with fields that are not persisted. 
      *
+     * @param schema The schema of the query
      * @param persistedFields The set of persistedFields in the schema
      * @param criterions List of criterions
      * @return true if there is any non persisted field in any of the criteria at any level. false otherwise.
      */
-    private boolean nonPersistedFieldExistsInCriterions( Set<String> persistedFields, List<Criterion> criterions )
+    private boolean nonPersistedFieldExistsInCriterions( Schema schema, Set<String> persistedFields, List<Criterion> criterions )
     {
         for ( Criterion criterion : criterions )
         {
             if ( criterion instanceof Restriction )
             {
                 Restriction restriction = (Restriction) criterion;
-                if ( !persistedFields.contains( restriction.getPath() ) )
+                if ( !persistedFields.contains( restriction.getPath() ) && !isTranslatable( schema, restriction ) )
                 {
                     return true;
                 }
             }
             else if ( criterion instanceof Junction )
             {
-                if ( nonPersistedFieldExistsInCriterions( persistedFields, ((Junction) criterion).getCriterions() ) )
+                if ( nonPersistedFieldExistsInCriterions( schema, persistedFields, ((Junction) criterion).getCriterions() ) )
                 {
                     return true;
                 }
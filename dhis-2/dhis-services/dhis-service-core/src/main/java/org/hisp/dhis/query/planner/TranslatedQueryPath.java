@@ -0,0 +1,176 @@
+package org.hisp.dhis.query.planner;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.ImmutableMap;
+import org.hisp.dhis.schema.Property;
+import org.hisp.dhis.schema.Schema;
+import org.hisp.dhis.translation.TranslationProperty;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Query path of a display property like displayName, which is resolved in
+ * the database from the translations of the object for the locale of the
+ * current user, falling back to the persisted property being translated.
+ * The path of the query path is the path of the fallback property, so
+ * without a locale it behaves like a plain persisted path.
+ */
+public class TranslatedQueryPath extends QueryPath
+{
+    private static final Map<String, TranslationProperty> DISPLAY_PROPERTIES = ImmutableMap.of(
+        "displayName", TranslationProperty.NAME,
+        "displayShortName", TranslationProperty.SHORT_NAME,
+        "displayDescription", TranslationProperty.DESCRIPTION );
+
+    private static final String TRANSLATIONS_PROPERTY = "translations";
+
+    /**
+     * Characters of a locale which can be inlined in an order by clause, where
+     * the locale cannot be bound as a query parameter.
+     */
+    private static final Pattern LOCALE_PATTERN = Pattern.compile( "[a-zA-Z0-9_#-]+" );
+
+    private final TranslationProperty translationProperty;
+
+    private final String locale;
+
+    public TranslatedQueryPath( Property property, TranslationProperty translationProperty, Locale locale )
+    {
+        super( property, true );
+        this.translationProperty = translationProperty;
+        this.locale = locale != null ? locale.toString() : null;
+    }
+
+    public TranslationProperty getTranslationProperty()
+    {
+        return translationProperty;
+    }
+
+    public String getLocale()
+    {
+        return locale;
+    }
+
+    public boolean isTranslated()
+    {
+        return locale != null;
+    }
+
+    /**
+     * Returns the SQL expression of the translated value. The locale is a
+     * positional parameter, which must be bound to {@link #getLocale()}.
+     *
+     * @param translationsColumn the qualified translations column.
+     * @param column the qualified column of the fallback property.
+     * @return a SQL expression.
+     */
+    public String getSqlExpression( String translationsColumn, String column )
+    {
+        return getSqlExpression( translationsColumn, column, "?" );
+    }
+
+    /**
+     * Returns the SQL expression of the translated value for an order by
+     * clause, which does not support query parameters. The locale is inlined
+     * if it only consists of locale characters, otherwise the fallback
+     * property is used.
+     *
+     * @param translationsColumn the qualified translations column.
+     * @param column the qualified column of the fallback property.
+     * @return a SQL expression without parameters.
+     */
+    public String getOrderSqlExpression( String translationsColumn, String column )
+    {
+        if ( !isTranslated() || !LOCALE_PATTERN.matcher( locale ).matches() )
+        {
+            return column;
+        }
+
+        return getSqlExpression( translationsColumn, column, "'" + locale + "'" );
+    }
+
+    private String getSqlExpression( String translationsColumn, String column, String localeExpression )
+    {
+        if ( !isTranslated() )
+        {
+            return column;
+        }
+
+        return "coalesce((select t.value ->> 'value' from jsonb_array_elements(" + translationsColumn + ") t" +
+            " where t.value ->> 'locale' = " + localeExpression +
+            " and t.value ->> 'property' = '" + translationProperty.name() + "'" +
+            " and t.value ->> 'value' <> '' limit 1), trim(" + column + "))";
+    }
+
+    public String getTranslationsPath()
+    {
+        return TRANSLATIONS_PROPERTY;
+    }
+
+    /**
+     * Checks whether the given path is a display property which can be
+     * resolved from the persisted translations of the given schema.
+     *
+     * @param schema the schema.
+     * @param path the property path.
+     * @return true if the path can be translated in the database.
+     */
+    public static boolean isTranslatable( Schema schema, String path )
+    {
+        TranslationProperty translationProperty = DISPLAY_PROPERTIES.get( path );
+
+        if ( translationProperty == null )
+        {
+            return false;
+        }
+
+        Map<String, Property> persisted = schema.getPersistedProperties();
+
+        return persisted.containsKey( TRANSLATIONS_PROPERTY ) && persisted.containsKey( translationProperty.getName() );
+    }
+
+    /**
+     * Creates a query path for the given display property.
+     *
+     * @param schema the schema.
+     * @param path the property path, must be translatable.
+     * @param locale the locale, or null to use the fallback property only.
+     * @return a query path.
+     */
+    public static TranslatedQueryPath from( Schema schema, String path, Locale locale )
+    {
+        TranslationProperty translationProperty = DISPLAY_PROPERTIES.get( path );
+        Property property = schema.getPersistedProperties().get( translationProperty.getName() );
+
+        return new TranslatedQueryPath( property, translationProperty, locale );
+    }
+}
@@ -0,0 +1,139 @@
+package org.hisp.dhis.common;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.DhisConvenienceTest.createDataElement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.cache.SimpleCacheBuilder;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.security.acl.AclService;
+import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.User;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.core.env.Environment;
+
+public class MetadataIdentifierCacheTest
+{
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    @Mock
+    private IdentifiableObjectManager idObjectManager;
+
+    @Mock
+    private CacheProvider cacheProvider;
+
+    @Mock
+    private AclService aclService;
+
+    @Mock
+    private CurrentUserService currentUserService;
+
+    @Mock
+    private Environment env;
+
+    private DefaultMetadataIdentifierCache metadataIdentifierCache;
+
+    private DataElement dataElement;
+
+    @Before
+    public void setUp()
+    {
+        when( cacheProvider.newCacheBuilder( Long.class ) ).thenAnswer( invocation -> new SimpleCacheBuilder<Long>() );
+        when( env.getActiveProfiles() ).thenReturn( new String[0] );
+
+        metadataIdentifierCache = new DefaultMetadataIdentifierCache( idObjectManager, cacheProvider, aclService,
+            currentUserService, env );
+        metadataIdentifierCache.init();
+
+        dataElement = createDataElement( 'A' );
+        dataElement.setId( 1L );
+
+        when( idObjectManager.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" ) ).thenReturn( dataElement );
+        when( idObjectManager.getNoAcl( DataElement.class, 1L ) ).thenReturn( dataElement );
+    }
+
+    @Test
+    public void testGetObjectResolvesIdentifierOnce()
+    {
+        assertEquals( dataElement, metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" ) );
+        assertEquals( dataElement, metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" ) );
+
+        verify( idObjectManager, times( 1 ) ).getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" );
+        verify( idObjectManager, times( 1 ) ).getNoAcl( DataElement.class, 1L );
+    }
+
+    @Test
+    public void testGetObjectWithStaleIdentifier()
+    {
+        metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" );
+
+        dataElement.setCode( "DataElementCodeB" );
+        when( idObjectManager.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" ) ).thenReturn( null );
+
+        assertNull( metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" ) );
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" );
+        metadataIdentifierCache.invalidate( DataElement.class );
+        metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" );
+
+        verify( idObjectManager, times( 2 ) ).getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" );
+    }
+
+    @Test
+    public void testGetObjectFromCacheWithoutReadAccess()
+    {
+        metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" );
+
+        User user = new User();
+        when( currentUserService.getCurrentUser() ).thenReturn( user );
+        when( aclService.isShareable( DataElement.class ) ).thenReturn( true );
+        when( aclService.canRead( user, dataElement ) ).thenReturn( false );
+
+        assertNull( metadataIdentifierCache.getObject( DataElement.class, IdScheme.CODE, "DataElementCodeA" ) );
+
+        verify( idObjectManager, never() ).get( DataElement.class, 1L );
+    }
+}
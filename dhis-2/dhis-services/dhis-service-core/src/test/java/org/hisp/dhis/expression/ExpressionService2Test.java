@@ -43,8 +43,12 @@ import static org.mockito.Mockito.when;
 import java.util.*;
 
 import com.google.common.collect.ImmutableMap;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.apache.commons.math3.util.Precision;
 import org.hamcrest.collection.IsIterableContainingInAnyOrder;
+import org.hisp.dhis.cache.Cache;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.cache.SimpleCacheBuilder;
 import org.hisp.dhis.category.*;
 import org.hisp.dhis.common.*;
 import org.hisp.dhis.constant.Constant;
@@ -92,12 +96,16 @@ public class ExpressionService2Test
     private OrganisationUnitGroupService organisationUnitGroupService;
     @Mock
     private DimensionService dimensionService;
+    @Mock
+    private CacheProvider cacheProvider;
 
     @Rule
     public MockitoRule mockitoRule = MockitoJUnit.rule();
 
     private DefaultExpressionService target;
 
+    private Cache<ParseTree> parseTreeCache;
+
     private CategoryOption categoryOptionA;
     private CategoryOption categoryOptionB;
     private CategoryOption categoryOptionC;
@@ -166,8 +174,18 @@ public class ExpressionService2Test
     @Before
     public void setUp()
     {
+        when( cacheProvider.newCacheBuilder( ParseTree.class ) ).thenAnswer( invocation -> new SimpleCacheBuilder<ParseTree>()
+        {
+            @Override
+            public Cache<ParseTree> build()
+            {
+                parseTreeCache = super.build();
+                return parseTreeCache;
+            }
+        } );
+
         target = new DefaultExpressionService( hibernateGenericStore, dataElementService, constantService,
-            categoryService, organisationUnitGroupService, dimensionService );
+            categoryService, organisationUnitGroupService, dimensionService, cacheProvider );
 
         rnd = new BeanRandomizer();
 
@@ -627,6 +645,33 @@ public class ExpressionService2Test
                 NEVER_SKIP ), DELTA );
     }
 
+    @Test
+    public void testGetExpressionValueReusesParsedExpression()
+    {
+        Map<DimensionalItemObject, Double> valueMapA = new HashMap<>();
+        valueMapA.put( new DataElementOperand( deA, coc ), 12d );
+        valueMapA.put( new DataElementOperand( deB, coc ), 34d );
+
+        Map<DimensionalItemObject, Double> valueMapB = new HashMap<>();
+        valueMapB.put( new DataElementOperand( deA, coc ), 5d );
+        valueMapB.put( new DataElementOperand( deB, coc ), 7d );
+
+        assertEquals( 46d, target
+            .getExpressionValue( expressionA, INDICATOR_EXPRESSION, valueMapA, constantMap(), null, null, NEVER_SKIP ),
+            DELTA );
+        assertEquals( 12d, target
+            .getExpressionValue( expressionA, INDICATOR_EXPRESSION, valueMapB, constantMap(), null, null, NEVER_SKIP ),
+            DELTA );
+        ParseTree parseTree = parseTreeCache.getIfPresent( expressionA ).get();
+
+        assertEquals( 12d, target
+            .getExpressionValue( expressionA, VALIDATION_RULE_EXPRESSION, valueMapB, constantMap(), null, null, NEVER_SKIP ),
+            DELTA );
+
+        assertSame( parseTree, parseTreeCache.getIfPresent( expressionA ).get() );
+        assertEquals( 1, parseTreeCache.getAll().size() );
+    }
+
     @Test
     public void testGetIndicatorValueObject()
     {
@@ -0,0 +1,181 @@
+package org.hisp.dhis.preheat;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.attribute.AttributeService;
+import org.hisp.dhis.common.IdentifiableObject;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementGroup;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.period.PeriodService;
+import org.hisp.dhis.period.PeriodStore;
+import org.hisp.dhis.query.QueryService;
+import org.hisp.dhis.schema.MergeService;
+import org.hisp.dhis.schema.SchemaService;
+import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.User;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Compares the reference preheat with concurrent fetches to the sequential
+ * one. Runs without a test transaction, so that the fetching threads see the
+ * saved objects.
+ */
+public class PreheatServiceParallelTest
+    extends IntegrationTestBase
+{
+    @Autowired
+    private PreheatService preheatService;
+
+    @Autowired
+    private SchemaService schemaService;
+
+    @Autowired
+    private QueryService queryService;
+
+    @Autowired
+    private IdentifiableObjectManager manager;
+
+    @Autowired
+    private CurrentUserService currentUserService;
+
+    @Autowired
+    private PeriodStore periodStore;
+
+    @Autowired
+    private PeriodService periodService;
+
+    @Autowired
+    private AttributeService attributeService;
+
+    @Autowired
+    private MergeService mergeService;
+
+    @Autowired
+    private SchemaToDataFetcher schemaToDataFetcher;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Test
+    public void testPreheatReferenceInParallel()
+    {
+        DataElement de1 = createDataElement( 'A' );
+        DataElement de2 = createDataElement( 'B' );
+        DataElement de3 = createDataElement( 'C' );
+
+        manager.save( de1 );
+        manager.save( de2 );
+        manager.save( de3 );
+
+        User user = createUser( 'A' );
+        manager.save( user );
+
+        DataElementGroup dataElementGroup = new DataElementGroup( "DataElementGroupA" );
+        dataElementGroup.setAutoFields();
+        dataElementGroup.addDataElement( de1 );
+        dataElementGroup.addDataElement( de2 );
+        dataElementGroup.addDataElement( de3 );
+        dataElementGroup.setUser( user );
+
+        DhisConfigurationProvider config = mock( DhisConfigurationProvider.class );
+        when( config.getProperty( ConfigurationKey.METADATA_PREHEAT_CONCURRENCY ) ).thenReturn( "4" );
+
+        PreheatService parallelPreheatService = new DefaultPreheatService( schemaService, queryService, manager,
+            currentUserService, periodStore, periodService, attributeService, mergeService, schemaToDataFetcher,
+            sessionFactory, transactionTemplate, config );
+
+        dbmsManager.clearSession();
+
+        Preheat parallelPreheat = transactionTemplate.execute(
+            status -> parallelPreheatService.preheat( createParams( dataElementGroup, user ) ) );
+
+        dbmsManager.clearSession();
+
+        Preheat preheat = preheatService.preheat( createParams( dataElementGroup, user ) );
+
+        assertFalse( preheat.isEmpty( PreheatIdentifier.UID, DataElement.class ) );
+        assertFalse( preheat.isEmpty( PreheatIdentifier.CODE, DataElement.class ) );
+        assertEquals( getKeys( preheat ), getKeys( parallelPreheat ) );
+
+        IdentifiableObject dataElement = parallelPreheat.get( PreheatIdentifier.UID, DataElement.class, de1.getUid() );
+
+        assertNotNull( dataElement );
+        assertSame( dataElement, parallelPreheat.get( PreheatIdentifier.CODE, DataElement.class, de1.getCode() ) );
+    }
+
+    private PreheatParams createParams( DataElementGroup dataElementGroup, User user )
+    {
+        PreheatParams params = new PreheatParams();
+        params.setPreheatMode( PreheatMode.REFERENCE );
+        params.setPreheatIdentifier( PreheatIdentifier.AUTO );
+        params.setUser( user );
+        params.getObjects().put( DataElementGroup.class, Lists.newArrayList( dataElementGroup ) );
+
+        return params;
+    }
+
+    private Map<PreheatIdentifier, Map<Class<? extends IdentifiableObject>, Set<String>>> getKeys( Preheat preheat )
+    {
+        Map<PreheatIdentifier, Map<Class<? extends IdentifiableObject>, Set<String>>> keys = new HashMap<>();
+
+        preheat.getMap().forEach( ( identifier, classMap ) -> classMap.forEach(
+            ( klass, objects ) -> keys.computeIfAbsent( identifier, k -> new HashMap<>() ).put( klass, objects.keySet() ) ) );
+
+        return keys;
+    }
+}
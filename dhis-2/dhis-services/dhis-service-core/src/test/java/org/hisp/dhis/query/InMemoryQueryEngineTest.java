@@ -208,6 +208,28 @@ public class InMemoryQueryEngineTest
         assertEquals( "deabcdefghF", objects.get( 0 ).getUid() );
     }
 
+    @Test
+    public void getLikeQueryOnLargeList()
+    {
+        List<DataElement> objects = new ArrayList<>();
+
+        for ( int i = 0; i < 20000; i++ )
+        {
+            DataElement dataElement = createDataElement( 'A' );
+            dataElement.setName( "DataElement" + i );
+            objects.add( dataElement );
+        }
+
+        Query query = Query.from( schemaService.getDynamicSchema( DataElement.class ) );
+        query.setObjects( objects );
+        query.add( Restrictions.like( "name", "99", MatchMode.END ) );
+        List<? extends IdentifiableObject> result = queryEngine.query( query );
+
+        assertEquals( 200, result.size() );
+        assertEquals( "DataElement99", result.get( 0 ).getName() );
+        assertEquals( "DataElement19999", result.get( 199 ).getName() );
+    }
+
     @Test
     public void getLikeQueryStart()
     {
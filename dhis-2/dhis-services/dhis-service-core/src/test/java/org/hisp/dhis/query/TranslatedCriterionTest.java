@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.query;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+
+import org.hisp.dhis.query.operators.EqualOperator;
+import org.hisp.dhis.query.operators.LikeOperator;
+import org.hisp.dhis.query.operators.MatchMode;
+import org.hisp.dhis.query.planner.TranslatedQueryPath;
+import org.hisp.dhis.schema.Property;
+import org.hisp.dhis.translation.TranslationProperty;
+import org.junit.Test;
+
+public class TranslatedCriterionTest
+{
+    @Test
+    public void testLikeEscapesWildcards()
+    {
+        TranslatedCriterion criterion = TranslatedCriterion.from( createQueryPath(),
+            new LikeOperator( "50%_a\\b", false, MatchMode.ANYWHERE ) );
+
+        assertEquals( "NAME like %50\\%\\_a\\\\b%", criterion.toString() );
+    }
+
+    @Test
+    public void testEqualDoesNotEscape()
+    {
+        TranslatedCriterion criterion = TranslatedCriterion.from( createQueryPath(),
+            new EqualOperator( "50%_a" ) );
+
+        assertEquals( "NAME = 50%_a", criterion.toString() );
+    }
+
+    private TranslatedQueryPath createQueryPath()
+    {
+        Property property = new Property();
+        property.setName( "name" );
+        property.setFieldName( "name" );
+        return new TranslatedQueryPath( property, TranslationProperty.NAME, Locale.FRENCH );
+    }
+}
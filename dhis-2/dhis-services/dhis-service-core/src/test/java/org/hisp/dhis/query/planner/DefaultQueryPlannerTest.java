@@ -30,16 +30,24 @@ package org.hisp.dhis.query.planner;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.beans.PropertyDescriptor;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.beanutils.PropertyUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.PostgreSQL95Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hisp.dhis.attribute.Attribute;
 import org.hisp.dhis.query.Junction;
 import org.hisp.dhis.query.Query;
+import org.hisp.dhis.query.Restriction;
 import org.hisp.dhis.query.Restrictions;
+import org.hisp.dhis.query.operators.MatchMode;
 import org.hisp.dhis.schema.Property;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
@@ -185,6 +193,69 @@ public class DefaultQueryPlannerTest
         assertEquals( nonPersistedQuery.getRootJunctionType(), Junction.Type.AND );
     }
 
+    @Test
+    public void verifyPlanQueryPushesDownDisplayNameFilter()
+        throws Exception
+    {
+        SessionFactory sessionFactory = mock( SessionFactory.class );
+        SessionFactoryImplementor sessionFactoryImplementor = mock( SessionFactoryImplementor.class );
+        JdbcServices jdbcServices = mock( JdbcServices.class );
+        when( sessionFactory.unwrap( SessionFactoryImplementor.class ) ).thenReturn( sessionFactoryImplementor );
+        when( sessionFactoryImplementor.getJdbcServices() ).thenReturn( jdbcServices );
+        when( jdbcServices.getDialect() ).thenReturn( new PostgreSQL95Dialect() );
+
+        Schema schema = getTranslatableSchema();
+
+        Query query = Query.from( schema, Junction.Type.AND );
+        query.setMaxResults( 10 );
+        query.setFirstResult( 500 );
+        query.add( Restrictions.ilike( "displayName", "test", MatchMode.ANYWHERE ) );
+
+        // method under test
+        QueryPlan queryPlan = new DefaultQueryPlanner( schemaService, sessionFactory ).planQuery( query, false );
+
+        Query persistedQuery = queryPlan.getPersistedQuery();
+
+        assertEquals( persistedQuery.getCriterions().size(), 1 );
+        assertTrue( ((Restriction) persistedQuery.getCriterions().get( 0 )).getQueryPath() instanceof TranslatedQueryPath );
+        assertEquals( persistedQuery.getFirstResult().intValue(), 500 );
+        assertEquals( persistedQuery.getMaxResults().intValue(), 10 );
+
+        Query nonPersistedQuery = queryPlan.getNonPersistedQuery();
+        assertEquals( nonPersistedQuery.getCriterions().size(), 0 );
+    }
+
+    @Test
+    public void verifyPlanQueryKeepsDisplayNameFilterInMemoryWithoutPushDown()
+        throws Exception
+    {
+        Schema schema = getTranslatableSchema();
+
+        Query query = Query.from( schema, Junction.Type.AND );
+        query.add( Restrictions.ilike( "displayName", "test", MatchMode.ANYWHERE ) );
+
+        // method under test
+        QueryPlan queryPlan = subject.planQuery( query, false );
+
+        assertEquals( queryPlan.getPersistedQuery().getCriterions().size(), 0 );
+        assertEquals( queryPlan.getNonPersistedQuery().getCriterions().size(), 1 );
+    }
+
+    private Schema getTranslatableSchema()
+        throws Exception
+    {
+        final Attribute attribute = new Attribute();
+        final Map<String, Property> propertyMap = new HashMap<>();
+        addProperty( propertyMap, attribute, "id", true );
+        addProperty( propertyMap, attribute, "name", true );
+        addProperty( propertyMap, attribute, "translations", true );
+        addProperty( propertyMap, attribute, "displayName", false );
+        Schema schema = new OrganisationUnitSchemaDescriptor().getSchema();
+        schema.setPropertyMap( propertyMap );
+
+        return schema;
+    }
+
     private void addProperty( Map<String, Property> propertyMap, Object bean, String property, boolean persisted )
         throws Exception
     {
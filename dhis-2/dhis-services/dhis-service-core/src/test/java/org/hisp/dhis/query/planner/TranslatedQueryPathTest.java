@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.query.planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.hisp.dhis.schema.Property;
+import org.hisp.dhis.translation.TranslationProperty;
+import org.junit.Test;
+
+public class TranslatedQueryPathTest
+{
+    private static final String TRANSLATED = "coalesce((select t.value ->> 'value' from jsonb_array_elements(ou.translations) t" +
+        " where t.value ->> 'locale' = %s and t.value ->> 'property' = 'NAME'" +
+        " and t.value ->> 'value' <> '' limit 1), trim(ou.name))";
+
+    @Test
+    public void testSqlExpressionBindsLocale()
+    {
+        TranslatedQueryPath queryPath = new TranslatedQueryPath( createProperty(), TranslationProperty.NAME, Locale.FRENCH );
+
+        assertEquals( String.format( TRANSLATED, "?" ), queryPath.getSqlExpression( "ou.translations", "ou.name" ) );
+        assertEquals( "fr", queryPath.getLocale() );
+    }
+
+    @Test
+    public void testOrderSqlExpressionInlinesLocale()
+    {
+        TranslatedQueryPath queryPath = new TranslatedQueryPath( createProperty(), TranslationProperty.NAME,
+            new Locale( "pt", "BR" ) );
+
+        assertEquals( String.format( TRANSLATED, "'pt_BR'" ), queryPath.getOrderSqlExpression( "ou.translations", "ou.name" ) );
+    }
+
+    @Test
+    public void testOrderSqlExpressionFallsBackForUnexpectedLocale()
+    {
+        TranslatedQueryPath queryPath = new TranslatedQueryPath( createProperty(), TranslationProperty.NAME,
+            new Locale( "en", "GB", "x' or '1'='1" ) );
+
+        assertTrue( queryPath.isTranslated() );
+        assertEquals( "ou.name", queryPath.getOrderSqlExpression( "ou.translations", "ou.name" ) );
+    }
+
+    @Test
+    public void testSqlExpressionWithoutLocale()
+    {
+        TranslatedQueryPath queryPath = new TranslatedQueryPath( createProperty(), TranslationProperty.NAME, null );
+
+        assertFalse( queryPath.isTranslated() );
+        assertEquals( "ou.name", queryPath.getSqlExpression( "ou.translations", "ou.name" ) );
+        assertEquals( "ou.name", queryPath.getOrderSqlExpression( "ou.translations", "ou.name" ) );
+    }
+
+    private Property createProperty()
+    {
+        Property property = new Property();
+        property.setName( "name" );
+        property.setFieldName( "name" );
+        return property;
+    }
+}
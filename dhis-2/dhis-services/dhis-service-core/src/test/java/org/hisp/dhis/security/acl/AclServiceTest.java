@@ -35,6 +35,7 @@ import org.hisp.dhis.category.CategoryOptionGroupSet;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.dashboard.Dashboard;
 import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.eventchart.EventChart;
 import org.hisp.dhis.eventreport.EventReport;
 import org.hisp.dhis.feedback.ErrorReport;
@@ -77,6 +78,9 @@ public class AclServiceTest
     @Autowired
     private CurrentUserService currentUserService;
 
+    @Autowired
+    private DbmsManager dbmsManager;
+
     @Override
     protected void setUpTest() throws Exception
     {
@@ -604,6 +608,62 @@ public class AclServiceTest
         assertFalse( aclService.canManage( user2, dashboard ) );
     }
 
+    @Test
+    public void testReadPrivateDataElementAfterLeavingGroup()
+    {
+        User user1 = createUser( "user1", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user2 = createUser( "user2", "F_DATAELEMENT_PRIVATE_ADD" );
+
+        manager.save( user1 );
+        manager.save( user2 );
+
+        UserGroup userGroup = createUserGroup( 'A', Sets.newHashSet( user1, user2 ) );
+        manager.save( userGroup );
+
+        DataElement dataElement = createDataElement( 'A' );
+        dataElement.setPublicAccess( AccessStringHelper.DEFAULT );
+        dataElement.setUser( user1 );
+        dataElement.getUserGroupAccesses().add( new UserGroupAccess( userGroup, AccessStringHelper.READ ) );
+        manager.save( dataElement );
+
+        assertTrue( aclService.canRead( user2, dataElement ) );
+
+        userGroup.getMembers().remove( user2 );
+        manager.update( userGroup );
+        dbmsManager.flushSession();
+
+        assertFalse( aclService.canRead( user2, dataElement ) );
+    }
+
+    @Test
+    public void testReadPrivateDataElementAfterJoiningGroup()
+    {
+        User user1 = createUser( "user1", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user2 = createUser( "user2", "F_DATAELEMENT_PRIVATE_ADD" );
+
+        manager.save( user1 );
+        manager.save( user2 );
+
+        UserGroup userGroupA = createUserGroup( 'A', Sets.newHashSet( user1 ) );
+        UserGroup userGroupB = createUserGroup( 'B', Sets.newHashSet( user1, user2 ) );
+        manager.save( userGroupA );
+        manager.save( userGroupB );
+
+        DataElement dataElement = createDataElement( 'A' );
+        dataElement.setPublicAccess( AccessStringHelper.DEFAULT );
+        dataElement.setUser( user1 );
+        dataElement.getUserGroupAccesses().add( new UserGroupAccess( userGroupA, AccessStringHelper.READ ) );
+        manager.save( dataElement );
+
+        assertFalse( aclService.canRead( user2, dataElement ) );
+
+        userGroupA.getMembers().add( user2 );
+        manager.update( userGroupA );
+        dbmsManager.flushSession();
+
+        assertTrue( aclService.canRead( user2, dataElement ) );
+    }
+
     @Test
     public void testReadPrivateDataElementSharedThroughGroup()
     {
@@ -0,0 +1,542 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hisp.dhis.common.AuditType;
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.fileresource.FileResource;
+import org.hisp.dhis.fileresource.FileResourceService;
+import org.hisp.dhis.importexport.ImportStrategy;
+import org.hisp.dhis.jdbc.batchhandler.DataValueAuditBatchHandler;
+import org.hisp.dhis.jdbc.batchhandler.DataValueBatchHandler;
+import org.hisp.quick.BatchHandler;
+import org.hisp.quick.BatchHandlerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writing stage of a data value set import. Validated data values are
+ * collected in chunks. Each chunk is split into partitions by data value
+ * key. The existing data values of a partition are looked up in one query,
+ * and the partition is then written by its own batch handlers. With a
+ * parallelism above one the partitions are written on separate threads
+ * while the importing thread validates the next chunk. A given key always
+ * goes to the same partition, so values for the same key are written in the
+ * order they were imported.
+ * <p>
+ * File resources are assigned on the importing thread, after the writes of
+ * a chunk have completed, as the writing threads have no Hibernate session.
+ * <p>
+ * Not thread safe, to be used by the importing thread only. The writer
+ * should be closed after flushing to stop the writing threads. The writing
+ * threads are daemon threads which also stop when idle, so a writer left
+ * open by a failed import does not keep threads alive.
+ */
+class DataValueImportWriter
+    implements AutoCloseable
+{
+    private static final long WRITING_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private final DataValueService dataValueService;
+
+    private final FileResourceService fileResourceService;
+
+    private final ImportStrategy strategy;
+
+    private final boolean dryRun;
+
+    private final boolean skipExistingCheck;
+
+    private final boolean skipAudit;
+
+    private final int chunkSize;
+
+    private final List<Partition> partitions = new ArrayList<>();
+
+    private final List<Future<?>> pendingWrites = new ArrayList<>();
+
+    private final Queue<Runnable> pendingFileResourceUpdates = new ConcurrentLinkedQueue<>();
+
+    private List<PendingDataValue> chunk = new ArrayList<>();
+
+    private final AtomicInteger importCount = new AtomicInteger();
+
+    private final AtomicInteger updateCount = new AtomicInteger();
+
+    private final AtomicInteger deleteCount = new AtomicInteger();
+
+    DataValueImportWriter( BatchHandlerFactory batchHandlerFactory, DataValueService dataValueService,
+        FileResourceService fileResourceService, ImportStrategy strategy, boolean dryRun, boolean skipExistingCheck,
+        boolean skipAudit, int parallelism, int chunkSize )
+    {
+        this.dataValueService = dataValueService;
+        this.fileResourceService = fileResourceService;
+        this.strategy = strategy;
+        this.dryRun = dryRun;
+        this.skipExistingCheck = skipExistingCheck;
+        this.skipAudit = skipAudit;
+        this.chunkSize = Math.max( 1, chunkSize );
+
+        for ( int i = 0; i < Math.max( 1, parallelism ); i++ )
+        {
+            partitions.add( new Partition(
+                batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ).init(),
+                skipAudit ? null : batchHandlerFactory.createBatchHandler( DataValueAuditBatchHandler.class ).init(),
+                parallelism > 1 ? newWritingExecutor() : null ) );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Writing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds a validated data value to be written.
+     *
+     * @param dataValue the data value.
+     * @param actualDataValue the stored data value of a file type data value
+     *        to delete, or null.
+     * @param storedBy the user name to audit the value as stored by.
+     */
+    void add( DataValue dataValue, DataValue actualDataValue, String storedBy )
+    {
+        chunk.add( new PendingDataValue( dataValue, actualDataValue, storedBy ) );
+
+        if ( chunk.size() >= chunkSize )
+        {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Writes all remaining data values and flushes the batch handlers.
+     */
+    void flush()
+    {
+        writeChunk();
+        awaitPendingWrites();
+
+        for ( Partition partition : partitions )
+        {
+            partition.dataValueBatchHandler.flush();
+
+            if ( !skipAudit )
+            {
+                partition.auditBatchHandler.flush();
+            }
+        }
+    }
+
+    /**
+     * Stops the writing threads. Data values which are not yet written are
+     * discarded.
+     */
+    @Override
+    public void close()
+    {
+        partitions.stream()
+            .filter( partition -> partition.executor != null )
+            .forEach( partition -> partition.executor.shutdownNow() );
+    }
+
+    int getImportCount()
+    {
+        return importCount.get();
+    }
+
+    int getUpdateCount()
+    {
+        return updateCount.get();
+    }
+
+    int getDeleteCount()
+    {
+        return deleteCount.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private static ExecutorService newWritingExecutor()
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( 1, 1, WRITING_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat( "data-value-import-writer-%d" ).setDaemon( true ).build() );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    /**
+     * Splits the current chunk by partition and writes each partition. The
+     * writes of the previous chunk are awaited first, so that at most one
+     * chunk is being written while the next one is validated.
+     */
+    private void writeChunk()
+    {
+        awaitPendingWrites();
+
+        if ( chunk.isEmpty() )
+        {
+            return;
+        }
+
+        List<List<PendingDataValue>> split = new ArrayList<>();
+
+        partitions.forEach( partition -> split.add( new ArrayList<>() ) );
+
+        for ( PendingDataValue value : chunk )
+        {
+            split.get( getPartition( value.dataValue ) ).add( value );
+        }
+
+        for ( int i = 0; i < partitions.size(); i++ )
+        {
+            Partition partition = partitions.get( i );
+            List<PendingDataValue> values = split.get( i );
+
+            if ( values.isEmpty() )
+            {
+                continue;
+            }
+
+            if ( partition.executor == null )
+            {
+                write( partition, values );
+            }
+            else
+            {
+                pendingWrites.add( partition.executor.submit( () -> write( partition, values ) ) );
+            }
+        }
+
+        chunk = new ArrayList<>();
+    }
+
+    /**
+     * Waits for the writes of the current chunk, and then updates the file
+     * resources of the written data values.
+     */
+    private void awaitPendingWrites()
+    {
+        try
+        {
+            for ( Future<?> write : pendingWrites )
+            {
+                write.get();
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException( "Data value import was interrupted", ex );
+        }
+        catch ( ExecutionException ex )
+        {
+            if ( ex.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new IllegalStateException( ex.getCause() );
+        }
+        finally
+        {
+            pendingWrites.clear();
+        }
+
+        Runnable update;
+
+        while ( (update = pendingFileResourceUpdates.poll()) != null )
+        {
+            update.run();
+        }
+    }
+
+    private int getPartition( DataValue dataValue )
+    {
+        int hash = Objects.hash( dataValue.getDataElement().getId(), dataValue.getPeriod().getId(),
+            dataValue.getSource().getId(), dataValue.getCategoryOptionCombo().getId(),
+            dataValue.getAttributeOptionCombo().getId() );
+
+        return Math.floorMod( hash, partitions.size() );
+    }
+
+    /**
+     * Writes the data values of a partition. The existing data values are
+     * looked up in one query, and are kept up to date with the updates
+     * written, which are executed immediately. Inserts are buffered by the
+     * batch handler, so a key occurring again in the chunk after being
+     * inserted is ignored, as the batch handler ignores a repeated insert.
+     */
+    private void write( Partition partition, List<PendingDataValue> values )
+    {
+        Map<DataValue, DataValue> existingValues = new HashMap<>();
+
+        Set<DataValue> insertedValues = new HashSet<>();
+
+        if ( !skipExistingCheck )
+        {
+            List<DataValue> dataValues = new ArrayList<>();
+
+            values.forEach( value -> dataValues.add( value.dataValue ) );
+
+            dataValueService.getDataValues( dataValues ).forEach( dv -> existingValues.put( dv, dv ) );
+        }
+
+        for ( PendingDataValue value : values )
+        {
+            if ( insertedValues.contains( value.dataValue ) )
+            {
+                continue;
+            }
+
+            DataValue existingValue = existingValues.get( value.dataValue );
+
+            if ( write( partition, value, existingValue ) )
+            {
+                if ( existingValue != null )
+                {
+                    existingValues.put( value.dataValue, value.dataValue );
+                }
+                else
+                {
+                    insertedValues.add( value.dataValue );
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves, updates or deletes a data value depending on the import strategy
+     * and on whether the data value already exists.
+     *
+     * @return true if the data value was stored, false if it was ignored.
+     */
+    private boolean write( Partition partition, PendingDataValue pending, DataValue existingValue )
+    {
+        DataValue internalValue = pending.dataValue;
+        DataValue actualDataValue = pending.actualDataValue;
+        String storedBy = pending.storedBy;
+        boolean fileType = internalValue.getDataElement().isFileType();
+
+        BatchHandler<DataValue> dataValueBatchHandler = partition.dataValueBatchHandler;
+        BatchHandler<DataValueAudit> auditBatchHandler = partition.auditBatchHandler;
+
+        // ---------------------------------------------------------------------
+        // Check soft deleted data values on update and import
+        // ---------------------------------------------------------------------
+
+        if ( !skipExistingCheck && existingValue != null && !existingValue.isDeleted() )
+        {
+            if ( strategy.isCreateAndUpdate() || strategy.isUpdate() )
+            {
+                AuditType auditType = AuditType.UPDATE;
+
+                if ( internalValue.isNullValue() || internalValue.isDeleted() )
+                {
+                    internalValue.setDeleted( true );
+
+                    auditType = AuditType.DELETE;
+
+                    deleteCount.incrementAndGet();
+                }
+                else
+                {
+                    updateCount.incrementAndGet();
+                }
+
+                if ( !dryRun )
+                {
+                    dataValueBatchHandler.updateObject( internalValue );
+
+                    if ( !skipAudit )
+                    {
+                        DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), storedBy, auditType );
+
+                        auditBatchHandler.addObject( auditValue );
+                    }
+
+                    if ( fileType )
+                    {
+                        pendingFileResourceUpdates.add( () -> assignFileResource( internalValue ) );
+                    }
+                }
+
+                return true;
+            }
+            else if ( strategy.isDelete() )
+            {
+                internalValue.setDeleted( true );
+
+                deleteCount.incrementAndGet();
+
+                if ( !dryRun )
+                {
+                    if ( fileType && actualDataValue != null )
+                    {
+                        pendingFileResourceUpdates.add( () -> updateFileResource( actualDataValue ) );
+                    }
+
+                    dataValueBatchHandler.updateObject( internalValue );
+
+                    if ( !skipAudit )
+                    {
+                        DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), storedBy, AuditType.DELETE );
+
+                        auditBatchHandler.addObject( auditValue );
+                    }
+                }
+
+                return true;
+            }
+        }
+        else
+        {
+            if ( strategy.isCreateAndUpdate() || strategy.isCreate() )
+            {
+                if ( !internalValue.isNullValue() ) // Ignore null values
+                {
+                    if ( existingValue != null && existingValue.isDeleted() )
+                    {
+                        importCount.incrementAndGet();
+
+                        if ( !dryRun )
+                        {
+                            dataValueBatchHandler.updateObject( internalValue );
+
+                            if ( fileType )
+                            {
+                                pendingFileResourceUpdates.add( () -> assignFileResource( internalValue ) );
+                            }
+                        }
+
+                        return true;
+                    }
+                    else
+                    {
+                        boolean added = false;
+
+                        if ( !dryRun )
+                        {
+                            added = dataValueBatchHandler.addObject( internalValue );
+
+                            if ( added && fileType )
+                            {
+                                pendingFileResourceUpdates.add( () -> assignFileResource( internalValue ) );
+                            }
+                        }
+
+                        if ( dryRun || added )
+                        {
+                            importCount.incrementAndGet();
+
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void assignFileResource( DataValue dataValue )
+    {
+        FileResource fr = fileResourceService.getFileResource( dataValue.getValue() );
+
+        fr.setAssigned( true );
+
+        fileResourceService.updateFileResource( fr );
+    }
+
+    private void updateFileResource( DataValue dataValue )
+    {
+        FileResource fr = fileResourceService.getFileResource( dataValue.getValue() );
+
+        fileResourceService.updateFileResource( fr );
+    }
+
+    /**
+     * Batch handlers and writing thread of one partition. The executor is null
+     * when values are written on the importing thread.
+     */
+    private static class Partition
+    {
+        final BatchHandler<DataValue> dataValueBatchHandler;
+
+        final BatchHandler<DataValueAudit> auditBatchHandler;
+
+        final ExecutorService executor;
+
+        Partition( BatchHandler<DataValue> dataValueBatchHandler, BatchHandler<DataValueAudit> auditBatchHandler,
+            ExecutorService executor )
+        {
+            this.dataValueBatchHandler = dataValueBatchHandler;
+            this.auditBatchHandler = auditBatchHandler;
+            this.executor = executor;
+        }
+    }
+
+    private static class PendingDataValue
+    {
+        final DataValue dataValue;
+
+        final DataValue actualDataValue;
+
+        final String storedBy;
+
+        PendingDataValue( DataValue dataValue, DataValue actualDataValue, String storedBy )
+        {
+            this.dataValue = dataValue;
+            this.actualDataValue = actualDataValue;
+            this.storedBy = storedBy;
+        }
+    }
+}
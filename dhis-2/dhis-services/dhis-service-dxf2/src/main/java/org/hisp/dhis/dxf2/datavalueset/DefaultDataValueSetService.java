@@ -32,10 +32,10 @@ import com.csvreader.CsvReader;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.hisp.dhis.calendar.CalendarService;
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryService;
-import org.hisp.dhis.common.AuditType;
 import org.hisp.dhis.common.DateRange;
 import org.hisp.dhis.common.DxfNamespaces;
 import org.hisp.dhis.common.IdScheme;
@@ -43,6 +43,7 @@ import org.hisp.dhis.common.IdSchemes;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.IdentifiableProperty;
 import org.hisp.dhis.common.IllegalQueryException;
+import org.hisp.dhis.common.MetadataIdentifierCache;
 import org.hisp.dhis.commons.collection.CachingMap;
 import org.hisp.dhis.commons.util.DebugUtils;
 import org.hisp.dhis.commons.util.StreamUtils;
@@ -58,7 +59,6 @@ import org.hisp.dhis.dataset.LockExceptionStore;
 import org.hisp.dhis.datavalue.AggregateAccessManager;
 import org.hisp.dhis.datavalue.DataExportParams;
 import org.hisp.dhis.datavalue.DataValue;
-import org.hisp.dhis.datavalue.DataValueAudit;
 import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.dxf2.common.ImportOptions;
 import org.hisp.dhis.dxf2.importsummary.ImportConflict;
@@ -70,13 +70,10 @@ import org.hisp.dhis.dxf2.util.InputUtils;
 import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.feedback.ErrorCode;
 import org.hisp.dhis.feedback.ErrorMessage;
-import org.hisp.dhis.fileresource.FileResource;
 import org.hisp.dhis.fileresource.FileResourceService;
 import org.hisp.dhis.i18n.I18n;
 import org.hisp.dhis.i18n.I18nManager;
 import org.hisp.dhis.importexport.ImportStrategy;
-import org.hisp.dhis.jdbc.batchhandler.DataValueAuditBatchHandler;
-import org.hisp.dhis.jdbc.batchhandler.DataValueBatchHandler;
 import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
 import org.hisp.dhis.node.types.RootNode;
@@ -94,6 +91,7 @@ import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.system.callable.CategoryOptionComboAclCallable;
 import org.hisp.dhis.system.callable.IdentifiableObjectCallable;
+import org.hisp.dhis.system.callable.MetadataIdentifierCacheCallable;
 import org.hisp.dhis.system.callable.PeriodCallable;
 import org.hisp.dhis.system.notification.NotificationLevel;
 import org.hisp.dhis.system.notification.Notifier;
@@ -104,7 +102,6 @@ import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.util.DateUtils;
 import org.hisp.dhis.util.ObjectUtils;
-import org.hisp.quick.BatchHandler;
 import org.hisp.quick.BatchHandlerFactory;
 import org.hisp.staxwax.factory.XMLFactory;
 import org.springframework.stereotype.Service;
@@ -127,6 +124,8 @@ import static org.hisp.dhis.system.notification.NotificationLevel.*;
 import static org.hisp.dhis.util.DateUtils.parseDate;
 
 import static org.hisp.dhis.external.conf.ConfigurationKey.CHANGELOG_AGGREGATE;
+import static org.hisp.dhis.external.conf.ConfigurationKey.DATA_IMPORT_CHUNK_SIZE;
+import static org.hisp.dhis.external.conf.ConfigurationKey.DATA_IMPORT_PARALLELISM;
 
 /**
  * Note that a mock BatchHandler factory is being injected.
@@ -143,6 +142,8 @@ public class DefaultDataValueSetService
 
     private final IdentifiableObjectManager identifiableObjectManager;
 
+    private final MetadataIdentifierCache metadataIdentifierCache;
+
     private final CategoryService categoryService;
 
     private final OrganisationUnitService organisationUnitService;
@@ -185,6 +186,7 @@ public class DefaultDataValueSetService
 
     public DefaultDataValueSetService(
         IdentifiableObjectManager identifiableObjectManager,
+        MetadataIdentifierCache metadataIdentifierCache,
         CategoryService categoryService,
         OrganisationUnitService organisationUnitService,
         PeriodService periodService,
@@ -207,6 +209,7 @@ public class DefaultDataValueSetService
         ObjectMapper jsonMapper )
     {
         checkNotNull( identifiableObjectManager );
+        checkNotNull( metadataIdentifierCache );
         checkNotNull( categoryService );
         checkNotNull( organisationUnitService );
         checkNotNull( periodService );
@@ -229,6 +232,7 @@ public class DefaultDataValueSetService
         checkNotNull( jsonMapper );
 
         this.identifiableObjectManager = identifiableObjectManager;
+        this.metadataIdentifierCache = metadataIdentifierCache;
         this.categoryService = categoryService;
         this.organisationUnitService = organisationUnitService;
         this.periodService = periodService;
@@ -832,10 +836,10 @@ public class DefaultDataValueSetService
         // Get meta-data maps
         // ---------------------------------------------------------------------
 
-        IdentifiableObjectCallable<DataElement> dataElementCallable = new IdentifiableObjectCallable<>(
-            identifiableObjectManager, DataElement.class, dataElementIdScheme, null );
-        IdentifiableObjectCallable<OrganisationUnit> orgUnitCallable = new IdentifiableObjectCallable<>(
-            identifiableObjectManager, OrganisationUnit.class, orgUnitIdScheme, trimToNull( dataValueSet.getOrgUnit() ) );
+        IdentifiableObjectCallable<DataElement> dataElementCallable = new MetadataIdentifierCacheCallable<>(
+            metadataIdentifierCache, DataElement.class, dataElementIdScheme, null );
+        IdentifiableObjectCallable<OrganisationUnit> orgUnitCallable = new MetadataIdentifierCacheCallable<>(
+            metadataIdentifierCache, OrganisationUnit.class, orgUnitIdScheme, trimToNull( dataValueSet.getOrgUnit() ) );
         IdentifiableObjectCallable<CategoryOptionCombo> categoryOptionComboCallable = new CategoryOptionComboAclCallable(
             categoryService, categoryOptComboIdScheme, null );
         IdentifiableObjectCallable<CategoryOptionCombo> attributeOptionComboCallable = new CategoryOptionComboAclCallable(
@@ -935,12 +939,11 @@ public class DefaultDataValueSetService
 
         final Set<OrganisationUnit> currentOrgUnits = currentUserService.getCurrentUserOrganisationUnits();
 
-        BatchHandler<DataValue> dataValueBatchHandler = batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ).init();
-        BatchHandler<DataValueAudit> auditBatchHandler = skipAudit ? null : batchHandlerFactory.createBatchHandler( DataValueAuditBatchHandler.class ).init();
+        DataValueImportWriter writer = new DataValueImportWriter( batchHandlerFactory, dataValueService,
+            fileResourceService, strategy, dryRun, skipExistingCheck, skipAudit,
+            NumberUtils.toInt( config.getProperty( DATA_IMPORT_PARALLELISM ), 1 ),
+            NumberUtils.toInt( config.getProperty( DATA_IMPORT_CHUNK_SIZE ), 10000 ) );
 
-        int importCount = 0;
-        int updateCount = 0;
-        int deleteCount = 0;
         int totalCount = 0;
 
         // ---------------------------------------------------------------------
@@ -1297,137 +1300,15 @@ public class DefaultDataValueSetService
             // Save, update or delete data value
             // -----------------------------------------------------------------
 
-            DataValue existingValue = !skipExistingCheck ? dataValueBatchHandler.findObject( internalValue ) : null;
-
-            // -----------------------------------------------------------------
-            // Check soft deleted data values on update and import
-            // -----------------------------------------------------------------
-
-            if ( !skipExistingCheck && existingValue != null && !existingValue.isDeleted() )
-            {
-                if ( strategy.isCreateAndUpdate() || strategy.isUpdate() )
-                {
-                    AuditType auditType = AuditType.UPDATE;
-
-                    if ( internalValue.isNullValue() || internalValue.isDeleted() )
-                    {
-                        internalValue.setDeleted( true );
-
-                        auditType = AuditType.DELETE;
-
-                        deleteCount++;
-                    }
-                    else
-                    {
-                        updateCount++;
-                    }
-
-                    if ( !dryRun )
-                    {
-                        dataValueBatchHandler.updateObject( internalValue );
-
-                        if ( !skipAudit )
-                        {
-                            DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), storedBy, auditType );
-
-                            auditBatchHandler.addObject( auditValue );
-                        }
-
-                        if ( dataElement.isFileType() )
-                        {
-                            FileResource fr = fileResourceService.getFileResource( internalValue.getValue() );
-
-                            fr.setAssigned( true );
-
-                            fileResourceService.updateFileResource( fr );
-                        }
-
-                    }
-                }
-                else if ( strategy.isDelete() )
-                {
-                    internalValue.setDeleted( true );
-
-                    deleteCount++;
-
-                    if ( !dryRun )
-                    {
-                        if ( dataElement.isFileType() && actualDataValue != null )
-                        {
-                            FileResource fr = fileResourceService.getFileResource( actualDataValue.getValue() );
-
-                            fileResourceService.updateFileResource( fr );
-                        }
-
-                        dataValueBatchHandler.updateObject( internalValue );
-
-                        if ( !skipAudit )
-                        {
-                            DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), storedBy, AuditType.DELETE );
-
-                            auditBatchHandler.addObject( auditValue );
-                        }
-                    }
-                }
-            }
-            else
-            {
-                if ( strategy.isCreateAndUpdate() || strategy.isCreate() )
-                {
-                    if ( !internalValue.isNullValue() ) // Ignore null values
-                    {
-                        if ( existingValue != null && existingValue.isDeleted() )
-                        {
-                            importCount++;
-
-                            if ( !dryRun )
-                            {
-                                dataValueBatchHandler.updateObject( internalValue );
-
-                                if ( dataElement.isFileType() )
-                                {
-                                    FileResource fr = fileResourceService.getFileResource( internalValue.getValue() );
-
-                                    fr.setAssigned( true );
-
-                                    fileResourceService.updateFileResource( fr );
-                                }
-                            }
-                        }
-                        else
-                        {
-                            boolean added = false;
-
-                            if ( !dryRun )
-                            {
-                                added = dataValueBatchHandler.addObject( internalValue );
-
-                                if ( added && dataElement.isFileType() )
-                                {
-                                    FileResource fr = fileResourceService.getFileResource( internalValue.getValue() );
-
-                                    fr.setAssigned( true );
-
-                                    fileResourceService.updateFileResource( fr );
-                                }
-                            }
-
-                            if ( dryRun || added )
-                            {
-                                importCount++;
-                            }
-                        }
-                    }
-                }
-            }
+            writer.add( internalValue, actualDataValue, storedBy );
         }
 
-        dataValueBatchHandler.flush();
+        writer.flush();
+        writer.close();
 
-        if ( !skipAudit )
-        {
-            auditBatchHandler.flush();
-        }
+        int importCount = writer.getImportCount();
+        int updateCount = writer.getUpdateCount();
+        int deleteCount = writer.getDeleteCount();
 
         int ignores = totalCount - importCount - updateCount - deleteCount;
 
@@ -34,6 +34,7 @@ import static org.hisp.dhis.util.DateUtils.getMediumDateString;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
@@ -155,6 +156,8 @@ public abstract class AbstractEventService implements EventService
 
     private static final int FLUSH_FREQUENCY = 100;
 
+    private static final int STREAM_EVICT_FREQUENCY = 1000;
+
     // -------------------------------------------------------------------------
     // Caches
     // -------------------------------------------------------------------------
@@ -277,6 +280,26 @@ public abstract class AbstractEventService implements EventService
         return events;
     }
 
+    @Transactional( readOnly = true )
+    @Override
+    public void getEvents( EventSearchParams params, Consumer<Event> consumer )
+    {
+        validate( params );
+
+        List<OrganisationUnit> organisationUnits = getOrganisationUnits( params );
+
+        User user = currentUserService.getCurrentUser();
+
+        params.handleCurrentUserSelectionMode( user );
+
+        if ( !params.isPaging() && !params.isSkipPaging() )
+        {
+            params.setDefaultPaging();
+        }
+
+        eventStore.getEvents( params, organisationUnits, new EventAccessFilter( user, consumer ) );
+    }
+
     @Transactional( readOnly = true )
     @Override
     public Grid getEventsGrid( EventSearchParams params )
@@ -1007,4 +1030,50 @@ public abstract class AbstractEventService implements EventService
 
         importOptions.setUser( userService.getUser( importOptions.getUser().getId() ) );
     }
+
+    /**
+     * Passes on the streamed events which the user has ownership access to.
+     * The tracked entity instances loaded for the access checks are evicted
+     * after every batch of events, so that the session does not grow with
+     * them, while other entities of the session are kept.
+     */
+    private class EventAccessFilter
+        implements Consumer<Event>
+    {
+        private final Consumer<Event> consumer;
+
+        private final User user;
+
+        private final List<TrackedEntityInstance> trackedEntityInstances = new ArrayList<>();
+
+        EventAccessFilter( User user, Consumer<Event> consumer )
+        {
+            this.user = user;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept( Event event )
+        {
+            TrackedEntityInstance trackedEntityInstance = entityInstanceService
+                .getTrackedEntityInstance( event.getTrackedEntityInstance() );
+
+            if ( trackerOwnershipAccessManager.hasAccess( user, trackedEntityInstance,
+                programService.getProgram( event.getProgram() ) ) )
+            {
+                consumer.accept( event );
+            }
+
+            if ( trackedEntityInstance != null )
+            {
+                trackedEntityInstances.add( trackedEntityInstance );
+            }
+
+            if ( trackedEntityInstances.size() >= STREAM_EVICT_FREQUENCY )
+            {
+                trackedEntityInstances.forEach( manager::evict );
+                trackedEntityInstances.clear();
+            }
+        }
+    }
 }
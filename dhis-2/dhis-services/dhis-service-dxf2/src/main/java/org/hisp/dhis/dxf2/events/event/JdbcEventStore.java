@@ -64,11 +64,13 @@ import static org.hisp.dhis.system.util.SqlUtils.lower;
 
 import java.io.IOException;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -76,6 +78,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -118,6 +121,8 @@ import org.springframework.core.env.Environment;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.rowset.ResultSetWrappingSqlRowSet;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 
@@ -222,6 +227,10 @@ public class JdbcEventStore implements EventStore
     // -------------------------------------------------------------------------
 
     // Cannot use DefaultRenderService mapper. Does not work properly - DHIS2-6102
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private static final int STREAM_BATCH_SIZE = 1000;
+
     private static final ObjectReader eventDataValueJsonReader = JsonEventDataValueSetBinaryType.MAPPER
         .readerFor( new TypeReference<Map<String, EventDataValue>>() {} );
 
@@ -281,142 +290,195 @@ public class JdbcEventStore implements EventStore
 
         while ( rowSet.next() )
         {
-            if ( rowSet.getString( "psi_uid" ) == null
-                || ( params.getCategoryOptionCombo() == null && !isSuper( user ) && !userHasAccess( rowSet ) ) )
+            if ( !isAccessibleRow( rowSet, params, user ) )
             {
                 continue;
             }
 
             String psiUid = rowSet.getString( "psi_uid" );
 
-            Event event;
+            Event event = eventUidToEventMap.get( psiUid );
 
-            if ( !eventUidToEventMap.containsKey( psiUid ) )
+            if ( event == null )
             {
-                validateIdentifiersPresence( rowSet, params.getIdSchemes(), true );
-
-                event = new Event();
+                event = createEvent( rowSet, params, user, psiUid );
                 eventUidToEventMap.put( psiUid, event );
+                events.add( event );
+            }
+            else
+            {
+                addAttributeCategoryOptions( event, rowSet );
+            }
 
-                if ( !params.isSkipEventId() )
-                {
-                    event.setUid( psiUid );
-                    event.setEvent( psiUid );
-                }
+            addDataValuesAndNotes( event, rowSet, params, psdesWithSkipSyncTrue, notes );
+        }
 
-                event.setTrackedEntityInstance( rowSet.getString( "tei_uid" ) );
-                event.setStatus( EventStatus.valueOf( rowSet.getString( "psi_status" ) ) );
+        convertDataElementIdentifiers( params, events );
 
-                event.setProgram( rowSet.getString( "p_identifier" ) );
-                event.setProgramStage( rowSet.getString( "ps_identifier" ) );
-                event.setOrgUnit( rowSet.getString( "ou_identifier" ) );
-                event.setDeleted( rowSet.getBoolean( "psi_deleted" ) );
+        return filterAttributeOptionComboAccess( params, user, events );
+    }
 
-                ProgramType programType = ProgramType.fromValue( rowSet.getString( "p_type" ) );
+    @Override
+    public void getEvents( EventSearchParams params, List<OrganisationUnit> organisationUnits, Consumer<Event> consumer )
+    {
+        User user = currentUserService.getCurrentUser();
 
-                if ( programType != ProgramType.WITHOUT_REGISTRATION )
-                {
-                    event.setEnrollment( rowSet.getString( "pi_uid" ) );
-                    event.setEnrollmentStatus( EnrollmentStatus
-                        .fromProgramStatus( ProgramStatus.valueOf( rowSet.getString( "pi_status" ) ) ) );
-                    event.setFollowup( rowSet.getBoolean( "pi_followup" ) );
-                }
+        setAccessiblePrograms( user, params );
 
-                if ( params.getCategoryOptionCombo() == null && !isSuper( user ) )
-                {
-                    event.setOptionSize( rowSet.getInt( "option_size" ) );
-                }
+        String sql = buildSql( params, organisationUnits, user, true );
 
-                event.setAttributeOptionCombo( rowSet.getString( "coc_identifier" ) );
-                event.setAttributeCategoryOptions( rowSet.getString( "deco_uid" ) );
-                event.setTrackedEntityInstance( rowSet.getString( "tei_uid" ) );
+        log.debug( "Event streaming query SQL: " + sql );
 
-                event.setStoredBy( rowSet.getString( "psi_storedby" ) );
-                event.setOrgUnitName( rowSet.getString( "ou_name" ) );
-                event.setDueDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_duedate" ) ) );
-                event.setEventDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_executiondate" ) ) );
-                event.setCreated( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_created" ) ) );
-                event.setLastUpdated( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_lastupdated" ) ) );
+        EventRowCallbackHandler handler = new EventRowCallbackHandler( params, user, consumer );
 
-                event.setCompletedBy( rowSet.getString( "psi_completedby" ) );
-                event.setCompletedDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_completeddate" ) ) );
+        // Forward-only statement with a fetch size makes the driver read the
+        // result through a server-side cursor instead of materializing it
+        jdbcTemplate.query( connection -> {
+            PreparedStatement statement = connection.prepareStatement( sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY );
+            statement.setFetchSize( STREAM_FETCH_SIZE );
+            return statement;
+        }, handler );
 
-                if ( rowSet.getObject( "psi_geometry" ) != null )
-                {
-                    try
-                    {
-                        Geometry geom = new WKTReader().read( rowSet.getString( "psi_geometry" ) );
+        handler.finish();
+    }
 
-                        event.setGeometry( geom );
-                        event.setCoordinate( new Coordinate( geom.getCoordinate().x, geom.getCoordinate().y ) );
-                    }
-                    catch ( ParseException e )
-                    {
-                        log.error( "Unable to read geometry for event '" + event.getUid() + "': ", e );
-                    }
-                }
+    private boolean isAccessibleRow( SqlRowSet rowSet, EventSearchParams params, User user )
+    {
+        return rowSet.getString( "psi_uid" ) != null
+            && ( params.getCategoryOptionCombo() != null || isSuper( user ) || userHasAccess( rowSet ) );
+    }
 
-                if ( rowSet.getObject( "user_assigned" ) != null )
-                {
-                    event.setAssignedUser( rowSet.getString( "user_assigned" ) );
-                    event.setAssignedUserUsername( rowSet.getString( "user_assigned_username" ) );
-                    event.setAssignedUserDisplayName( rowSet.getString( "user_assigned_name" ) );
-                }
+    private Event createEvent( SqlRowSet rowSet, EventSearchParams params, User user, String psiUid )
+    {
+        validateIdentifiersPresence( rowSet, params.getIdSchemes(), true );
 
-                events.add( event );
-            }
-            else
+        Event event = new Event();
+
+        if ( !params.isSkipEventId() )
+        {
+            event.setUid( psiUid );
+            event.setEvent( psiUid );
+        }
+
+        event.setTrackedEntityInstance( rowSet.getString( "tei_uid" ) );
+        event.setStatus( EventStatus.valueOf( rowSet.getString( "psi_status" ) ) );
+
+        event.setProgram( rowSet.getString( "p_identifier" ) );
+        event.setProgramStage( rowSet.getString( "ps_identifier" ) );
+        event.setOrgUnit( rowSet.getString( "ou_identifier" ) );
+        event.setDeleted( rowSet.getBoolean( "psi_deleted" ) );
+
+        ProgramType programType = ProgramType.fromValue( rowSet.getString( "p_type" ) );
+
+        if ( programType != ProgramType.WITHOUT_REGISTRATION )
+        {
+            event.setEnrollment( rowSet.getString( "pi_uid" ) );
+            event.setEnrollmentStatus( EnrollmentStatus
+                .fromProgramStatus( ProgramStatus.valueOf( rowSet.getString( "pi_status" ) ) ) );
+            event.setFollowup( rowSet.getBoolean( "pi_followup" ) );
+        }
+
+        if ( params.getCategoryOptionCombo() == null && !isSuper( user ) )
+        {
+            event.setOptionSize( rowSet.getInt( "option_size" ) );
+        }
+
+        event.setAttributeOptionCombo( rowSet.getString( "coc_identifier" ) );
+        event.setAttributeCategoryOptions( rowSet.getString( "deco_uid" ) );
+        event.setTrackedEntityInstance( rowSet.getString( "tei_uid" ) );
+
+        event.setStoredBy( rowSet.getString( "psi_storedby" ) );
+        event.setOrgUnitName( rowSet.getString( "ou_name" ) );
+        event.setDueDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_duedate" ) ) );
+        event.setEventDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_executiondate" ) ) );
+        event.setCreated( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_created" ) ) );
+        event.setLastUpdated( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_lastupdated" ) ) );
+
+        event.setCompletedBy( rowSet.getString( "psi_completedby" ) );
+        event.setCompletedDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psi_completeddate" ) ) );
+
+        if ( rowSet.getObject( "psi_geometry" ) != null )
+        {
+            try
             {
-                event = eventUidToEventMap.get( psiUid );
-                String attributeCategoryCombination = event.getAttributeCategoryOptions();
-                String currentAttributeCategoryCombination = rowSet.getString( "deco_uid" );
+                Geometry geom = new WKTReader().read( rowSet.getString( "psi_geometry" ) );
 
-                if ( !attributeCategoryCombination.contains( currentAttributeCategoryCombination ) )
-                {
-                    event.setAttributeCategoryOptions(
-                        attributeCategoryCombination + ";" + currentAttributeCategoryCombination );
-                }
+                event.setGeometry( geom );
+                event.setCoordinate( new Coordinate( geom.getCoordinate().x, geom.getCoordinate().y ) );
+            }
+            catch ( ParseException e )
+            {
+                log.error( "Unable to read geometry for event '" + event.getUid() + "': ", e );
             }
+        }
+
+        if ( rowSet.getObject( "user_assigned" ) != null )
+        {
+            event.setAssignedUser( rowSet.getString( "user_assigned" ) );
+            event.setAssignedUserUsername( rowSet.getString( "user_assigned_username" ) );
+            event.setAssignedUserDisplayName( rowSet.getString( "user_assigned_name" ) );
+        }
+
+        return event;
+    }
+
+    private void addAttributeCategoryOptions( Event event, SqlRowSet rowSet )
+    {
+        String attributeCategoryCombination = event.getAttributeCategoryOptions();
+        String currentAttributeCategoryCombination = rowSet.getString( "deco_uid" );
+
+        if ( !attributeCategoryCombination.contains( currentAttributeCategoryCombination ) )
+        {
+            event.setAttributeCategoryOptions(
+                attributeCategoryCombination + ";" + currentAttributeCategoryCombination );
+        }
+    }
+
+    private void addDataValuesAndNotes( Event event, SqlRowSet rowSet, EventSearchParams params,
+        Map<String, Set<String>> psdesWithSkipSyncTrue, Set<String> notes )
+    {
+        if ( !org.springframework.util.StringUtils.isEmpty( rowSet.getString( "psi_eventdatavalues" ) ) )
+        {
+            Set<EventDataValue> eventDataValues = convertEventDataValueJsonIntoSet(
+                rowSet.getString( "psi_eventdatavalues" ) );
 
-            if ( !org.springframework.util.StringUtils.isEmpty( rowSet.getString( "psi_eventdatavalues" ) ) )
+            for ( EventDataValue dv : eventDataValues )
             {
-                Set<EventDataValue> eventDataValues = convertEventDataValueJsonIntoSet(
-                    rowSet.getString( "psi_eventdatavalues" ) );
+                DataValue dataValue = convertEventDataValueIntoDtoDataValue( dv );
 
-                for ( EventDataValue dv : eventDataValues )
+                if ( params.isSynchronizationQuery() )
                 {
-                    DataValue dataValue = convertEventDataValueIntoDtoDataValue( dv );
-
-                    if ( params.isSynchronizationQuery() )
+                    if ( psdesWithSkipSyncTrue.containsKey( rowSet.getString( "ps_uid" ) ) && psdesWithSkipSyncTrue
+                        .get( rowSet.getString( "ps_uid" ) ).contains( dv.getDataElement() ) )
                     {
-                        if ( psdesWithSkipSyncTrue.containsKey( rowSet.getString( "ps_uid" ) ) && psdesWithSkipSyncTrue
-                            .get( rowSet.getString( "ps_uid" ) ).contains( dv.getDataElement() ) )
-                        {
-                            dataValue.setSkipSynchronization( true );
-                        }
-                        else
-                        {
-                            dataValue.setSkipSynchronization( false );
-                        }
+                        dataValue.setSkipSynchronization( true );
+                    }
+                    else
+                    {
+                        dataValue.setSkipSynchronization( false );
                     }
-
-                    event.getDataValues().add( dataValue );
                 }
+
+                event.getDataValues().add( dataValue );
             }
+        }
 
-            if ( rowSet.getString( "psinote_value" ) != null && !notes.contains( rowSet.getString( "psinote_id" ) ) )
-            {
-                Note note = new Note();
-                note.setNote( rowSet.getString( "psinote_uid" ) );
-                note.setValue( rowSet.getString( "psinote_value" ) );
-                note.setStoredDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psinote_storeddate" ) ) );
-                note.setStoredBy( rowSet.getString( "psinote_storedby" ) );
+        if ( rowSet.getString( "psinote_value" ) != null && !notes.contains( rowSet.getString( "psinote_id" ) ) )
+        {
+            Note note = new Note();
+            note.setNote( rowSet.getString( "psinote_uid" ) );
+            note.setValue( rowSet.getString( "psinote_value" ) );
+            note.setStoredDate( DateUtils.getIso8601NoTz( rowSet.getDate( "psinote_storeddate" ) ) );
+            note.setStoredBy( rowSet.getString( "psinote_storedby" ) );
 
-                event.getNotes().add( note );
-                notes.add( rowSet.getString( "psinote_id" ) );
-            }
+            event.getNotes().add( note );
+            notes.add( rowSet.getString( "psinote_id" ) );
         }
+    }
 
+    private void convertDataElementIdentifiers( EventSearchParams params, List<Event> events )
+    {
         IdSchemes idSchemes = ObjectUtils.firstNonNull( params.getIdSchemes(), new IdSchemes() );
         IdScheme dataElementIdScheme = idSchemes.getDataElementIdScheme();
 
@@ -429,7 +491,10 @@ public class JdbcEventStore implements EventStore
             populateCache( dataElementIdScheme, dataValuesList, dataElementUidToIdentifierCache );
             convertDataValuesIdentifiers( dataElementIdScheme, dataValuesList, dataElementUidToIdentifierCache );
         }
+    }
 
+    private List<Event> filterAttributeOptionComboAccess( EventSearchParams params, User user, List<Event> events )
+    {
         if ( params.getCategoryOptionCombo() == null && !isSuper( user ) )
         {
             return events.stream().filter( ev -> ev.getAttributeCategoryOptions() != null
@@ -440,6 +505,100 @@ public class JdbcEventStore implements EventStore
         return events;
     }
 
+    /**
+     * Maps the rows of a streamed event query to events. The rows of an event
+     * are adjacent, so an event is complete once a row of the next event is
+     * read. Completed events are passed on in batches so that data element
+     * identifiers can be converted per batch.
+     */
+    private class EventRowCallbackHandler
+        implements RowCallbackHandler
+    {
+        private final EventSearchParams params;
+
+        private final User user;
+
+        private final Consumer<Event> consumer;
+
+        private final List<Event> batch = new ArrayList<>( STREAM_BATCH_SIZE );
+
+        private final Set<String> notes = new HashSet<>();
+
+        private SqlRowSet rowSet;
+
+        private String currentUid;
+
+        private Event currentEvent;
+
+        EventRowCallbackHandler( EventSearchParams params, User user, Consumer<Event> consumer )
+        {
+            this.params = params;
+            this.user = user;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow( ResultSet resultSet )
+        {
+            if ( rowSet == null )
+            {
+                rowSet = new ResultSetWrappingSqlRowSet( resultSet );
+            }
+
+            if ( !isAccessibleRow( rowSet, params, user ) )
+            {
+                return;
+            }
+
+            String psiUid = rowSet.getString( "psi_uid" );
+
+            if ( !psiUid.equals( currentUid ) )
+            {
+                complete();
+
+                currentUid = psiUid;
+                currentEvent = createEvent( rowSet, params, user, psiUid );
+                notes.clear();
+            }
+            else
+            {
+                addAttributeCategoryOptions( currentEvent, rowSet );
+            }
+
+            addDataValuesAndNotes( currentEvent, rowSet, params, Collections.emptyMap(), notes );
+        }
+
+        void finish()
+        {
+            complete();
+            flush();
+        }
+
+        private void complete()
+        {
+            if ( currentEvent != null )
+            {
+                batch.add( currentEvent );
+                currentEvent = null;
+
+                if ( batch.size() >= STREAM_BATCH_SIZE )
+                {
+                    flush();
+                }
+            }
+        }
+
+        private void flush()
+        {
+            if ( !batch.isEmpty() )
+            {
+                convertDataElementIdentifiers( params, batch );
+                filterAttributeOptionComboAccess( params, user, batch ).forEach( consumer );
+                batch.clear();
+            }
+        }
+    }
+
     public List<ProgramStageInstance> saveEvents(List<ProgramStageInstance> events )
     {
         try
@@ -810,6 +969,16 @@ public class JdbcEventStore implements EventStore
      * queries is to be able to page properly on events.
      */
     private String buildSql( EventSearchParams params, List<OrganisationUnit> organisationUnits, User user )
+    {
+        return buildSql( params, organisationUnits, user, false );
+    }
+
+    /**
+     * @param adjacentRows whether the rows of an event must be adjacent in the
+     *        result, which is required when the result is streamed.
+     */
+    private String buildSql( EventSearchParams params, List<OrganisationUnit> organisationUnits, User user,
+        boolean adjacentRows )
     {
         StringBuilder sqlBuilder = new StringBuilder().append( "select * from (" );
 
@@ -834,6 +1003,11 @@ public class JdbcEventStore implements EventStore
 
         sqlBuilder.append( getOrderQuery( params ) );
 
+        if ( adjacentRows )
+        {
+            sqlBuilder.append( ", psi_id " );
+        }
+
         return sqlBuilder.toString();
     }
 
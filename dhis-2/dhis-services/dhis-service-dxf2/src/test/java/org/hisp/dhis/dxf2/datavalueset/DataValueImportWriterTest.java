@@ -0,0 +1,300 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.DhisConvenienceTest.createCategoryOptionCombo;
+import static org.hisp.dhis.DhisConvenienceTest.createDataElement;
+import static org.hisp.dhis.DhisConvenienceTest.createDataValue;
+import static org.hisp.dhis.DhisConvenienceTest.createOrganisationUnit;
+import static org.hisp.dhis.DhisConvenienceTest.createPeriod;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.fileresource.FileResource;
+import org.hisp.dhis.fileresource.FileResourceService;
+import org.hisp.dhis.importexport.ImportStrategy;
+import org.hisp.dhis.jdbc.batchhandler.DataValueAuditBatchHandler;
+import org.hisp.dhis.jdbc.batchhandler.DataValueBatchHandler;
+import org.hisp.dhis.mock.batchhandler.MockBatchHandler;
+import org.hisp.dhis.mock.batchhandler.MockBatchHandlerFactory;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.period.Period;
+import org.hisp.quick.BatchHandlerFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.Lists;
+
+public class DataValueImportWriterTest
+{
+    @Mock
+    private DataValueService dataValueService;
+
+    @Mock
+    private FileResourceService fileResourceService;
+
+    @Mock
+    private BatchHandlerFactory batchHandlerFactory;
+
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    private DataElement deA;
+
+    private Period peA;
+
+    private CategoryOptionCombo cocA;
+
+    private List<OrganisationUnit> orgUnits;
+
+    @Before
+    public void setUp()
+    {
+        deA = createDataElement( 'A' );
+        deA.setId( 1 );
+        peA = createPeriod( "202001" );
+        peA.setId( 2 );
+        cocA = createCategoryOptionCombo( 'A' );
+        cocA.setId( 3 );
+
+        orgUnits = new ArrayList<>();
+
+        for ( char c = 'A'; c <= 'J'; c++ )
+        {
+            OrganisationUnit ou = createOrganisationUnit( c );
+            ou.setId( c );
+            orgUnits.add( ou );
+        }
+    }
+
+    @Test
+    public void testWriteInChunksOnImportingThread()
+    {
+        MockBatchHandler<DataValue> dataValueBatchHandler = new MockBatchHandler<>();
+        MockBatchHandler<DataValueAudit> auditBatchHandler = new MockBatchHandler<>();
+
+        MockBatchHandlerFactory factory = new MockBatchHandlerFactory();
+        factory.registerBatchHandler( DataValueBatchHandler.class, dataValueBatchHandler );
+        factory.registerBatchHandler( DataValueAuditBatchHandler.class, auditBatchHandler );
+
+        DataValueImportWriter writer = new DataValueImportWriter( factory, dataValueService, fileResourceService,
+            ImportStrategy.CREATE_AND_UPDATE, false, false, false, 1, 3 );
+
+        orgUnits.forEach( ou -> writer.add( createDataValue( deA, peA, ou, "10", cocA ), null, "admin" ) );
+
+        writer.flush();
+
+        assertEquals( 10, dataValueBatchHandler.getInserts().size() );
+        assertEquals( 10, writer.getImportCount() );
+        assertEquals( 0, writer.getUpdateCount() );
+    }
+
+    @Test
+    public void testWriteExistingValuesAsUpdatesWithAudit()
+    {
+        MockBatchHandler<DataValue> dataValueBatchHandler = new MockBatchHandler<>();
+        MockBatchHandler<DataValueAudit> auditBatchHandler = new MockBatchHandler<>();
+
+        MockBatchHandlerFactory factory = new MockBatchHandlerFactory();
+        factory.registerBatchHandler( DataValueBatchHandler.class, dataValueBatchHandler );
+        factory.registerBatchHandler( DataValueAuditBatchHandler.class, auditBatchHandler );
+
+        DataValueImportWriter writer = new DataValueImportWriter( factory, dataValueService, fileResourceService,
+            ImportStrategy.CREATE_AND_UPDATE, false, false, false, 1, 4 );
+
+        when( dataValueService.getDataValues( anyCollection() ) )
+            .thenAnswer( invocation -> new ArrayList<>( invocation.<Collection<DataValue>>getArgument( 0 ) ) );
+
+        orgUnits.forEach( ou -> writer.add( createDataValue( deA, peA, ou, "10", cocA ), null, "admin" ) );
+
+        writer.flush();
+
+        verify( dataValueService, times( 3 ) ).getDataValues( anyCollection() );
+
+        assertEquals( 10, dataValueBatchHandler.getUpdates().size() );
+        assertEquals( 10, auditBatchHandler.getInserts().size() );
+        assertEquals( 10, writer.getUpdateCount() );
+    }
+
+    @Test
+    public void testWriteInParallelKeepsOrderPerKey()
+    {
+        MockBatchHandler<DataValue> dataValueBatchHandlerA = new MockBatchHandler<>();
+        MockBatchHandler<DataValue> dataValueBatchHandlerB = new MockBatchHandler<>();
+
+        when( batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ) )
+            .thenReturn( dataValueBatchHandlerA, dataValueBatchHandlerB );
+
+        DataValueImportWriter writer = new DataValueImportWriter( batchHandlerFactory, dataValueService, fileResourceService,
+            ImportStrategy.CREATE_AND_UPDATE, false, false, true, 2, 3 );
+
+        try
+        {
+            orgUnits.forEach( ou -> writer.add( createDataValue( deA, peA, ou, "10", cocA ), null, "admin" ) );
+            writer.add( createDataValue( deA, peA, orgUnits.get( 0 ), "20", cocA ), null, "admin" );
+
+            writer.flush();
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        List<DataValue> inserts = new ArrayList<>( dataValueBatchHandlerA.getInserts() );
+        inserts.addAll( dataValueBatchHandlerB.getInserts() );
+
+        assertEquals( 11, inserts.size() );
+        assertEquals( 11, writer.getImportCount() );
+
+        MockBatchHandler<DataValue> handler = dataValueBatchHandlerA.getInserts().stream()
+            .anyMatch( dv -> dv.getSource().equals( orgUnits.get( 0 ) ) ) ? dataValueBatchHandlerA : dataValueBatchHandlerB;
+
+        List<String> values = new ArrayList<>();
+
+        handler.getInserts().stream()
+            .filter( dv -> dv.getSource().equals( orgUnits.get( 0 ) ) )
+            .forEach( dv -> values.add( dv.getValue() ) );
+
+        assertEquals( 2, values.size() );
+        assertEquals( "10", values.get( 0 ) );
+        assertEquals( "20", values.get( 1 ) );
+    }
+
+    @Test
+    public void testIgnoreRepeatedKeyInChunk()
+    {
+        MockBatchHandler<DataValue> dataValueBatchHandler = new MockBatchHandler<>();
+        MockBatchHandler<DataValueAudit> auditBatchHandler = new MockBatchHandler<>();
+
+        MockBatchHandlerFactory factory = new MockBatchHandlerFactory();
+        factory.registerBatchHandler( DataValueBatchHandler.class, dataValueBatchHandler );
+        factory.registerBatchHandler( DataValueAuditBatchHandler.class, auditBatchHandler );
+
+        DataValueImportWriter writer = new DataValueImportWriter( factory, dataValueService, fileResourceService,
+            ImportStrategy.CREATE_AND_UPDATE, false, false, false, 1, 10 );
+
+        writer.add( createDataValue( deA, peA, orgUnits.get( 0 ), "10", cocA ), null, "admin" );
+        writer.add( createDataValue( deA, peA, orgUnits.get( 0 ), "20", cocA ), null, "admin" );
+
+        writer.flush();
+
+        assertEquals( 1, dataValueBatchHandler.getInserts().size() );
+        assertEquals( "10", dataValueBatchHandler.getInserts().get( 0 ).getValue() );
+        assertEquals( 0, dataValueBatchHandler.getUpdates().size() );
+        assertEquals( 0, auditBatchHandler.getInserts().size() );
+        assertEquals( 1, writer.getImportCount() );
+        assertEquals( 0, writer.getUpdateCount() );
+    }
+
+    @Test
+    public void testWriteRepeatedExistingKeyInChunkAsUpdates()
+    {
+        MockBatchHandler<DataValue> dataValueBatchHandler = new MockBatchHandler<>();
+        MockBatchHandler<DataValueAudit> auditBatchHandler = new MockBatchHandler<>();
+
+        MockBatchHandlerFactory factory = new MockBatchHandlerFactory();
+        factory.registerBatchHandler( DataValueBatchHandler.class, dataValueBatchHandler );
+        factory.registerBatchHandler( DataValueAuditBatchHandler.class, auditBatchHandler );
+
+        DataValueImportWriter writer = new DataValueImportWriter( factory, dataValueService, fileResourceService,
+            ImportStrategy.CREATE_AND_UPDATE, false, false, false, 1, 10 );
+
+        when( dataValueService.getDataValues( anyCollection() ) )
+            .thenReturn( Lists.newArrayList( createDataValue( deA, peA, orgUnits.get( 0 ), "5", cocA ) ) );
+
+        writer.add( createDataValue( deA, peA, orgUnits.get( 0 ), "10", cocA ), null, "admin" );
+        writer.add( createDataValue( deA, peA, orgUnits.get( 0 ), "20", cocA ), null, "admin" );
+
+        writer.flush();
+
+        assertEquals( 0, dataValueBatchHandler.getInserts().size() );
+        assertEquals( 2, dataValueBatchHandler.getUpdates().size() );
+        assertEquals( "5", auditBatchHandler.getInserts().get( 0 ).getValue() );
+        assertEquals( "10", auditBatchHandler.getInserts().get( 1 ).getValue() );
+        assertEquals( 2, writer.getUpdateCount() );
+    }
+
+    @Test
+    public void testAssignFileResourcesOnImportingThread()
+    {
+        deA.setValueType( ValueType.FILE_RESOURCE );
+
+        when( batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ) )
+            .thenReturn( new MockBatchHandler<>(), new MockBatchHandler<>() );
+
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        when( fileResourceService.getFileResource( anyString() ) ).thenAnswer( invocation -> {
+            threads.add( Thread.currentThread() );
+            return new FileResource();
+        } );
+
+        DataValueImportWriter writer = new DataValueImportWriter( batchHandlerFactory, dataValueService,
+            fileResourceService, ImportStrategy.CREATE_AND_UPDATE, false, false, true, 2, 3 );
+
+        try
+        {
+            orgUnits.forEach( ou -> writer.add( createDataValue( deA, peA, ou, "fileResource" + ou.getId(), cocA ),
+                null, "admin" ) );
+
+            writer.flush();
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        verify( fileResourceService, times( 10 ) ).updateFileResource( any() );
+
+        assertEquals( 1, threads.size() );
+        assertTrue( threads.contains( Thread.currentThread() ) );
+    }
+}
@@ -31,6 +31,7 @@ package org.hisp.dhis.dxf2.datavalueset;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang.time.DateUtils;
+import org.hisp.dhis.H2DhisConfigurationProvider;
 import org.hisp.dhis.IntegrationTest;
 import org.hisp.dhis.TransactionalIntegrationTestBase;
 import org.hisp.dhis.attribute.Attribute;
@@ -53,9 +54,11 @@ import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.dataset.DataSetService;
 import org.hisp.dhis.datavalue.DataValue;
 import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.dxf2.common.ImportOptions;
 import org.hisp.dhis.dxf2.importsummary.ImportStatus;
 import org.hisp.dhis.dxf2.importsummary.ImportSummary;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.importexport.ImportStrategy;
 import org.hisp.dhis.jdbc.batchhandler.DataValueAuditBatchHandler;
 import org.hisp.dhis.jdbc.batchhandler.DataValueBatchHandler;
@@ -75,9 +78,14 @@ import org.hisp.dhis.security.acl.AccessStringHelper;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.user.UserService;
+import static org.hisp.dhis.external.conf.ConfigurationKey.DATA_IMPORT_PARALLELISM;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -92,6 +100,9 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.stream.Collectors;
 
 /**
  * @author Lars Helge Overland
@@ -133,6 +144,12 @@ public class DataValueSetServiceTest
     @Autowired
     private UserService _userService;
 
+    @Autowired
+    private DataValueService dataValueService;
+
+    @Autowired
+    private DhisConfigurationProvider dhisConfigurationProvider;
+
     private Attribute attribute;
 
     private CategoryOptionCombo ocDef;
@@ -168,6 +185,7 @@ public class DataValueSetServiceTest
     private MockBatchHandler<DataValue> mockDataValueBatchHandler = null;
     private MockBatchHandler<DataValueAudit> mockDataValueAuditBatchHandler = null;
     private MockBatchHandlerFactory mockBatchHandlerFactory = null;
+    private DataValueService mockDataValueService = null;
 
     @Override
     public boolean emptyDatabaseAfterTest()
@@ -188,6 +206,14 @@ public class DataValueSetServiceTest
         mockBatchHandlerFactory.registerBatchHandler( DataValueAuditBatchHandler.class, mockDataValueAuditBatchHandler );
         setDependency( dataValueSetService, "batchHandlerFactory", mockBatchHandlerFactory );
 
+        mockDataValueService = mock( DataValueService.class, delegatesTo( dataValueService ) );
+        doAnswer( invocation -> invocation.<Collection<DataValue>>getArgument( 0 ).stream()
+            .map( mockDataValueBatchHandler::findObject )
+            .filter( Objects::nonNull )
+            .collect( Collectors.toList() ) )
+            .when( mockDataValueService ).getDataValues( anyCollection() );
+        setDependency( dataValueSetService, "dataValueService", mockDataValueService );
+
         attribute = new Attribute( "CUSTOM_ID", ValueType.TEXT );
         attribute.setUid( ATTRIBUTE_UID );
         attribute.setUnique( true );
@@ -449,6 +475,33 @@ public class DataValueSetServiceTest
         assertImportDataValues( summary );
     }
 
+    @Test
+    public void testImportDataValuesXmlInParallel()
+        throws Exception
+    {
+        Properties properties = ( (H2DhisConfigurationProvider) dhisConfigurationProvider ).getProperties();
+        String parallelism = properties.getProperty( DATA_IMPORT_PARALLELISM.getKey() );
+        properties.setProperty( DATA_IMPORT_PARALLELISM.getKey(), "4" );
+
+        try
+        {
+            in = new ClassPathResource( "datavalueset/dataValueSetB.xml" ).getInputStream();
+
+            ImportSummary summary = dataValueSetService.saveDataValueSet( in );
+
+            assertEquals( summary.getConflicts().toString(), 0, summary.getConflicts().size() );
+            assertEquals( 12, summary.getImportCount().getImported() );
+            assertEquals( 0, summary.getImportCount().getUpdated() );
+            assertEquals( ImportStatus.SUCCESS, summary.getStatus() );
+
+            assertImportDataValues( summary );
+        }
+        finally
+        {
+            properties.setProperty( DATA_IMPORT_PARALLELISM.getKey(), parallelism );
+        }
+    }
+
     @Test
     public void testImportDataValuesXmlWithCodeB()
         throws Exception
@@ -1246,4 +1299,5 @@ public class DataValueSetServiceTest
 
         return createPeriod( PeriodType.getByNameIgnoreCase( MonthlyPeriodType.NAME ), monthStart, monthEnd );
     }
+
 }
@@ -36,19 +36,33 @@ import org.hisp.dhis.user.CurrentUserService;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -100,6 +114,140 @@ public class JdbcEventStoreTest
         verify( rowSet, times( 4 ) ).getString( "psi_eventdatavalues" );
     }
 
+    @Test
+    public void verifyStreamedRowsAreGroupedIntoEvents()
+    {
+        List<Map<String, Object>> rows = Arrays.asList(
+            eventRow( "EventUID001", "{\"hUQ5Hfcx1JA\": {\"value\": \"10\"}}" ),
+            eventRow( "EventUID001", "{\"hUQ5Hfcx1JA\": {\"value\": \"10\"}, \"xUQ5Hfcx1JA\": {\"value\": \"20\"}}" ),
+            eventRow( "EventUID002", null ),
+            eventRow( "EventUID003", "{\"hUQ5Hfcx1JA\": {\"value\": \"30\"}}" ) );
+
+        mockStreamedRows( rows );
+
+        List<Event> events = new ArrayList<>();
+
+        subject.getEvents( new EventSearchParams(), new ArrayList<>(), events::add );
+
+        assertThat( events, hasSize( 3 ) );
+        assertThat( Arrays.asList( events.get( 0 ).getEvent(), events.get( 1 ).getEvent(), events.get( 2 ).getEvent() ),
+            contains( "EventUID001", "EventUID002", "EventUID003" ) );
+        assertThat( events.get( 0 ).getDataValues(), hasSize( 2 ) );
+        assertThat( events.get( 1 ).getDataValues(), hasSize( 0 ) );
+        assertThat( events.get( 2 ).getDataValues(), hasSize( 1 ) );
+    }
+
+    @Test
+    public void verifyStreamedEventsArePassedOnPerBatch()
+    {
+        List<Map<String, Object>> rows = new ArrayList<>();
+
+        for ( int i = 0; i < 1500; i++ )
+        {
+            rows.add( eventRow( String.format( "EventUID%03d", i ), null ) );
+        }
+
+        List<Event> events = new ArrayList<>();
+        List<Integer> passedOnWhileReading = new ArrayList<>();
+
+        mockStreamedRows( rows, () -> passedOnWhileReading.add( events.size() ) );
+
+        subject.getEvents( new EventSearchParams(), new ArrayList<>(), events::add );
+
+        // The first batch is passed on while the rows of the second are read
+
+        assertThat( passedOnWhileReading.get( 1000 ), is( 0 ) );
+        assertThat( passedOnWhileReading.get( 1001 ), is( 1000 ) );
+        assertThat( events, hasSize( 1500 ) );
+    }
+
+    @Test
+    public void verifyEventsAreStreamedThroughCursor()
+        throws Exception
+    {
+        mockStreamedRows( new ArrayList<>() );
+
+        subject.getEvents( new EventSearchParams(), new ArrayList<>(), event -> {} );
+
+        ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass( PreparedStatementCreator.class );
+        verify( jdbcTemplate ).query( creator.capture(), any( RowCallbackHandler.class ) );
+
+        Connection connection = mock( Connection.class );
+        PreparedStatement statement = mock( PreparedStatement.class );
+        when( connection.prepareStatement( anyString(), eq( ResultSet.TYPE_FORWARD_ONLY ),
+            eq( ResultSet.CONCUR_READ_ONLY ) ) ).thenReturn( statement );
+
+        assertThat( creator.getValue().createPreparedStatement( connection ), is( statement ) );
+        verify( statement ).setFetchSize( 1000 );
+    }
+
+    private Map<String, Object> eventRow( String uid, String dataValues )
+    {
+        Map<String, Object> row = new HashMap<>();
+        row.put( "psi_uid", uid );
+        row.put( "psi_status", "ACTIVE" );
+        row.put( "ps_identifier", "PsUID000001" );
+        row.put( "p_identifier", "PrgUID00001" );
+        row.put( "ou_identifier", "OuUID000001" );
+        row.put( "p_type", "without_registration" );
+        row.put( "coc_identifier", "CocUID00001" );
+        row.put( "deco_uid", "DecoUID0001" );
+        row.put( "psi_eventdatavalues", dataValues );
+        return row;
+    }
+
+    private void mockStreamedRows( List<Map<String, Object>> rows )
+    {
+        mockStreamedRows( rows, () -> {} );
+    }
+
+    /**
+     * Mocks the streaming query to pass the given rows to the row callback
+     * handler, running the given action before each row.
+     */
+    private void mockStreamedRows( List<Map<String, Object>> rows, Runnable beforeRow )
+    {
+        try
+        {
+            List<String> columns = new ArrayList<>();
+            Map<String, Object>[] currentRow = new Map[1];
+
+            ResultSet resultSet = mock( ResultSet.class );
+            when( resultSet.getMetaData() ).thenReturn( mock( ResultSetMetaData.class ) );
+            when( resultSet.findColumn( anyString() ) ).thenAnswer( invocation -> {
+                String column = invocation.getArgument( 0 );
+
+                if ( !columns.contains( column ) )
+                {
+                    columns.add( column );
+                }
+
+                return columns.indexOf( column ) + 1;
+            } );
+            when( resultSet.getString( anyInt() ) ).thenAnswer(
+                invocation -> currentRow[0].get( columns.get( (int) invocation.getArgument( 0 ) - 1 ) ) );
+            when( resultSet.getObject( anyInt() ) ).thenAnswer(
+                invocation -> currentRow[0].get( columns.get( (int) invocation.getArgument( 0 ) - 1 ) ) );
+
+            doAnswer( invocation -> {
+                RowCallbackHandler handler = invocation.getArgument( 1 );
+
+                for ( Map<String, Object> row : rows )
+                {
+                    beforeRow.run();
+                    currentRow[0] = row;
+                    handler.processRow( resultSet );
+                }
+
+                return null;
+            } ).when( jdbcTemplate ).query( any( PreparedStatementCreator.class ), any( RowCallbackHandler.class ) );
+        }
+        catch ( Exception ex )
+        {
+            throw new IllegalStateException( ex );
+        }
+    }
+
     private void mockRowSet()
     {
         // Simulate 3 rows
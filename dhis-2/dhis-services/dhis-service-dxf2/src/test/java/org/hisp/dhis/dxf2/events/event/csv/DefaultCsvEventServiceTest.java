@@ -0,0 +1,125 @@
+package org.hisp.dhis.dxf2.events.event.csv;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import org.hisp.dhis.dxf2.events.event.DataValue;
+import org.hisp.dhis.dxf2.events.event.Event;
+import org.hisp.dhis.dxf2.events.event.Events;
+import org.hisp.dhis.event.EventStatus;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class DefaultCsvEventServiceTest
+{
+    private final DefaultCsvEventService subject = new DefaultCsvEventService();
+
+    @Test
+    public void verifyStreamedEventsAreWrittenLikeEventList()
+        throws IOException
+    {
+        Events events = new Events();
+        events.setEvents( Arrays.asList( createEvent( "EventUID001", "DeUID000001", "DeUID000002" ),
+            createEvent( "EventUID002", "DeUID000001" ) ) );
+
+        ByteArrayOutputStream listOutput = new ByteArrayOutputStream();
+        subject.writeEvents( listOutput, events, true );
+
+        ByteArrayOutputStream streamOutput = new ByteArrayOutputStream();
+        subject.writeEvents( streamOutput, consumer -> events.getEvents().forEach( consumer ), true );
+
+        String csv = streamOutput.toString( StandardCharsets.UTF_8.name() );
+
+        assertEquals( listOutput.toString( StandardCharsets.UTF_8.name() ), csv );
+        assertThat( csv.split( "\n" ).length, is( 4 ) );
+        assertThat( csv, containsString( "EventUID002" ) );
+    }
+
+    @Test
+    public void verifyStreamedEventsAreWrittenWithoutHeader()
+        throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        subject.writeEvents( output, consumer -> consumer.accept( createEvent( "EventUID001", "DeUID000001" ) ),
+            false );
+
+        String csv = output.toString( StandardCharsets.UTF_8.name() );
+
+        assertThat( csv.split( "\n" ).length, is( 1 ) );
+        assertThat( csv.startsWith( "EventUID001," ), is( true ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void verifyWriteFailureIsRethrown()
+        throws IOException
+    {
+        OutputStream output = new OutputStream()
+        {
+            @Override
+            public void write( int b )
+                throws IOException
+            {
+                throw new IOException( "Connection reset" );
+            }
+        };
+
+        subject.writeEvents( output, consumer -> consumer.accept( createEvent( "EventUID001", "DeUID000001" ) ),
+            true );
+    }
+
+    private Event createEvent( String uid, String... dataElements )
+    {
+        Event event = new Event();
+        event.setEvent( uid );
+        event.setStatus( EventStatus.ACTIVE );
+        event.setProgram( "PrgUID00001" );
+        event.setProgramStage( "PsUID000001" );
+        event.setOrgUnit( "OuUID000001" );
+        event.setEventDate( "2020-01-01T00:00:00.000" );
+        event.setDataValues( new HashSet<>() );
+
+        for ( String dataElement : dataElements )
+        {
+            event.getDataValues().add( new DataValue( dataElement, "10" ) );
+        }
+
+        return event;
+    }
+}
@@ -28,9 +28,12 @@ package org.hisp.dhis.fieldfilter;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 import org.hisp.dhis.attribute.Attribute;
@@ -45,9 +48,11 @@ import org.hisp.dhis.node.AbstractNode;
 import org.hisp.dhis.node.Node;
 import org.hisp.dhis.node.NodeTransformer;
 import org.hisp.dhis.node.Preset;
+import org.hisp.dhis.node.config.InclusionStrategy;
 import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
 import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.preheat.Preheat;
 import org.hisp.dhis.schema.Property;
@@ -59,6 +64,7 @@ import org.hisp.dhis.system.util.ReflectionUtils;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.user.UserCredentials;
+import org.hisp.dhis.util.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
@@ -66,16 +72,21 @@ import org.springframework.util.StringUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
+import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -186,6 +197,84 @@ public class DefaultFieldFilterService implements FieldFilterService
         CollectionNode collectionNode = new CollectionNode( rootSchema.getCollectionName() );
         collectionNode.setNamespace( rootSchema.getNamespace() );
 
+        produceNodes( wrapper, params, collectionNode::addChild );
+
+        return collectionNode;
+    }
+
+    @Override
+    public CollectionNode toStreamingCollectionNode( Class<?> wrapper, FieldFilterParams params )
+    {
+        if ( params.getUser() == null )
+        {
+            params.setUser( currentUserService.getCurrentUser() );
+        }
+
+        Schema rootSchema = schemaService.getDynamicSchema( wrapper );
+
+        CollectionNode collectionNode = new StreamingCollectionNode( rootSchema.getCollectionName(), true,
+            consumer -> produceNodes( wrapper, params, consumer ),
+            ( generator, inclusionStrategy ) -> writeObjects( wrapper, params, inclusionStrategy, generator ) );
+        collectionNode.setNamespace( rootSchema.getNamespace() );
+
+        return collectionNode;
+    }
+
+    /**
+     * Builds the node of each of the given objects and passes it to the given
+     * consumer, one object at a time.
+     */
+    private void produceNodes( Class<?> wrapper, FieldFilterParams params, Consumer<Node> consumer )
+    {
+        if ( params.getObjects().isEmpty() )
+        {
+            return;
+        }
+
+        final FieldMap finalFieldMap = getFieldMap( params );
+
+        params.getObjects().forEach( object -> {
+            AbstractNode node = buildNode( finalFieldMap, wrapper, object, params.getUser(), params.getDefaults() );
+
+            if ( node != null )
+            {
+                consumer.accept( node );
+            }
+        } );
+    }
+
+    /**
+     * Writes the given objects as elements of the current array of the given
+     * generator, using writers compiled once from the field map.
+     */
+    private void writeObjects( Class<?> wrapper, FieldFilterParams params, InclusionStrategy inclusionStrategy,
+        JsonGenerator generator ) throws IOException
+    {
+        if ( params.getObjects().isEmpty() )
+        {
+            return;
+        }
+
+        JsonScope collectionScope = JsonScope.started( generator, true );
+
+        FieldMap fieldMap = getFieldMap( params );
+
+        Schema schema = schemaService.getDynamicSchema( wrapper );
+        updateFields( fieldMap, schema.getKlass() );
+
+        List<FieldWriter> writers = compileFieldWriters( fieldMap, schema, params.getDefaults() );
+
+        for ( Object object : params.getObjects() )
+        {
+            writeObject( fieldMap, writers, schema, object, params.getUser(), params.getDefaults(),
+                inclusionStrategy, collectionScope );
+        }
+    }
+
+    private FieldMap getFieldMap( FieldFilterParams params )
+    {
+        String fields = params.getFields() == null ? "" : Joiner.on( "," ).join( params.getFields() );
+
         List<?> objects = params.getObjects();
 
         if ( params.getSkipSharing() )
@@ -196,11 +285,6 @@ public class DefaultFieldFilterService implements FieldFilterService
                 .filter( org.apache.commons.lang3.StringUtils::isNotBlank ).distinct().collect( Collectors.joining( "," ) );
         }
 
-        if ( params.getObjects().isEmpty() )
-        {
-            return collectionNode;
-        }
-
         FieldMap fieldMap = new FieldMap();
         Schema schema = schemaService.getDynamicSchema( objects.get( 0 ).getClass() );
 
@@ -216,23 +300,12 @@ public class DefaultFieldFilterService implements FieldFilterService
             fieldMap = fieldParser.parse( fields );
         }
 
-        final FieldMap finalFieldMap = fieldMap;
-
         if ( params.getUser() == null )
         {
             params.setUser( currentUserService.getCurrentUser() );
         }
 
-        objects.forEach( object -> {
-            AbstractNode node = buildNode( finalFieldMap, wrapper, object, params.getUser(), params.getDefaults() );
-
-            if ( node != null )
-            {
-                collectionNode.addChild( node );
-            }
-        } );
-
-        return collectionNode;
+        return fieldMap;
     }
 
     private AbstractNode buildNode( FieldMap fieldMap, Class<?> klass, Object object, User user, Defaults defaults )
@@ -272,6 +345,27 @@ public class DefaultFieldFilterService implements FieldFilterService
 
         updateFields( fieldMap, schema.getKlass() );
 
+        prepareObject( fieldMap, schema, object, user );
+
+        for ( String fieldKey : fieldMap.keySet() )
+        {
+            Property property = schema.getProperty( fieldKey );
+
+            if ( property == null || !property.isReadable() )
+            {
+                // throw new FieldFilterException( fieldKey, schema );
+                log.debug( "Unknown field property `" + fieldKey + "`, available fields are " + schema.getPropertyMap().keySet() );
+                continue;
+            }
+
+            complexNode.addChild( buildPropertyNode( fieldMap.get( fieldKey ), fieldKey, property, klass, object, user, defaults ) );
+        }
+
+        return complexNode;
+    }
+
+    private void prepareObject( FieldMap fieldMap, Schema schema, Object object, User user )
+    {
         if ( fieldMap.containsKey( "access" ) && schema.isIdentifiableObject() )
         {
             ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( (IdentifiableObject) object, user ) );
@@ -282,192 +376,589 @@ public class DefaultFieldFilterService implements FieldFilterService
             AttributeValue attributeValue = (AttributeValue) object;
             attributeValue.setAttribute( attributeService.getAttribute( attributeValue.getAttribute().getUid() ) );
         }
+    }
 
-        for ( String fieldKey : fieldMap.keySet() )
+    /**
+     * Builds the node of a single readable property of the given object,
+     * after the pipeline of the field has been applied. Returns null if the
+     * property should not be included.
+     */
+    private Node buildPropertyNode( FieldMap fieldValue, String fieldKey, Property property, Class<?> klass,
+        Object object, User user, Defaults defaults )
+    {
+        AbstractNode child = null;
+
+        Object returnValue = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+
+        Class<?> propertyClass = property.getKlass();
+        Schema propertySchema = schemaService.getDynamicSchema( propertyClass );
+
+        if ( property.hasPropertyTransformer() )
         {
-            AbstractNode child = null;
-            Property property = schema.getProperty( fieldKey );
-            FieldMap fieldValue = fieldMap.get( fieldKey );
+            Optional<PropertyTransformer> propertyTransformer = TRANSFORMER_CACHE.get( property.getPropertyTransformer().getName(), s -> {
+                try
+                {
+                    return property.getPropertyTransformer().newInstance();
+                }
+                catch ( InstantiationException | IllegalAccessException e )
+                {
+                    throw new RuntimeException( e );
+                }
+            } );
 
-            if ( property == null || !property.isReadable() )
+            if ( propertyTransformer.isPresent() && returnValue != null )
             {
-                // throw new FieldFilterException( fieldKey, schema );
-                log.debug( "Unknown field property `" + fieldKey + "`, available fields are " + schema.getPropertyMap().keySet() );
-                continue;
+                returnValue = propertyTransformer.get().transform( returnValue );
+                propertyClass = returnValue.getClass();
+                propertySchema = schemaService.getDynamicSchema( propertyClass );
+                updateFields( fieldValue, propertyTransformer.get().getKlass() );
             }
+        }
 
-            Object returnValue = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+        if ( returnValue != null
+            && propertySchema.getProperties().isEmpty()
+            && !property.isCollection()
+            && property.getKlass().isInterface()
+            && !property.isIdentifiableObject() )
+        {
+            // try to retrieve schema from concrete class
+            propertyClass = returnValue.getClass();
+            propertySchema = schemaService.getDynamicSchema( propertyClass );
+        }
 
-            Class<?> propertyClass = property.getKlass();
-            Schema propertySchema = schemaService.getDynamicSchema( propertyClass );
+        if ( returnValue == null && property.isCollection() )
+        {
+            return null;
+        }
+
+        if ( property.isCollection() )
+        {
+            updateFields( fieldValue, property.getItemKlass() );
+        }
+        else
+        {
+            updateFields( fieldValue, propertyClass );
+        }
+
+        if ( fieldValue.isEmpty() )
+        {
+            List<String> fields = Preset.defaultAssociationPreset().getFields();
 
-            if ( property.hasPropertyTransformer() )
+            if ( property.isCollection() )
             {
-                Optional<PropertyTransformer> propertyTransformer = TRANSFORMER_CACHE.get( property.getPropertyTransformer().getName(), s -> {
-                    try
+                Collection<?> collection = (Collection<?>) returnValue;
+
+                child = new CollectionNode( property.getCollectionName(), collection.size() );
+                child.setNamespace( property.getNamespace() );
+
+                if ( property.isIdentifiableObject() && isProperIdObject( property.getItemKlass() ) )
+                {
+                    final boolean mayExclude = collection.isEmpty() || mayExclude( property.getItemKlass(), defaults );
+
+                    for ( Object collectionObject : collection )
                     {
-                        return property.getPropertyTransformer().newInstance();
+                        if ( !mayExclude || !shouldExclude( collectionObject, defaults ) )
+                        {
+                            child.addChild( getProperties( property, collectionObject, fields ) );
+                        }
                     }
-                    catch ( InstantiationException | IllegalAccessException e )
+                }
+                else if ( !property.isSimple() )
+                {
+                    FieldMap map = getFullFieldMap( schemaService.getDynamicSchema( property.getItemKlass() ) );
+
+                    for ( Object collectionObject : collection )
                     {
-                        throw new RuntimeException( e );
+                        Node node = buildNode( map, property.getItemKlass(), collectionObject, user, defaults );
+
+                        if ( node != null && !node.getChildren().isEmpty() )
+                        {
+                            child.addChild( node );
+                        }
                     }
-                } );
+                }
+                else
+                {
+                    for ( Object collectionObject : collection )
+                    {
+                        SimpleNode simpleNode = child.addChild( new SimpleNode( property.getName(), collectionObject ) );
+                        simpleNode.setProperty( property );
+                    }
+                }
+            }
+            else if ( property.isIdentifiableObject() && isProperIdObject( propertyClass ) )
+            {
+                if ( !shouldExclude( returnValue, defaults ) )
+                {
+                    child = getProperties( property, returnValue, fields );
+                }
+            }
+            else
+            {
+                if ( propertySchema.getProperties().isEmpty() )
+                {
+                    SimpleNode simpleNode = new SimpleNode( fieldKey, returnValue );
+                    simpleNode.setAttribute( property.isAttribute() );
+                    simpleNode.setNamespace( property.getNamespace() );
 
-                if ( propertyTransformer.isPresent() && returnValue != null )
+                    child = simpleNode;
+                }
+                else
                 {
-                    returnValue = propertyTransformer.get().transform( returnValue );
-                    propertyClass = returnValue.getClass();
-                    propertySchema = schemaService.getDynamicSchema( propertyClass );
-                    updateFields( fieldValue, propertyTransformer.get().getKlass() );
+                    child = buildNode( getFullFieldMap( propertySchema ), propertyClass, returnValue, user, defaults );
                 }
             }
+        }
+        else
+        {
+            if ( property.isCollection() )
+            {
+                child = new CollectionNode( property.getCollectionName() );
+                child.setNamespace( property.getNamespace() );
+
+                for ( Object collectionObject : (Collection<?>) Objects.requireNonNull( returnValue ) )
+                {
+                    Node node;
 
-            if ( returnValue != null
-                && propertySchema.getProperties().isEmpty()
-                && !property.isCollection()
-                && property.getKlass().isInterface()
-                && !property.isIdentifiableObject() )
+                    if ( property.hasPropertyTransformer() )
+                    {
+                        // if it has a transformer, re-get the schema (the item klass has probably changed)
+                        Schema sch = schemaService.getDynamicSchema( collectionObject.getClass() );
+                        node = buildNode( fieldValue, sch.getKlass(), collectionObject, user, property.getName(), defaults );
+                    }
+                    else
+                    {
+                        node = buildNode( fieldValue, property.getItemKlass(), collectionObject, user, property.getName(), defaults );
+                    }
+
+                    if ( !Objects.requireNonNull( node ).getChildren().isEmpty() )
+                    {
+                        child.addChild( node );
+                    }
+                }
+            }
+            else
             {
-                // try to retrieve schema from concrete class
-                propertyClass = returnValue.getClass();
-                propertySchema = schemaService.getDynamicSchema( propertyClass );
+                returnValue = handleJsonbObjectProperties( klass, propertyClass, returnValue );
+                child = buildNode( fieldValue, propertyClass, returnValue, user, defaults );
             }
+        }
+
+        if ( child != null )
+        {
+            child.setName( fieldKey );
+            child.setProperty( property );
 
-            if ( returnValue == null && property.isCollection() )
+            // TODO fix ugly hack, will be replaced by custom field serializer/deserializer
+            if ( child.isSimple() && (((SimpleNode) child).getValue()) instanceof PeriodType )
             {
-                continue;
+                child = new SimpleNode( child.getName(), ((PeriodType) ((SimpleNode) child).getValue()).getName() );
             }
 
-            if ( property.isCollection() )
+            return fieldValue.getPipeline().process( child );
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a single object of the collection. Nodes are never created for
+     * fields handled by a compiled writer.
+     */
+    private void writeObject( FieldMap fieldMap, List<FieldWriter> writers, Schema schema, Object object, User user,
+        Defaults defaults, InclusionStrategy inclusionStrategy, JsonScope collectionScope ) throws IOException
+    {
+        if ( object == null )
+        {
+            collectionScope.start();
+
+            if ( inclusionStrategy.include( null ) )
             {
-                updateFields( fieldValue, property.getItemKlass() );
+                collectionScope.generator.writeNull();
             }
-            else
+
+            return;
+        }
+
+        if ( shouldExclude( object, defaults ) )
+        {
+            return;
+        }
+
+        collectionScope.start();
+
+        prepareObject( fieldMap, schema, object, user );
+
+        JsonScope objectScope = new JsonScope( collectionScope.generator, null, false );
+
+        for ( FieldWriter writer : writers )
+        {
+            writer.write( object, user, inclusionStrategy, objectScope );
+        }
+
+        objectScope.end( inclusionStrategy );
+    }
+
+    /**
+     * Compiles the given field map into a list of writers, one per readable
+     * field, ordered like the children of a node. Simple values, references
+     * and collections of simple values or references without nested fields,
+     * transformers or pipelines are written directly from the getters, all
+     * other fields are built as nodes and written through
+     * {@link #writeNode(Node, boolean, InclusionStrategy, JsonGenerator)}.
+     */
+    private List<FieldWriter> compileFieldWriters( FieldMap fieldMap, Schema schema, Defaults defaults )
+    {
+        ListMultimap<Integer, FieldWriter> writers = MultimapBuilder.treeKeys().arrayListValues().build();
+
+        for ( String fieldKey : fieldMap.keySet() )
+        {
+            Property property = schema.getProperty( fieldKey );
+            FieldMap fieldValue = fieldMap.get( fieldKey );
+
+            if ( property == null || !property.isReadable() )
             {
-                updateFields( fieldValue, propertyClass );
+                log.debug( "Unknown field property `" + fieldKey + "`, available fields are " + schema.getPropertyMap().keySet() );
+                continue;
             }
 
-            if ( fieldValue.isEmpty() )
-            {
-                List<String> fields = Preset.defaultAssociationPreset().getFields();
+            Schema propertySchema = schemaService.getDynamicSchema( property.getKlass() );
 
-                if ( property.isCollection() )
-                {
-                    Collection<?> collection = (Collection<?>) returnValue;
+            boolean simpleKlass = propertySchema.getProperties().isEmpty() && !property.getKlass().isInterface();
+
+            boolean plain = fieldValue.isEmpty() && fieldValue.getPipeline().isEmpty() && !property.hasPropertyTransformer();
 
-                    child = new CollectionNode( property.getCollectionName(), collection.size() );
-                    child.setNamespace( property.getNamespace() );
+            if ( plain && property.isCollection() && property.isIdentifiableObject() && isProperIdObject( property.getItemKlass() ) )
+            {
+                Map<String, Property> referenceProperties = getReferenceProperties( property.getItemKlass() );
+                boolean mayExclude = mayExclude( property.getItemKlass(), defaults );
+
+                writers.put( 40, ( object, user, inclusionStrategy, scope ) -> {
+                    Collection<?> collection = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
 
-                    if ( property.isIdentifiableObject() && isProperIdObject( property.getItemKlass() ) )
+                    if ( collection == null )
                     {
-                        final boolean mayExclude = collection.isEmpty() || mayExclude( property.getItemKlass(), defaults );
+                        return;
+                    }
 
-                        for ( Object collectionObject : collection )
+                    scope.start();
+
+                    JsonScope collectionScope = new JsonScope( scope.generator, fieldKey, true );
+
+                    for ( Object collectionObject : collection )
+                    {
+                        if ( collectionObject != null && (!mayExclude || !shouldExclude( collectionObject, defaults )) )
                         {
-                            if ( !mayExclude || !shouldExclude( collectionObject, defaults ) )
-                            {
-                                child.addChild( getProperties( property, collectionObject, fields ) );
-                            }
+                            collectionScope.start();
+                            writeReference( collectionObject, referenceProperties, inclusionStrategy,
+                                new JsonScope( scope.generator, null, false ) );
                         }
                     }
-                    else if ( !property.isSimple() )
-                    {
-                        FieldMap map = getFullFieldMap( schemaService.getDynamicSchema( property.getItemKlass() ) );
 
-                        for ( Object collectionObject : collection )
-                        {
-                            Node node = buildNode( map, property.getItemKlass(), collectionObject, user, defaults );
+                    collectionScope.end( inclusionStrategy );
+                } );
+            }
+            else if ( plain && property.isCollection() && !property.isIdentifiableObject() && property.isSimple() )
+            {
+                writers.put( 40, ( object, user, inclusionStrategy, scope ) -> {
+                    Collection<?> collection = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
 
-                            if ( node != null && !node.getChildren().isEmpty() )
-                            {
-                                child.addChild( node );
-                            }
-                        }
+                    if ( collection == null )
+                    {
+                        return;
                     }
-                    else
+
+                    scope.start();
+
+                    JsonScope collectionScope = new JsonScope( scope.generator, fieldKey, true );
+
+                    for ( Object collectionObject : collection )
                     {
-                        for ( Object collectionObject : collection )
+                        collectionScope.start();
+
+                        if ( inclusionStrategy.include( collectionObject ) )
                         {
-                            SimpleNode simpleNode = child.addChild( new SimpleNode( property.getName(), collectionObject ) );
-                            simpleNode.setProperty( property );
+                            writeValue( collectionObject, scope.generator );
                         }
                     }
-                }
-                else if ( property.isIdentifiableObject() && isProperIdObject( propertyClass ) )
-                {
-                    if ( !shouldExclude( returnValue, defaults ) )
+
+                    collectionScope.end( inclusionStrategy );
+                } );
+            }
+            else if ( plain && !property.isCollection() && property.isIdentifiableObject() && isProperIdObject( property.getKlass() ) )
+            {
+                Map<String, Property> referenceProperties = getReferenceProperties( property.getKlass() );
+
+                writers.put( 30, ( object, user, inclusionStrategy, scope ) -> {
+                    Object value = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+
+                    if ( value == null || shouldExclude( value, defaults ) )
                     {
-                        child = getProperties( property, returnValue, fields );
+                        return;
                     }
-                }
-                else
-                {
-                    if ( propertySchema.getProperties().isEmpty() )
-                    {
-                        SimpleNode simpleNode = new SimpleNode( fieldKey, returnValue );
-                        simpleNode.setAttribute( property.isAttribute() );
-                        simpleNode.setNamespace( property.getNamespace() );
 
-                        child = simpleNode;
+                    scope.start();
+
+                    writeReference( value, referenceProperties, inclusionStrategy, new JsonScope( scope.generator, fieldKey, false ) );
+                } );
+            }
+            else if ( plain && !property.isCollection() && !property.isIdentifiableObject() && simpleKlass )
+            {
+                writers.put( property.isAttribute() ? 10 : 20, ( object, user, inclusionStrategy, scope ) -> {
+                    Object value = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+
+                    if ( value instanceof PeriodType )
+                    {
+                        value = ((PeriodType) value).getName();
                     }
-                    else
+
+                    scope.start();
+
+                    if ( inclusionStrategy.include( value ) )
                     {
-                        child = buildNode( getFullFieldMap( propertySchema ), propertyClass, returnValue, user, defaults );
+                        scope.generator.writeFieldName( fieldKey );
+                        writeValue( value, scope.generator );
                     }
-                }
+                } );
             }
             else
             {
-                if ( property.isCollection() )
-                {
-                    child = new CollectionNode( property.getCollectionName() );
-                    child.setNamespace( property.getNamespace() );
+                writers.put( property.isCollection() ? 40 : simpleKlass ? 20 : 30, ( object, user, inclusionStrategy, scope ) -> {
+                    Node child = buildPropertyNode( fieldValue, fieldKey, property, schema.getKlass(), object, user, defaults );
 
-                    for ( Object collectionObject : (Collection<?>) Objects.requireNonNull( returnValue ) )
+                    if ( child == null || child.getName() == null )
                     {
-                        Node node;
+                        return;
+                    }
 
-                        if ( property.hasPropertyTransformer() )
-                        {
-                            // if it has a transformer, re-get the schema (the item klass has probably changed)
-                            Schema sch = schemaService.getDynamicSchema( collectionObject.getClass() );
-                            node = buildNode( fieldValue, sch.getKlass(), collectionObject, user, property.getName(), defaults );
-                        }
-                        else
-                        {
-                            node = buildNode( fieldValue, property.getItemKlass(), collectionObject, user, property.getName(), defaults );
-                        }
+                    scope.start();
 
-                        if ( !Objects.requireNonNull( node ).getChildren().isEmpty() )
-                        {
-                            child.addChild( node );
-                        }
-                    }
-                }
-                else
-                {
-                    returnValue = handleJsonbObjectProperties( klass, propertyClass, returnValue );
-                    child = buildNode( fieldValue, propertyClass, returnValue, user, defaults );
-                }
+                    writeNode( child, false, inclusionStrategy, scope.generator );
+                } );
             }
+        }
 
-            if ( child != null )
+        return new ArrayList<>( writers.values() );
+    }
+
+    /**
+     * Returns the properties of the default association preset of the given
+     * class, keyed on field name.
+     */
+    private Map<String, Property> getReferenceProperties( Class<?> klass )
+    {
+        Schema schema = schemaService.getDynamicSchema( klass );
+        Map<String, Property> properties = new LinkedHashMap<>();
+
+        for ( String field : Preset.defaultAssociationPreset().getFields() )
+        {
+            Property property = schema.getProperty( field );
+
+            if ( property != null )
+            {
+                properties.put( field, property );
+            }
+        }
+
+        return properties;
+    }
+
+    private void writeReference( Object object, Map<String, Property> properties, InclusionStrategy inclusionStrategy,
+        JsonScope scope ) throws IOException
+    {
+        if ( isBaseIdentifiableObjectIdOnly( object, Preset.defaultAssociationPreset().getFields() ) )
+        {
+            String uid = ((BaseIdentifiableObject) object).getUid();
+
+            scope.start();
+
+            if ( inclusionStrategy.include( uid ) )
+            {
+                scope.generator.writeStringField( "id", uid );
+            }
+        }
+        else
+        {
+            for ( Map.Entry<String, Property> entry : properties.entrySet() )
             {
-                child.setName( fieldKey );
-                child.setProperty( property );
+                Object value = ReflectionUtils.invokeMethod( object, entry.getValue().getGetterMethod() );
 
-                // TODO fix ugly hack, will be replaced by custom field serializer/deserializer
-                if ( child.isSimple() && (((SimpleNode) child).getValue()) instanceof PeriodType )
+                scope.start();
+
+                if ( inclusionStrategy.include( value ) )
                 {
-                    child = new SimpleNode( child.getName(), ((PeriodType) ((SimpleNode) child).getValue()).getName() );
+                    scope.generator.writeFieldName( entry.getKey() );
+                    writeValue( value, scope.generator );
                 }
+            }
+        }
 
-                complexNode.addChild( fieldValue.getPipeline().process( child ) );
+        scope.end( inclusionStrategy );
+    }
+
+    /**
+     * Writes a node the way the JSON node serializer does.
+     */
+    private void writeNode( Node node, boolean inCollection, InclusionStrategy inclusionStrategy, JsonGenerator generator )
+        throws IOException
+    {
+        if ( node.isSimple() )
+        {
+            Object value = ((SimpleNode) node).getValue();
+
+            if ( !inclusionStrategy.include( value ) )
+            {
+                return;
+            }
+
+            if ( !inCollection )
+            {
+                generator.writeFieldName( node.getName() );
             }
+
+            writeValue( value, generator );
         }
+        else
+        {
+            if ( !inclusionStrategy.include( node.getChildren() ) )
+            {
+                return;
+            }
 
-        return complexNode;
+            if ( !inCollection )
+            {
+                generator.writeFieldName( node.getName() );
+            }
+
+            if ( node.isCollection() )
+            {
+                generator.writeStartArray();
+            }
+            else
+            {
+                generator.writeStartObject();
+            }
+
+            for ( Node child : node.getChildren() )
+            {
+                writeNode( child, node.isCollection(), inclusionStrategy, generator );
+            }
+
+            if ( node.isCollection() )
+            {
+                generator.writeEndArray();
+            }
+            else
+            {
+                generator.writeEndObject();
+            }
+        }
+    }
+
+    private void writeValue( Object value, JsonGenerator generator ) throws IOException
+    {
+        if ( value == null )
+        {
+            generator.writeNull();
+        }
+        else if ( value instanceof Date )
+        {
+            generator.writeString( DateUtils.getIso8601NoTz( (Date) value ) );
+        }
+        else if ( value instanceof String )
+        {
+            generator.writeString( (String) value );
+        }
+        else
+        {
+            generator.writeObject( value );
+        }
+    }
+
+    /**
+     * Writer of a single field of an object.
+     */
+    @FunctionalInterface
+    private interface FieldWriter
+    {
+        void write( Object object, User user, InclusionStrategy inclusionStrategy, JsonScope scope ) throws IOException;
+    }
+
+    /**
+     * JSON object or array which is started when its first child is produced,
+     * so that empty objects and arrays can be left out according to the
+     * inclusion strategy like empty nodes.
+     */
+    private static final class JsonScope
+    {
+        private final JsonGenerator generator;
+
+        private final String name;
+
+        private final boolean array;
+
+        private boolean started;
+
+        JsonScope( JsonGenerator generator, String name, boolean array )
+        {
+            this.generator = generator;
+            this.name = name;
+            this.array = array;
+        }
+
+        /**
+         * Returns a scope for an object or array which the generator has
+         * already started.
+         */
+        static JsonScope started( JsonGenerator generator, boolean array )
+        {
+            JsonScope scope = new JsonScope( generator, null, array );
+            scope.started = true;
+            return scope;
+        }
+
+        void start() throws IOException
+        {
+            if ( started )
+            {
+                return;
+            }
+
+            if ( name != null )
+            {
+                generator.writeFieldName( name );
+            }
+
+            if ( array )
+            {
+                generator.writeStartArray();
+            }
+            else
+            {
+                generator.writeStartObject();
+            }
+
+            started = true;
+        }
+
+        void end( InclusionStrategy inclusionStrategy ) throws IOException
+        {
+            if ( !started && !inclusionStrategy.include( Collections.emptyList() ) )
+            {
+                return;
+            }
+
+            start();
+
+            if ( array )
+            {
+                generator.writeEndArray();
+            }
+            else
+            {
+                generator.writeEndObject();
+            }
+        }
     }
 
     private void updateFields( FieldMap fieldMap, Class<?> klass )
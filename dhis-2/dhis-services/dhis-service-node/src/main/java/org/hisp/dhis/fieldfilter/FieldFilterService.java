@@ -51,4 +51,13 @@ public interface FieldFilterService
      * Perform inclusion/exclusion on a list of objects.
      */
     CollectionNode toCollectionNode( Class<?> wrapper, FieldFilterParams params );
+
+    /**
+     * Perform inclusion/exclusion on a list of objects. The returned node is a
+     * {@link org.hisp.dhis.node.types.StreamingCollectionNode}, which the JSON
+     * node serializer writes directly to the output, without building the
+     * child nodes of the objects. The child nodes are built on first access
+     * for other serializers.
+     */
+    CollectionNode toStreamingCollectionNode( Class<?> wrapper, FieldFilterParams params );
 }
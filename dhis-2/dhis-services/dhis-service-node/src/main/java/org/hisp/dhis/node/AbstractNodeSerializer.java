@@ -33,6 +33,7 @@ import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
 import org.hisp.dhis.node.types.RootNode;
 import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
@@ -127,6 +128,13 @@ public abstract class AbstractNodeSerializer implements NodeSerializer
 
     protected void writeCollectionNode( CollectionNode collectionNode ) throws Exception
     {
+        if ( collectionNode instanceof StreamingCollectionNode
+            && !((StreamingCollectionNode) collectionNode).isMaterialized() )
+        {
+            writeStreamingCollectionNode( (StreamingCollectionNode) collectionNode );
+            return;
+        }
+
         if ( !config.getInclusionStrategy().include( collectionNode.getChildren() ) )
         {
             return;
@@ -145,6 +153,37 @@ public abstract class AbstractNodeSerializer implements NodeSerializer
 
     protected abstract void endWriteCollectionNode( CollectionNode collectionNode ) throws Exception;
 
+    /**
+     * Writes each child of the streaming collection as soon as it is produced.
+     * The collection is written even when it turns out to be empty, since the
+     * children are not known up front.
+     */
+    protected void writeStreamingCollectionNode( StreamingCollectionNode collectionNode ) throws Exception
+    {
+        startWriteCollectionNode( collectionNode );
+
+        try
+        {
+            collectionNode.produce( node -> {
+                try
+                {
+                    dispatcher( node );
+                    flushStream();
+                }
+                catch ( Exception ex )
+                {
+                    throw new StreamingException( ex );
+                }
+            } );
+        }
+        catch ( StreamingException ex )
+        {
+            throw (Exception) ex.getCause();
+        }
+
+        endWriteCollectionNode( collectionNode );
+    }
+
     protected void dispatcher( Node node ) throws Exception
     {
         switch ( node.getType() )
@@ -160,4 +199,16 @@ public abstract class AbstractNodeSerializer implements NodeSerializer
                 break;
         }
     }
+
+    /**
+     * Carries a checked exception of a child serialization out of the
+     * producer of a streaming collection.
+     */
+    private static class StreamingException extends RuntimeException
+    {
+        StreamingException( Exception cause )
+        {
+            super( cause );
+        }
+    }
 }
@@ -37,6 +37,7 @@ import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
 import org.hisp.dhis.node.types.RootNode;
 import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.hisp.dhis.util.DateUtils;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
@@ -161,6 +162,20 @@ public class Jackson2JsonNodeSerializer extends AbstractNodeSerializer
         generator.writeEndObject();
     }
 
+    @Override
+    protected void writeStreamingCollectionNode( StreamingCollectionNode collectionNode ) throws Exception
+    {
+        if ( collectionNode.getJsonProducer() == null )
+        {
+            super.writeStreamingCollectionNode( collectionNode );
+            return;
+        }
+
+        startWriteCollectionNode( collectionNode );
+        collectionNode.getJsonProducer().produce( generator, config.getInclusionStrategy() );
+        endWriteCollectionNode( collectionNode );
+    }
+
     @Override
     protected void startWriteCollectionNode( CollectionNode collectionNode ) throws Exception
     {
@@ -39,6 +39,7 @@ import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
 import org.hisp.dhis.node.types.RootNode;
 import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.hisp.dhis.util.DateUtils;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
@@ -182,7 +183,7 @@ public class StAXNodeSerializer extends AbstractNodeSerializer
     @Override
     protected void startWriteCollectionNode( CollectionNode collectionNode ) throws Exception
     {
-        if ( collectionNode.isWrapping() && !collectionNode.getChildren().isEmpty() )
+        if ( isWrapped( collectionNode ) )
         {
             writeStartElement( collectionNode );
         }
@@ -191,12 +192,27 @@ public class StAXNodeSerializer extends AbstractNodeSerializer
     @Override
     protected void endWriteCollectionNode( CollectionNode collectionNode ) throws Exception
     {
-        if ( collectionNode.isWrapping() && !collectionNode.getChildren().isEmpty() )
+        if ( isWrapped( collectionNode ) )
         {
             writer.writeEndElement();
         }
     }
 
+    /**
+     * Streaming collections are always wrapped when wrapping, since their
+     * children are not known before they are written.
+     */
+    private boolean isWrapped( CollectionNode collectionNode )
+    {
+        if ( collectionNode instanceof StreamingCollectionNode
+            && !((StreamingCollectionNode) collectionNode).isMaterialized() )
+        {
+            return collectionNode.isWrapping();
+        }
+
+        return collectionNode.isWrapping() && !collectionNode.getChildren().isEmpty();
+    }
+
     private void writeStartElement( Node node ) throws XMLStreamException
     {
         if ( !StringUtils.isEmpty( node.getComment() ) )
@@ -0,0 +1,157 @@
+package org.hisp.dhis.node.types;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.hisp.dhis.node.Node;
+import org.hisp.dhis.node.config.InclusionStrategy;
+import org.hisp.dhis.node.exception.InvalidTypeException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collection node whose children are produced while the node is serialized.
+ * The node serializers write each child as soon as it is produced, so the
+ * children are never held in memory together. The children are collected on
+ * first access for serializers which need the full node tree.
+ * <p>
+ * A collection may also have a JSON producer, which the JSON serializer uses
+ * to write the children straight to its generator without building nodes.
+ */
+public class StreamingCollectionNode extends CollectionNode
+{
+    /**
+     * Writes the children of a collection as elements of the current array of
+     * the given generator.
+     */
+    @FunctionalInterface
+    public interface JsonProducer
+    {
+        void produce( JsonGenerator generator, InclusionStrategy inclusionStrategy ) throws IOException;
+    }
+
+    private final Consumer<Consumer<Node>> producer;
+
+    private final JsonProducer jsonProducer;
+
+    private boolean materialized;
+
+    /**
+     * @param name the name of the collection.
+     * @param wrapping whether the collection wraps its children.
+     * @param producer the producer which passes each child to the given consumer.
+     */
+    public StreamingCollectionNode( String name, boolean wrapping, Consumer<Consumer<Node>> producer )
+    {
+        this( name, wrapping, producer, null );
+    }
+
+    /**
+     * @param name the name of the collection.
+     * @param wrapping whether the collection wraps its children.
+     * @param producer the producer which passes each child to the given consumer.
+     * @param jsonProducer the producer which writes the children to a JSON
+     *        generator, or null.
+     */
+    public StreamingCollectionNode( String name, boolean wrapping, Consumer<Consumer<Node>> producer,
+        JsonProducer jsonProducer )
+    {
+        super( name, wrapping );
+        this.producer = producer;
+        this.jsonProducer = jsonProducer;
+    }
+
+    /**
+     * Produces the children and passes each of them to the given consumer.
+     * Should only be used when the node is not materialized.
+     */
+    public void produce( Consumer<Node> consumer )
+    {
+        producer.accept( consumer );
+    }
+
+    /**
+     * Returns the producer which writes the children straight to a JSON
+     * generator, or null if the children can only be produced as nodes.
+     */
+    public JsonProducer getJsonProducer()
+    {
+        return jsonProducer;
+    }
+
+    public boolean isMaterialized()
+    {
+        return materialized;
+    }
+
+    @Override
+    public <T extends Node> T addChild( T child ) throws InvalidTypeException
+    {
+        materialize();
+        return super.addChild( child );
+    }
+
+    @Override
+    public <T extends Node> void removeChild( T child )
+    {
+        materialize();
+        super.removeChild( child );
+    }
+
+    @Override
+    public List<Node> getUnorderedChildren()
+    {
+        materialize();
+        return super.getUnorderedChildren();
+    }
+
+    @Override
+    public List<Node> getChildren()
+    {
+        materialize();
+        return super.getChildren();
+    }
+
+    @Override
+    public void setChildren( List<Node> children )
+    {
+        materialized = true;
+        super.setChildren( children );
+    }
+
+    private void materialize()
+    {
+        if ( !materialized )
+        {
+            materialized = true;
+            producer.accept( super::addChild );
+        }
+    }
+}
@@ -28,17 +28,24 @@ package org.hisp.dhis.fieldfilter;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hamcrest.Matchers;
 import org.hibernate.SessionFactory;
 import org.hisp.dhis.attribute.AttributeService;
 import org.hisp.dhis.category.Category;
 import org.hisp.dhis.category.CategoryOption;
+import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.node.Node;
 import org.hisp.dhis.node.NodeTransformer;
+import org.hisp.dhis.node.NodeUtils;
+import org.hisp.dhis.node.config.InclusionStrategy;
+import org.hisp.dhis.node.serializers.Jackson2JsonNodeSerializer;
 import org.hisp.dhis.node.transformers.PluckNodeTransformer;
 import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
+import org.hisp.dhis.node.types.RootNode;
 import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.schema.DefaultSchemaService;
 import org.hisp.dhis.schema.Jackson2PropertyIntrospectorService;
@@ -46,6 +53,7 @@ import org.hisp.dhis.schema.Property;
 import org.hisp.dhis.schema.SchemaService;
 import org.hisp.dhis.security.acl.AclService;
 import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.User;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -55,10 +63,12 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -85,6 +95,8 @@ public class DefaultFieldFilterServiceTest
 
     private DefaultFieldFilterService service;
 
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
     @Rule
     public MockitoRule rule = MockitoJUnit.rule();
 
@@ -307,6 +319,148 @@ public class DefaultFieldFilterServiceTest
         Assert.assertThat( ouNames, Matchers.containsInAnyOrder( "Test 1", "Test 2" ) );
     }
 
+    @Test
+    public void streamingCollectionNode() throws Exception
+    {
+        final CategoryOption co1 = new CategoryOption();
+        co1.setUid( "abc1" );
+        co1.setName( "Option 1" );
+
+        final CategoryOption co2 = new CategoryOption();
+        co2.setUid( "abc2" );
+        co2.setName( "default" );
+
+        final Category category = new Category();
+        category.setUid( "def1" );
+        category.setName( "Category" );
+        category.getCategoryOptions().add( co1 );
+        category.getCategoryOptions().add( co2 );
+
+        final List<String> fields = Arrays.asList( "id", "name", "code", "categoryOptions", "categoryCombos[id,name]" );
+
+        final FieldFilterParams params = new FieldFilterParams( Collections.singletonList( category ), fields );
+        params.setDefaults( Defaults.EXCLUDE );
+
+        final FieldFilterParams streamingParams = new FieldFilterParams( Collections.singletonList( category ), fields );
+        streamingParams.setDefaults( Defaults.EXCLUDE );
+
+        final RootNode rootNode = NodeUtils.createMetadata( service.toCollectionNode( Category.class, params ) );
+        final RootNode streamingRootNode = NodeUtils.createMetadata( service.toStreamingCollectionNode( Category.class, streamingParams ) );
+
+        final String json = serialize( rootNode );
+        final String streamingJson = serialize( streamingRootNode );
+
+        Assert.assertFalse( ( (StreamingCollectionNode) streamingRootNode.getUnorderedChildren().get( 0 ) ).isMaterialized() );
+        Assert.assertEquals( jsonMapper.readTree( json ), jsonMapper.readTree( streamingJson ) );
+        Assert.assertEquals( 1, jsonMapper.readTree( streamingJson ).get( "categories" ).get( 0 ).get( "categoryOptions" ).size() );
+    }
+
+    @Test
+    public void streamingCollectionNodeWithDates() throws Exception
+    {
+        final CategoryOption option = new CategoryOption();
+        option.setUid( "abc1" );
+        option.setName( "Option 1" );
+        option.setCreated( new Date( 1577880000000L ) );
+        option.setStartDate( new Date( 1580558400000L ) );
+
+        final String streamingJson = assertStreamingJson( CategoryOption.class, Collections.singletonList( option ),
+            Arrays.asList( "id", "created", "startDate", "endDate" ), InclusionStrategy.Include.NON_NULL );
+
+        Assert.assertTrue( jsonMapper.readTree( streamingJson ).get( "categoryOptions" ).get( 0 ).get( "created" ).isTextual() );
+        Assert.assertFalse( jsonMapper.readTree( streamingJson ).get( "categoryOptions" ).get( 0 ).has( "endDate" ) );
+    }
+
+    @Test
+    public void streamingCollectionNodeWithSimpleValueCollections() throws Exception
+    {
+        final DataElement dataElement = new DataElement();
+        dataElement.setUid( "abc1" );
+        dataElement.setName( "Data element 1" );
+        dataElement.setAggregationLevels( Arrays.asList( 1, 3 ) );
+
+        final String streamingJson = assertStreamingJson( DataElement.class, Collections.singletonList( dataElement ),
+            Arrays.asList( "id", "aggregationLevels" ), InclusionStrategy.Include.NON_NULL );
+
+        Assert.assertEquals( 2, jsonMapper.readTree( streamingJson ).get( "dataElements" ).get( 0 ).get( "aggregationLevels" ).size() );
+    }
+
+    @Test
+    public void streamingCollectionNodeWithPipelineAndPropertyTransformer() throws Exception
+    {
+        final CategoryOption co1 = new CategoryOption();
+        co1.setUid( "abc1" );
+        co1.setName( "Option 1" );
+
+        final CategoryOption co2 = new CategoryOption();
+        co2.setUid( "abc2" );
+        co2.setName( "Option 2" );
+
+        final User user = new User();
+        user.setUid( "ghi1" );
+        user.setFirstName( "First" );
+        user.setSurname( "Last" );
+
+        final Category category = new Category();
+        category.setUid( "def1" );
+        category.setName( "Category" );
+        category.setUser( user );
+        category.getCategoryOptions().add( co1 );
+        category.getCategoryOptions().add( co2 );
+
+        final String streamingJson = assertStreamingJson( Category.class, Collections.singletonList( category ),
+            Arrays.asList( "id", "categoryOptions~pluck", "user" ), InclusionStrategy.Include.NON_NULL );
+
+        Assert.assertTrue( jsonMapper.readTree( streamingJson ).get( "categories" ).get( 0 ).get( "categoryOptions" ).get( 0 ).isTextual() );
+        Assert.assertEquals( "ghi1", jsonMapper.readTree( streamingJson ).get( "categories" ).get( 0 ).get( "user" ).get( "id" ).asText() );
+    }
+
+    @Test
+    public void streamingCollectionNodeIncludeAlways() throws Exception
+    {
+        final Category category = new Category();
+        category.setUid( "def1" );
+        category.setName( "Category" );
+
+        final String streamingJson = assertStreamingJson( Category.class, Collections.singletonList( category ),
+            Arrays.asList( "id", "code", "categoryOptions" ), InclusionStrategy.Include.ALWAYS );
+
+        Assert.assertTrue( jsonMapper.readTree( streamingJson ).get( "categories" ).get( 0 ).get( "code" ).isNull() );
+        Assert.assertEquals( 0, jsonMapper.readTree( streamingJson ).get( "categories" ).get( 0 ).get( "categoryOptions" ).size() );
+    }
+
+    /**
+     * Asserts that the streaming collection node of the given objects is
+     * written to JSON without being materialized, and like the node tree.
+     *
+     * @return the JSON of the streaming collection node.
+     */
+    private String assertStreamingJson( Class<?> klass, List<?> objects, List<String> fields,
+        InclusionStrategy inclusionStrategy ) throws Exception
+    {
+        final RootNode rootNode = NodeUtils.createMetadata( service.toCollectionNode( klass, new FieldFilterParams( objects, fields ) ) );
+        final RootNode streamingRootNode = NodeUtils.createMetadata( service.toStreamingCollectionNode( klass, new FieldFilterParams( objects, fields ) ) );
+
+        rootNode.getConfig().setInclusionStrategy( inclusionStrategy );
+        streamingRootNode.getConfig().setInclusionStrategy( inclusionStrategy );
+
+        final String json = serialize( rootNode );
+        final String streamingJson = serialize( streamingRootNode );
+
+        Assert.assertFalse( ( (StreamingCollectionNode) streamingRootNode.getUnorderedChildren().get( 0 ) ).isMaterialized() );
+        Assert.assertEquals( jsonMapper.readTree( json ), jsonMapper.readTree( streamingJson ) );
+
+        return streamingJson;
+    }
+
+    private String serialize( RootNode rootNode ) throws Exception
+    {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new Jackson2JsonNodeSerializer( jsonMapper ).serialize( rootNode, outputStream );
+
+        return outputStream.toString( "UTF-8" );
+    }
+
     private Node getNamedNode( @Nonnull Collection<? extends Node> nodes, @Nonnull String name )
     {
         return nodes.stream().filter( n -> name.equals( n.getName() ) ).findFirst().orElse( null );
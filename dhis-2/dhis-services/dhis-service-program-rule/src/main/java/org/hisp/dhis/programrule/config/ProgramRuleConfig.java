@@ -28,8 +28,18 @@ package org.hisp.dhis.programrule.config;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import static org.hisp.dhis.external.conf.ConfigurationKey.TRACKER_RULE_ENGINE_CONCURRENCY;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.constant.ConstantService;
-import org.hisp.dhis.organisationunit.OrganisationUnitGroupService;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.program.ProgramService;
 import org.hisp.dhis.programrule.ProgramRuleService;
 import org.hisp.dhis.programrule.ProgramRuleVariableService;
@@ -39,6 +49,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * @author Enrico Colasante
  */
@@ -51,15 +63,43 @@ public class ProgramRuleConfig
     @Autowired
     private ProgramRuleVariableService programRuleVariableService;
 
-    @Autowired
-    private OrganisationUnitGroupService organisationUnitGroupService;
-
     @Autowired
     private CurrentUserService currentUserService;
 
     @Autowired
     private ConstantService constantService;
 
+    @Autowired
+    private RuleEngineContextCache ruleEngineContextCache;
+
+    @Autowired
+    private DhisConfigurationProvider config;
+
+    /**
+     * Executor for batch evaluations shared by both rule engines, null if
+     * batches are configured to be evaluated on the calling thread.
+     */
+    private ExecutorService ruleEngineExecutor;
+
+    @PostConstruct
+    public void init()
+    {
+        int concurrency = NumberUtils.toInt( config.getProperty( TRACKER_RULE_ENGINE_CONCURRENCY ), 0 );
+        int threads = concurrency > 0 ? concurrency : SystemUtils.getCpuCores();
+
+        ruleEngineExecutor = threads > 1 ? Executors.newFixedThreadPool( threads, new ThreadFactoryBuilder()
+            .setNameFormat( "program-rule-engine-%d" ).setDaemon( true ).build() ) : null;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( ruleEngineExecutor != null )
+        {
+            ruleEngineExecutor.shutdownNow();
+        }
+    }
+
     /**
      * This bean is used in the system when an event is intercepted by
      * {@link ProgramRuleEngineListener}. Only the notification rule actions are
@@ -69,8 +109,8 @@ public class ProgramRuleConfig
     public ProgramRuleEngine oldRuleEngine( OldImplementableRuleService oldImplementableRuleService )
     {
         return new ProgramRuleEngine( programRuleEntityMapperService, programRuleVariableService,
-            organisationUnitGroupService, currentUserService, constantService,
-            oldImplementableRuleService );
+            currentUserService, constantService,
+            oldImplementableRuleService, ruleEngineContextCache, ruleEngineExecutor );
     }
 
     /**
@@ -81,7 +121,7 @@ public class ProgramRuleConfig
     public ProgramRuleEngine newRuleEngine( NewImplementableRuleService newImplementableRuleService )
     {
         return new ProgramRuleEngine( programRuleEntityMapperService, programRuleVariableService,
-            organisationUnitGroupService, currentUserService, constantService,
-            newImplementableRuleService );
+            currentUserService, constantService,
+            newImplementableRuleService, ruleEngineContextCache, ruleEngineExecutor );
     }
 }
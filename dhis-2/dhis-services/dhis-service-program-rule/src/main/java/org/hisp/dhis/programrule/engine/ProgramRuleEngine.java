@@ -31,23 +31,31 @@ package org.hisp.dhis.programrule.engine;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
 
-import org.hisp.dhis.common.BaseIdentifiableObject;
 import org.hisp.dhis.commons.collection.ListUtils;
 import org.hisp.dhis.commons.util.DebugUtils;
 import org.hisp.dhis.constant.ConstantService;
-import org.hisp.dhis.organisationunit.OrganisationUnit;
-import org.hisp.dhis.organisationunit.OrganisationUnitGroupService;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.program.ProgramInstance;
 import org.hisp.dhis.program.ProgramStageInstance;
 import org.hisp.dhis.programrule.*;
+import org.hisp.dhis.programrule.engine.RuleEngineContextCache.ProgramRules;
 import org.hisp.dhis.rules.DataItem;
 import org.hisp.dhis.rules.RuleEngine;
 import org.hisp.dhis.rules.RuleEngineContext;
@@ -66,38 +74,60 @@ public class ProgramRuleEngine
 {
     private static final String USER = "USER";
 
+    private static final Pattern IN_ORG_UNIT_GROUP_CALL_PATTERN = Pattern.compile( "d2:inOrgUnitGroup\\s*\\(" );
+
+    private static final Pattern IN_ORG_UNIT_GROUP_PATTERN = Pattern.compile( "d2:inOrgUnitGroup\\s*\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)" );
+
     private final ProgramRuleEntityMapperService programRuleEntityMapperService;
 
     private final ProgramRuleVariableService programRuleVariableService;
 
-    private final OrganisationUnitGroupService organisationUnitGroupService;
-
     private final CurrentUserService currentUserService;
 
     private final ConstantService constantService;
 
     private final ImplementableRuleService implementableRuleService;
 
+    private final RuleEngineContextCache ruleEngineContextCache;
+
+    /**
+     * Executor for batch evaluations, shared between the rule engines, null
+     * if batches are configured to be evaluated on the calling thread.
+     */
+    private final ExecutorService executor;
+
     public ProgramRuleEngine( ProgramRuleEntityMapperService programRuleEntityMapperService,
         ProgramRuleVariableService programRuleVariableService,
-        OrganisationUnitGroupService organisationUnitGroupService,
         CurrentUserService currentUserService,
         ConstantService constantService,
-        ImplementableRuleService implementableRuleService )
+        ImplementableRuleService implementableRuleService,
+        RuleEngineContextCache ruleEngineContextCache,
+        ExecutorService executor )
     {
         checkNotNull( programRuleEntityMapperService );
         checkNotNull( programRuleVariableService );
-        checkNotNull( organisationUnitGroupService );
         checkNotNull( currentUserService );
         checkNotNull( constantService );
         checkNotNull( implementableRuleService );
+        checkNotNull( ruleEngineContextCache );
 
         this.programRuleEntityMapperService = programRuleEntityMapperService;
         this.programRuleVariableService = programRuleVariableService;
-        this.organisationUnitGroupService = organisationUnitGroupService;
         this.currentUserService = currentUserService;
         this.constantService = constantService;
         this.implementableRuleService = implementableRuleService;
+        this.ruleEngineContextCache = ruleEngineContextCache;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a new batch of evaluations.
+     *
+     * @return a new {@link Batch}.
+     */
+    public Batch newBatch()
+    {
+        return new Batch();
     }
 
     public List<RuleEffect> evaluate( ProgramInstance enrollment, Set<ProgramStageInstance> events )
@@ -168,59 +198,161 @@ public class ProgramRuleEngine
 
         List<ProgramRuleVariable> programRuleVariables = programRuleVariableService.getProgramRuleVariable( program );
 
+        Set<String> organisationUnitGroups = new HashSet<>();
+
+        if ( !addOrganisationUnitGroups( condition, organisationUnitGroups ) )
+        {
+            organisationUnitGroups = null;
+        }
+
         RuleEngine ruleEngine = ruleEngineBuilder( ListUtils.newList(), programRuleVariables,
-            RuleEngineIntent.DESCRIPTION ).build();
+            organisationUnitGroups, RuleEngineIntent.DESCRIPTION ).build();
 
         return ruleEngine.evaluate( condition );
     }
 
+    /**
+     * Builds the rule engine context of the given program. The rules, rule
+     * variables, constants and members of the referenced organisation unit
+     * groups are taken from the {@link RuleEngineContextCache}, only the user
+     * roles of the current user are added per evaluation.
+     */
     private RuleEngineContext getRuleEngineContext( Program program )
+    {
+        ProgramRules programRules = ruleEngineContextCache.getProgramRules(
+            implementableRuleService.getClass().getName() + ":" + program.getUid(), key -> getProgramRules( program ) );
+
+        return RuleEngineContext.builder()
+            .supplementaryData( getSupplementaryData( programRules.getOrganisationUnitGroups() ) )
+            .rules( programRules.getRules() )
+            .ruleVariables( programRules.getRuleVariables() )
+            .constantsValue( programRules.getConstants() )
+            .build();
+    }
+
+    private ProgramRules getProgramRules( Program program )
     {
         List<ProgramRuleVariable> programRuleVariables = programRuleVariableService
             .getProgramRuleVariable( program );
         List<ProgramRule> programRules = implementableRuleService
             .getImplementableRules( program );
 
-        Map<String, String> constantMap = constantService.getConstantMap().entrySet()
-            .stream()
-            .collect( Collectors.toMap( Map.Entry::getKey, v -> v.getValue().toString() ) );
+        return new ProgramRules(
+            programRuleEntityMapperService.toMappedProgramRules( programRules ),
+            programRuleEntityMapperService.toMappedProgramRuleVariables( programRuleVariables ),
+            getConstantMap(), getOrganisationUnitGroups( programRules ) );
+    }
 
-        Map<String, List<String>> supplementaryData = organisationUnitGroupService.getAllOrganisationUnitGroups()
-            .stream()
-            .collect( Collectors.toMap( BaseIdentifiableObject::getUid,
-                g -> g.getMembers().stream().map( OrganisationUnit::getUid ).collect( Collectors.toList() ) ) );
+    /**
+     * Returns the identifiers of the organisation unit groups referenced
+     * through d2:inOrgUnitGroup in the conditions and action data of the given
+     * rules. Only the members of these groups are passed to the rule engine.
+     * Returns null if a group is not given as a string literal, in which case
+     * the members of all groups are passed.
+     */
+    private Set<String> getOrganisationUnitGroups( List<ProgramRule> programRules )
+    {
+        Set<String> organisationUnitGroups = new HashSet<>();
 
-        if ( currentUserService.getCurrentUser() != null )
+        for ( ProgramRule programRule : programRules )
         {
-            supplementaryData.put( USER, currentUserService.getCurrentUser().getUserCredentials()
-                .getUserAuthorityGroups().stream().map( UserAuthorityGroup::getUid ).collect( Collectors.toList() ) );
+            boolean literal = addOrganisationUnitGroups( programRule.getCondition(), organisationUnitGroups );
+
+            for ( ProgramRuleAction action : programRule.getProgramRuleActions() )
+            {
+                literal &= addOrganisationUnitGroups( action.getData(), organisationUnitGroups );
+            }
+
+            if ( !literal )
+            {
+                log.warn( "Program rule '" + programRule.getUid() + "' references an organisation unit group " +
+                    "which is not a string literal, members of all organisation unit groups are loaded" );
+
+                return null;
+            }
         }
 
-        return RuleEngineContext.builder()
-            .supplementaryData( supplementaryData )
-            .rules( programRuleEntityMapperService.toMappedProgramRules( programRules ) )
-            .ruleVariables( programRuleEntityMapperService.toMappedProgramRuleVariables( programRuleVariables ) )
-            .constantsValue( constantMap )
-            .build();
+        return organisationUnitGroups;
     }
 
-    private RuleEngine.Builder ruleEngineBuilder( List<ProgramRule> programRules,
-        List<ProgramRuleVariable> programRuleVariables, RuleEngineIntent intent )
+    /**
+     * Adds the organisation unit groups referenced through d2:inOrgUnitGroup
+     * in the given expression.
+     *
+     * @return false if a group is not given as a string literal.
+     */
+    private boolean addOrganisationUnitGroups( String expression, Set<String> organisationUnitGroups )
+    {
+        if ( expression == null )
+        {
+            return true;
+        }
+
+        Matcher call = IN_ORG_UNIT_GROUP_CALL_PATTERN.matcher( expression );
+        Matcher matcher = IN_ORG_UNIT_GROUP_PATTERN.matcher( expression );
+
+        boolean literal = true;
+
+        while ( call.find() )
+        {
+            matcher.region( call.start(), expression.length() );
+
+            if ( matcher.lookingAt() )
+            {
+                organisationUnitGroups.add( matcher.group( 1 ) );
+            }
+            else
+            {
+                literal = false;
+            }
+        }
+
+        return literal;
+    }
+
+    private Map<String, String> getConstantMap()
     {
-        Map<String, String> constantMap = constantService.getConstantMap().entrySet()
+        return constantService.getConstantMap().entrySet()
             .stream()
             .collect( Collectors.toMap( Map.Entry::getKey, v -> v.getValue().toString() ) );
+    }
 
-        Map<String, List<String>> supplementaryData = organisationUnitGroupService.getAllOrganisationUnitGroups()
-            .stream()
-            .collect( Collectors.toMap( BaseIdentifiableObject::getUid,
-                g -> g.getMembers().stream().map( OrganisationUnit::getUid ).collect( Collectors.toList() ) ) );
+    /**
+     * Returns the members of the given organisation unit groups, or of all
+     * groups if the given groups are null, and the user roles of the current
+     * user.
+     */
+    private Map<String, List<String>> getSupplementaryData( Set<String> organisationUnitGroups )
+    {
+        Map<String, List<String>> supplementaryData = new HashMap<>();
+
+        if ( organisationUnitGroups == null )
+        {
+            organisationUnitGroups = ruleEngineContextCache.getOrganisationUnitGroups();
+        }
+
+        for ( String organisationUnitGroup : organisationUnitGroups )
+        {
+            supplementaryData.put( organisationUnitGroup,
+                ruleEngineContextCache.getOrganisationUnitGroupMembers( organisationUnitGroup ) );
+        }
 
         if ( currentUserService.getCurrentUser() != null )
         {
             supplementaryData.put( USER, currentUserService.getCurrentUser().getUserCredentials()
                 .getUserAuthorityGroups().stream().map( UserAuthorityGroup::getUid ).collect( Collectors.toList() ) );
         }
+
+        return supplementaryData;
+    }
+
+    private RuleEngine.Builder ruleEngineBuilder( List<ProgramRule> programRules,
+        List<ProgramRuleVariable> programRuleVariables, Set<String> organisationUnitGroups, RuleEngineIntent intent )
+    {
+        Map<String, String> constantMap = getConstantMap();
+
+        Map<String, List<String>> supplementaryData = getSupplementaryData( organisationUnitGroups );
+
         if ( RuleEngineIntent.DESCRIPTION == intent )
         {
             Map<String, DataItem> itemStore = programRuleEntityMapperService.getItemStore( programRuleVariables );
@@ -247,6 +379,184 @@ public class ProgramRuleEngine
         }
     }
 
+    private List<RuleEffect> evaluateSafely( Callable<List<RuleEffect>> evaluation )
+    {
+        try
+        {
+            List<RuleEffect> ruleEffects = evaluation.call();
+
+            ruleEffects
+                .stream()
+                .map( RuleEffect::ruleAction )
+                .forEach(
+                    action -> log.debug( String.format( "RuleEngine triggered with result: %s", action.toString() ) ) );
+
+            return ruleEffects;
+        }
+        catch ( Exception e )
+        {
+            log.error( DebugUtils.getStackTrace( e ) );
+
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Batch of program rule evaluations. Enrollments and events are mapped to
+     * their rule engine representation once per batch, and the rule engine
+     * context of each program is built once per batch, on the calling thread
+     * as mapping may load entities. The evaluations themselves only work on
+     * the mapped representation and are run in parallel by
+     * {@link #evaluate()}.
+     */
+    public final class Batch
+    {
+        private final Map<String, RuleEngineContext> ruleEngineContexts = new HashMap<>();
+
+        private final Map<ProgramInstance, RuleEnrollment> ruleEnrollments = new IdentityHashMap<>();
+
+        private final Map<ProgramStageInstance, RuleEvent> ruleEvents = new IdentityHashMap<>();
+
+        private final Map<String, Callable<List<RuleEffect>>> evaluations = new LinkedHashMap<>();
+
+        private Batch()
+        {
+        }
+
+        /**
+         * Adds the evaluation of the given enrollment, keyed on the
+         * enrollment identifier.
+         *
+         * @param enrollment the enrollment.
+         * @param events the events of the enrollment.
+         * @return this batch.
+         */
+        public Batch addEnrollment( ProgramInstance enrollment, Set<ProgramStageInstance> events )
+        {
+            RuleEngineContext ruleEngineContext = getBatchRuleEngineContext( enrollment.getProgram() );
+            RuleEnrollment ruleEnrollment = getBatchRuleEnrollment( enrollment );
+            List<RuleEvent> otherRuleEvents = getBatchRuleEvents( events, null );
+
+            evaluations.put( enrollment.getUid(), () -> ruleEngineContext
+                .toEngineBuilder()
+                .triggerEnvironment( TriggerEnvironment.SERVER )
+                .events( otherRuleEvents )
+                .enrollment( ruleEnrollment )
+                .build()
+                .evaluate( ruleEnrollment )
+                .call() );
+
+            return this;
+        }
+
+        /**
+         * Adds the evaluation of the given event, keyed on the event
+         * identifier. The event is excluded from the given events of the
+         * enrollment.
+         *
+         * @param enrollment the enrollment of the event.
+         * @param programStageInstance the event.
+         * @param events the events of the enrollment.
+         * @return this batch.
+         */
+        public Batch addEvent( ProgramInstance enrollment, ProgramStageInstance programStageInstance,
+            Set<ProgramStageInstance> events )
+        {
+            if ( programStageInstance == null )
+            {
+                return this;
+            }
+
+            RuleEngineContext ruleEngineContext = getBatchRuleEngineContext( enrollment.getProgram() );
+            RuleEnrollment ruleEnrollment = getBatchRuleEnrollment( enrollment );
+            List<RuleEvent> otherRuleEvents = getBatchRuleEvents( events, programStageInstance );
+            RuleEvent ruleEvent = getBatchRuleEvent( programStageInstance );
+
+            evaluations.put( programStageInstance.getUid(), () -> ruleEngineContext
+                .toEngineBuilder()
+                .triggerEnvironment( TriggerEnvironment.SERVER )
+                .events( otherRuleEvents )
+                .enrollment( ruleEnrollment )
+                .build()
+                .evaluate( ruleEvent )
+                .call() );
+
+            return this;
+        }
+
+        /**
+         * Evaluates all evaluations of this batch. A failing evaluation is
+         * logged and yields no rule effects.
+         *
+         * @return the rule effects keyed on enrollment or event identifier.
+         * @throws IllegalStateException if the calling thread is interrupted
+         *         while waiting for the evaluations.
+         */
+        public Map<String, List<RuleEffect>> evaluate()
+        {
+            Map<String, List<RuleEffect>> ruleEffects = new LinkedHashMap<>();
+
+            if ( executor == null || evaluations.size() <= 1 )
+            {
+                evaluations.forEach( ( uid, evaluation ) -> ruleEffects.put( uid, evaluateSafely( evaluation ) ) );
+
+                return ruleEffects;
+            }
+
+            Map<String, Future<List<RuleEffect>>> futures = new LinkedHashMap<>();
+
+            evaluations.forEach( ( uid, evaluation ) -> futures.put( uid, executor.submit( () -> evaluateSafely( evaluation ) ) ) );
+
+            for ( Map.Entry<String, Future<List<RuleEffect>>> future : futures.entrySet() )
+            {
+                try
+                {
+                    ruleEffects.put( future.getKey(), future.getValue().get() );
+                }
+                catch ( ExecutionException ex )
+                {
+                    throw new RuntimeException( "Exception during execution", ex );
+                }
+                catch ( InterruptedException ex )
+                {
+                    futures.values().forEach( f -> f.cancel( true ) );
+
+                    Thread.currentThread().interrupt();
+
+                    throw new IllegalStateException( "Program rule evaluation was interrupted", ex );
+                }
+            }
+
+            return ruleEffects;
+        }
+
+        private RuleEngineContext getBatchRuleEngineContext( Program program )
+        {
+            return ruleEngineContexts.computeIfAbsent( program.getUid(), uid -> getRuleEngineContext( program ) );
+        }
+
+        private RuleEnrollment getBatchRuleEnrollment( ProgramInstance enrollment )
+        {
+            return ruleEnrollments.computeIfAbsent( enrollment, ProgramRuleEngine.this::getRuleEnrollment );
+        }
+
+        private RuleEvent getBatchRuleEvent( ProgramStageInstance programStageInstance )
+        {
+            return ruleEvents.computeIfAbsent( programStageInstance, ProgramRuleEngine.this::getRuleEvent );
+        }
+
+        private List<RuleEvent> getBatchRuleEvents( Set<ProgramStageInstance> events,
+            ProgramStageInstance programStageInstance )
+        {
+            return events
+                .stream()
+                .filter( psi -> psi != null
+                    && !(programStageInstance != null && psi.getUid().equals( programStageInstance.getUid() )) )
+                .map( this::getBatchRuleEvent )
+                .collect( Collectors.toList() );
+        }
+    }
+
     private RuleEvent getRuleEvent( ProgramStageInstance programStageInstance )
     {
         return programRuleEntityMapperService.toMappedRuleEvent( programStageInstance );
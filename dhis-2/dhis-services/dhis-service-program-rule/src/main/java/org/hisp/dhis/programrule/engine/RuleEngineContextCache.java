@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.programrule.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.cache.Cache;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.commons.util.SystemUtils;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.rules.models.Rule;
+import org.hisp.dhis.rules.models.RuleVariable;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Cache of the parts of a rule engine context which do not depend on the
+ * evaluation: the mapped rules and rule variables of a program, the constants
+ * and the members of the organisation unit groups referenced by the rules.
+ * Entries are invalidated by {@link RuleEngineContextCacheListener} when the
+ * underlying metadata changes.
+ *
+ * The mapped rules are not serializable and are kept in memory, so the cache
+ * is disabled in clustered deployments, where changes made on other nodes
+ * would not invalidate it.
+ */
+@Component( "org.hisp.dhis.programrule.engine.RuleEngineContextCache" )
+public class RuleEngineContextCache
+{
+    private static final String MEMBER_UIDS_HQL =
+        "select m.uid from OrganisationUnitGroup g join g.members m where g.uid = :uid";
+
+    private static final String GROUP_UIDS_HQL = "select g.uid from OrganisationUnitGroup g";
+
+    private final SessionFactory sessionFactory;
+
+    private final CacheProvider cacheProvider;
+
+    private final Environment env;
+
+    private final DhisConfigurationProvider config;
+
+    private Cache<ProgramRules> programRulesCache;
+
+    private Cache<OrganisationUnitGroupMembers> organisationUnitGroupCache;
+
+    public RuleEngineContextCache( SessionFactory sessionFactory, CacheProvider cacheProvider, Environment env,
+        DhisConfigurationProvider config )
+    {
+        checkNotNull( sessionFactory );
+        checkNotNull( cacheProvider );
+        checkNotNull( env );
+        checkNotNull( config );
+
+        this.sessionFactory = sessionFactory;
+        this.cacheProvider = cacheProvider;
+        this.env = env;
+        this.config = config;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        boolean enabled = !SystemUtils.isTestRun( env.getActiveProfiles() ) && !config.isClusterEnabled();
+
+        programRulesCache = cacheProvider.newCacheBuilder( ProgramRules.class )
+            .forRegion( "ruleEngineProgramRulesCache" )
+            .expireAfterWrite( 1, TimeUnit.HOURS )
+            .withInitialCapacity( 20 )
+            .forceInMemory()
+            .withMaximumSize( enabled ? 1000 : 0 )
+            .build();
+
+        organisationUnitGroupCache = cacheProvider.newCacheBuilder( OrganisationUnitGroupMembers.class )
+            .forRegion( "ruleEngineOrganisationUnitGroupCache" )
+            .expireAfterWrite( 1, TimeUnit.HOURS )
+            .withInitialCapacity( 20 )
+            .forceInMemory()
+            .withMaximumSize( enabled ? 5000 : 0 )
+            .build();
+    }
+
+    /**
+     * Returns the cached program rules for the given key, loading them with
+     * the given function if not cached.
+     *
+     * @param key the key, identifying the program and the rule selection.
+     * @param loader the function loading the program rules.
+     * @return the program rules.
+     */
+    public ProgramRules getProgramRules( String key, Function<String, ProgramRules> loader )
+    {
+        return programRulesCache.get( key, loader ).orElse( null );
+    }
+
+    /**
+     * Returns the identifiers of the members of the organisation unit group
+     * with the given identifier. The returned list is immutable, shared
+     * between evaluations and backed by a hash set, so that membership tests
+     * run in constant time.
+     *
+     * @param uid the organisation unit group identifier.
+     * @return the identifiers of the members, empty if the group does not
+     *         exist.
+     */
+    @Transactional( readOnly = true )
+    public List<String> getOrganisationUnitGroupMembers( String uid )
+    {
+        return organisationUnitGroupCache.get( uid, this::loadOrganisationUnitGroupMembers )
+            .map( OrganisationUnitGroupMembers::getMembers ).orElse( ImmutableList.of() );
+    }
+
+    /**
+     * Returns the identifiers of all organisation unit groups. These are not
+     * cached, as groups are not invalidated when added.
+     *
+     * @return the identifiers of all organisation unit groups.
+     */
+    @Transactional( readOnly = true )
+    public Set<String> getOrganisationUnitGroups()
+    {
+        return new HashSet<>( sessionFactory.getCurrentSession()
+            .createQuery( GROUP_UIDS_HQL, String.class )
+            .list() );
+    }
+
+    /**
+     * Invalidates all cached program rules.
+     */
+    public void invalidateProgramRules()
+    {
+        programRulesCache.invalidateAll();
+    }
+
+    /**
+     * Invalidates the cached members of the organisation unit group with the
+     * given identifier.
+     *
+     * @param uid the organisation unit group identifier.
+     */
+    public void invalidateOrganisationUnitGroup( String uid )
+    {
+        organisationUnitGroupCache.invalidate( uid );
+    }
+
+    private OrganisationUnitGroupMembers loadOrganisationUnitGroupMembers( String uid )
+    {
+        List<String> memberUids = sessionFactory.getCurrentSession()
+            .createQuery( MEMBER_UIDS_HQL, String.class )
+            .setParameter( "uid", uid )
+            .list();
+
+        return new OrganisationUnitGroupMembers( ImmutableSet.copyOf( memberUids ) );
+    }
+
+    /**
+     * Mapped rules, rule variables and constants of a program, and the
+     * identifiers of the organisation unit groups referenced by its rules,
+     * null if all groups may be referenced.
+     */
+    public static final class ProgramRules
+    {
+        private final List<Rule> rules;
+
+        private final List<RuleVariable> ruleVariables;
+
+        private final Map<String, String> constants;
+
+        private final Set<String> organisationUnitGroups;
+
+        public ProgramRules( List<Rule> rules, List<RuleVariable> ruleVariables, Map<String, String> constants,
+            Set<String> organisationUnitGroups )
+        {
+            this.rules = ImmutableList.copyOf( rules );
+            this.ruleVariables = ImmutableList.copyOf( ruleVariables );
+            this.constants = ImmutableMap.copyOf( constants );
+            this.organisationUnitGroups = organisationUnitGroups != null ? ImmutableSet.copyOf( organisationUnitGroups ) : null;
+        }
+
+        public List<Rule> getRules()
+        {
+            return rules;
+        }
+
+        public List<RuleVariable> getRuleVariables()
+        {
+            return ruleVariables;
+        }
+
+        public Map<String, String> getConstants()
+        {
+            return constants;
+        }
+
+        public Set<String> getOrganisationUnitGroups()
+        {
+            return organisationUnitGroups;
+        }
+    }
+
+    private static final class OrganisationUnitGroupMembers
+    {
+        private final ImmutableSet<String> members;
+
+        OrganisationUnitGroupMembers( ImmutableSet<String> members )
+        {
+            this.members = members;
+        }
+
+        /**
+         * Returns the members as a list view of the set, which tests
+         * containment through the set.
+         */
+        List<String> getMembers()
+        {
+            return members.asList();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.hisp.dhis.programrule.engine;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.constant.ConstantService;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.programrule.ProgramRuleVariableService;
+import org.hisp.dhis.rules.models.RuleValidationResult;
+import org.hisp.dhis.user.CurrentUserService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests that {@link ProgramRuleEngine} passes the members of the organisation
+ * unit groups referenced by a condition to the rule engine, and of all groups
+ * if a group is not given as a string literal.
+ */
+public class ProgramRuleEngineSupplementaryDataTest extends DhisConvenienceTest
+{
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private ProgramRuleEntityMapperService programRuleEntityMapperService;
+
+    @Mock
+    private ProgramRuleVariableService programRuleVariableService;
+
+    @Mock
+    private CurrentUserService currentUserService;
+
+    @Mock
+    private ConstantService constantService;
+
+    @Mock
+    private ImplementableRuleService implementableRuleService;
+
+    @Mock
+    private RuleEngineContextCache ruleEngineContextCache;
+
+    private ProgramRuleEngine programRuleEngine;
+
+    @Before
+    public void setUp()
+    {
+        programRuleEngine = new ProgramRuleEngine( programRuleEntityMapperService, programRuleVariableService,
+            currentUserService, constantService, implementableRuleService, ruleEngineContextCache, null );
+
+        when( ruleEngineContextCache.getOrganisationUnitGroupMembers( anyString() ) )
+            .thenReturn( ImmutableList.of( "OrgUnitUidA" ) );
+    }
+
+    @Test
+    public void testDescriptionLoadsReferencedOrganisationUnitGroups()
+    {
+        Program program = createProgram( 'A' );
+
+        RuleValidationResult result = programRuleEngine.getDescription(
+            "d2:inOrgUnitGroup('OrgUnitGroupA') && d2:inOrgUnitGroup( \"OrgUnitGroupB\" )", program );
+
+        assertNotNull( result );
+        verify( ruleEngineContextCache ).getOrganisationUnitGroupMembers( "OrgUnitGroupA" );
+        verify( ruleEngineContextCache ).getOrganisationUnitGroupMembers( "OrgUnitGroupB" );
+        verify( ruleEngineContextCache, never() ).getOrganisationUnitGroups();
+    }
+
+    @Test
+    public void testDescriptionLoadsAllOrganisationUnitGroupsForNonLiteralGroup()
+    {
+        Program program = createProgram( 'A' );
+
+        when( ruleEngineContextCache.getOrganisationUnitGroups() )
+            .thenReturn( ImmutableSet.of( "OrgUnitGroupA", "OrgUnitGroupC" ) );
+
+        RuleValidationResult result = programRuleEngine.getDescription(
+            "d2:inOrgUnitGroup('OrgUnitGroupA') && d2:inOrgUnitGroup( #{groupVariable} )", program );
+
+        assertNotNull( result );
+        verify( ruleEngineContextCache ).getOrganisationUnitGroups();
+        verify( ruleEngineContextCache ).getOrganisationUnitGroupMembers( "OrgUnitGroupA" );
+        verify( ruleEngineContextCache ).getOrganisationUnitGroupMembers( "OrgUnitGroupC" );
+    }
+}
@@ -283,6 +283,25 @@ public class ProgramRuleEngineTest extends DhisSpringTest
         assertEquals( "PNT-1", ruleActionSendMessage.notification() );
     }
 
+    @Test
+    public void testSendMessageForBatch()
+    {
+        setUpSendMessageForEnrollment();
+
+        ProgramInstance programInstance = programInstanceService.getProgramInstance( "UID-P1" );
+        ProgramStageInstance programStageInstance = programStageInstanceService.getProgramStageInstance( "UID-PS1" );
+
+        Map<String, List<RuleEffect>> ruleEffects = programRuleEngine.newBatch()
+            .addEnrollment( programInstance, Sets.newHashSet() )
+            .addEvent( programStageInstance.getProgramInstance(), programStageInstance, Sets.newHashSet( programStageInstance ) )
+            .evaluate();
+
+        assertEquals( 2, ruleEffects.size() );
+        assertEquals( programRuleEngine.evaluate( programInstance, Sets.newHashSet() ), ruleEffects.get( "UID-P1" ) );
+        assertEquals( programRuleEngine.evaluate( programStageInstance.getProgramInstance(), programStageInstance,
+            Sets.newHashSet() ), ruleEffects.get( "UID-PS1" ) );
+    }
+
     @Test
     public void testSchedulingByProgramRule()
     {
@@ -0,0 +1,141 @@
+package org.hisp.dhis.programrule.engine;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.organisationunit.OrganisationUnitGroup;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.programrule.ProgramRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests the invalidation of the {@link RuleEngineContextCache} on collection
+ * changes by {@link RuleEngineContextCacheListener}.
+ */
+public class RuleEngineContextCacheListenerTest extends DhisConvenienceTest
+{
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private RuleEngineContextCache ruleEngineContextCache;
+
+    private RuleEngineContextCacheListener listener;
+
+    private OrganisationUnitGroup organisationUnitGroup;
+
+    private ProgramRule programRule;
+
+    @Before
+    public void setUp()
+    {
+        listener = new RuleEngineContextCacheListener( ruleEngineContextCache );
+
+        organisationUnitGroup = createOrganisationUnitGroup( 'A' );
+
+        Program program = createProgram( 'A' );
+        programRule = createProgramRule( 'A', program );
+    }
+
+    @After
+    public void tearDown()
+    {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.unbindResourceIfPossible( listener );
+    }
+
+    @Test
+    public void testCollectionChangeInvalidatesWithoutTransaction()
+    {
+        listener.onPostUpdateCollection( collectionEvent( organisationUnitGroup ) );
+
+        verify( ruleEngineContextCache ).invalidateOrganisationUnitGroup( organisationUnitGroup.getUid() );
+    }
+
+    @Test
+    public void testCollectionChangeInvalidatesAgainAfterCommit()
+    {
+        TransactionSynchronizationManager.initSynchronization();
+
+        listener.onPostUpdateCollection( collectionEvent( organisationUnitGroup ) );
+        listener.onPostUpdateCollection( collectionEvent( programRule ) );
+        listener.onPostUpdateCollection( collectionEvent( organisationUnitGroup ) );
+
+        verify( ruleEngineContextCache, times( 2 ) ).invalidateOrganisationUnitGroup( organisationUnitGroup.getUid() );
+        verify( ruleEngineContextCache, times( 1 ) ).invalidateProgramRules();
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+        assertEquals( 1, synchronizations.size() );
+
+        synchronizations.forEach( TransactionSynchronization::afterCommit );
+        synchronizations.forEach( s -> s.afterCompletion( TransactionSynchronization.STATUS_COMMITTED ) );
+
+        verify( ruleEngineContextCache, times( 3 ) ).invalidateOrganisationUnitGroup( organisationUnitGroup.getUid() );
+        verify( ruleEngineContextCache, times( 2 ) ).invalidateProgramRules();
+    }
+
+    @Test
+    public void testCollectionChangeOfOtherTypeIsIgnored()
+    {
+        listener.onPostUpdateCollection( collectionEvent( createOrganisationUnit( 'A' ) ) );
+
+        verifyNoInteractions( ruleEngineContextCache );
+    }
+
+    private PostCollectionUpdateEvent collectionEvent( Object owner )
+    {
+        PostCollectionUpdateEvent event = mock( PostCollectionUpdateEvent.class );
+        when( event.getAffectedOwnerOrNull() ).thenReturn( owner );
+
+        return event;
+    }
+}
@@ -0,0 +1,166 @@
+package org.hisp.dhis.programrule.engine;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.cache.SimpleCacheBuilder;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.programrule.engine.RuleEngineContextCache.ProgramRules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.core.env.Environment;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests {@link RuleEngineContextCache} with the cache enabled, invalidated
+ * through {@link RuleEngineContextCacheListener}.
+ */
+public class RuleEngineContextCacheTest extends DhisConvenienceTest
+{
+    private static final String KEY = "rules:ProgramUidA";
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SessionFactory sessionFactory;
+
+    @Mock
+    private CacheProvider cacheProvider;
+
+    @Mock
+    private Environment env;
+
+    @Mock
+    private DhisConfigurationProvider config;
+
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    private final Function<String, ProgramRules> loader = key -> {
+        loadCount.incrementAndGet();
+        return new ProgramRules( ImmutableList.of(), ImmutableList.of(), ImmutableMap.of(), ImmutableSet.of() );
+    };
+
+    @Before
+    public void setUp()
+    {
+        when( cacheProvider.newCacheBuilder( any( Class.class ) ) ).thenAnswer( invocation -> new SimpleCacheBuilder<>() );
+        when( env.getActiveProfiles() ).thenReturn( new String[0] );
+    }
+
+    @Test
+    public void testProgramRulesAreCached()
+    {
+        RuleEngineContextCache cache = createCache( false );
+
+        ProgramRules programRules = cache.getProgramRules( KEY, loader );
+
+        assertSame( programRules, cache.getProgramRules( KEY, loader ) );
+        assertEquals( 1, loadCount.get() );
+    }
+
+    @Test
+    public void testMetadataChangeInvalidatesProgramRules()
+    {
+        RuleEngineContextCache cache = createCache( false );
+        RuleEngineContextCacheListener listener = new RuleEngineContextCacheListener( cache );
+
+        cache.getProgramRules( KEY, loader );
+
+        listener.onPostUpdate( updateEvent( createDataElement( 'A' ) ) );
+        cache.getProgramRules( KEY, loader );
+
+        listener.onPostUpdate( updateEvent( createProgram( 'A' ) ) );
+        cache.getProgramRules( KEY, loader );
+
+        assertEquals( 3, loadCount.get() );
+    }
+
+    @Test
+    public void testUnrelatedChangeKeepsProgramRules()
+    {
+        RuleEngineContextCache cache = createCache( false );
+        RuleEngineContextCacheListener listener = new RuleEngineContextCacheListener( cache );
+
+        cache.getProgramRules( KEY, loader );
+
+        listener.onPostUpdate( updateEvent( createOrganisationUnit( 'A' ) ) );
+        cache.getProgramRules( KEY, loader );
+
+        assertEquals( 1, loadCount.get() );
+    }
+
+    @Test
+    public void testCacheDisabledInCluster()
+    {
+        RuleEngineContextCache cache = createCache( true );
+
+        cache.getProgramRules( KEY, loader );
+        cache.getProgramRules( KEY, loader );
+
+        assertEquals( 2, loadCount.get() );
+    }
+
+    private RuleEngineContextCache createCache( boolean clusterEnabled )
+    {
+        when( config.isClusterEnabled() ).thenReturn( clusterEnabled );
+
+        RuleEngineContextCache cache = new RuleEngineContextCache( sessionFactory, cacheProvider, env, config );
+        cache.init();
+
+        return cache;
+    }
+
+    private PostUpdateEvent updateEvent( Object entity )
+    {
+        PostUpdateEvent event = mock( PostUpdateEvent.class );
+        when( event.getEntity() ).thenReturn( entity );
+
+        return event;
+    }
+}
@@ -34,15 +34,24 @@ import static org.hisp.dhis.antlr.AntlrParserUtils.castDouble;
 import static org.hisp.dhis.expression.MissingValueStrategy.NEVER_SKIP;
 import static org.hisp.dhis.expression.ParseType.PREDICTOR_EXPRESSION;
 import static org.hisp.dhis.expression.ParseType.PREDICTOR_SKIP_TEST;
+import static org.hisp.dhis.external.conf.ConfigurationKey.PREDICTOR_CONCURRENCY;
 import static org.hisp.dhis.parser.expression.ParserUtils.DEFAULT_SAMPLE_PERIODS;
 import static org.hisp.dhis.system.notification.NotificationLevel.ERROR;
 import static org.hisp.dhis.system.util.ValidationUtils.dataValueIsZeroAndInsignificant;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
+
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.hisp.dhis.analytics.AnalyticsService;
 import org.hisp.dhis.analytics.DataQueryParams;
 import org.hisp.dhis.category.CategoryOptionCombo;
@@ -50,6 +59,7 @@ import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.common.*;
 import org.hisp.dhis.commons.collection.CachingMap;
 import org.hisp.dhis.commons.util.DebugUtils;
+import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.constant.Constant;
 import org.hisp.dhis.constant.ConstantService;
 import org.hisp.dhis.dataelement.DataElement;
@@ -60,6 +70,7 @@ import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.datavalue.DeflatedDataValue;
 import org.hisp.dhis.expression.Expression;
 import org.hisp.dhis.expression.ExpressionService;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.jdbc.batchhandler.DataValueBatchHandler;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitLevel;
@@ -84,6 +95,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -120,11 +132,19 @@ public class DefaultPredictionService
 
     private CurrentUserService currentUserService;
 
+    /**
+     * Executor for evaluating predictions for slices of organisation units
+     * in parallel, null if predictions are configured to run on a single
+     * thread.
+     */
+    private final ExecutorService executor;
+
     public DefaultPredictionService( PredictorService predictorService, ConstantService constantService,
         ExpressionService expressionService, DataValueService dataValueService, CategoryService categoryService,
         OrganisationUnitService organisationUnitService, PeriodService periodService,
         IdentifiableObjectManager idObjectManager, AnalyticsService analyticsService, Notifier notifier,
-        BatchHandlerFactory batchHandlerFactory, CurrentUserService currentUserService )
+        BatchHandlerFactory batchHandlerFactory, CurrentUserService currentUserService,
+        DhisConfigurationProvider config )
     {
         checkNotNull( predictorService );
         checkNotNull( constantService );
@@ -137,6 +157,7 @@ public class DefaultPredictionService
         checkNotNull( notifier );
         checkNotNull( batchHandlerFactory );
         checkNotNull( currentUserService );
+        checkNotNull( config );
 
         this.predictorService = predictorService;
         this.constantService = constantService;
@@ -150,6 +171,21 @@ public class DefaultPredictionService
         this.notifier = notifier;
         this.batchHandlerFactory = batchHandlerFactory;
         this.currentUserService = currentUserService;
+
+        int concurrency = NumberUtils.toInt( config.getProperty( PREDICTOR_CONCURRENCY ), 0 );
+        int threads = concurrency > 0 ? concurrency : SystemUtils.getCpuCores();
+
+        this.executor = threads > 1 ? Executors.newFixedThreadPool( threads, new ThreadFactoryBuilder()
+            .setNameFormat( "predictor-%d" ).setDaemon( true ).build() ) : null;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( executor != null )
+        {
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -181,6 +217,11 @@ public class DefaultPredictionService
      */
     private final static String NON_AOC = "x";
 
+    /**
+     * Number of organisation units evaluated together on one thread.
+     */
+    private final static int EVALUATION_SLICE_SIZE = 50;
+
     @Override
     public PredictionSummary predictJob( PredictorJobParameters params, JobConfiguration jobId )
     {
@@ -245,6 +286,8 @@ public class DefaultPredictionService
 
         PredictionSummary predictionSummary = new PredictionSummary();
 
+        predictorList = getPredictorsInDependencyOrder( predictorList );
+
         log.info( "Running " + predictorList.size() + " predictors from " + startDate.toString() + " to " + endDate.toString() );
 
         for ( Predictor predictor : predictorList )
@@ -279,12 +322,12 @@ public class DefaultPredictionService
             expressionService.getExpressionDimensionalItemObjects( skipTest.getExpression(), PREDICTOR_SKIP_TEST, sampleItems, new HashSet<>() );
         }
         Map<String, Constant> constantMap = constantService.getConstantMap();
-        List<Period> outputPeriods = getPeriodsBetweenDates( predictor.getPeriodType(), startDate, endDate );
-        Set<Period> existingOutputPeriods = getExistingPeriods( outputPeriods );
-        ListMap<Period, Period> samplePeriodsMap = getSamplePeriodsMap( outputPeriods, predictor );
+        List<Period> periods = getPeriodsBetweenDates( predictor.getPeriodType(), startDate, endDate );
+        Set<Period> existingOutputPeriods = getExistingPeriods( periods );
+        ListMap<Period, Period> samplePeriodsMap = getSamplePeriodsMap( periods, predictor );
         Set<Period> allSamplePeriods = samplePeriodsMap.uniqueValues();
         Set<Period> existingSamplePeriods = getExistingPeriods( new ArrayList<>( allSamplePeriods ) );
-        outputPeriods = periodService.reloadPeriods( outputPeriods );
+        List<Period> outputPeriods = periodService.reloadPeriods( periods );
         Set<Period> outputPeriodSet = new HashSet<>( outputPeriods );
         CategoryOptionCombo defaultCategoryOptionCombo = categoryService.getDefaultCategoryOptionCombo();
         Set<String> defaultOptionComboAsSet = Sets.newHashSet( defaultCategoryOptionCombo.getUid() );
@@ -333,81 +376,275 @@ public class DefaultPredictionService
                 Map4<OrganisationUnit, String, Period, DimensionalItemObject, Double> valueMap4 = items.isEmpty() ?
                         new Map4<>() : getDataValues( items, outputPeriodSet, existingOutputPeriods, orgUnits );
 
-                List<DataValue> predictions = new ArrayList<>();
+                List<PredictedValue> predictedValues = predictOrgUnits( orgUnits, orgUnit -> predictOrgUnit( orgUnit,
+                    sampleMap4, valueMap4, generator, skipTest, constantMap, outputPeriods, samplePeriodsMap,
+                    requireData, predictionReference, defaultOptionComboAsSet ) );
 
-                // For each org unit, find its sample data and its non-sample
-                // data values.
-                //
-                // We will make independent predictions for each attribute
-                // option combination, but some analytics data that is not
-                // stored by AOC must be evaluated with every AOC found.
+                List<DataValue> predictions = new ArrayList<>();
 
-                for ( OrganisationUnit orgUnit : orgUnits )
+                for ( PredictedValue predictedValue : predictedValues )
                 {
-                    MapMapMap<String, Period, DimensionalItemObject, Double> sampleMap3 = firstNonNull( sampleMap4.get( orgUnit ), new MapMapMap<>() );
-                    MapMapMap<String, Period, DimensionalItemObject, Double> valueMap3 = firstNonNull( valueMap4.get( orgUnit ), new MapMapMap<>() );
+                    Double value = predictedValue.value;
+                    String aoc = predictedValue.attributeOptionCombo;
+
+                    if ( !dataValueIsZeroAndInsignificant( Double.toString( value ), outputDataElement ) )
+                    {
+                        String valueString = outputDataElement.getValueType().isInteger() ?
+                            Long.toString( Math.round( value ) ) :
+                            Double.toString( MathUtils.roundFraction( value, 4 ) );
+
+                        predictions.add( new DataValue( outputDataElement,
+                            predictedValue.period, predictedValue.orgUnit, outputOptionCombo,
+                            cocMap.get( aoc, () -> categoryService.getCategoryOptionCombo( aoc ) ),
+                            valueString, storedBy, now, null ) );
+                    }
+                }
 
-                    MapMap<Period, DimensionalItemObject, Double> sampleMapNonAoc = firstNonNull( sampleMap3.get( NON_AOC ), new MapMap<>() );
-                    MapMap<Period, DimensionalItemObject, Double> valueMapNonAoc = firstNonNull( valueMap3.get( NON_AOC ), new MapMap<>() );
+                writePredictions( predictions, outputDataElement, outputOptionCombo,
+                    outputPeriodSet, existingOutputPeriods, orgUnits, storedBy, predictionSummary );
+            }
+        }
+    }
 
-                    Set<String> attributeOptionCombos = getAttributeOptionCombos( sampleMap3, valueMap3, defaultOptionComboAsSet );
+    // -------------------------------------------------------------------------
+    // Supportive Methods
+    // -------------------------------------------------------------------------
 
-                    // Predict independently for each AOC, adding in the data,
-                    // if any, that is stored without an AOC.
+    /**
+     * Orders predictors so that a predictor whose output data element is
+     * an input of another predictor runs first, because the other predictor
+     * reads the values it writes. Predictors otherwise keep their requested
+     * order, and predictors which depend on each other in a cycle are run
+     * in their requested order.
+     *
+     * @param predictors the predictors to run.
+     * @return the predictors in the order to run them.
+     */
+    private List<Predictor> getPredictorsInDependencyOrder( List<Predictor> predictors )
+    {
+        Map<Predictor, Set<DataElement>> inputs = new HashMap<>();
 
-                    for ( String aoc : attributeOptionCombos )
-                    {
-                        MapMap<Period, DimensionalItemObject, Double> sampleMap2 = firstNonNull( sampleMap3.get( aoc ), new MapMap<>() );
-                        MapMap<Period, DimensionalItemObject, Double> valueMap2 = firstNonNull( valueMap3.get( aoc ), new MapMap<>() );
+        for ( Predictor predictor : predictors )
+        {
+            inputs.put( predictor, getInputDataElements( predictor ) );
+        }
 
-                        sampleMap2.putMap( sampleMapNonAoc );
-                        valueMap2.putMap( valueMapNonAoc );
+        List<Predictor> orderedPredictors = new ArrayList<>();
+        List<Predictor> remaining = new ArrayList<>( predictors );
 
-                        MapMap<Period, DimensionalItemObject, Double> periodValueMap = applySkipTest( sampleMap2, skipTest, constantMap );
+        while ( !remaining.isEmpty() )
+        {
+            List<Predictor> ready = remaining.stream()
+                .filter( p -> remaining.stream().noneMatch( q -> !q.equals( p ) && inputs.get( p ).contains( q.getOutput() ) ) )
+                .collect( Collectors.toList() );
 
-                        // Predict for each output period.
+            if ( ready.isEmpty() )
+            {
+                log.warn( "Predictors depend on each other in a cycle, running in requested order: " +
+                    remaining.stream().map( Predictor::getUid ).collect( Collectors.joining( ", " ) ) );
 
-                        for ( Period outputPeriod : outputPeriods )
-                        {
-                            Map<DimensionalItemObject, Double> valueMap = firstNonNull( valueMap2.get( outputPeriod ), new HashMap<>() );
+                ready = new ArrayList<>( remaining );
+            }
 
-                            if ( requireData && dataIsAbsent( outputPeriod, valueMap, samplePeriodsMap, periodValueMap ) )
-                            {
-                                continue;
-                            }
+            orderedPredictors.addAll( ready );
+            remaining.removeAll( ready );
+        }
 
-                            Double value = castDouble( expressionService.getExpressionValue( generator.getExpression(),
-                                    PREDICTOR_EXPRESSION, valueMap, constantMap, null,
-                                    outputPeriod.getDaysInPeriod(), generator.getMissingValueStrategy(),
-                                    samplePeriodsMap.get( outputPeriod ), periodValueMap ) );
+        return orderedPredictors;
+    }
 
-                            carryPredictionForward( value, outputPeriod, predictionReference, periodValueMap );
+    /**
+     * Gets the data elements read by a predictor's generator and skip test.
+     *
+     * @param predictor the predictor.
+     * @return the data elements the predictor reads values for.
+     */
+    private Set<DataElement> getInputDataElements( Predictor predictor )
+    {
+        Set<DimensionalItemObject> items = new HashSet<>( expressionService.getExpressionDimensionalItemObjects(
+            predictor.getGenerator().getExpression(), PREDICTOR_EXPRESSION ) );
 
-                            if ( value != null && !value.isNaN() && !value.isInfinite() &&
-                                !dataValueIsZeroAndInsignificant( Double.toString( value ), outputDataElement ) )
-                            {
-                                String valueString = outputDataElement.getValueType().isInteger() ?
-                                    Long.toString( Math.round( value ) ) :
-                                    Double.toString( MathUtils.roundFraction( value, 4 ) );
+        if ( predictor.getSampleSkipTest() != null )
+        {
+            items.addAll( expressionService.getExpressionDimensionalItemObjects(
+                predictor.getSampleSkipTest().getExpression(), PREDICTOR_SKIP_TEST ) );
+        }
 
-                                predictions.add( new DataValue( outputDataElement,
-                                    outputPeriod, orgUnit, outputOptionCombo,
-                                    cocMap.get( aoc, () -> categoryService.getCategoryOptionCombo( aoc ) ),
-                                    valueString, storedBy, now, null ) );
-                            }
-                        }
-                    }
-                }
+        Set<DataElement> dataElements = new HashSet<>();
 
-                writePredictions( predictions, outputDataElement, outputOptionCombo,
-                    outputPeriodSet, existingOutputPeriods, orgUnits, storedBy, predictionSummary );
+        for ( DimensionalItemObject item : items )
+        {
+            if ( item instanceof DataElement )
+            {
+                dataElements.add( (DataElement) item );
+            }
+            else if ( item instanceof DataElementOperand )
+            {
+                dataElements.add( ( (DataElementOperand) item ).getDataElement() );
             }
         }
+
+        return dataElements;
     }
 
-    // -------------------------------------------------------------------------
-    // Supportive Methods
-    // -------------------------------------------------------------------------
+    /**
+     * Predicts values for a chunk of organisation units. Predictions for
+     * different organisation units are independent, so when an executor is
+     * configured the organisation units are evaluated in slices on separate
+     * threads. The data for the chunk is fetched beforehand, and the
+     * evaluation does not access the database, so the evaluating threads do
+     * not need to take part in the transaction.
+     *
+     * @param orgUnits the organisation units to predict for.
+     * @param predictOrgUnit predicts the values for one organisation unit.
+     * @return the predicted values, in organisation unit order.
+     */
+    private List<PredictedValue> predictOrgUnits( List<OrganisationUnit> orgUnits,
+        Function<OrganisationUnit, List<PredictedValue>> predictOrgUnit )
+    {
+        if ( executor == null || orgUnits.size() <= EVALUATION_SLICE_SIZE )
+        {
+            return predictOrgUnitSlice( orgUnits, predictOrgUnit );
+        }
+
+        List<Future<List<PredictedValue>>> futures = new ArrayList<>();
+
+        for ( List<OrganisationUnit> slice : Lists.partition( orgUnits, EVALUATION_SLICE_SIZE ) )
+        {
+            futures.add( executor.submit( () -> predictOrgUnitSlice( slice, predictOrgUnit ) ) );
+        }
+
+        List<PredictedValue> predictedValues = new ArrayList<>();
+
+        try
+        {
+            for ( Future<List<PredictedValue>> future : futures )
+            {
+                predictedValues.addAll( getPredictedValues( future ) );
+            }
+        }
+        finally
+        {
+            futures.forEach( future -> future.cancel( true ) );
+        }
+
+        return predictedValues;
+    }
+
+    private List<PredictedValue> predictOrgUnitSlice( List<OrganisationUnit> orgUnits,
+        Function<OrganisationUnit, List<PredictedValue>> predictOrgUnit )
+    {
+        List<PredictedValue> predictedValues = new ArrayList<>();
+
+        for ( OrganisationUnit orgUnit : orgUnits )
+        {
+            predictedValues.addAll( predictOrgUnit.apply( orgUnit ) );
+        }
+
+        return predictedValues;
+    }
+
+    private List<PredictedValue> getPredictedValues( Future<List<PredictedValue>> future )
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException( "Prediction was interrupted", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException( "Prediction failed", e.getCause() );
+        }
+    }
+
+    /**
+     * Predicts values for one organisation unit from its sample data and
+     * its non-sample data values.
+     *
+     * We make independent predictions for each attribute option
+     * combination, but some analytics data that is not stored by AOC must
+     * be evaluated with every AOC found.
+     *
+     * @param orgUnit the organisation unit to predict for.
+     * @param sampleMap4 other-period sample data for the chunk.
+     * @param valueMap4 current-period data for the chunk.
+     * @param generator the generator expression.
+     * @param skipTest the sample skip test expression, if any.
+     * @param constantMap constants to use in the expressions.
+     * @param outputPeriods the periods to predict for, in ascending order.
+     * @param samplePeriodsMap sample periods for each output period.
+     * @param requireData whether to skip periods without any data.
+     * @param predictionReference the item for carrying predictions forward, if any.
+     * @param defaultOptionComboAsSet system default category option combo.
+     * @return the predicted values, not yet checked for significance.
+     */
+    private List<PredictedValue> predictOrgUnit( OrganisationUnit orgUnit,
+        Map4<OrganisationUnit, String, Period, DimensionalItemObject, Double> sampleMap4,
+        Map4<OrganisationUnit, String, Period, DimensionalItemObject, Double> valueMap4,
+        Expression generator, Expression skipTest, Map<String, Constant> constantMap,
+        List<Period> outputPeriods, ListMap<Period, Period> samplePeriodsMap, boolean requireData,
+        DimensionalItemObject predictionReference, Set<String> defaultOptionComboAsSet )
+    {
+        List<PredictedValue> predictedValues = new ArrayList<>();
+
+        MapMapMap<String, Period, DimensionalItemObject, Double> sampleMap3 = firstNonNull( sampleMap4.get( orgUnit ), new MapMapMap<>() );
+        MapMapMap<String, Period, DimensionalItemObject, Double> valueMap3 = firstNonNull( valueMap4.get( orgUnit ), new MapMapMap<>() );
+
+        MapMap<Period, DimensionalItemObject, Double> sampleMapNonAoc = firstNonNull( sampleMap3.get( NON_AOC ), new MapMap<>() );
+        MapMap<Period, DimensionalItemObject, Double> valueMapNonAoc = firstNonNull( valueMap3.get( NON_AOC ), new MapMap<>() );
+
+        Set<String> attributeOptionCombos = getAttributeOptionCombos( sampleMap3, valueMap3, defaultOptionComboAsSet );
+
+        // Predict independently for each AOC, adding in the data,
+        // if any, that is stored without an AOC.
+
+        for ( String aoc : attributeOptionCombos )
+        {
+            MapMap<Period, DimensionalItemObject, Double> sampleMap2 = firstNonNull( sampleMap3.get( aoc ), new MapMap<>() );
+            MapMap<Period, DimensionalItemObject, Double> valueMap2 = firstNonNull( valueMap3.get( aoc ), new MapMap<>() );
+
+            sampleMap2.putMap( sampleMapNonAoc );
+            valueMap2.putMap( valueMapNonAoc );
+
+            MapMap<Period, DimensionalItemObject, Double> periodValueMap = applySkipTest( sampleMap2, skipTest, constantMap );
+
+            // Predict for each output period.
+
+            for ( Period outputPeriod : outputPeriods )
+            {
+                Map<DimensionalItemObject, Double> valueMap = firstNonNull( valueMap2.get( outputPeriod ), new HashMap<>() );
+
+                if ( requireData && dataIsAbsent( outputPeriod, valueMap, samplePeriodsMap, periodValueMap ) )
+                {
+                    continue;
+                }
+
+                Double value = castDouble( expressionService.getExpressionValue( generator.getExpression(),
+                        PREDICTOR_EXPRESSION, valueMap, constantMap, null,
+                        outputPeriod.getDaysInPeriod(), generator.getMissingValueStrategy(),
+                        samplePeriodsMap.get( outputPeriod ), periodValueMap ) );
+
+                carryPredictionForward( value, outputPeriod, predictionReference, periodValueMap );
+
+                if ( value != null && !value.isNaN() && !value.isInfinite() )
+                {
+                    predictedValues.add( new PredictedValue( orgUnit, aoc, outputPeriod, value ) );
+                }
+            }
+        }
+
+        return predictedValues;
+    }
 
     /**
      * For a predictor and orgUnit, determines the set of attribute option
@@ -990,4 +1227,27 @@ public class DefaultPredictionService
 
         dataValueBatchHandler.flush();
     }
+
+    /**
+     * A value predicted for an organisation unit, attribute option combo
+     * and period, before it is turned into a data value.
+     */
+    private static final class PredictedValue
+    {
+        private final OrganisationUnit orgUnit;
+
+        private final String attributeOptionCombo;
+
+        private final Period period;
+
+        private final Double value;
+
+        PredictedValue( OrganisationUnit orgUnit, String attributeOptionCombo, Period period, Double value )
+        {
+            this.orgUnit = orgUnit;
+            this.attributeOptionCombo = attributeOptionCombo;
+            this.period = period;
+            this.value = value;
+        }
+    }
 }
@@ -38,8 +38,6 @@ import static org.hisp.dhis.system.util.MathUtils.zeroIfNull;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import javax.persistence.PersistenceException;
-
 import org.apache.commons.lang3.ObjectUtils;
 import org.hisp.dhis.analytics.AnalyticsService;
 import org.hisp.dhis.analytics.DataQueryParams;
@@ -61,7 +59,10 @@ import org.hisp.dhis.period.PeriodService;
 import org.hisp.dhis.system.util.MathUtils;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -85,6 +86,8 @@ public class DataValidationTask
 
     public final static String NON_AOC = ""; // String that is not an Attribute Option Combo
 
+    private final static int PERSIST_BATCH_SIZE = 1000;
+
     private final ExpressionService expressionService;
 
     private final DataValueService dataValueService;
@@ -93,18 +96,29 @@ public class DataValidationTask
 
     private final PeriodService periodService;
 
+    private final ValidationResultService validationResultService;
+
+    private final TransactionTemplate saveResultsTransactionTemplate;
+
     public DataValidationTask( ExpressionService expressionService, DataValueService dataValueService,
-        CategoryService categoryService, PeriodService periodService )
+        CategoryService categoryService, PeriodService periodService, ValidationResultService validationResultService,
+        PlatformTransactionManager transactionManager )
     {
         checkNotNull( expressionService );
         checkNotNull( dataValueService );
         checkNotNull( categoryService );
         checkNotNull( periodService );
+        checkNotNull( validationResultService );
+        checkNotNull( transactionManager );
 
         this.expressionService = expressionService;
         this.dataValueService = dataValueService;
         this.categoryService = categoryService;
         this.periodService = periodService;
+        this.validationResultService = validationResultService;
+
+        this.saveResultsTransactionTemplate = new TransactionTemplate( transactionManager );
+        this.saveResultsTransactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
     }
 
     // (wired through constructor)
@@ -116,6 +130,8 @@ public class DataValidationTask
 
     private Set<ValidationResult> validationResults;
 
+    private List<ValidationResult> unsavedResults = new ArrayList<>(); // Results to persist.
+
     private PeriodTypeExtended periodTypeX; // Current period type extended.
 
     private Period period;                  // Current period.
@@ -142,6 +158,10 @@ public class DataValidationTask
     /**
      * Evaluates validation rules for a single organisation unit. This is the
      * central method in validation rule evaluation.
+     * <p/>
+     * Results are persisted in their own transactions, so results found
+     * before a failure are kept whatever happens to the transaction of the
+     * task.
      */
     @Override
     @Transactional
@@ -157,6 +177,10 @@ public class DataValidationTask
 
             throw ex;
         }
+        finally
+        {
+            saveValidationResults();
+        }
     }
 
     /**
@@ -379,7 +403,38 @@ public class DataValidationTask
     {
         if ( validationResults.size() > 0 )
         {
-            context.getValidationResults().addAll( validationResults );
+            context.addValidationResults( validationResults );
+
+            if ( context.isPersistResults() )
+            {
+                unsavedResults.addAll( validationResults );
+
+                if ( unsavedResults.size() >= PERSIST_BATCH_SIZE )
+                {
+                    saveValidationResults();
+                }
+            }
+        }
+    }
+
+    /**
+     * Persists the validation results found by this task since the last
+     * time they were persisted, so they are written as the run progresses
+     * rather than all at the end of the run. Each batch is committed in a
+     * new transaction, independent of the transaction of the task.
+     */
+    private void saveValidationResults()
+    {
+        if ( !unsavedResults.isEmpty() )
+        {
+            List<ValidationResult> results = unsavedResults;
+
+            unsavedResults = new ArrayList<>();
+
+            saveResultsTransactionTemplate.execute( status -> {
+                validationResultService.saveValidationResults( results );
+                return null;
+            } );
         }
     }
 
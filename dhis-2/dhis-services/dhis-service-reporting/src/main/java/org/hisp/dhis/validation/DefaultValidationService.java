@@ -174,12 +174,9 @@ public class DefaultValidationService
 
         clock.logTime( "Initialized validation analysis" );
 
-        Collection<ValidationResult> results = Validator.validate( context, applicationContext, analyticsService );
+        // New results are persisted by the validation tasks as they are found
 
-        if ( context.isPersistResults() )
-        {
-            validationResultService.saveValidationResults( context.getValidationResults() );
-        }
+        Collection<ValidationResult> results = Validator.validate( context, applicationContext, analyticsService );
 
         clock.logTime( "Finished validation analysis, " +  context.getValidationResults().size() + " results").stop();
 
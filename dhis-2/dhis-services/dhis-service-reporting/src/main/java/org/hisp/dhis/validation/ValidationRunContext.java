@@ -47,6 +47,7 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class keeps track of a validation analysis. It contains information about the initial params of the analysis,
@@ -62,6 +63,12 @@ public class ValidationRunContext
 
     private Queue<ValidationResult> validationResults;
 
+    /**
+     * Number of validation results, kept separately as the size of the
+     * concurrent queue is not a constant-time operation.
+     */
+    private final AtomicInteger validationResultCount = new AtomicInteger();
+
     private List<OrganisationUnit> orgUnits;
 
     private List<PeriodTypeExtended> periodTypeXs;
@@ -181,6 +188,12 @@ public class ValidationRunContext
     // Logic
     // -------------------------------------------------------------------------
 
+    public void addValidationResults( Collection<ValidationResult> results )
+    {
+        validationResults.addAll( results );
+        validationResultCount.addAndGet( results.size() );
+    }
+
     public boolean skipValidationOfTuple( OrganisationUnit organisationUnit, ValidationRule validationRule,
         Period period, String attributeOptionCombo, int dayInPeriod )
     {
@@ -210,7 +223,7 @@ public class ValidationRunContext
 
     public boolean isAnalysisComplete()
     {
-        return validationResults.size() >= maxResults;
+        return validationResultCount.get() >= maxResults;
     }
 
     // -------------------------------------------------------------------------
@@ -344,7 +357,7 @@ public class ValidationRunContext
 
         public Builder withInitialResults( Collection<ValidationResult> results )
         {
-            this.context.validationResults.addAll( results );
+            this.context.addValidationResults( results );
 
             results.forEach( validationResult -> {
                 List<ValidationResult> res = context.initialValidationResults
@@ -28,18 +28,23 @@ package org.hisp.dhis.validation;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-import com.google.common.collect.Lists;
 import org.hisp.dhis.analytics.AnalyticsService;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.springframework.context.ApplicationContext;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Evaluates validation rules.
@@ -50,14 +55,19 @@ public class Validator
 {
     /**
      * Evaluates validation rules for a collection of organisation units. This
-     * method breaks the job down by organisation unit. It assigns the
-     * evaluation for each organisation unit to a task that can be evaluated
-     * independently in a multi-threaded environment.
+     * method breaks the job down by organisation unit. The organisation units
+     * are ordered by path so that units of the same subtree are evaluated
+     * together, and the list is split recursively on a work-stealing pool, at
+     * subtree boundaries where possible, down to blocks of at most
+     * {@link ValidationRunContext#ORG_UNITS_PER_TASK} which are each evaluated
+     * by a task that reads the data of its subtrees in bulk.
      * <p/>
      * Return early with no results if there are no organisation units
      * or no validation rules.
      *
      * @return a collection of any validations that were found
+     * @throws IllegalStateException if the analysis was interrupted or did
+     *         not complete in time.
      */
     public static Collection<ValidationResult> validate( ValidationRunContext context,
         ApplicationContext applicationContext, AnalyticsService analyticsService )
@@ -71,27 +81,35 @@ public class Validator
             return context.getValidationResults();
         }
 
-        ExecutorService executor = Executors.newFixedThreadPool( threadPoolSize );
+        ForkJoinPool pool = new ForkJoinPool( threadPoolSize );
 
-        List<List<OrganisationUnit>> orgUnitLists = Lists.partition( context.getOrgUnits(), ValidationRunContext.ORG_UNITS_PER_TASK );
-
-        for ( List<OrganisationUnit> orgUnits : orgUnitLists )
+        try
         {
-            ValidationTask task = (ValidationTask) applicationContext.getBean( DataValidationTask.NAME );
-            task.init( orgUnits, context, analyticsService );
-
-            executor.execute( task );
+            pool.submit( new OrgUnitValidationAction( getOrgUnitsBySubtree( context.getOrgUnits() ),
+                context, applicationContext, analyticsService ) ).get( 6, TimeUnit.HOURS );
         }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
 
-        executor.shutdown();
+            throw new IllegalStateException( "Validation analysis was interrupted", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
 
-        try
+            throw new IllegalStateException( "Validation analysis failed", e.getCause() );
+        }
+        catch ( TimeoutException e )
         {
-            executor.awaitTermination( 6, TimeUnit.HOURS );
+            throw new IllegalStateException( "Validation analysis did not complete in time", e );
         }
-        catch ( InterruptedException e )
+        finally
         {
-            executor.shutdownNow();
+            pool.shutdownNow();
         }
 
         reloadAttributeOptionCombos( context.getValidationResults(), categoryService );
@@ -99,6 +117,59 @@ public class Validator
         return context.getValidationResults();
     }
 
+    /**
+     * Orders organisation units by path, so that each block of organisation
+     * units given to a task covers as few subtrees as possible.
+     *
+     * @param orgUnits the organisation units.
+     * @return the organisation units ordered by path.
+     */
+    private static List<OrganisationUnit> getOrgUnitsBySubtree( List<OrganisationUnit> orgUnits )
+    {
+        Map<OrganisationUnit, String> paths = new HashMap<>();
+
+        orgUnits.forEach( ou -> paths.put( ou, ou.getPath() ) );
+
+        List<OrganisationUnit> sorted = new ArrayList<>( orgUnits );
+
+        sorted.sort( Comparator.comparing( paths::get ) );
+
+        return sorted;
+    }
+
+    /**
+     * Returns the index at which to split the given organisation units,
+     * ordered by path. Within half a block of the middle, the start of the
+     * highest subtree is chosen, as the subtree of a unit directly follows it
+     * when ordered by path. This keeps subtrees within the same task.
+     *
+     * @param orgUnits the organisation units ordered by path.
+     * @param middle the index of the middle block boundary.
+     * @return the split index, between 1 and the number of units - 1.
+     */
+    private static int getSplitIndex( List<OrganisationUnit> orgUnits, int middle )
+    {
+        int window = ValidationRunContext.ORG_UNITS_PER_TASK / 2;
+        int from = Math.max( 1, middle - window );
+        int to = Math.min( orgUnits.size() - 1, middle + window );
+
+        int splitIndex = middle;
+        int splitLevel = orgUnits.get( middle ).getLevel();
+
+        for ( int i = from; i <= to; i++ )
+        {
+            int level = orgUnits.get( i ).getLevel();
+
+            if ( level < splitLevel || ( level == splitLevel && Math.abs( i - middle ) < Math.abs( splitIndex - middle ) ) )
+            {
+                splitIndex = i;
+                splitLevel = level;
+            }
+        }
+
+        return splitIndex;
+    }
+
     /**
      * Determines how many threads we should use for testing validation rules.
      * 
@@ -139,4 +210,64 @@ public class Validator
                 .getCategoryOptionCombo( result.getAttributeOptionCombo().getId() ) );
         }
     }
+
+    /**
+     * Validates a range of organisation units, splitting it in two until it
+     * is small enough to be evaluated by a single {@link ValidationTask}.
+     * Idle threads steal the unsplit halves of busy threads, so subtrees with
+     * much data do not hold up the rest of the run.
+     */
+    private static class OrgUnitValidationAction
+        extends RecursiveAction
+    {
+        private final List<OrganisationUnit> orgUnits;
+
+        private final ValidationRunContext context;
+
+        private final ApplicationContext applicationContext;
+
+        private final AnalyticsService analyticsService;
+
+        OrgUnitValidationAction( List<OrganisationUnit> orgUnits, ValidationRunContext context,
+            ApplicationContext applicationContext, AnalyticsService analyticsService )
+        {
+            this.orgUnits = orgUnits;
+            this.context = context;
+            this.applicationContext = applicationContext;
+            this.analyticsService = analyticsService;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( context.isAnalysisComplete() )
+            {
+                return;
+            }
+
+            if ( orgUnits.size() <= ValidationRunContext.ORG_UNITS_PER_TASK )
+            {
+                ValidationTask task = (ValidationTask) applicationContext.getBean( DataValidationTask.NAME );
+                task.init( orgUnits, context, analyticsService );
+
+                try
+                {
+                    task.run();
+                }
+                catch ( RuntimeException ex )
+                {
+                    // Already logged by the task, carry on with the other organisation units
+                }
+
+                return;
+            }
+
+            int blocks = ( orgUnits.size() + ValidationRunContext.ORG_UNITS_PER_TASK - 1 ) / ValidationRunContext.ORG_UNITS_PER_TASK;
+            int middle = getSplitIndex( orgUnits, ( blocks / 2 ) * ValidationRunContext.ORG_UNITS_PER_TASK );
+
+            invokeAll(
+                new OrgUnitValidationAction( orgUnits.subList( 0, middle ), context, applicationContext, analyticsService ),
+                new OrgUnitValidationAction( orgUnits.subList( middle, orgUnits.size() ), context, applicationContext, analyticsService ) );
+        }
+    }
 }
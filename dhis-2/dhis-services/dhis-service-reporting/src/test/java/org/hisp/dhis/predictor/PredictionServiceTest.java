@@ -33,12 +33,15 @@ import com.google.common.collect.Sets;
 import org.hisp.dhis.IntegrationTest;
 import org.hisp.dhis.IntegrationTestBase;
 import org.hisp.dhis.analytics.AggregationType;
+import org.hisp.dhis.analytics.AnalyticsService;
 import org.hisp.dhis.category.Category;
 import org.hisp.dhis.category.CategoryCombo;
 import org.hisp.dhis.category.CategoryOption;
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.constant.ConstantService;
 import org.hisp.dhis.dataelement.*;
 import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.dataset.DataSetService;
@@ -47,7 +50,9 @@ import org.hisp.dhis.datavalue.DataValue;
 import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.datavalue.DeflatedDataValue;
 import org.hisp.dhis.expression.Expression;
+import org.hisp.dhis.expression.ExpressionService;
 import org.hisp.dhis.expression.MissingValueStrategy;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.jdbc.batchhandler.DataValueBatchHandler;
 import org.hisp.dhis.mock.MockCurrentUserService;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
@@ -56,13 +61,16 @@ import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.period.Period;
 import org.hisp.dhis.period.PeriodService;
 import org.hisp.dhis.period.PeriodType;
+import org.hisp.dhis.system.notification.Notifier;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.quick.BatchHandler;
 import org.hisp.quick.BatchHandlerFactory;
 import org.joda.time.DateTime;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -70,7 +78,11 @@ import java.util.Set;
 
 import static com.google.common.collect.Sets.newHashSet;
 import static org.hisp.dhis.expression.ExpressionService.SYMBOL_DAYS;
+import static org.hisp.dhis.external.conf.ConfigurationKey.PREDICTOR_CONCURRENCY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Lars Helge Overland
@@ -110,6 +122,24 @@ public class PredictionServiceTest
     @Autowired
     private BatchHandlerFactory batchHandlerFactory;
 
+    @Autowired
+    private ConstantService constantService;
+
+    @Autowired
+    private ExpressionService expressionService;
+
+    @Autowired
+    private IdentifiableObjectManager idObjectManager;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private Notifier notifier;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     private OrganisationUnitLevel orgUnitLevel1;
     private OrganisationUnitLevel orgUnitLevel2;
     private OrganisationUnitLevel orgUnitLevel3;
@@ -347,6 +377,34 @@ public class PredictionServiceTest
             + " Unch " + summary.getUnchanged();
     }
 
+    /**
+     * Creates a prediction service outside of the application context with
+     * the given predictor concurrency, so the number of evaluating threads
+     * can be controlled by the test.
+     */
+    private DefaultPredictionService createPredictionService( String concurrency, CurrentUserService userService )
+    {
+        DhisConfigurationProvider config = mock( DhisConfigurationProvider.class );
+        when( config.getProperty( PREDICTOR_CONCURRENCY ) ).thenReturn( concurrency );
+
+        return new DefaultPredictionService( predictorService, constantService, expressionService,
+            dataValueService, categoryService, organisationUnitService, periodService, idObjectManager,
+            analyticsService, notifier, batchHandlerFactory, userService, config );
+    }
+
+    private PredictionSummary predictInTransaction( PredictionService service, Predictor predictor,
+        Date startDate, Date endDate )
+    {
+        PredictionSummary predictionSummary = new PredictionSummary();
+
+        transactionTemplate.execute( status -> {
+            service.predict( predictor, startDate, endDate, predictionSummary );
+            return null;
+        } );
+
+        return predictionSummary;
+    }
+
     private void setupTestData()
     {
         // dataElementA - 2001
@@ -1167,6 +1225,38 @@ public class PredictionServiceTest
         assertEquals( "20", getDataValue( dataElementY, defaultCombo, sourceA, makeMonth( 2001, 7 ) ) );
     }
 
+    @Test
+    public void testPredictTaskDependentPredictors()
+    {
+        useDataValue( dataElementB, makeMonth( 2001, 6 ), sourceA, 20 );
+        useDataValue( dataElementB, makeMonth( 2001, 7 ), sourceA, 30 );
+
+        dataValueBatchHandler.flush();
+
+        Predictor predictorA = createPredictor( dataElementX, defaultCombo, "A", expressionB, null,
+            periodTypeMonthly, orgUnitLevel1, 1, 0, 0 );
+
+        Expression expressionX = new Expression( "avg(#{" + dataElementX.getUid() + "})", "descriptionX" );
+
+        Predictor predictorB = createPredictor( dataElementY, defaultCombo, "B", expressionX, null,
+            periodTypeMonthly, orgUnitLevel1, 1, 0, 0 );
+
+        predictorService.addPredictor( predictorB );
+        predictorService.addPredictor( predictorA );
+
+        // Predictor B reads the output of predictor A so must run after it
+
+        List<String> predictors = Lists.newArrayList( predictorB.getUid(), predictorA.getUid() );
+
+        summary = predictionService.predictTask( monthStart( 2001, 7 ), monthStart( 2001, 9 ), predictors, null, null );
+
+        assertEquals( "Pred 2 Ins 3 Upd 0 Del 0 Unch 0", shortSummary( summary ) );
+
+        assertEquals( "20.0", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 7 ) ) );
+        assertEquals( "30.0", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 8 ) ) );
+        assertEquals( "20", getDataValue( dataElementY, defaultCombo, sourceA, makeMonth( 2001, 8 ) ) );
+    }
+
     @Test
     public void testPredictMedian()
     {
@@ -1495,4 +1585,71 @@ public class PredictionServiceTest
         assertEquals( "22", getDataValue( dataElementZ, defaultCombo, sourceA, makeMonth( 2010, 8 ) ) );
         assertEquals( "33", getDataValue( dataElementZ, defaultCombo, sourceA, makeMonth( 2010, 9 ) ) );
     }
+
+    @Test
+    public void testPredictConcurrentlyMatchesSingleThread()
+    {
+        List<OrganisationUnit> orgUnits = new ArrayList<>();
+
+        for ( int i = 0; i < 120; i++ )
+        {
+            OrganisationUnit orgUnit = createOrganisationUnit( "Concurrent" + i, sourceA );
+            organisationUnitService.addOrganisationUnit( orgUnit );
+            orgUnits.add( orgUnit );
+        }
+
+        for ( int i = 0; i < orgUnits.size(); i++ )
+        {
+            for ( int month = 6; month <= 10; month++ )
+            {
+                useDataValue( dataElementA, makeMonth( 2001, month ), orgUnits.get( i ), 1 + i % 7 + month * ( i % 3 ) );
+            }
+        }
+
+        dataValueBatchHandler.flush();
+
+        DataElement dataElementW = createDataElement( 'W', ValueType.NUMBER, AggregationType.NONE );
+        dataElementService.addDataElement( dataElementW );
+
+        Predictor singleThreaded = createPredictor( dataElementX, defaultCombo, "SingleThreaded",
+            new Expression( expressionA.getExpression(), "descriptionSingle" ), null,
+            periodTypeMonthly, orgUnitLevel2, 3, 0, 0 );
+
+        Predictor concurrent = createPredictor( dataElementW, defaultCombo, "Concurrent",
+            new Expression( expressionA.getExpression(), "descriptionConcurrent" ), null,
+            periodTypeMonthly, orgUnitLevel2, 3, 0, 0 );
+
+        Set<OrganisationUnit> units = newHashSet( sourceA, sourceB, sourceG );
+        CurrentUserService mockCurrentUserService = new MockCurrentUserService( true, units, units );
+
+        DefaultPredictionService singleThreadedService = createPredictionService( "1", mockCurrentUserService );
+        DefaultPredictionService concurrentService = createPredictionService( "4", mockCurrentUserService );
+
+        try
+        {
+            PredictionSummary singleThreadedSummary = predictInTransaction( singleThreadedService, singleThreaded,
+                monthStart( 2001, 7 ), monthStart( 2001, 12 ) );
+
+            PredictionSummary concurrentSummary = predictInTransaction( concurrentService, concurrent,
+                monthStart( 2001, 7 ), monthStart( 2001, 12 ) );
+
+            assertEquals( shortSummary( singleThreadedSummary ), shortSummary( concurrentSummary ) );
+        }
+        finally
+        {
+            singleThreadedService.shutdown();
+            concurrentService.shutdown();
+        }
+
+        for ( OrganisationUnit orgUnit : orgUnits )
+        {
+            for ( int month = 7; month <= 11; month++ )
+            {
+                String expected = getDataValue( dataElementX, defaultCombo, orgUnit, makeMonth( 2001, month ) );
+
+                assertNotNull( expected );
+                assertEquals( expected, getDataValue( dataElementW, defaultCombo, orgUnit, makeMonth( 2001, month ) ) );
+            }
+        }
+    }
 }
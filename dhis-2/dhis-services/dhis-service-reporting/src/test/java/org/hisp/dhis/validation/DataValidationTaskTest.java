@@ -33,7 +33,10 @@ import static org.hisp.dhis.DhisConvenienceTest.*;
 import static org.hisp.dhis.expression.ParseType.SIMPLE_TEST;
 import static org.hisp.dhis.expression.ParseType.VALIDATION_RULE_EXPRESSION;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -65,6 +68,7 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
+import org.springframework.transaction.PlatformTransactionManager;
 
 /**
  * @author Luciano Fiandesio
@@ -86,6 +90,12 @@ public class DataValidationTaskTest
     @Mock
     private AnalyticsService analyticsService;
 
+    @Mock
+    private ValidationResultService validationResultService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @Rule
     public MockitoRule rule = MockitoJUnit.rule();
 
@@ -104,7 +114,8 @@ public class DataValidationTaskTest
     @Before
     public void setUp()
     {
-        subject = new DataValidationTask( expressionService, dataValueService, categoryService, periodService );
+        subject = new DataValidationTask( expressionService, dataValueService, categoryService, periodService,
+            validationResultService, transactionManager );
 
         deA = createDataElement( 'A' );
 
@@ -179,6 +190,116 @@ public class DataValidationTaskTest
         assertThat( ctx.getValidationResults().size(), is( 0 ) );
     }
 
+    @Test
+    public void verifyValidationResultsArePersisted()
+    {
+        Expression leftExpression = createExpression2( 'A', "#{FUrCpcvMAmC.OrDRjJL9bTS}" );
+        Expression rightExpression = createExpression2( 'B', "-10" );
+
+        ValidationRuleExtended vre = createValidationRuleExtended( leftExpression, rightExpression, Operator.not_equal_to );
+
+        List<PeriodTypeExtended> periodTypes = new ArrayList<>();
+        PeriodTypeExtended periodType = createPeriodTypeExtended( vre );
+        periodType.addDataElement( deA );
+        periodTypes.add( periodType );
+
+        CategoryOptionCombo categoryOptionCombo = createCategoryOptionCombo( 'A', 'B' );
+
+        ValidationRunContext ctx = ValidationRunContext.newBuilder()
+            .withOrgUnits( organisationUnits )
+            .withConstantMap( constantMap )
+            .withDefaultAttributeCombo( categoryOptionCombo )
+            .withPeriodTypeXs( periodTypes )
+            .withMaxResults( 500 )
+            .withPersistResults( true )
+            .build();
+
+        List<DeflatedDataValue> deflatedDataValues = new ArrayList<>();
+
+        DataValue dv = createDataValue( deA, createPeriod( "201901" ), ouA, "12.4", createCategoryOptionCombo( 'B', 'C' ) );
+
+        deflatedDataValues.add( new DeflatedDataValue( dv ) );
+
+        when( dataValueService.getDeflatedDataValues( any( DataExportParams.class ) ) )
+            .thenReturn( deflatedDataValues );
+
+        Map<DimensionalItemObject, Double> vals = new HashMap<>();
+        vals.put( deA, 12.4 );
+
+        mockExpressionService( leftExpression, vals, ctx, -10.0 );
+        mockExpressionService( rightExpression, vals, ctx, -10.0 );
+
+        when( expressionService.getExpressionValue( "-10.0!=-10.0", SIMPLE_TEST ) ).thenReturn( false );
+
+        subject.init( organisationUnits, ctx, analyticsService );
+        subject.run();
+
+        assertThat( ctx.getValidationResults().size(), is( 3 ) );
+
+        verify( validationResultService ).saveValidationResults( argThat( results -> results.size() == 3 ) );
+    }
+
+    @Test
+    public void verifyValidationResultsArePersistedOnFailure()
+    {
+        Expression leftExpression = createExpression2( 'A', "#{FUrCpcvMAmC.OrDRjJL9bTS}" );
+        Expression rightExpression = createExpression2( 'B', "-10" );
+
+        ValidationRuleExtended vre = createValidationRuleExtended( leftExpression, rightExpression, Operator.not_equal_to );
+
+        List<PeriodTypeExtended> periodTypes = new ArrayList<>();
+        PeriodTypeExtended periodType = createPeriodTypeExtended( vre );
+        periodType.addDataElement( deA );
+        periodTypes.add( periodType );
+
+        CategoryOptionCombo categoryOptionCombo = createCategoryOptionCombo( 'A', 'B' );
+
+        ValidationRunContext ctx = ValidationRunContext.newBuilder()
+            .withOrgUnits( organisationUnits )
+            .withConstantMap( constantMap )
+            .withDefaultAttributeCombo( categoryOptionCombo )
+            .withPeriodTypeXs( periodTypes )
+            .withMaxResults( 500 )
+            .withPersistResults( true )
+            .build();
+
+        List<DeflatedDataValue> deflatedDataValues = new ArrayList<>();
+
+        DataValue dv = createDataValue( deA, createPeriod( "201901" ), ouA, "12.4", createCategoryOptionCombo( 'B', 'C' ) );
+
+        deflatedDataValues.add( new DeflatedDataValue( dv ) );
+
+        when( dataValueService.getDeflatedDataValues( any( DataExportParams.class ) ) )
+            .thenReturn( deflatedDataValues );
+
+        Map<DimensionalItemObject, Double> vals = new HashMap<>();
+        vals.put( deA, 12.4 );
+
+        mockExpressionService( leftExpression, vals, ctx, -10.0 );
+        mockExpressionService( rightExpression, vals, ctx, -10.0 );
+
+        when( expressionService.getExpressionValue( "-10.0!=-10.0", SIMPLE_TEST ) )
+            .thenReturn( false )
+            .thenThrow( new IllegalStateException( "Evaluation failed" ) );
+
+        subject.init( organisationUnits, ctx, analyticsService );
+
+        try
+        {
+            subject.run();
+
+            fail( "Expected the evaluation failure to be propagated" );
+        }
+        catch ( IllegalStateException ex )
+        {
+            assertThat( ex.getMessage(), is( "Evaluation failed" ) );
+        }
+
+        assertThat( ctx.getValidationResults().size(), is( 1 ) );
+
+        verify( validationResultService ).saveValidationResults( argThat( results -> results.size() == 1 ) );
+    }
+
     @Test
     public void verifyValidationSkippedOnNoData()
     {
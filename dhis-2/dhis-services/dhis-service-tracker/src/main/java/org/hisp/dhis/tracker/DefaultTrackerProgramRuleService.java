@@ -40,6 +40,8 @@ import org.hisp.dhis.tracker.domain.Event;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -74,26 +76,42 @@ public class DefaultTrackerProgramRuleService
     public Map<String, List<RuleEffect>> calculateEnrollmentRuleEffects( List<Enrollment> enrollments,
         TrackerBundle bundle )
     {
-        return enrollments
-            .stream()
-            .collect( Collectors.toMap( Enrollment::getEnrollment, e -> {
-                ProgramInstance enrollment = enrollmentTrackerConverterService.fromForRuleEngine( bundle.getPreheat(),
-                    e );
-                return programRuleEngine.evaluate( enrollment, Sets.newHashSet() );
-            } ) );
+        ProgramRuleEngine.Batch batch = programRuleEngine.newBatch();
+
+        enrollments.forEach( e -> batch.addEnrollment(
+            enrollmentTrackerConverterService.fromForRuleEngine( bundle.getPreheat(), e ), Sets.newHashSet() ) );
+
+        return batch.evaluate();
     }
 
     @Override
     public Map<String, List<RuleEffect>> calculateEventRuleEffects( List<Event> events, TrackerBundle bundle )
     {
-        return events
+        // Enrollments and events are converted once, and the events of each
+        // enrollment are collected once, for all events of the bundle
+
+        Map<String, ProgramStageInstance> programStageInstances = events
             .stream()
-            .collect( Collectors.toMap( Event::getEvent, event -> {
-                ProgramInstance enrollment = getEnrollment( bundle, event );
-                return programRuleEngine.evaluate( enrollment,
-                    eventTrackerConverterService.from( bundle.getPreheat(), event ),
-                    getEventsFromEnrollment( enrollment.getUid(), bundle, events ) );
-            } ) );
+            .collect( Collectors.toMap( Event::getEvent, event -> eventTrackerConverterService.from( bundle.getPreheat(), event ),
+                ( a, b ) -> b, LinkedHashMap::new ) );
+
+        Map<String, ProgramInstance> enrollments = new HashMap<>();
+
+        Map<String, Set<ProgramStageInstance>> enrollmentEvents = new HashMap<>();
+
+        ProgramRuleEngine.Batch batch = programRuleEngine.newBatch();
+
+        for ( Event event : events )
+        {
+            ProgramInstance enrollment = enrollments.computeIfAbsent( event.getEnrollment(),
+                uid -> getEnrollment( bundle, event ) );
+
+            batch.addEvent( enrollment, programStageInstances.get( event.getEvent() ),
+                enrollmentEvents.computeIfAbsent( enrollment.getUid(),
+                    uid -> getEventsFromEnrollment( uid, bundle, events, programStageInstances ) ) );
+        }
+
+        return batch.evaluate();
     }
 
     private ProgramInstance getEnrollment( TrackerBundle bundle, Event event )
@@ -108,7 +126,7 @@ public class DefaultTrackerProgramRuleService
     }
 
     private Set<ProgramStageInstance> getEventsFromEnrollment( String enrollment, TrackerBundle bundle,
-        List<Event> events )
+        List<Event> events, Map<String, ProgramStageInstance> programStageInstances )
     {
         List<ProgramStageInstance> preheatEvents = bundle.getPreheat().getEvents().values()
             .stream()
@@ -120,7 +138,7 @@ public class DefaultTrackerProgramRuleService
         Stream<ProgramStageInstance> bundleEvents = events
             .stream()
             .filter( e -> e.getEnrollment().equals( enrollment ) )
-            .map( event -> eventTrackerConverterService.from( bundle.getPreheat(), event ) );
+            .map( event -> programStageInstances.get( event.getEvent() ) );
 
         return Stream.concat( programStageInstances, bundleEvents ).collect( Collectors.toSet() );
 
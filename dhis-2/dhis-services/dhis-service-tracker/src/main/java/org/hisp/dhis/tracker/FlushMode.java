@@ -42,4 +42,9 @@ public enum FlushMode
      * Let the importer decide the flushing.
      */
     AUTO,
+
+    /**
+     * Write objects with batched JDBC statements, flushing once per batch.
+     */
+    BATCH,
 }
@@ -36,6 +36,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hisp.dhis.cache.HibernateCacheManager;
@@ -92,6 +93,8 @@ import java.util.stream.Stream;
 public class DefaultTrackerBundleService
     implements TrackerBundleService
 {
+    private static final int JDBC_BATCH_SIZE = 500;
+
     private final TrackerPreheatService trackerPreheatService;
 
     private final TrackerConverterService<TrackedEntity, TrackedEntityInstance> teConverter;
@@ -233,13 +236,27 @@ public class DefaultTrackerBundleService
 
         Session session = sessionFactory.getCurrentSession();
 
-        bundleHooks.forEach( hook -> hook.preCommit( bundle ) );
+        Integer jdbcBatchSize = session.getJdbcBatchSize();
 
-        Stream.of( TrackerType.values() )
-            .forEach( t -> bundleReport.getTypeReportMap().put( t, COMMIT_MAPPER.get( t )
-            .apply( session, bundle ) ) );
+        if ( FlushMode.BATCH == bundle.getFlushMode() )
+        {
+            session.setJdbcBatchSize( JDBC_BATCH_SIZE );
+        }
 
-        bundleHooks.forEach( hook -> hook.postCommit( bundle ) );
+        try
+        {
+            bundleHooks.forEach( hook -> hook.preCommit( bundle ) );
+
+            Stream.of( TrackerType.values() )
+                .forEach( t -> bundleReport.getTypeReportMap().put( t, COMMIT_MAPPER.get( t )
+                .apply( session, bundle ) ) );
+
+            bundleHooks.forEach( hook -> hook.postCommit( bundle ) );
+        }
+        finally
+        {
+            session.setJdbcBatchSize( jdbcBatchSize );
+        }
 
         dbmsManager.clearSession();
         cacheManager.clearCache();
@@ -278,6 +295,8 @@ public class DefaultTrackerBundleService
 
         Date now = new Date();
 
+        List<Pair<List<Attribute>, TrackedEntityInstance>> pendingAttributeValues = new ArrayList<>();
+
         for ( int idx = 0; idx < trackedEntities.size(); idx++ )
         {
             TrackedEntity trackedEntity = trackedEntities.get( idx );
@@ -303,14 +322,13 @@ public class DefaultTrackerBundleService
 
             bundle.getPreheat().putTrackedEntities( bundle.getIdentifier(), Collections.singletonList( tei ) );
 
-            handleTrackedEntityAttributeValues( session, bundle.getPreheat(), trackedEntity.getAttributes(), tei );
+            pendingAttributeValues.add( Pair.of( trackedEntity.getAttributes(), tei ) );
 
-            if ( FlushMode.OBJECT == bundle.getFlushMode() )
-            {
-                session.flush();
-            }
+            flush( session, bundle, idx, pendingAttributeValues );
         }
 
+        handleTrackedEntityAttributeValues( session, bundle.getPreheat(), pendingAttributeValues );
+
         session.flush();
 
         trackedEntities
@@ -330,6 +348,8 @@ public class DefaultTrackerBundleService
 
         Date now = new Date();
 
+        List<Pair<List<Attribute>, TrackedEntityInstance>> pendingAttributeValues = new ArrayList<>();
+
         for ( int idx = 0; idx < enrollments.size(); idx++ )
         {
             Enrollment enrollment = enrollments.get( idx );
@@ -365,13 +385,9 @@ public class DefaultTrackerBundleService
 
             bundle.getPreheat().putEnrollments( bundle.getIdentifier(), Collections.singletonList( programInstance ) );
 
-            handleTrackedEntityAttributeValues( session, bundle.getPreheat(), enrollment.getAttributes(),
-                programInstance.getEntityInstance() );
+            pendingAttributeValues.add( Pair.of( enrollment.getAttributes(), programInstance.getEntityInstance() ) );
 
-            if ( FlushMode.OBJECT == bundle.getFlushMode() )
-            {
-                session.flush();
-            }
+            flush( session, bundle, idx, pendingAttributeValues );
 
             if ( !bundle.isSkipSideEffects() )
             {
@@ -388,6 +404,8 @@ public class DefaultTrackerBundleService
             }
         }
 
+        handleTrackedEntityAttributeValues( session, bundle.getPreheat(), pendingAttributeValues );
+
         session.flush();
         enrollments.forEach( o -> bundleHooks.forEach( hook -> hook.postCreate( Enrollment.class, o, bundle ) ) );
 
@@ -440,10 +458,7 @@ public class DefaultTrackerBundleService
 
             bundle.getPreheat().putEvents( bundle.getIdentifier(), Collections.singletonList( programStageInstance ) );
 
-            if ( FlushMode.OBJECT == bundle.getFlushMode() )
-            {
-                session.flush();
-            }
+            flush( session, bundle, idx, Collections.emptyList() );
 
             if ( !bundle.isSkipSideEffects() )
             {
@@ -496,10 +511,7 @@ public class DefaultTrackerBundleService
 
             session.persist( relationship );
 
-            if ( FlushMode.OBJECT == bundle.getFlushMode() )
-            {
-                session.flush();
-            }
+            flush( session, bundle, idx, Collections.emptyList() );
 
             typeReport.getStats().incCreated();
         }
@@ -515,6 +527,43 @@ public class DefaultTrackerBundleService
     // Utility Methods
     // -----------------------------------------------------------------------------------
 
+    /**
+     * Writes pending attribute values and flushes the session according to the
+     * flush mode of the bundle. In {@link FlushMode#BATCH} mode attribute
+     * values are held back until the end of each batch, so that the inserts
+     * of each table are sent as one JDBC batch.
+     */
+    private void flush( Session session, TrackerBundle bundle, int idx,
+        List<Pair<List<Attribute>, TrackedEntityInstance>> pendingAttributeValues )
+    {
+        boolean batchMode = FlushMode.BATCH == bundle.getFlushMode();
+        boolean endOfBatch = (idx + 1) % JDBC_BATCH_SIZE == 0;
+
+        if ( !batchMode || endOfBatch )
+        {
+            handleTrackedEntityAttributeValues( session, bundle.getPreheat(), pendingAttributeValues );
+        }
+
+        if ( FlushMode.OBJECT == bundle.getFlushMode() || (batchMode && endOfBatch) )
+        {
+            session.flush();
+        }
+    }
+
+    private void handleTrackedEntityAttributeValues( Session session, TrackerPreheat preheat,
+        List<Pair<List<Attribute>, TrackedEntityInstance>> pendingAttributeValues )
+    {
+        if ( pendingAttributeValues.isEmpty() )
+        {
+            return;
+        }
+
+        pendingAttributeValues.forEach( pair ->
+            handleTrackedEntityAttributeValues( session, preheat, pair.getLeft(), pair.getRight() ) );
+
+        pendingAttributeValues.clear();
+    }
+
     private void handleTrackedEntityAttributeValues( Session session, TrackerPreheat preheat,
         List<Attribute> payloadAttributes, TrackedEntityInstance trackedEntityInstance )
     {
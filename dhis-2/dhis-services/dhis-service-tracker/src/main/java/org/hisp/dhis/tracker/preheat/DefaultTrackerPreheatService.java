@@ -254,7 +254,6 @@ public class DefaultTrackerPreheatService
         // since RelationshipTypes are not really required by incoming payload, and they are small in size/count, we preload them all here
         preheat.put( TrackerIdentifier.UID, manager.getAll( RelationshipType.class ) );
 
-        periodStore.getAll().forEach( period -> preheat.getPeriodMap().put( period.getName(), period ) );
         periodStore.getAllPeriodTypes()
             .forEach( periodType -> preheat.getPeriodTypeMap().put( periodType.getName(), periodType ) );
 
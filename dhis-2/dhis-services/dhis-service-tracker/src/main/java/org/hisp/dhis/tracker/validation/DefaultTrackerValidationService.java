@@ -28,8 +28,13 @@ package org.hisp.dhis.tracker.validation;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import static org.hisp.dhis.external.conf.ConfigurationKey.TRACKER_VALIDATION_CONCURRENCY;
+
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.hisp.dhis.commons.timer.Timer;
+import org.hisp.dhis.commons.util.SystemUtils;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.tracker.ValidationMode;
 import org.hisp.dhis.tracker.bundle.TrackerBundle;
 import org.hisp.dhis.tracker.report.TrackerErrorReport;
@@ -37,10 +42,20 @@ import org.hisp.dhis.tracker.report.TrackerValidationHookTimerReport;
 import org.hisp.dhis.tracker.report.TrackerValidationReport;
 import org.hisp.dhis.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
@@ -52,6 +67,23 @@ public class DefaultTrackerValidationService
 {
     private List<TrackerValidationHook> validationHooks = new ArrayList<>();
 
+    /**
+     * Executor for hooks which can run in parallel, null if validation is
+     * configured to run on a single thread.
+     */
+    private final ExecutorService executor;
+
+    public DefaultTrackerValidationService( DhisConfigurationProvider config )
+    {
+        // Parallel validation is off by default, 0 means one thread per CPU core
+
+        int concurrency = NumberUtils.toInt( config.getProperty( TRACKER_VALIDATION_CONCURRENCY ), 1 );
+        int threads = concurrency > 0 ? concurrency : SystemUtils.getCpuCores();
+
+        this.executor = threads > 1 ? Executors.newFixedThreadPool( threads, new ThreadFactoryBuilder()
+            .setNameFormat( "tracker-validation-%d" ).setDaemon( true ).build() ) : null;
+    }
+
     @Autowired( required = false )
     public void setValidationHooks( List<TrackerValidationHook> validationHooks )
     {
@@ -61,6 +93,15 @@ public class DefaultTrackerValidationService
         TrackerImportValidationConfig.sortHooks( validationHooks );
     }
 
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( executor != null )
+        {
+            executor.shutdownNow();
+        }
+    }
+
     @Override
     public TrackerValidationReport validate( TrackerBundle bundle )
     {
@@ -77,21 +118,34 @@ public class DefaultTrackerValidationService
 
         TrackerImportValidationContext context = new TrackerImportValidationContext( bundle );
 
+        // Hooks running on other threads can not take part in an ongoing transaction
+
+        boolean parallel = executor != null && !TransactionSynchronizationManager.isActualTransactionActive();
+
+        List<TrackerValidationHook> parallelHooks = new ArrayList<>();
+
         try
         {
             for ( TrackerValidationHook hook : validationHooks )
             {
                 if ( hook.isEnabled() )
                 {
-                    Timer hookTimer = Timer.startTimer();
+                    if ( parallel && TrackerImportValidationConfig.isParallel( hook ) )
+                    {
+                        parallelHooks.add( hook );
+                    }
+                    else
+                    {
+                        validateInParallel( parallelHooks, context, validationReport );
 
-                    validationReport.add( hook.validate( context ) );
+                        parallelHooks.clear();
 
-                    validationReport.add( TrackerValidationHookTimerReport.builder()
-                        .name( hook.getClass().getName() )
-                        .totalTime( hookTimer.toString() ).build() );
+                        validationReport.add( validate( hook, context ) );
+                    }
                 }
             }
+
+            validateInParallel( parallelHooks, context, validationReport );
         }
         catch ( ValidationFailFastException e )
         {
@@ -100,4 +154,93 @@ public class DefaultTrackerValidationService
 
         return validationReport;
     }
+
+    /**
+     * Runs the given hooks concurrently. Reports are added in hook order, so
+     * that the resulting validation report is the same as for sequential
+     * validation.
+     */
+    private void validateInParallel( List<TrackerValidationHook> hooks, TrackerImportValidationContext context,
+        TrackerValidationReport validationReport )
+    {
+        if ( hooks.size() == 1 )
+        {
+            validationReport.add( validate( hooks.get( 0 ), context ) );
+            return;
+        }
+
+        List<Future<TrackerValidationReport>> futures = new ArrayList<>();
+
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        for ( TrackerValidationHook hook : hooks )
+        {
+            futures.add( executor.submit( () -> validate( hook, context, securityContext ) ) );
+        }
+
+        try
+        {
+            for ( Future<TrackerValidationReport> future : futures )
+            {
+                validationReport.add( getReport( future ) );
+            }
+        }
+        finally
+        {
+            futures.forEach( future -> future.cancel( true ) );
+        }
+    }
+
+    private TrackerValidationReport validate( TrackerValidationHook hook, TrackerImportValidationContext context,
+        SecurityContext securityContext )
+    {
+        SecurityContextHolder.setContext( securityContext );
+
+        try
+        {
+            return validate( hook, context );
+        }
+        finally
+        {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private TrackerValidationReport validate( TrackerValidationHook hook, TrackerImportValidationContext context )
+    {
+        TrackerValidationReport report = new TrackerValidationReport();
+
+        Timer hookTimer = Timer.startTimer();
+
+        report.add( hook.validate( context ) );
+
+        report.add( TrackerValidationHookTimerReport.builder()
+            .name( hook.getClass().getName() )
+            .totalTime( hookTimer.toString() ).build() );
+
+        return report;
+    }
+
+    private TrackerValidationReport getReport( Future<TrackerValidationReport> future )
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException( "Tracker validation was interrupted", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException( "Tracker validation failed", e.getCause() );
+        }
+    }
 }
@@ -30,11 +30,13 @@ package org.hisp.dhis.tracker.validation;
  */
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.hisp.dhis.tracker.validation.hooks.*;
 
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
@@ -83,6 +85,26 @@ public class TrackerImportValidationConfig
         AssignedUserValidationHook.class
     );
 
+    /**
+     * Hooks which can run concurrently with each other once the preceding
+     * hooks in the VALIDATION_ORDER list have completed. Any other hook acts
+     * as a barrier: it runs alone, after all hooks before it and before all
+     * hooks after it.
+     *
+     * Parallel hooks run on threads without a Hibernate session, so they must
+     * only read the bundle DTOs and simple properties of preheated objects.
+     * Hooks which call services, load lazy associations or check the
+     * authorities of the user must not be listed here.
+     */
+    protected static final Set<Class<? extends TrackerValidationHook>> PARALLEL_HOOKS = ImmutableSet.of(
+
+        EnrollmentGeoValidationHook.class,
+        EnrollmentDateValidationHook.class,
+
+        EnrollmentRuleValidationHook.class,
+        EventRuleValidationHook.class
+    );
+
     /**
      * Map structure to hold the index (int) of each element in the VALIDATION_ORDER as the value and the class as key.
      * This map is used for sorting a list of TrackerValidationHooks classes.
@@ -102,4 +124,16 @@ public class TrackerImportValidationConfig
         //TODO: Make some tests to check this is correctly configured
         hooks.sort( Comparator.comparingInt( o -> VALIDATION_ORDER_MAP.get( o.getClass() ) ) );
     }
+
+    /**
+     * Indicates whether the given hook can run concurrently with adjacent
+     * parallel hooks.
+     *
+     * @param hook the hook.
+     * @return true if the hook can run in parallel.
+     */
+    public static boolean isParallel( TrackerValidationHook hook )
+    {
+        return PARALLEL_HOOKS.contains( hook.getClass() );
+    }
 }
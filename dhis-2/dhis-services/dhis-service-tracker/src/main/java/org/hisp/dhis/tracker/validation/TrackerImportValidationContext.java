@@ -49,10 +49,10 @@ import org.hisp.dhis.tracker.domain.TrackedEntity;
 import org.hisp.dhis.tracker.domain.TrackerDto;
 import org.springframework.util.StringUtils;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Morten Svanæs <msvanaes@dhis2.org>
@@ -61,11 +61,13 @@ import java.util.Optional;
 public class TrackerImportValidationContext
 {
 
-    private final Map<Class<? extends TrackerDto>, Map<String, TrackerImportStrategy>> resolvedStrategyMap = new HashMap<>();
+    // Concurrent maps, as hooks may run on several threads at once
 
-    private Map<String, CategoryOptionCombo> eventCocCacheMap = new HashMap<>();
+    private final Map<Class<? extends TrackerDto>, Map<String, TrackerImportStrategy>> resolvedStrategyMap = new ConcurrentHashMap<>();
 
-    private Map<String, String> cachedEventAOCProgramCC = new HashMap<>();
+    private Map<String, CategoryOptionCombo> eventCocCacheMap = new ConcurrentHashMap<>();
+
+    private Map<String, String> cachedEventAOCProgramCC = new ConcurrentHashMap<>();
 
     private TrackerBundle bundle;
 
@@ -76,9 +78,9 @@ public class TrackerImportValidationContext
         Map<Class<? extends TrackerDto>, Map<String, TrackerImportStrategy>> resolvedMap = this
             .getResolvedStrategyMap();
 
-        resolvedMap.put( Event.class, new HashMap<>() );
-        resolvedMap.put( Enrollment.class, new HashMap<>() );
-        resolvedMap.put( TrackedEntity.class, new HashMap<>() );
+        resolvedMap.put( Event.class, new ConcurrentHashMap<>() );
+        resolvedMap.put( Enrollment.class, new ConcurrentHashMap<>() );
+        resolvedMap.put( TrackedEntity.class, new ConcurrentHashMap<>() );
     }
 
     public TrackerImportStrategy getStrategy( Enrollment enrollment )
@@ -118,10 +120,7 @@ public class TrackerImportValidationContext
 
         Preconditions.checkNotNull( categoryOptionCombo, "Event Category Option Combo can't be null or empty" );
 
-        if ( !eventCocCacheMap.containsKey( key ) )
-        {
-            eventCocCacheMap.put( key, categoryOptionCombo );
-        }
+        eventCocCacheMap.putIfAbsent( key, categoryOptionCombo );
     }
 
     public CategoryOptionCombo getCachedEventCategoryOptionCombo( String key )
@@ -131,7 +130,13 @@ public class TrackerImportValidationContext
 
     public void putCachedEventAOCProgramCC( String cacheKey, String value )
     {
-        cachedEventAOCProgramCC.put( cacheKey, value );
+        // A missing value is returned as empty either way, and concurrent
+        // maps can not hold nulls
+
+        if ( value != null )
+        {
+            cachedEventAOCProgramCC.put( cacheKey, value );
+        }
     }
 
     public Optional<String> getCachedEventAOCProgramCC( String cacheKey )
@@ -31,6 +31,7 @@ package org.hisp.dhis.tracker.bundle;
 import org.hisp.dhis.DhisSpringTest;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundle;
 import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundleMode;
 import org.hisp.dhis.dxf2.metadata.objectbundle.ObjectBundleParams;
@@ -40,9 +41,14 @@ import org.hisp.dhis.dxf2.metadata.objectbundle.feedback.ObjectBundleValidationR
 import org.hisp.dhis.importexport.ImportStrategy;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.program.Program;
+import org.hisp.dhis.program.ProgramInstance;
+import org.hisp.dhis.program.ProgramStageInstance;
 import org.hisp.dhis.render.RenderFormat;
 import org.hisp.dhis.render.RenderService;
+import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValueService;
+import org.hisp.dhis.tracker.FlushMode;
 import org.hisp.dhis.user.UserService;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -78,6 +84,12 @@ public class TrackerBundleServiceTest
     @Autowired
     private TrackerBundleService trackerBundleService;
 
+    @Autowired
+    private TrackedEntityAttributeValueService trackedEntityAttributeValueService;
+
+    @Autowired
+    private DbmsManager dbmsManager;
+
     @Autowired
     private IdentifiableObjectManager manager;
 
@@ -135,4 +147,86 @@ public class TrackerBundleServiceTest
         List<TrackedEntityInstance> trackedEntityInstances = manager.getAll( TrackedEntityInstance.class );
         assertEquals( 13, trackedEntityInstances.size() );
     }
+
+    @Test
+    public void testTrackedEntityInstanceImportInBatchMode()
+        throws IOException
+    {
+        TrackerBundleParams trackerBundleParams = renderService
+            .fromJson( new ClassPathResource( "tracker/trackedentity_basic_data.json" ).getInputStream(),
+                TrackerBundleParams.class );
+
+        TrackerBundle trackerBundle = trackerBundleService.create( TrackerBundleParams.builder()
+            .trackedEntities( trackerBundleParams.getTrackedEntities() )
+            .flushMode( FlushMode.BATCH )
+            .build() );
+
+        trackerBundleService.commit( trackerBundle );
+
+        List<TrackedEntityInstance> trackedEntityInstances = manager.getAll( TrackedEntityInstance.class );
+        assertEquals( 13, trackedEntityInstances.size() );
+    }
+
+    @Test
+    public void testTrackerImportWithAttributesAndReferences()
+        throws IOException
+    {
+        assertTrackerImportWithAttributesAndReferences( FlushMode.AUTO );
+    }
+
+    @Test
+    public void testTrackerImportWithAttributesAndReferencesInBatchMode()
+        throws IOException
+    {
+        assertTrackerImportWithAttributesAndReferences( FlushMode.BATCH );
+    }
+
+    /**
+     * Imports tracked entities with attribute values, and enrollments and
+     * events referencing them, with the given flush mode, and asserts the
+     * persisted values and references after clearing the session.
+     */
+    private void assertTrackerImportWithAttributesAndReferences( FlushMode flushMode )
+        throws IOException
+    {
+        TrackerBundleParams trackerBundleParams = renderService
+            .fromJson( new ClassPathResource( "tracker/tracker_basic_data_before_deletion.json" ).getInputStream(),
+                TrackerBundleParams.class );
+
+        TrackerBundle trackerBundle = trackerBundleService.create( TrackerBundleParams.builder()
+            .trackedEntities( trackerBundleParams.getTrackedEntities() )
+            .enrollments( trackerBundleParams.getEnrollments() )
+            .events( trackerBundleParams.getEvents() )
+            .flushMode( flushMode )
+            .build() );
+
+        trackerBundleService.commit( trackerBundle );
+
+        dbmsManager.flushSession();
+        dbmsManager.clearSession();
+
+        List<TrackedEntityInstance> trackedEntityInstances = manager.getAll( TrackedEntityInstance.class );
+        assertEquals( 13, trackedEntityInstances.size() );
+
+        for ( TrackedEntityInstance trackedEntityInstance : trackedEntityInstances )
+        {
+            assertEquals( 2, trackedEntityAttributeValueService
+                .getTrackedEntityAttributeValues( trackedEntityInstance ).size() );
+        }
+
+        TrackedEntityInstance person = manager.get( TrackedEntityInstance.class, "NCc1rCEOKaY" );
+        assertEquals( "PersonA", trackedEntityAttributeValueService
+            .getTrackedEntityAttributeValue( person, manager.get( TrackedEntityAttribute.class, "fmBIpOStKkF" ) )
+            .getValue() );
+
+        ProgramInstance enrollmentA = manager.get( ProgramInstance.class, "TvctPPhpD8u" );
+        ProgramInstance enrollmentB = manager.get( ProgramInstance.class, "TvctPPhpD8v" );
+        assertEquals( "NCc1rCEOKaY", enrollmentA.getEntityInstance().getUid() );
+        assertEquals( "NCc1rCEOKaY", enrollmentB.getEntityInstance().getUid() );
+
+        assertEquals( "TvctPPhpD8u",
+            manager.get( ProgramStageInstance.class, "D9PbzJY8bJO" ).getProgramInstance().getUid() );
+        assertEquals( "TvctPPhpD8v",
+            manager.get( ProgramStageInstance.class, "D9PbzJY8bJ1" ).getProgramInstance().getUid() );
+    }
 }
@@ -0,0 +1,126 @@
+package org.hisp.dhis.tracker.validation;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.external.conf.ConfigurationKey.TRACKER_VALIDATION_CONCURRENCY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.organisationunit.FeatureType;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.trackedentity.TrackedEntityAttributeService;
+import org.hisp.dhis.tracker.TrackerIdentifier;
+import org.hisp.dhis.tracker.bundle.TrackerBundle;
+import org.hisp.dhis.tracker.domain.Enrollment;
+import org.hisp.dhis.tracker.preheat.TrackerPreheat;
+import org.hisp.dhis.tracker.report.TrackerValidationReport;
+import org.hisp.dhis.tracker.validation.hooks.EnrollmentDateValidationHook;
+import org.hisp.dhis.tracker.validation.hooks.EnrollmentGeoValidationHook;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class DefaultTrackerValidationServiceTest
+{
+    private final TrackedEntityAttributeService teAttrService = mock( TrackedEntityAttributeService.class );
+
+    @Test
+    public void testParallelValidationReportsSameErrorsAsSequential()
+    {
+        TrackerValidationReport sequential = validate( "1" );
+        TrackerValidationReport parallel = validate( "4" );
+
+        assertFalse( sequential.getErrorReports().isEmpty() );
+        assertEquals( sequential.getErrorReports(), parallel.getErrorReports() );
+        assertEquals( sequential.getWarningReports(), parallel.getWarningReports() );
+    }
+
+    private TrackerValidationReport validate( String concurrency )
+    {
+        DhisConfigurationProvider config = mock( DhisConfigurationProvider.class );
+        when( config.getProperty( TRACKER_VALIDATION_CONCURRENCY ) ).thenReturn( concurrency );
+
+        DefaultTrackerValidationService validationService = new DefaultTrackerValidationService( config );
+
+        try
+        {
+            validationService.setValidationHooks( Lists.newArrayList(
+                new EnrollmentDateValidationHook( teAttrService ),
+                new EnrollmentGeoValidationHook( teAttrService ) ) );
+
+            return validationService.validate( createBundle() );
+        }
+        finally
+        {
+            validationService.shutdown();
+        }
+    }
+
+    /**
+     * Creates a bundle where every other enrollment fails the date
+     * validation, and every third enrollment fails the geometry validation.
+     */
+    private TrackerBundle createBundle()
+    {
+        Program program = new Program();
+        program.setName( "Program A" );
+        program.setUid( CodeGenerator.generateUid() );
+        program.setFeatureType( FeatureType.POLYGON );
+
+        TrackerPreheat preheat = new TrackerPreheat();
+        preheat.put( TrackerIdentifier.UID, program );
+
+        List<Enrollment> enrollments = new ArrayList<>();
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            enrollments.add( Enrollment.builder()
+                .enrollment( "Enrollment" + i )
+                .program( program.getUid() )
+                .enrolledAt( i % 2 == 0 ? "2999-01-01" : "2000-01-01" )
+                .occurredAt( i % 4 == 1 ? null : "2000-01-01" )
+                .geometry( i % 3 == 0 ? new GeometryFactory().createPoint( new Coordinate( 1, 2 ) ) : null )
+                .build() );
+        }
+
+        return TrackerBundle.builder()
+            .preheat( preheat )
+            .enrollments( enrollments )
+            .build();
+    }
+}
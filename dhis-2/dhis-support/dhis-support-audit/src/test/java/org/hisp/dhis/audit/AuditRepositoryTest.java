@@ -76,6 +76,26 @@ public class AuditRepositoryTest
         assertEquals( 1, auditRepository.query( AuditQuery.builder().build() ).size() );
     }
 
+    @Test
+    public void testSaveAudits()
+    {
+        List<Audit> audits = new ArrayList<>();
+
+        IntStream.rangeClosed( 1, 100 ).forEach( n -> audits.add( Audit.builder()
+            .auditType( AuditType.CREATE )
+            .auditScope( AuditScope.AGGREGATE )
+            .createdAt( LocalDateTime.of( 2019, 1, 1, 0, 0 ) )
+            .createdBy( "test-user" )
+            .klass( DataElement.class.getName() )
+            .uid( CodeGenerator.generateUid() )
+            .code( CodeGenerator.generateUid() )
+            .data( "{}" )
+            .build() ) );
+
+        auditRepository.save( audits );
+        assertEquals( 100, auditRepository.count( AuditQuery.builder().build() ) );
+    }
+
     @Test
     public void testDeleteAudit()
     {
@@ -78,6 +78,14 @@ public enum ConfigurationKey
     PROGRAM_TEMPORARY_OWNERSHIP_TIMEOUT( "tracker.temporary.ownership.timeout", "3", false ),
     LEADER_TIME_TO_LIVE( "leader.time.to.live.minutes", "2", false ),
     ANALYTICS_CACHE_EXPIRATION( "analytics.cache.expiration", "0" ),
+    ANALYTICS_QUERY_CONCURRENCY( "analytics.query.concurrency", "0", false ),
+    ANALYTICS_TABLE_CONCURRENCY( "analytics.table.concurrency", "1", false ),
+    DATA_IMPORT_PARALLELISM( "data.import.parallelism", "4", false ),
+    DATA_IMPORT_CHUNK_SIZE( "data.import.chunk_size", "10000", false ),
+    TRACKER_VALIDATION_CONCURRENCY( "tracker.validation.concurrency", "1", false ),
+    TRACKER_RULE_ENGINE_CONCURRENCY( "tracker.rule_engine.concurrency", "0", false ),
+    PREDICTOR_CONCURRENCY( "predictor.concurrency", "0", false ),
+    METADATA_PREHEAT_CONCURRENCY( "metadata.preheat.concurrency", "1", false ),
     ARTEMIS_MODE( "artemis.mode", "EMBEDDED" ),
     ARTEMIS_HOST( "artemis.host", "127.0.0.1" ),
     ARTEMIS_PORT( "artemis.port", "25672" ),
@@ -96,6 +104,8 @@ public enum ConfigurationKey
     MONITORING_HIBERNATE_ENABLED( "monitoring.hibernate.enabled", "off", false ),
     MONITORING_UPTIME_ENABLED( "monitoring.uptime.enabled", "off", false ),
     MONITORING_CPU_ENABLED( "monitoring.cpu.enabled", "off", false ),
+    MONITORING_ANALYTICS_ENABLED( "monitoring.analytics.enabled", "off", false ),
+    MONITORING_AUDIT_ENABLED( "monitoring.audit.enabled", "off", false ),
     MONITORING_LOG_REQUESTID_ENABLED( "monitoring.requestidlog.enabled", "off", false ),
     MONITORING_LOG_REQUESTID_HASHALGO( "monitoring.requestidlog.hash", "SHA-256", false ),
     MONITORING_LOG_REQUESTID_MAXSIZE( "monitoring.requestidlog.maxsize", "-1", false ),
@@ -106,6 +116,9 @@ public enum ConfigurationKey
     AUDIT_USE_INMEMORY_QUEUE_ENABLED( "audit.inmemory-queue.enabled", "off" ),
     AUDIT_LOGGER( "audit.logger", "off", false ),
     AUDIT_DATABASE( "audit.database", "on", false ),
+    AUDIT_CONSUMER_BATCH_SIZE( "audit.consumer.batch_size", "500", false ),
+    AUDIT_CONSUMER_FLUSH_INTERVAL( "audit.consumer.flush_interval_ms", "500", false ),
+    AUDIT_CONSUMER_QUEUE_CAPACITY( "audit.consumer.queue_capacity", "10000", false ),
     AUDIT_METADATA_MATRIX( "audit.metadata", "", false ),
     AUDIT_TRACKER_MATRIX( "audit.tracker", "", false ),
     AUDIT_AGGREGATE_MATRIX( "audit.aggregate", "", false ),
@@ -0,0 +1,181 @@
+package org.hisp.dhis.cache;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Base class for listeners which invalidate a cache when a mapped collection
+ * changes. Collection changes are flushed before the transaction commits, so
+ * the cache is invalidated on flush, so that the changing transaction sees
+ * its own changes, and again for all changed owners after commit, so that an
+ * entry loaded by another transaction in between is not kept. A single
+ * transaction synchronization is registered per transaction.
+ */
+public abstract class AbstractCollectionInvalidationListener
+    implements PostCollectionUpdateEventListener, PostCollectionRecreateEventListener,
+    PostCollectionRemoveEventListener
+{
+    @PersistenceUnit
+    private EntityManagerFactory emf;
+
+    @PostConstruct
+    protected void init()
+    {
+        SessionFactoryImpl sessionFactory = emf.unwrap( SessionFactoryImpl.class );
+
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService( EventListenerRegistry.class );
+
+        registry.getEventListenerGroup( EventType.POST_COLLECTION_UPDATE ).appendListener( this );
+
+        registry.getEventListenerGroup( EventType.POST_COLLECTION_RECREATE ).appendListener( this );
+
+        registry.getEventListenerGroup( EventType.POST_COLLECTION_REMOVE ).appendListener( this );
+
+        registerListeners( registry );
+    }
+
+    /**
+     * Override to register further listeners with the given registry.
+     *
+     * @param registry the {@link EventListenerRegistry}.
+     */
+    protected void registerListeners( EventListenerRegistry registry )
+    {
+    }
+
+    /**
+     * Indicates whether a change of the collection of the given event affects
+     * the cache.
+     *
+     * @param event the collection event.
+     * @return true if the cache must be invalidated.
+     */
+    protected abstract boolean isInvalidating( AbstractCollectionEvent event );
+
+    /**
+     * Invalidates the cache entries depending on the collections of the given
+     * owners.
+     *
+     * @param owners the owners of the changed collections.
+     */
+    protected abstract void invalidate( Collection<Object> owners );
+
+    @Override
+    public void onPostUpdateCollection( PostCollectionUpdateEvent event )
+    {
+        collectionChanged( event );
+    }
+
+    @Override
+    public void onPostRecreateCollection( PostCollectionRecreateEvent event )
+    {
+        collectionChanged( event );
+    }
+
+    @Override
+    public void onPostRemoveCollection( PostCollectionRemoveEvent event )
+    {
+        collectionChanged( event );
+    }
+
+    private void collectionChanged( AbstractCollectionEvent event )
+    {
+        Object owner = event.getAffectedOwnerOrNull();
+
+        if ( owner == null || !isInvalidating( event ) )
+        {
+            return;
+        }
+
+        invalidate( Collections.singleton( owner ) );
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            getPendingOwners().add( owner );
+        }
+    }
+
+    /**
+     * Returns the owners of the collections changed in the current
+     * transaction, registering the synchronization which invalidates them
+     * again after commit on first use.
+     */
+    @SuppressWarnings( "unchecked" )
+    private Set<Object> getPendingOwners()
+    {
+        Set<Object> pendingOwners = (Set<Object>) TransactionSynchronizationManager.getResource( this );
+
+        if ( pendingOwners == null )
+        {
+            Set<Object> owners = new HashSet<>();
+
+            TransactionSynchronizationManager.bindResource( this, owners );
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    invalidate( owners );
+                }
+
+                @Override
+                public void afterCompletion( int status )
+                {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(
+                        AbstractCollectionInvalidationListener.this );
+                }
+            } );
+
+            pendingOwners = owners;
+        }
+
+        return pendingOwners;
+    }
+}
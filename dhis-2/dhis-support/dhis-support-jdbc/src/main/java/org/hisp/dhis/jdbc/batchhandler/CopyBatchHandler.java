@@ -0,0 +1,290 @@
+package org.hisp.dhis.jdbc.batchhandler;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.hisp.quick.BatchHandler;
+import org.hisp.quick.JdbcConfiguration;
+import org.hisp.quick.batchhandler.AbstractBatchHandler;
+import org.postgresql.PGConnection;
+
+import com.google.common.collect.ImmutableSet;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * PostgreSQL batch handler which writes added objects with COPY. Added
+ * objects are buffered as CSV rows, copied into a temporary staging table
+ * and merged into the target table with a single insert, all in one
+ * transaction on a pooled connection. For tables with unique columns the
+ * merge is an upsert on those columns. Finding, updating and deleting
+ * objects is done by the wrapped batch handler.
+ */
+@Slf4j
+public class CopyBatchHandler<T>
+    implements BatchHandler<T>
+{
+    private static final int MAX_ROWS = 50000;
+
+    /**
+     * Columns which keep their stored value when an existing row is merged.
+     */
+    private static final Set<String> INSERT_ONLY_COLUMNS = ImmutableSet.of( "created" );
+
+    private final AbstractBatchHandler<T> delegate;
+
+    private final DataSource dataSource;
+
+    private final int maxRows;
+
+    private final String stagingTable;
+
+    private final List<String> rows = new ArrayList<>();
+
+    /**
+     * Unique values of the objects added so far, to reject duplicates like
+     * the wrapped batch handler does.
+     */
+    private final Set<Object> uniqueValues = new HashSet<>();
+
+    public CopyBatchHandler( AbstractBatchHandler<T> delegate, DataSource dataSource )
+    {
+        this( delegate, dataSource, MAX_ROWS );
+    }
+
+    CopyBatchHandler( AbstractBatchHandler<T> delegate, DataSource dataSource, int maxRows )
+    {
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+        this.maxRows = maxRows;
+        this.stagingTable = "_copy_" + delegate.getTableName();
+    }
+
+    // -------------------------------------------------------------------------
+    // BatchHandler implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public BatchHandler<T> init()
+    {
+        delegate.init();
+
+        return this;
+    }
+
+    @Override
+    public JdbcConfiguration getConfiguration()
+    {
+        return delegate.getConfiguration();
+    }
+
+    @Override
+    public boolean addObject( T object )
+    {
+        if ( !delegate.getUniqueColumns().isEmpty() && !uniqueValues.add( delegate.getUniqueValues( object ) ) )
+        {
+            return false;
+        }
+
+        rows.add( toCsvRow( delegate.getValues( object ) ) );
+
+        if ( rows.size() >= maxRows )
+        {
+            copyRows();
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean insertObject( T object )
+    {
+        return delegate.insertObject( object );
+    }
+
+    @Override
+    public T findObject( T object )
+    {
+        return delegate.findObject( object );
+    }
+
+    @Override
+    public void updateObject( T object )
+    {
+        delegate.updateObject( object );
+    }
+
+    @Override
+    public void deleteObject( T object )
+    {
+        delegate.deleteObject( object );
+    }
+
+    @Override
+    public boolean objectExists( T object )
+    {
+        return delegate.objectExists( object );
+    }
+
+    @Override
+    public void flush()
+    {
+        try
+        {
+            copyRows();
+        }
+        finally
+        {
+            uniqueValues.clear();
+
+            delegate.flush();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Copies the buffered rows into a staging table and merges them into the
+     * target table. The staging table is dropped when the transaction ends.
+     */
+    private void copyRows()
+    {
+        if ( rows.isEmpty() )
+        {
+            return;
+        }
+
+        String columns = String.join( ",", delegate.getColumns() );
+
+        try ( Connection connection = dataSource.getConnection() )
+        {
+            boolean autoCommit = connection.getAutoCommit();
+
+            connection.setAutoCommit( false );
+
+            try ( Statement statement = connection.createStatement() )
+            {
+                statement.executeUpdate( "create temp table " + stagingTable + " on commit drop as select " +
+                    columns + " from " + delegate.getTableName() + " with no data" );
+
+                connection.unwrap( PGConnection.class ).getCopyAPI().copyIn(
+                    "copy " + stagingTable + " (" + columns + ") from stdin with (format csv)",
+                    new StringReader( String.join( "", rows ) ) );
+
+                statement.executeUpdate( getMergeSql( columns ) );
+
+                connection.commit();
+            }
+            catch ( SQLException | IOException | RuntimeException ex )
+            {
+                connection.rollback();
+
+                throw ex;
+            }
+            finally
+            {
+                connection.setAutoCommit( autoCommit );
+            }
+
+            log.debug( "Copied " + rows.size() + " rows into " + delegate.getTableName() );
+        }
+        catch ( SQLException | IOException ex )
+        {
+            throw new IllegalStateException( "Failed to copy rows into " + delegate.getTableName(), ex );
+        }
+        finally
+        {
+            rows.clear();
+        }
+    }
+
+    private String getMergeSql( String columns )
+    {
+        List<String> uniqueColumns = delegate.getUniqueColumns();
+        String autoIncrementColumn = delegate.getAutoIncrementColumn();
+
+        if ( !uniqueColumns.isEmpty() )
+        {
+            String updates = delegate.getColumns().stream()
+                .filter( column -> !uniqueColumns.contains( column ) && !INSERT_ONLY_COLUMNS.contains( column ) )
+                .map( column -> column + "=excluded." + column )
+                .collect( Collectors.joining( "," ) );
+
+            return "insert into " + delegate.getTableName() + " (" + columns + ") " +
+                "select " + columns + " from " + stagingTable + " " +
+                "on conflict (" + String.join( ",", uniqueColumns ) + ") " +
+                ( updates.isEmpty() ? "do nothing" : "do update set " + updates );
+        }
+        else if ( autoIncrementColumn != null )
+        {
+            return "insert into " + delegate.getTableName() + " (" + autoIncrementColumn + "," + columns + ") " +
+                "select nextval('" + delegate.getIdSequenceName() + "')," + columns + " from " + stagingTable;
+        }
+        else
+        {
+            return "insert into " + delegate.getTableName() + " (" + columns + ") " +
+                "select " + columns + " from " + stagingTable;
+        }
+    }
+
+    /**
+     * Formats values as a CSV row. Null values are left empty and unquoted,
+     * which COPY reads as null, while empty strings are quoted.
+     */
+    private static String toCsvRow( List<Object> values )
+    {
+        return values.stream()
+            .map( CopyBatchHandler::toCsvValue )
+            .collect( Collectors.joining( ",", "", "\n" ) );
+    }
+
+    private static String toCsvValue( Object value )
+    {
+        if ( value == null )
+        {
+            return "";
+        }
+
+        return "\"" + value.toString().replace( "\"", "\"\"" ) + "\"";
+    }
+}
@@ -0,0 +1,86 @@
+package org.hisp.dhis.jdbc.batchhandler;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.hisp.quick.BatchHandler;
+import org.hisp.quick.BatchHandlerFactory;
+import org.hisp.quick.StatementDialect;
+import org.hisp.quick.batchhandler.AbstractBatchHandler;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Batch handler factory which, on PostgreSQL, wraps the batch handlers of
+ * high volume tables in a {@link CopyBatchHandler} so that added objects are
+ * written with COPY. On other databases, such as H2, the batch handlers of
+ * the wrapped factory are returned as is.
+ */
+public class DialectBatchHandlerFactory
+    implements BatchHandlerFactory
+{
+    private static final Set<Class<?>> COPY_BATCH_HANDLERS = ImmutableSet.of(
+        DataValueBatchHandler.class, DataValueAuditBatchHandler.class, CompleteDataSetRegistrationBatchHandler.class );
+
+    private final BatchHandlerFactory batchHandlerFactory;
+
+    private final StatementDialect statementDialect;
+
+    private final DataSource dataSource;
+
+    public DialectBatchHandlerFactory( BatchHandlerFactory batchHandlerFactory, StatementDialect statementDialect,
+        DataSource dataSource )
+    {
+        checkNotNull( batchHandlerFactory );
+        checkNotNull( statementDialect );
+        checkNotNull( dataSource );
+
+        this.batchHandlerFactory = batchHandlerFactory;
+        this.statementDialect = statementDialect;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public <T> BatchHandler<T> createBatchHandler( Class<? extends BatchHandler<T>> clazz )
+    {
+        BatchHandler<T> batchHandler = batchHandlerFactory.createBatchHandler( clazz );
+
+        if ( StatementDialect.POSTGRESQL == statementDialect && COPY_BATCH_HANDLERS.contains( clazz ) )
+        {
+            return new CopyBatchHandler<>( (AbstractBatchHandler<T>) batchHandler, dataSource );
+        }
+
+        return batchHandler;
+    }
+}
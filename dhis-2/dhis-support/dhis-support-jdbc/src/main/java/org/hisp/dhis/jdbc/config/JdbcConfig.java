@@ -30,8 +30,10 @@ package org.hisp.dhis.jdbc.config;
 
 import com.google.common.collect.Lists;
 import org.hisp.dhis.hibernate.HibernateConfigurationProvider;
+import org.hisp.dhis.jdbc.batchhandler.DialectBatchHandlerFactory;
 import org.hisp.dhis.jdbc.dialect.StatementDialectFactoryBean;
 import org.hisp.dhis.jdbc.statementbuilder.StatementBuilderFactoryBean;
+import org.hisp.quick.BatchHandlerFactory;
 import org.hisp.quick.StatementInterceptor;
 import org.hisp.quick.configuration.JdbcConfigurationFactoryBean;
 import org.hisp.quick.factory.DefaultBatchHandlerFactory;
@@ -40,6 +42,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.sql.DataSource;
+
 /**
  * @author Luciano Fiandesio
  */
@@ -49,6 +53,9 @@ public class JdbcConfig
     @Autowired
     private HibernateConfigurationProvider hibernateConfigurationProvider;
 
+    @Autowired
+    private DataSource dataSource;
+
     @Bean
     public JdbcStatementManager statementManager()
         throws Exception
@@ -83,12 +90,12 @@ public class JdbcConfig
     }
 
     @Bean
-    public DefaultBatchHandlerFactory batchHandlerFactory()
+    public BatchHandlerFactory batchHandlerFactory()
         throws Exception
     {
         DefaultBatchHandlerFactory defaultBatchHandlerFactory = new DefaultBatchHandlerFactory();
         defaultBatchHandlerFactory.setJdbcConfiguration( jdbcConfiguration().getObject() );
-        return defaultBatchHandlerFactory;
+        return new DialectBatchHandlerFactory( defaultBatchHandlerFactory, statementDialect().getObject(), dataSource );
     }
 
     @Bean
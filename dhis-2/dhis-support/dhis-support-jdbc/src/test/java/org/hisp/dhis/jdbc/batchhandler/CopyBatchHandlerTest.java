@@ -0,0 +1,206 @@
+package org.hisp.dhis.jdbc.batchhandler;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hisp.dhis.datavalue.DataValue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+
+public class CopyBatchHandlerTest
+{
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    @Mock
+    private DataValueBatchHandler delegate;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private CopyBatchHandler<DataValue> batchHandler;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        when( dataSource.getConnection() ).thenReturn( connection );
+        when( connection.getAutoCommit() ).thenReturn( true );
+        when( connection.createStatement() ).thenReturn( statement );
+        when( connection.unwrap( PGConnection.class ) ).thenReturn( pgConnection );
+        when( pgConnection.getCopyAPI() ).thenReturn( copyManager );
+
+        // The comment stands in for the unique key of the data value
+
+        when( delegate.getTableName() ).thenReturn( "datavalue" );
+        when( delegate.getColumns() ).thenReturn( Lists.newArrayList( "sourceid", "value", "created" ) );
+        when( delegate.getUniqueColumns() ).thenReturn( Lists.newArrayList( "sourceid" ) );
+        when( delegate.getUniqueValues( any() ) ).thenAnswer( invocation ->
+            Lists.newArrayList( invocation.<DataValue>getArgument( 0 ).getComment() ) );
+        when( delegate.getValues( any() ) ).thenAnswer( invocation -> {
+            DataValue dataValue = invocation.getArgument( 0 );
+            return Lists.newArrayList( dataValue.getComment(), dataValue.getValue(), "2020-01-01" );
+        } );
+
+        batchHandler = new CopyBatchHandler<>( delegate, dataSource, 2 );
+    }
+
+    @Test
+    public void testCopyRows()
+        throws Exception
+    {
+        assertTrue( batchHandler.addObject( createDataValue( "1", "a" ) ) );
+        assertTrue( batchHandler.addObject( createDataValue( "2", "b\"c" ) ) );
+
+        ArgumentCaptor<Reader> reader = ArgumentCaptor.forClass( Reader.class );
+
+        verify( copyManager ).copyIn( eq( "copy _copy_datavalue (sourceid,value,created) from stdin with (format csv)" ),
+            reader.capture() );
+
+        assertEquals( "\"1\",\"a\",\"2020-01-01\"\n\"2\",\"b\"\"c\",\"2020-01-01\"\n",
+            CharStreams.toString( reader.getValue() ) );
+
+        verify( connection ).setAutoCommit( false );
+        verify( connection ).commit();
+        verify( connection ).setAutoCommit( true );
+        verify( connection ).close();
+    }
+
+    @Test
+    public void testUpsertKeepsCreated()
+        throws Exception
+    {
+        batchHandler.addObject( createDataValue( "1", "a" ) );
+        batchHandler.addObject( createDataValue( "2", "b" ) );
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass( String.class );
+
+        verify( statement, times( 2 ) ).executeUpdate( sql.capture() );
+
+        List<String> statements = sql.getAllValues();
+
+        assertEquals( "create temp table _copy_datavalue on commit drop as " +
+            "select sourceid,value,created from datavalue with no data", statements.get( 0 ) );
+        assertEquals( "insert into datavalue (sourceid,value,created) " +
+            "select sourceid,value,created from _copy_datavalue " +
+            "on conflict (sourceid) do update set value=excluded.value", statements.get( 1 ) );
+    }
+
+    @Test
+    public void testRejectDuplicateObject()
+        throws Exception
+    {
+        assertTrue( batchHandler.addObject( createDataValue( "1", "a" ) ) );
+        assertFalse( batchHandler.addObject( createDataValue( "1", "b" ) ) );
+
+        verify( copyManager, never() ).copyIn( anyString(), any( Reader.class ) );
+    }
+
+    @Test
+    public void testRollbackFailedCopy()
+        throws Exception
+    {
+        doThrow( new SQLException( "Merge failed" ) ).when( statement ).executeUpdate( startsWith( "insert" ) );
+
+        batchHandler.addObject( createDataValue( "1", "a" ) );
+
+        try
+        {
+            batchHandler.addObject( createDataValue( "2", "b" ) );
+
+            fail( "Expected copy to fail" );
+        }
+        catch ( IllegalStateException ex )
+        {
+            assertEquals( "Failed to copy rows into datavalue", ex.getMessage() );
+        }
+
+        verify( connection ).rollback();
+        verify( connection, never() ).commit();
+        verify( connection ).setAutoCommit( true );
+        verify( connection ).close();
+
+        // The failed rows are discarded
+
+        batchHandler.addObject( createDataValue( "3", "c" ) );
+
+        verify( copyManager, times( 1 ) ).copyIn( anyString(), any( Reader.class ) );
+    }
+
+    private DataValue createDataValue( String key, String value )
+    {
+        DataValue dataValue = new DataValue();
+        dataValue.setComment( key );
+        dataValue.setValue( value );
+        return dataValue;
+    }
+}
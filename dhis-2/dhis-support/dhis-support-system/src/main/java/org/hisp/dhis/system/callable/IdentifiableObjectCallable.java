@@ -55,7 +55,16 @@ public class IdentifiableObjectCallable<T extends IdentifiableObject>
 
     public IdentifiableObjectCallable( IdentifiableObjectManager manager, Class<T> clazz, IdScheme idScheme, String id )
     {
+        this( clazz, idScheme, id );
         this.manager = manager;
+    }
+
+    /**
+     * Constructor for subclasses which retrieve the object through another
+     * service than the {@link IdentifiableObjectManager}.
+     */
+    protected IdentifiableObjectCallable( Class<T> clazz, IdScheme idScheme, String id )
+    {
         this.clazz = clazz;
         this.idScheme = idScheme;
         this.id = id;
@@ -32,6 +32,7 @@ import org.hisp.quick.BatchHandler;
 import org.hisp.quick.JdbcConfiguration;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -40,9 +41,9 @@ import java.util.List;
 public class MockBatchHandler<T>
     implements BatchHandler<T>
 {
-    private List<T> inserts = new ArrayList<>();
-    private List<T> updates = new ArrayList<>();
-    private List<T> deletes = new ArrayList<>();
+    private List<T> inserts = Collections.synchronizedList( new ArrayList<>() );
+    private List<T> updates = Collections.synchronizedList( new ArrayList<>() );
+    private List<T> deletes = Collections.synchronizedList( new ArrayList<>() );
     
     private boolean findSelf = false;
     
@@ -42,6 +42,8 @@ import org.hisp.dhis.common.DhisApiVersion;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.IdentifiableObjects;
+import org.hisp.dhis.common.MetadataObject;
+import org.hisp.dhis.common.MetadataWatermark;
 import org.hisp.dhis.common.Pager;
 import org.hisp.dhis.common.SubscribableObject;
 import org.hisp.dhis.common.UserContext;
@@ -94,6 +96,7 @@ import org.hisp.dhis.security.acl.AclService;
 import org.hisp.dhis.translation.Translation;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
+import org.hisp.dhis.user.UserGroup;
 import org.hisp.dhis.user.UserSettingKey;
 import org.hisp.dhis.user.UserSettingService;
 import org.hisp.dhis.webapi.mvc.annotation.ApiVersion;
@@ -109,6 +112,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -116,17 +120,20 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -204,6 +211,9 @@ public abstract class AbstractCrudController<T extends IdentifiableObject>
     @Autowired
     protected AttributeService attributeService;
 
+    @Autowired
+    protected MetadataWatermark metadataWatermark;
+
     @Autowired
     protected ObjectMapper jsonMapper;
 
@@ -218,7 +228,7 @@ public abstract class AbstractCrudController<T extends IdentifiableObject>
     @RequestMapping( method = RequestMethod.GET )
     public @ResponseBody RootNode getObjectList(
         @RequestParam Map<String, String> rpParameters, OrderParams orderParams,
-        HttpServletResponse response, User currentUser ) throws QueryParserException
+        HttpServletResponse response, User currentUser, WebRequest webRequest ) throws QueryParserException
     {
         List<String> fields = Lists.newArrayList( contextService.getParameterValues( "fields" ) );
         List<String> filters = Lists.newArrayList( contextService.getParameterValues( "filter" ) );
@@ -237,6 +247,13 @@ public abstract class AbstractCrudController<T extends IdentifiableObject>
             throw new ReadAccessDeniedException( "You don't have the proper permissions to read objects of this type." );
         }
 
+        if ( isObjectListEtagEnabled() && webRequest.checkNotModified( getObjectListEtag( currentUser, webRequest ) ) )
+        {
+            response.setHeader( ContextUtils.HEADER_CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue() );
+
+            return null;
+        }
+
         List<T> entities = getEntityList( metadata, options, filters, orders );
 
         Pager pager = metadata.getPager();
@@ -273,7 +290,7 @@ public abstract class AbstractCrudController<T extends IdentifiableObject>
             rootNode.addChild( NodeUtils.createPager( pager ) );
         }
 
-        rootNode.addChild( fieldFilterService.toCollectionNode( getEntityClass(),
+        rootNode.addChild( fieldFilterService.toStreamingCollectionNode( getEntityClass(),
             new FieldFilterParams( entities, fields, Defaults.valueOf( options.get( "defaults", DEFAULTS ) ) ) ) );
 
         response.setHeader( ContextUtils.HEADER_CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue() );
@@ -1089,6 +1106,16 @@ public abstract class AbstractCrudController<T extends IdentifiableObject>
         return renderService.fromXml( request.getInputStream(), getEntityClass() );
     }
 
+    /**
+     * Override to disable the ETag check of object lists, for controllers
+     * whose lists depend on data other than the metadata of the entity type,
+     * the current user and the request.
+     */
+    protected boolean isObjectListEtagEnabled()
+    {
+        return metadataWatermark.isEnabled() && MetadataObject.class.isAssignableFrom( getEntityClass() );
+    }
+
     /**
      * Override to process entities after it has been retrieved from
      * storage and before it is returned to the view. Entities is null-safe.
@@ -1446,6 +1473,30 @@ public abstract class AbstractCrudController<T extends IdentifiableObject>
         return entitySimpleName;
     }
 
+    /**
+     * Returns an ETag for the object list which changes whenever the metadata
+     * of the entity type, the sharing or authorities of the current user, the
+     * user settings or the request changes, without loading the objects.
+     */
+    String getObjectListEtag( User currentUser, WebRequest webRequest )
+    {
+        StringBuilder key = new StringBuilder( metadataWatermark.getWatermark( getEntityClass() ) );
+
+        key.append( '|' ).append( currentUser.getUid() ).append( '|' );
+        key.append( currentUser.getGroups().stream().map( UserGroup::getUid ).sorted().collect( Collectors.joining( "," ) ) );
+        key.append( '|' ).append( currentUser.getUserCredentials() == null ? "" :
+            currentUser.getUserCredentials().getAllAuthorities().stream().sorted().collect( Collectors.joining( "," ) ) );
+        key.append( '|' ).append( new TreeMap<>( UserContext.getUserSettings() ) );
+        key.append( '|' ).append( webRequest.getDescription( false ) ).append( '|' );
+
+        new TreeMap<>( webRequest.getParameterMap() ).forEach( ( name, values ) ->
+            key.append( name ).append( '=' ).append( String.join( ",", values ) ).append( '&' ) );
+
+        key.append( '|' ).append( webRequest.getHeader( "Accept" ) );
+
+        return "\"" + DigestUtils.md5DigestAsHex( key.toString().getBytes( StandardCharsets.UTF_8 ) ) + "\"";
+    }
+
     private String calculatePaginationCountKey( User currentUser, List<String> filters, WebOptions options )
     {
         return currentUser.getUsername() + "." + getEntityName() + "." + String.join( "|", filters ) + "."
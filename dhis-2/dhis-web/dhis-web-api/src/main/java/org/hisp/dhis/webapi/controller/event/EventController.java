@@ -70,6 +70,7 @@ import org.hisp.dhis.importexport.ImportStrategy;
 import org.hisp.dhis.node.NodeUtils;
 import org.hisp.dhis.node.Preset;
 import org.hisp.dhis.node.types.RootNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.program.ProgramStageInstanceService;
 import org.hisp.dhis.program.ProgramStatus;
@@ -547,6 +548,19 @@ public class EventController
                 false, eventIds, skipEventId, assignedUserMode, assignedUserIds, filter, dataElementOrders.keySet(),
                 false, includeDeleted );
 
+        if ( !StringUtils.isEmpty( attachment ) )
+        {
+            response.addHeader( ContextUtils.HEADER_CONTENT_DISPOSITION, "attachment; filename=" + attachment );
+            response.addHeader( ContextUtils.HEADER_CONTENT_TRANSFER_ENCODING, "binary" );
+        }
+
+        if ( params.isSkipPaging() )
+        {
+            RootNode rootNode = NodeUtils.createMetadata();
+            rootNode.addChild( getStreamingEventsNode( params, fields, skipEventId, true, request ) );
+            return rootNode;
+        }
+
         Events events = eventService.getEvents( params );
 
         if ( hasHref( fields, skipEventId ) )
@@ -569,12 +583,6 @@ public class EventController
             rootNode.addChild( NodeUtils.createPager( events.getPager() ) );
         }
 
-        if ( !StringUtils.isEmpty( attachment ) )
-        {
-            response.addHeader( ContextUtils.HEADER_CONTENT_DISPOSITION, "attachment; filename=" + attachment );
-            response.addHeader( ContextUtils.HEADER_CONTENT_TRANSFER_ENCODING, "binary" );
-        }
-
         rootNode.addChild( fieldFilterService.toCollectionNode( Event.class, new FieldFilterParams( events.getEvents(), fields ) ) );
 
         return rootNode;
@@ -647,6 +655,19 @@ public class EventController
                 false, eventIds, skipEventId, assignedUserMode, assignedUserIds, filter, dataElementOrders.keySet(),
                 false, includeDeleted );
 
+        if ( !StringUtils.isEmpty( attachment ) )
+        {
+            response.addHeader( ContextUtils.HEADER_CONTENT_DISPOSITION, "attachment; filename=" + attachment );
+            response.addHeader( ContextUtils.HEADER_CONTENT_TRANSFER_ENCODING, "binary" );
+        }
+
+        if ( params.isSkipPaging() )
+        {
+            RootNode rootNode = NodeUtils.createEvents();
+            rootNode.addChild( getStreamingEventsNode( params, fields, skipEventId, false, request ) );
+            return rootNode;
+        }
+
         Events events = eventService.getEvents( params );
 
         if ( hasHref( fields, skipEventId ) )
@@ -668,12 +689,6 @@ public class EventController
         if ( events.getPager() != null )
         {
             rootNode.addChild( NodeUtils.createPager( events.getPager() ) );
-    }
-
-        if ( !StringUtils.isEmpty( attachment ) )
-    {
-            response.addHeader( ContextUtils.HEADER_CONTENT_DISPOSITION, "attachment; filename=" + attachment );
-            response.addHeader( ContextUtils.HEADER_CONTENT_TRANSFER_ENCODING, "binary" );
         }
 
         rootNode.addChildren(
@@ -740,8 +755,6 @@ public class EventController
                 eventIds, skipEventId, assignedUserMode, assignedUserIds, filter, dataElementOrders.keySet(), false,
                 includeDeleted );
 
-        Events events = eventService.getEvents( params );
-
         OutputStream outputStream = response.getOutputStream();
         response.setContentType( "application/csv" );
 
@@ -757,7 +770,19 @@ public class EventController
             response.addHeader( "Content-Disposition", "attachment; filename=" + attachment );
         }
 
-        csvEventService.writeEvents( outputStream, events, !skipHeader );
+        if ( params.isSkipPaging() )
+        {
+            // Write events as they are read to keep memory constant for full exports
+
+            csvEventService.writeEvents( outputStream, consumer -> eventService.getEvents( params, consumer ),
+                !skipHeader );
+        }
+        else
+        {
+            Events events = eventService.getEvents( params );
+
+            csvEventService.writeEvents( outputStream, events, !skipHeader );
+        }
     }
 
     // -------------------------------------------------------------------------
@@ -1177,6 +1202,27 @@ public class EventController
         return (skipEventId == null || !skipEventId) && fieldsContains( "href", fields );
     }
 
+    /**
+     * Returns a collection node of the events, which are read from the
+     * database and field filtered one at a time while the node is serialized.
+     * Used for full exports to keep memory use constant.
+     */
+    private StreamingCollectionNode getStreamingEventsNode( EventSearchParams params, List<String> fields,
+        Boolean skipEventId, boolean wrapping, HttpServletRequest request )
+    {
+        String hrefBase = hasHref( fields, skipEventId ) ? ContextUtils.getRootPath( request ) + RESOURCE_PATH + "/" : null;
+
+        return new StreamingCollectionNode( "events", wrapping, consumer -> eventService.getEvents( params, event -> {
+            if ( hrefBase != null )
+            {
+                event.setHref( hrefBase + event.getEvent() );
+            }
+
+            fieldFilterService.toCollectionNode( Event.class,
+                new FieldFilterParams( Collections.singletonList( event ), fields ) ).getChildren().forEach( consumer );
+        } ) );
+    }
+
     private List<Order> getOrderParams( String order )
     {
         if ( order != null && !StringUtils.isEmpty( order ) )
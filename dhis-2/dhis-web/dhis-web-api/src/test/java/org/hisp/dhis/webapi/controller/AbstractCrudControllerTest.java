@@ -0,0 +1,226 @@
+package org.hisp.dhis.webapi.controller;
+
+/*
+ * Copyright (c) 2004-2020, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.common.MetadataWatermark;
+import org.hisp.dhis.common.Pager;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dxf2.common.OrderParams;
+import org.hisp.dhis.fieldfilter.FieldFilterService;
+import org.hisp.dhis.node.types.RootNode;
+import org.hisp.dhis.query.Order;
+import org.hisp.dhis.schema.SchemaService;
+import org.hisp.dhis.security.acl.AclService;
+import org.hisp.dhis.user.User;
+import org.hisp.dhis.user.UserAuthorityGroup;
+import org.hisp.dhis.user.UserCredentials;
+import org.hisp.dhis.webapi.service.ContextService;
+import org.hisp.dhis.webapi.service.LinkService;
+import org.hisp.dhis.webapi.webdomain.WebMetadata;
+import org.hisp.dhis.webapi.webdomain.WebOptions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.google.common.collect.Sets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the object list ETag of {@link AbstractCrudController}.
+ */
+public class AbstractCrudControllerTest
+{
+    @Mock
+    private ContextService contextService;
+
+    @Mock
+    private AclService aclService;
+
+    @Mock
+    private MetadataWatermark metadataWatermark;
+
+    @Mock
+    private SchemaService schemaService;
+
+    @Mock
+    private LinkService linkService;
+
+    @Mock
+    private FieldFilterService fieldFilterService;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private DataElementListController controller;
+
+    private User user;
+
+    @Before
+    public void setUp()
+    {
+        controller = new DataElementListController();
+        controller.contextService = contextService;
+        controller.aclService = aclService;
+        controller.metadataWatermark = metadataWatermark;
+        controller.schemaService = schemaService;
+        controller.linkService = linkService;
+        controller.fieldFilterService = fieldFilterService;
+
+        user = createUser( "F_DATAELEMENT_PUBLIC_ADD" );
+
+        when( contextService.getParameterValues( anyString() ) ).thenReturn( Sets.newHashSet() );
+        when( aclService.canRead( any( User.class ), any() ) ).thenReturn( true );
+        when( metadataWatermark.isEnabled() ).thenReturn( true );
+        when( metadataWatermark.getWatermark( DataElement.class ) ).thenReturn( "v1-1-10" );
+    }
+
+    @Test
+    public void testFirstRequestSetsEtag()
+    {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        RootNode rootNode = getObjectList( new MockHttpServletRequest( "GET", "/api/dataElements" ), response );
+
+        assertNotNull( rootNode );
+        assertEquals( 1, controller.loadCount );
+        assertNotNull( response.getHeader( "ETag" ) );
+    }
+
+    @Test
+    public void testMatchingEtagSkipsLoading()
+    {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        getObjectList( new MockHttpServletRequest( "GET", "/api/dataElements" ), first );
+
+        MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/api/dataElements" );
+        request.addHeader( "If-None-Match", first.getHeader( "ETag" ) );
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull( getObjectList( request, response ) );
+        assertEquals( 304, response.getStatus() );
+        assertEquals( 1, controller.loadCount );
+    }
+
+    @Test
+    public void testEtagChangesWithWatermark()
+    {
+        String etag = getEtag( user );
+
+        when( metadataWatermark.getWatermark( DataElement.class ) ).thenReturn( "v2-1-10" );
+
+        assertNotEquals( etag, getEtag( user ) );
+    }
+
+    @Test
+    public void testEtagChangesWithAuthorities()
+    {
+        assertEquals( getEtag( user ), getEtag( createUser( "F_DATAELEMENT_PUBLIC_ADD" ) ) );
+        assertNotEquals( getEtag( user ), getEtag( createUser( "F_DATAELEMENT_PUBLIC_ADD", "F_DATAELEMENT_DELETE" ) ) );
+    }
+
+    @Test
+    public void testNoEtagWhenDisabled()
+    {
+        when( metadataWatermark.isEnabled() ).thenReturn( false );
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNotNull( getObjectList( new MockHttpServletRequest( "GET", "/api/dataElements" ), response ) );
+        assertNull( response.getHeader( "ETag" ) );
+        assertEquals( 1, controller.loadCount );
+        verify( metadataWatermark, never() ).getWatermark( any() );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private RootNode getObjectList( MockHttpServletRequest request, MockHttpServletResponse response )
+    {
+        return controller.getObjectList( new HashMap<>(), new OrderParams(), response, user,
+            new ServletWebRequest( request, response ) );
+    }
+
+    private String getEtag( User currentUser )
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/api/dataElements" );
+
+        return controller.getObjectListEtag( currentUser, new ServletWebRequest( request ) );
+    }
+
+    private User createUser( String... authorities )
+    {
+        UserAuthorityGroup role = new UserAuthorityGroup();
+        role.setAuthorities( Sets.newHashSet( authorities ) );
+
+        UserCredentials credentials = new UserCredentials();
+        credentials.setUserAuthorityGroups( Sets.newHashSet( role ) );
+
+        User user = new User();
+        user.setUid( "userUid0001" );
+        user.setUserCredentials( credentials );
+
+        return user;
+    }
+
+    private static class DataElementListController
+        extends AbstractCrudController<DataElement>
+    {
+        private int loadCount;
+
+        @Override
+        protected List<DataElement> getEntityList( WebMetadata metadata, WebOptions options, List<String> filters,
+            List<Order> orders )
+        {
+            loadCount++;
+            metadata.setPager( new Pager() );
+
+            return new ArrayList<>();
+        }
+    }
+}